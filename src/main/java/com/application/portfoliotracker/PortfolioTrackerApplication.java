@@ -1,7 +1,10 @@
 package com.application.portfoliotracker;
 
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class PortfolioTrackerApplication {
@@ -10,4 +13,10 @@ public class PortfolioTrackerApplication {
 		SpringApplication.run(PortfolioTrackerApplication.class, args);
 	}
 
+	//Records @Timed service methods, tagged with their class and method name
+	@Bean
+	public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+		return new TimedAspect(meterRegistry);
+	}
+
 }
@@ -1,100 +1,492 @@
 package com.application.portfoliotracker.controllers;
 
+import com.application.portfoliotracker.entities.CorrelationMatrix;
+import com.application.portfoliotracker.entities.EndpointStats;
+import com.application.portfoliotracker.entities.ExportResult;
 import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingCacheStats;
+import com.application.portfoliotracker.entities.IngestionResult;
 import com.application.portfoliotracker.entities.Portfolio;
+import com.application.portfoliotracker.entities.PortfolioAnalytics;
+import com.application.portfoliotracker.entities.PortfolioReturns;
+import com.application.portfoliotracker.entities.PriceBar;
+import com.application.portfoliotracker.entities.QuoteCacheStats;
+import com.application.portfoliotracker.entities.TickStats;
 import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TradeStoreStats;
+import com.application.portfoliotracker.enums.ExportCompression;
+import com.application.portfoliotracker.enums.ExportFormat;
 import com.application.portfoliotracker.exceptions.BadRequestException;
+import com.application.portfoliotracker.exceptions.IngestionException;
 import com.application.portfoliotracker.exceptions.NotFoundException;
 import com.application.portfoliotracker.services.PortfolioService;
+import com.application.portfoliotracker.services.RequestExecutor;
+import com.application.portfoliotracker.services.TradeExporter;
+import com.application.portfoliotracker.utils.TradeCsvReader;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Slf4j
 @RestController
 public class PortfolioController {
 
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private static final int DEFAULT_TOP_SIZE = 10;
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    //Set on the response to a trade whose idempotency key was already used, the body is the original trade
+    private static final String IDEMPOTENT_REPLAY_HEADER = "X-Idempotent-Replay";
+
+    //Every portfolio scoped endpoint lives under this prefix
+    private static final String PORTFOLIO = "/portfolios/{portfolioId}";
+
     @Autowired
     private PortfolioService portfolioService;
 
-    @PostMapping("/add-trade")
-    public ResponseEntity<Trade> addTrade(@RequestBody Trade trade) {
-        log.info("Add or update trade request came for user for trade id : {}", trade.getTradeId());
-        portfolioService.isValidTrade(trade);
-        return new ResponseEntity<>(portfolioService.addTrade(trade), HttpStatus.CREATED);
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RequestExecutor requestExecutor;
+
+    @PostMapping(PORTFOLIO + "/add-trade")
+    public CompletableFuture<ResponseEntity<Trade>> addTrade(@PathVariable String portfolioId, @RequestBody Trade trade,
+                                                             @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        log.info("Add or update trade request came for portfolio {} for trade id : {}", portfolioId, trade.getTradeId());
+        if (null != idempotencyKey) {
+            trade.setIdempotencyKey(idempotencyKey);
+        }
+        return requestExecutor.submit("add-trade", () -> {
+            Optional<Trade> original = portfolioService.findTradeByIdempotencyKey(portfolioId, trade.getIdempotencyKey());
+            if (original.isPresent()) {
+                log.info("Trade with idempotency key {} of portfolio {} was already added", trade.getIdempotencyKey(), portfolioId);
+                return ResponseEntity.status(HttpStatus.CREATED).header(IDEMPOTENT_REPLAY_HEADER, "true").body(original.get());
+            }
+            portfolioService.isValidTrade(portfolioId, trade);
+            return new ResponseEntity<>(portfolioService.addTrade(portfolioId, trade), HttpStatus.CREATED);
+        });
+    }
+
+    @PostMapping(value = PORTFOLIO + "/add-trades", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<IngestionResult>> addTrades(@PathVariable String portfolioId,
+                                                                        @RequestBody List<Trade> trades) {
+        log.info("Bulk add trade request came for portfolio {} for {} trades", portfolioId, trades.size());
+        return requestExecutor.submit("add-trades", () -> ingested(() -> portfolioService.addTrades(portfolioId, trades.iterator())));
+    }
+
+    //The body is read on the execution thread as the batches are committed, the request stays open until then
+    @PostMapping(value = PORTFOLIO + "/add-trades", consumes = "text/csv")
+    public CompletableFuture<ResponseEntity<IngestionResult>> addTradesFromCsv(@PathVariable String portfolioId, InputStream body) {
+        log.info("Bulk add trade request came for portfolio {} from csv", portfolioId);
+        return requestExecutor.submit("add-trades-csv", () -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                return ingested(() -> portfolioService.addTrades(portfolioId, new TradeCsvReader(reader)));
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+        });
     }
 
-    @PutMapping("/update-trade/{id}")
-    public ResponseEntity<Trade> UpdateTrade(@PathVariable Long id,@RequestBody Trade trade) {
-        log.info("Add or update trade request came for user for trade id : {}", trade.getTradeId());
-        portfolioService.isValidTrade(trade);
-        return new ResponseEntity<>(portfolioService.updateTrade(id,trade), HttpStatus.OK);
+    //Created with the result of the upload, or the status of the failed batch with the batches committed before it
+    private static ResponseEntity<IngestionResult> ingested(Supplier<IngestionResult> upload) {
+        try {
+            return new ResponseEntity<>(upload.get(), HttpStatus.CREATED);
+        } catch (IngestionException ingestionException) {
+            ResponseStatus status = AnnotatedElementUtils.findMergedAnnotation(ingestionException.getCause().getClass(), ResponseStatus.class);
+            return ResponseEntity.status(null == status ? HttpStatus.INTERNAL_SERVER_ERROR : status.code())
+                    .body(ingestionException.getResult());
+        }
     }
 
-    @DeleteMapping("/trades/{id}")
-    public ResponseEntity<Trade> deleteTrade(@PathVariable String id) {
-        log.info("Delete trade request came for user for trade id : {}", id);
-        return portfolioService.deleteTrade(getTradeId(id))
+    @PutMapping(PORTFOLIO + "/update-trade/{id}")
+    public CompletableFuture<ResponseEntity<Trade>> UpdateTrade(@PathVariable String portfolioId, @PathVariable Long id,@RequestBody Trade trade) {
+        log.info("Add or update trade request came for portfolio {} for trade id : {}", portfolioId, id);
+        return requestExecutor.submit("update-trade", () -> {
+            portfolioService.isValidTrade(portfolioId, trade);
+            return new ResponseEntity<>(portfolioService.updateTrade(portfolioId, id,trade), HttpStatus.OK);
+        });
+    }
+
+    @DeleteMapping(PORTFOLIO + "/trades/{id}")
+    public CompletableFuture<ResponseEntity<Trade>> deleteTrade(@PathVariable String portfolioId, @PathVariable String id) {
+        log.info("Delete trade request came for portfolio {} for trade id : {}", portfolioId, id);
+        return requestExecutor.submit("delete-trade", () -> portfolioService.deleteTrade(portfolioId, getTradeId(id))
                 .map(trade -> new ResponseEntity<>(trade, HttpStatus.OK))
-                .orElseThrow(() -> new NotFoundException("No Trade found for id : " + id));
+                .orElseThrow(() -> new NotFoundException("No Trade found for id : " + id)));
     }
 
-    @GetMapping("/trades/{id}")
-    public ResponseEntity<Trade> getTrade(@PathVariable String id) {
-        log.info("Show trade request came for user for trade id : {}", id);
-        return portfolioService.getTrade(getTradeId(id))
+    @GetMapping(PORTFOLIO + "/trades/{id}")
+    public CompletableFuture<ResponseEntity<Trade>> getTrade(@PathVariable String portfolioId, @PathVariable String id) {
+        log.info("Show trade request came for portfolio {} for trade id : {}", portfolioId, id);
+        return requestExecutor.submit("get-trade", () -> portfolioService.getTrade(portfolioId, getTradeId(id))
                 .map(trade -> new ResponseEntity<>(trade, HttpStatus.OK))
-                .orElseThrow(() -> new NotFoundException("No Trade found for id : " + id));
+                .orElseThrow(() -> new NotFoundException("No Trade found for id : " + id)));
+    }
+
+    @GetMapping(PORTFOLIO + "/trades/all")
+    public CompletableFuture<ResponseEntity<List<Trade>>> getTrades(@PathVariable String portfolioId,
+                                                                    @RequestParam(required = false) Long after,
+                                                                    @RequestParam(required = false) Integer limit) {
+        log.info("Show trades request came for portfolio {}", portfolioId);
+        return requestExecutor.submit("trades-all", () -> {
+            if (null == after && null == limit) {
+                return Optional.of(portfolioService.getTrades(portfolioId))
+                        .filter(list -> !list.isEmpty())
+                        .map(trades -> new ResponseEntity<>(trades, HttpStatus.OK))
+                        .orElseThrow(() -> new NotFoundException("No Trade found for portfolio " + portfolioId));
+            }
+            int pageSize = getPageSize(limit);
+            List<Trade> trades = portfolioService.getTrades(portfolioId, after, pageSize);
+            if (trades.isEmpty()) {
+                throw new NotFoundException("No Trade found for portfolio " + portfolioId);
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (trades.size() == pageSize) {
+                response.header(NEXT_CURSOR_HEADER, String.valueOf(trades.get(trades.size() - 1).getTradeId()));
+            }
+            return response.body(trades);
+        });
+    }
+
+    @GetMapping(PORTFOLIO + "/trades/by-ticker/{ticker}")
+    public CompletableFuture<ResponseEntity<List<Trade>>> getTradesBetween(@PathVariable String portfolioId, @PathVariable String ticker,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Show trades between {} and {} request came for portfolio {} for ticker : {}", from, to, portfolioId, ticker);
+        if (from.isAfter(to)) {
+            throw new BadRequestException("from should not be after to");
+        }
+        int pageSize = getPageSize(limit);
+        return requestExecutor.submit("trades-by-ticker", () -> Optional.of(portfolioService.getTradesBetween(portfolioId, ticker, from, to, pageSize))
+                .filter(list -> !list.isEmpty())
+                .map(trades -> new ResponseEntity<>(trades, HttpStatus.OK))
+                .orElseThrow(() -> new NotFoundException(String.format("No Trade found for ticker : %s between %s and %s", ticker, from, to))));
     }
 
-    @GetMapping("/trades/all")
-    public ResponseEntity<List<Trade>> getTrades() {
-        log.info("Show trades request came for user");
-        return Optional.of(portfolioService.getTrades())
+    @GetMapping(PORTFOLIO + "/trades/top-by-notional")
+    public CompletableFuture<ResponseEntity<List<Trade>>> getTopTradesByNotional(@PathVariable String portfolioId,
+                                                                                 @RequestParam(required = false) Integer limit) {
+        log.info("Show top trades by notional request came for portfolio {}", portfolioId);
+        int size = null == limit ? DEFAULT_TOP_SIZE : getPageSize(limit);
+        return requestExecutor.submit("trades-top-by-notional", () -> Optional.of(portfolioService.getTopTradesByNotional(portfolioId, size))
                 .filter(list -> !list.isEmpty())
                 .map(trades -> new ResponseEntity<>(trades, HttpStatus.OK))
-                .orElseThrow(() -> new NotFoundException("No Trade found for user"));
+                .orElseThrow(() -> new NotFoundException("No Trade found for portfolio " + portfolioId)));
+    }
+
+    @GetMapping(PORTFOLIO + "/trades/recent")
+    public CompletableFuture<ResponseEntity<List<Trade>>> getRecentTrades(@PathVariable String portfolioId,
+                                                                          @RequestParam(required = false) Integer limit) {
+        log.info("Show recent trades request came for portfolio {}", portfolioId);
+        int size = null == limit ? DEFAULT_TOP_SIZE : getPageSize(limit);
+        return requestExecutor.submit("trades-recent", () -> Optional.of(portfolioService.getRecentTrades(portfolioId, size))
+                .filter(list -> !list.isEmpty())
+                .map(trades -> new ResponseEntity<>(trades, HttpStatus.OK))
+                .orElseThrow(() -> new NotFoundException("No Trade found for portfolio " + portfolioId)));
+    }
+
+    @GetMapping(value = PORTFOLIO + "/trades/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTrades(@PathVariable String portfolioId) {
+        log.info("Stream trades request came for portfolio {}", portfolioId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(toNdjson(Trade.class, consumer -> portfolioService.streamTrades(portfolioId, consumer)));
+    }
+
+    @GetMapping(PORTFOLIO + "/holding-for/{ticker}")
+    public CompletableFuture<ResponseEntity<Holding>> getHolding(@PathVariable String portfolioId, @PathVariable String ticker) {
+        log.info("Show holding request came for portfolio {} for ticker : {}", portfolioId, ticker);
+        return requestExecutor.submit("holding-for", () -> portfolioService.getHolding(portfolioId, ticker)
+                .map(holding -> new ResponseEntity<>(holding, HttpStatus.OK))
+                .orElseThrow(() -> new NotFoundException(String.format("No Holding found for ticker : %s", ticker))));
     }
 
-    @GetMapping("/holding-for/{ticker}")
-    public ResponseEntity<Holding> getHolding(@PathVariable String ticker) {
-        log.info("Show holding request came for user for ticker : {}", ticker);
-        return portfolioService.getHolding(ticker)
+    @GetMapping(PORTFOLIO + "/holding-for/{ticker}/as-of")
+    public CompletableFuture<ResponseEntity<Holding>> getHoldingAsOf(@PathVariable String portfolioId, @PathVariable String ticker,
+                                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        log.info("Show holding as of {} request came for portfolio {} for ticker : {}", at, portfolioId, ticker);
+        return requestExecutor.submit("holding-for-as-of", () -> portfolioService.getHoldingAsOf(portfolioId, ticker, at)
                 .map(holding -> new ResponseEntity<>(holding, HttpStatus.OK))
-                .orElseThrow(() -> new NotFoundException(String.format("No Holding found for ticker : %s", ticker)));
+                .orElseThrow(() -> new NotFoundException(String.format("No Holding found for ticker : %s as of %s", ticker, at))));
     }
 
-    @GetMapping("/holdings/all")
-    public ResponseEntity<List<Holding>> getHoldings() {
-        log.info("Get holding request came for user");
-        return Optional.of(portfolioService.getHoldings())
+    @GetMapping(PORTFOLIO + "/holdings/as-of")
+    public CompletableFuture<ResponseEntity<List<Holding>>> getHoldingsAsOf(@PathVariable String portfolioId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        log.info("Get holdings as of {} request came for portfolio {}", at, portfolioId);
+        return requestExecutor.submit("holdings-as-of", () -> Optional.of(portfolioService.getHoldingsAsOf(portfolioId, at))
                 .filter(list -> !list.isEmpty())
                 .map(holdings -> new ResponseEntity<>(holdings, HttpStatus.OK))
-                .orElseThrow(() -> new NotFoundException("User has no securities"));
+                .orElseThrow(() -> new NotFoundException("Portfolio " + portfolioId + " had no securities as of " + at)));
+    }
+
+    @GetMapping(PORTFOLIO + "/holdings/all")
+    public CompletableFuture<ResponseEntity<List<Holding>>> getHoldings(@PathVariable String portfolioId,
+                                                                        @RequestParam(required = false) String after,
+                                                                        @RequestParam(required = false) Integer limit) {
+        log.info("Get holding request came for portfolio {}", portfolioId);
+        return requestExecutor.submit("holdings-all", () -> {
+            if (null == after && null == limit) {
+                return Optional.of(portfolioService.getHoldings(portfolioId))
+                        .filter(list -> !list.isEmpty())
+                        .map(holdings -> new ResponseEntity<>(holdings, HttpStatus.OK))
+                        .orElseThrow(() -> new NotFoundException("Portfolio " + portfolioId + " has no securities"));
+            }
+            int pageSize = getPageSize(limit);
+            List<Holding> holdings = portfolioService.getHoldings(portfolioId, after, pageSize);
+            if (holdings.isEmpty()) {
+                throw new NotFoundException("Portfolio " + portfolioId + " has no securities");
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (holdings.size() == pageSize) {
+                response.header(NEXT_CURSOR_HEADER, holdings.get(holdings.size() - 1).getTicker());
+            }
+            return response.body(holdings);
+        });
+    }
+
+    @GetMapping(value = PORTFOLIO + "/holdings/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamHoldings(@PathVariable String portfolioId) {
+        log.info("Stream holdings request came for portfolio {}", portfolioId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(toNdjson(Holding.class, consumer -> portfolioService.streamHoldings(portfolioId, consumer)));
+    }
+
+    //Streams every trade of the portfolio as CSV or columnar binary, optionally gzipped
+    @GetMapping(PORTFOLIO + "/export/trades")
+    public ResponseEntity<StreamingResponseBody> exportTrades(@PathVariable String portfolioId,
+                                                              @RequestParam(defaultValue = "CSV") ExportFormat format,
+                                                              @RequestParam(defaultValue = "NONE") ExportCompression compression) {
+        log.info("Export trades request came for portfolio {} as {} {}", portfolioId, format, compression);
+        return toExport(TradeExporter.fileName(portfolioId, "trades", format, compression), format, compression,
+                channel -> portfolioService.exportTrades(portfolioId, format, compression, channel));
+    }
+
+    //Streams every holding of the portfolio as CSV or columnar binary, optionally gzipped
+    @GetMapping(PORTFOLIO + "/export/holdings")
+    public ResponseEntity<StreamingResponseBody> exportHoldings(@PathVariable String portfolioId,
+                                                                @RequestParam(defaultValue = "CSV") ExportFormat format,
+                                                                @RequestParam(defaultValue = "NONE") ExportCompression compression) {
+        log.info("Export holdings request came for portfolio {} as {} {}", portfolioId, format, compression);
+        return toExport(TradeExporter.fileName(portfolioId, "holdings", format, compression), format, compression,
+                channel -> portfolioService.exportHoldings(portfolioId, format, compression, channel));
+    }
+
+    @PostMapping(PORTFOLIO + "/export/trades/file")
+    public CompletableFuture<ResponseEntity<ExportResult>> exportTradesToFile(@PathVariable String portfolioId,
+                                                                              @RequestParam(defaultValue = "CSV") ExportFormat format,
+                                                                              @RequestParam(defaultValue = "NONE") ExportCompression compression) {
+        log.info("Export trades to file request came for portfolio {} as {} {}", portfolioId, format, compression);
+        return requestExecutor.submit("export-trades-file",
+                () -> toFile(() -> portfolioService.exportTradesToFile(portfolioId, format, compression)));
+    }
+
+    @PostMapping(PORTFOLIO + "/export/holdings/file")
+    public CompletableFuture<ResponseEntity<ExportResult>> exportHoldingsToFile(@PathVariable String portfolioId,
+                                                                                @RequestParam(defaultValue = "CSV") ExportFormat format,
+                                                                                @RequestParam(defaultValue = "NONE") ExportCompression compression) {
+        log.info("Export holdings to file request came for portfolio {} as {} {}", portfolioId, format, compression);
+        return requestExecutor.submit("export-holdings-file",
+                () -> toFile(() -> portfolioService.exportHoldingsToFile(portfolioId, format, compression)));
     }
 
-    @GetMapping("/fetch-portfolio")
-    public ResponseEntity<List<Portfolio>> getPortfolio() {
-        log.info("Show portfolio request came for user");
+    @GetMapping("/holdings/cache-stats")
+    public ResponseEntity<HoldingCacheStats> getHoldingCacheStats() {
+        return new ResponseEntity<>(portfolioService.getHoldingCacheStats(), HttpStatus.OK);
+    }
 
-        return Optional.of(portfolioService.getPortfolio())
+    @GetMapping(PORTFOLIO + "/fetch-portfolio")
+    public CompletableFuture<ResponseEntity<List<Portfolio>>> getPortfolio(@PathVariable String portfolioId) {
+        log.info("Show portfolio request came for portfolio {}", portfolioId);
+        return requestExecutor.submit("fetch-portfolio", () -> Optional.of(portfolioService.getPortfolio(portfolioId))
                 .filter(list -> !list.isEmpty())
                 .map(holdings -> new ResponseEntity<>(holdings, HttpStatus.OK))
-                .orElseThrow(() -> new NotFoundException("User has no securities"));
+                .orElseThrow(() -> new NotFoundException("Portfolio " + portfolioId + " has no securities")));
+    }
+
+    @GetMapping(PORTFOLIO + "/fetch-returns")
+    public CompletableFuture<ResponseEntity<BigDecimal>> getReturns(@PathVariable String portfolioId) {
+        log.info("Show returns request came for portfolio {}", portfolioId);
+        return requestExecutor.submit("fetch-returns", () -> portfolioService.getReturns(portfolioId)
+                .map(returns -> new ResponseEntity<>(returns, HttpStatus.OK))
+                .orElseThrow(() -> new NotFoundException("Portfolio " + portfolioId + " has no securities")));
+    }
+
+    @GetMapping(PORTFOLIO + "/fetch-returns/by-ticker")
+    public CompletableFuture<ResponseEntity<PortfolioReturns>> getReturnsBreakdown(@PathVariable String portfolioId) {
+        log.info("Show returns by ticker request came for portfolio {}", portfolioId);
+        return requestExecutor.submit("fetch-returns-by-ticker", () -> portfolioService.getReturnsBreakdown(portfolioId)
+                .map(returns -> new ResponseEntity<>(returns, HttpStatus.OK))
+                .orElseThrow(() -> new NotFoundException("Portfolio " + portfolioId + " has no securities")));
+    }
+
+    @GetMapping(value = PORTFOLIO + "/returns/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamReturns(@PathVariable String portfolioId) {
+        log.info("Returns stream subscription came for portfolio {}", portfolioId);
+        return portfolioService.subscribeToReturns(portfolioId);
     }
 
-    @GetMapping("/fetch-returns")
-    public ResponseEntity<BigDecimal> getReturns() {
-        log.info("Show returns request came for user");
-        return portfolioService.getReturns()
+    @GetMapping(PORTFOLIO + "/fetch-returns/as-of")
+    public CompletableFuture<ResponseEntity<BigDecimal>> getReturnsAsOf(@PathVariable String portfolioId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        log.info("Show returns as of {} request came for portfolio {}", at, portfolioId);
+        return requestExecutor.submit("fetch-returns-as-of", () -> portfolioService.getReturnsAsOf(portfolioId, at)
                 .map(returns -> new ResponseEntity<>(returns, HttpStatus.OK))
-                .orElseThrow(() -> new NotFoundException("User has no securities"));
+                .orElseThrow(() -> new NotFoundException("Portfolio " + portfolioId + " had no securities as of " + at)));
+    }
+
+    @GetMapping(PORTFOLIO + "/analytics")
+    public CompletableFuture<ResponseEntity<PortfolioAnalytics>> getAnalytics(@PathVariable String portfolioId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.info("Get analytics from {} to {} request came for portfolio {}", from, to, portfolioId);
+        return requestExecutor.submit("analytics", () -> portfolioService.getAnalytics(portfolioId, from, to)
+                .map(analytics -> new ResponseEntity<>(analytics, HttpStatus.OK))
+                .orElseThrow(() -> new NotFoundException("No price history found for the tickers of portfolio " + portfolioId)));
+    }
+
+    @GetMapping(PORTFOLIO + "/analytics/correlation")
+    public CompletableFuture<ResponseEntity<CorrelationMatrix>> getCorrelations(@PathVariable String portfolioId,
+            @RequestParam(required = false) List<String> tickers,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.info("Get correlation from {} to {} request came for portfolio {}", from, to, portfolioId);
+        return requestExecutor.submit("analytics-correlation", () -> portfolioService.getCorrelations(portfolioId, tickers, from, to)
+                .map(matrix -> new ResponseEntity<>(matrix, HttpStatus.OK))
+                .orElseThrow(() -> new NotFoundException("No price history found for the tickers of portfolio " + portfolioId)));
+    }
+
+    @PostMapping("/prices/bars")
+    public ResponseEntity<Integer> addPriceBars(@RequestBody List<PriceBar> bars) {
+        log.info("Add price bars request came for {} bars", bars.size());
+        return new ResponseEntity<>(portfolioService.addPriceBars(bars), HttpStatus.CREATED);
+    }
+
+    @GetMapping("/price-for/{ticker}")
+    public CompletableFuture<ResponseEntity<BigDecimal>> getPrice(@PathVariable String ticker) {
+        log.info("Show price request came for ticker : {}", ticker);
+        return requestExecutor.submit("price-for",
+                () -> new ResponseEntity<>(portfolioService.getCurrentPrice(ticker), HttpStatus.OK));
+    }
+
+    @GetMapping("/prices/cache-stats")
+    public ResponseEntity<QuoteCacheStats> getQuoteCacheStats() {
+        return new ResponseEntity<>(portfolioService.getQuoteCacheStats(), HttpStatus.OK);
+    }
+
+    @GetMapping("/prices/tick-stats")
+    public ResponseEntity<TickStats> getTickStats() {
+        return new ResponseEntity<>(portfolioService.getTickStats(), HttpStatus.OK);
+    }
+
+    @GetMapping("/trades/store-stats")
+    public ResponseEntity<TradeStoreStats> getTradeStoreStats() {
+        return new ResponseEntity<>(portfolioService.getTradeStoreStats(), HttpStatus.OK);
+    }
+
+    @GetMapping("/execution/stats")
+    public ResponseEntity<Map<String, EndpointStats>> getExecutionStats() {
+        return new ResponseEntity<>(requestExecutor.getStats(), HttpStatus.OK);
+    }
+
+    private int getPageSize(Integer limit) {
+        if (null == limit) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit <= 0) {
+            throw new BadRequestException("Limit should be greater than zero");
+        }
+        return limit;
+    }
+
+    //Writes one JSON document per line as the source produces them, flushing only at the end.
+    //The generator writes the separator before every document but the first, so an empty source gives an empty body
+    private <T> StreamingResponseBody toNdjson(Class<T> type, Consumer<Consumer<T>> source) {
+        ObjectWriter writer = objectMapper.writerFor(type)
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                source.accept(value -> {
+                    try {
+                        writer.writeValue(generator, value);
+                    } catch (IOException ioException) {
+                        throw new UncheckedIOException(ioException);
+                    }
+                });
+            }
+        };
+    }
+
+    //Created with the result of an export to file
+    private static ResponseEntity<ExportResult> toFile(FileExport export) {
+        try {
+            return new ResponseEntity<>(export.write(), HttpStatus.CREATED);
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    //Export as an attachment, written through a channel over the response stream
+    private ResponseEntity<StreamingResponseBody> toExport(String fileName, ExportFormat format, ExportCompression compression,
+                                                           ChannelExport export) {
+        MediaType contentType = ExportCompression.GZIP == compression ? MediaType.parseMediaType("application/gzip")
+                : ExportFormat.CSV == format ? MediaType.parseMediaType("text/csv") : MediaType.APPLICATION_OCTET_STREAM;
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(fileName, StandardCharsets.UTF_8)
+                        .build()
+                        .toString())
+                .body(outputStream -> export.to(Channels.newChannel(outputStream)));
+    }
+
+    @FunctionalInterface
+    private interface ChannelExport {
+        long to(WritableByteChannel channel) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface FileExport {
+        ExportResult write() throws IOException;
     }
 
     private Long getTradeId(String id) {
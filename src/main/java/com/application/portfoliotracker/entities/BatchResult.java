@@ -0,0 +1,34 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Outcome of one committed batch of a bulk trade upload")
+public class BatchResult {
+
+    @ApiModelProperty(notes = "Position of the batch in the upload, starting at 1")
+    private int batch;
+
+    @ApiModelProperty(notes = "Trades saved by the batch")
+    private int trades;
+
+    @ApiModelProperty(notes = "Trades skipped because their idempotency key was already used")
+    private int duplicates;
+
+    @ApiModelProperty(notes = "Holdings written by the batch")
+    private int holdings;
+
+    @ApiModelProperty(notes = "Time taken to validate, fold and commit the batch")
+    private long elapsedMillis;
+
+    @ApiModelProperty(notes = "Trades saved per second by the batch")
+    private long tradesPerSecond;
+}
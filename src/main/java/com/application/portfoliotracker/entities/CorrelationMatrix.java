@@ -0,0 +1,34 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Pairwise correlation of the daily returns of tickers")
+public class CorrelationMatrix {
+
+    @ApiModelProperty(notes = "First day with a price bar in the window")
+    private LocalDate from;
+
+    @ApiModelProperty(notes = "Last day with a price bar in the window")
+    private LocalDate to;
+
+    @ApiModelProperty(notes = "Days with a price bar for any of the tickers")
+    private int days;
+
+    @ApiModelProperty(notes = "Tickers of the rows and columns, in order")
+    private List<String> tickers;
+
+    @ApiModelProperty(notes = "values[i][j] is the correlation of tickers i and j, 0 when either did not move")
+    private double[][] values;
+}
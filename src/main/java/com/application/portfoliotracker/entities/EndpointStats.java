@@ -0,0 +1,28 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Request execution counters of one endpoint")
+public class EndpointStats {
+
+    @ApiModelProperty(notes = "Requests waiting for a service thread")
+    private int queued;
+
+    @ApiModelProperty(notes = "Requests running on a service thread")
+    private int active;
+
+    @ApiModelProperty(notes = "Requests finished, successfully or not")
+    private long completed;
+
+    @ApiModelProperty(notes = "Requests turned away with 503 because the queue was full")
+    private long rejected;
+}
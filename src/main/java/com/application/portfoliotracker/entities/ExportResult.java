@@ -0,0 +1,31 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Outcome of an export into a file")
+public class ExportResult {
+
+    @ApiModelProperty(notes = "Absolute path of the written file")
+    private String file;
+
+    @ApiModelProperty(notes = "Rows written, without the header")
+    private long rows;
+
+    @ApiModelProperty(notes = "Size of the file in bytes, after compression")
+    private long bytes;
+
+    @ApiModelProperty(notes = "Time taken by the export in milliseconds")
+    private long elapsedMillis;
+
+    @ApiModelProperty(notes = "Rows written per second")
+    private long rowsPerSecond;
+}
@@ -10,6 +10,7 @@ import lombok.NoArgsConstructor;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.IdClass;
 import javax.persistence.Table;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -18,21 +19,27 @@ import java.time.LocalDateTime;
 @Data
 @Table(name = "holdings")
 @Entity
+@IdClass(HoldingId.class)
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @ApiModel(description = "All details about the holding")
 public class Holding {
 
+    @Id
+    @Column(name = "portfolio_id")
+    @ApiModelProperty(notes = "Portfolio the holding belongs to")
+    private String portfolioId;
+
     @Id
     @Column(name = "ticker")
     private String ticker;
 
-    @Column(name = "total_price")
+    @Column(name = "total_price", precision = 38, scale = 6)
     @ApiModelProperty(notes = "Total price per ticker")
     private BigDecimal totalPrice;
 
-    @Column(name = "average_buy_price")
+    @Column(name = "average_buy_price", precision = 38, scale = 6)
     @ApiModelProperty(notes = "Average price per ticker")
     private BigDecimal averageBuyPrice;
 
@@ -40,6 +47,10 @@ public class Holding {
     @ApiModelProperty(notes = "Total shares per ticker")
     private BigInteger shares;
 
+    @Column(name = "realized_profit", precision = 38, scale = 6)
+    @ApiModelProperty(notes = "Profit booked by sells against the average buy price")
+    private BigDecimal realizedProfit;
+
     @Column(name = "last_updated")
     @ApiModelProperty(notes = "Time when the last trade was executed")
     private LocalDateTime lastUpdated;
@@ -0,0 +1,37 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Counters of the holdings cache")
+public class HoldingCacheStats {
+
+    @ApiModelProperty(notes = "Holdings currently cached")
+    private int size;
+
+    @ApiModelProperty(notes = "Most holdings the cache keeps")
+    private int maxSize;
+
+    @ApiModelProperty(notes = "Whether every holding is cached, so misses and full lists skip the db")
+    private boolean complete;
+
+    @ApiModelProperty(notes = "Reads answered from the cache")
+    private long hits;
+
+    @ApiModelProperty(notes = "Reads that went to the db")
+    private long misses;
+
+    @ApiModelProperty(notes = "Holdings dropped to stay within the maximum size")
+    private long evictions;
+
+    @ApiModelProperty(notes = "hits / (hits + misses)")
+    private double hitRate;
+}
@@ -0,0 +1,51 @@
+package com.application.portfoliotracker.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+//Holding of a ticker after folding its trades in execution order up to (asOf, tradeId)
+@Data
+@Table(name = "holding_checkpoints",
+        indexes = @Index(name = "idx_holding_checkpoints_portfolio_ticker_as_of", columnList = "portfolio_id, ticker, as_of"))
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldingCheckpoint {
+
+    @Id
+    @Column(name = "checkpoint_id")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "checkpoint_id_seq")
+    @SequenceGenerator(name = "checkpoint_id_seq", sequenceName = "checkpoint_id_seq", allocationSize = 1000)
+    private Long checkpointId;
+
+    @Column(name = "portfolio_id")
+    private String portfolioId;
+
+    @Column(name = "ticker")
+    private String ticker;
+
+    //Execution time of the last trade folded
+    @Column(name = "as_of")
+    private LocalDateTime asOf;
+
+    //Id of the last trade folded, orders trades executed at the same time
+    @Column(name = "trade_id")
+    private Long tradeId;
+
+    @Column(name = "shares")
+    private BigInteger shares;
+
+    @Column(name = "total_price", precision = 38, scale = 6)
+    private BigDecimal totalPrice;
+
+    @Column(name = "realized_profit", precision = 38, scale = 6)
+    private BigDecimal realizedProfit;
+}
@@ -0,0 +1,18 @@
+package com.application.portfoliotracker.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+//Composite key of a holding, one holding per ticker within a portfolio
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldingId implements Serializable {
+
+    private String portfolioId;
+
+    private String ticker;
+}
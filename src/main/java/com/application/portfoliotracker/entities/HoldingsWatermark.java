@@ -0,0 +1,38 @@
+package com.application.portfoliotracker.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+@Data
+@Table(name = "holdings_watermark")
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldingsWatermark {
+
+    //Name of the watermark row of a portfolio
+    public static String holdings(String portfolioId) {
+        return "holdings:" + portfolioId;
+    }
+
+    //Name of the marker row of holdings write-behind, its tradeId is 1 while staged holdings may be unwritten
+    public static String writeBehind() {
+        return "holdings-write-behind";
+    }
+
+    @Id
+    @Column(name = "name")
+    private String name;
+
+    //Highest trade id of the portfolio already folded into the holdings table
+    @Column(name = "trade_id")
+    private Long tradeId;
+}
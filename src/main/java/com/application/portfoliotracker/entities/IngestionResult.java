@@ -0,0 +1,39 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Outcome of a bulk trade upload")
+public class IngestionResult {
+
+    @ApiModelProperty(notes = "Trades saved across all batches")
+    private long trades;
+
+    @ApiModelProperty(notes = "Trades skipped across all batches because their idempotency key was already used")
+    private long duplicates;
+
+    @ApiModelProperty(notes = "Time taken by the whole upload")
+    private long elapsedMillis;
+
+    @ApiModelProperty(notes = "Trades saved per second across the whole upload")
+    private long tradesPerSecond;
+
+    @ApiModelProperty(notes = "Per batch breakdown in commit order")
+    private List<BatchResult> batches;
+
+    @ApiModelProperty(notes = "Batch the upload stopped at, rolled back along with every trade after it. Absent when every batch was committed")
+    private Integer failedBatch;
+
+    @ApiModelProperty(notes = "Why the failed batch was rejected")
+    private String error;
+}
@@ -0,0 +1,43 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Risk statistics of a portfolio and of each ticker it traded, from the daily price history")
+public class PortfolioAnalytics {
+
+    @ApiModelProperty(notes = "First day with a price bar in the window")
+    private LocalDate from;
+
+    @ApiModelProperty(notes = "Last day with a price bar in the window")
+    private LocalDate to;
+
+    @ApiModelProperty(notes = "Days with a price bar for any of the tickers")
+    private int days;
+
+    @ApiModelProperty(notes = "Days the portfolio held a position from the previous close, the days returns are measured on")
+    private long returnDays;
+
+    @ApiModelProperty(notes = "Compounded daily returns of the shares held, excluding the effect of buys and sells")
+    private double timeWeightedReturn;
+
+    @ApiModelProperty(notes = "Annualized standard deviation of the portfolio's daily returns")
+    private double volatility;
+
+    @ApiModelProperty(notes = "Largest fall of the time-weighted wealth from a running peak, as a fraction of the peak")
+    private double maxDrawdown;
+
+    @ApiModelProperty(notes = "Statistics of every ticker the portfolio traded that has price bars")
+    private List<TickerAnalytics> holdings;
+}
@@ -0,0 +1,37 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Profit and loss of a portfolio, in total and per holding")
+public class PortfolioReturns {
+
+    @ApiModelProperty(notes = "Portfolio the returns belong to")
+    private String portfolioId;
+
+    @ApiModelProperty(notes = "Total price paid for all shares held")
+    private BigDecimal costBasis;
+
+    @ApiModelProperty(notes = "All holdings valued at their current price")
+    private BigDecimal marketValue;
+
+    @ApiModelProperty(notes = "marketValue - costBasis, what /fetch-returns reports")
+    private BigDecimal unrealizedProfit;
+
+    @ApiModelProperty(notes = "Profit booked by sells, including those of tickers no longer held")
+    private BigDecimal realizedProfit;
+
+    @ApiModelProperty(notes = "Breakdown per ticker held or closed with realized profit, by ticker")
+    private List<TickerReturns> tickers;
+}
@@ -0,0 +1,41 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Table(name = "price_bars")
+@Entity
+@IdClass(PriceBarId.class)
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Daily closing price of a ticker")
+public class PriceBar {
+
+    @Id
+    @Column(name = "ticker")
+    @ApiModelProperty(notes = "Ticker the bar belongs to")
+    private String ticker;
+
+    @Id
+    @Column(name = "bar_date")
+    @ApiModelProperty(notes = "Trading day of the bar. A bar sent again for the same day replaces it")
+    private LocalDate barDate;
+
+    @Column(name = "close", precision = 38, scale = 6)
+    @ApiModelProperty(notes = "Closing price of the day. It should be greater than 0")
+    private BigDecimal close;
+}
@@ -0,0 +1,19 @@
+package com.application.portfoliotracker.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+//Composite key of a price bar, one bar per ticker and day
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceBarId implements Serializable {
+
+    private String ticker;
+
+    private LocalDate barDate;
+}
@@ -0,0 +1,37 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Counters of the market price cache")
+public class QuoteCacheStats {
+
+    @ApiModelProperty(notes = "Quotes currently cached")
+    private int size;
+
+    @ApiModelProperty(notes = "Lookups answered from the cache")
+    private long hits;
+
+    @ApiModelProperty(notes = "Lookups that missed or found an expired quote")
+    private long misses;
+
+    @ApiModelProperty(notes = "Misses that waited on a fetch already running for the same ticker")
+    private long coalesced;
+
+    @ApiModelProperty(notes = "Fetches made to the price provider")
+    private long fetches;
+
+    @ApiModelProperty(notes = "Quotes dropped to keep the cache within its maximum size")
+    private long evictions;
+
+    @ApiModelProperty(notes = "hits / (hits + misses)")
+    private double hitRate;
+}
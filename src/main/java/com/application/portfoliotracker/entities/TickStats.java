@@ -0,0 +1,37 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Counters of the price tick queue")
+public class TickStats {
+
+    @ApiModelProperty(notes = "Ticks published")
+    private long received;
+
+    @ApiModelProperty(notes = "Ticks replaced by a newer tick of the same ticker before being applied")
+    private long coalesced;
+
+    @ApiModelProperty(notes = "Ticks applied to the quotes and holdings")
+    private long applied;
+
+    @ApiModelProperty(notes = "Batches applied")
+    private long batches;
+
+    @ApiModelProperty(notes = "Tickers with a tick waiting to be applied")
+    private int pending;
+
+    @ApiModelProperty(notes = "Mean time from publishing a tick to applying it, in microseconds")
+    private long meanLagMicros;
+
+    @ApiModelProperty(notes = "Longest recent time from publishing a tick to applying it, in microseconds")
+    private long maxLagMicros;
+}
@@ -0,0 +1,31 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Risk statistics of one ticker over its price bars")
+public class TickerAnalytics {
+
+    @ApiModelProperty(notes = "Ticker of the holding")
+    private String ticker;
+
+    @ApiModelProperty(notes = "Price bars in the window")
+    private int bars;
+
+    @ApiModelProperty(notes = "Change from the first to the last close of the window, as a fraction")
+    private double totalReturn;
+
+    @ApiModelProperty(notes = "Annualized standard deviation of the daily returns")
+    private double volatility;
+
+    @ApiModelProperty(notes = "Largest fall of the close from a running peak, as a fraction of the peak")
+    private double maxDrawdown;
+}
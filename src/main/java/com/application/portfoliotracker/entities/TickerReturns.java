@@ -0,0 +1,40 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Realized and unrealized profit of one holding")
+public class TickerReturns {
+
+    @ApiModelProperty(notes = "Ticker of the holding")
+    private String ticker;
+
+    @ApiModelProperty(notes = "Shares held, 0 once the position was closed")
+    private BigInteger shares;
+
+    @ApiModelProperty(notes = "Price the holding is marked at")
+    private BigDecimal price;
+
+    @ApiModelProperty(notes = "Total price paid for the shares held")
+    private BigDecimal costBasis;
+
+    @ApiModelProperty(notes = "shares * price")
+    private BigDecimal marketValue;
+
+    @ApiModelProperty(notes = "marketValue - costBasis")
+    private BigDecimal unrealizedProfit;
+
+    @ApiModelProperty(notes = "Profit booked by sells against the average buy price")
+    private BigDecimal realizedProfit;
+}
@@ -1,6 +1,7 @@
 package com.application.portfoliotracker.entities;
 
 import com.application.portfoliotracker.enums.TradeType;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.AllArgsConstructor;
@@ -14,7 +15,10 @@ import java.math.BigInteger;
 import java.time.LocalDateTime;
 
 @Data
-@Table(name = "trades")
+@Table(name = "trades", indexes = {
+        @Index(name = "idx_trades_portfolio_ticker_last_updated", columnList = "portfolio_id, ticker, last_updated"),
+        @Index(name = "idx_trades_portfolio_trade_id", columnList = "portfolio_id, trade_id")},
+        uniqueConstraints = @UniqueConstraint(name = "uk_trades_portfolio_idempotency_key", columnNames = {"portfolio_id", "idempotency_key"}))
 @Entity
 @Builder
 @NoArgsConstructor
@@ -24,10 +28,15 @@ public class Trade {
 
     @Id
     @Column(name = "trade_id")
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trade_id_seq")
+    @SequenceGenerator(name = "trade_id_seq", sequenceName = "trade_id_seq", allocationSize = 1000)
     @ApiModelProperty(notes = "Trade id is not required for an addition but required in case of an update")
     private Long tradeId;
 
+    @Column(name = "portfolio_id")
+    @ApiModelProperty(notes = "Portfolio the trade belongs to, taken from the request path")
+    private String portfolioId;
+
     @Column(name = "ticker")
     @ApiModelProperty(notes = "Ticker for which the trade was executed")
     private String ticker;
@@ -37,7 +46,7 @@ public class Trade {
     @ApiModelProperty(notes = "transactionType can only be BUY/SELL")
     private TransactionType transactionType;
 
-    @Column(name = "price")
+    @Column(name = "price", precision = 38, scale = 6)
     @ApiModelProperty(notes = "Price of a share. It should be greater than 0")
     private BigDecimal price;
 
@@ -48,4 +57,15 @@ public class Trade {
     @ApiModelProperty(notes = "Time when the trade was executed")
     @Column(name = "last_updated")
     private LocalDateTime lastUpdated;
+
+    @ApiModelProperty(notes = "Optional client key unique within the portfolio. Sending a trade again with the same key returns the original trade")
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    //True once the service folded the trade into its holding while writing it. Trades inserted outside the
+    //service leave it null and are folded by the next refresh.
+    @JsonIgnore
+    @ApiModelProperty(hidden = true)
+    @Column(name = "holding_applied")
+    private Boolean holdingApplied;
 }
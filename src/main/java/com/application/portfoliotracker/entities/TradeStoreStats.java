@@ -0,0 +1,37 @@
+package com.application.portfoliotracker.entities;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Size of the columnar trade store")
+public class TradeStoreStats {
+
+    @ApiModelProperty(notes = "Whether as-of holdings are folded from the columnar store")
+    private boolean enabled;
+
+    @ApiModelProperty(notes = "Whether the columns are memory-mapped files rather than direct buffers")
+    private boolean mapped;
+
+    @ApiModelProperty(notes = "Rows ever appended, including rows of deleted and updated trades")
+    private long rows;
+
+    @ApiModelProperty(notes = "Rows of trades that still exist")
+    private long liveRows;
+
+    @ApiModelProperty(notes = "Distinct portfolios in the portfolio dictionary")
+    private int portfolios;
+
+    @ApiModelProperty(notes = "Distinct tickers in the ticker dictionary")
+    private int tickers;
+
+    @ApiModelProperty(notes = "Bytes of column storage held outside the heap")
+    private long offHeapBytes;
+}
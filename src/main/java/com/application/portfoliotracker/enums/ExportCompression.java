@@ -0,0 +1,6 @@
+package com.application.portfoliotracker.enums;
+
+public enum ExportCompression {
+    NONE,
+    GZIP
+}
@@ -0,0 +1,6 @@
+package com.application.portfoliotracker.enums;
+
+public enum ExportFormat {
+    CSV,
+    COLUMNAR
+}
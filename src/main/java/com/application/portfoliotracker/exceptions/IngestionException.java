@@ -0,0 +1,22 @@
+package com.application.portfoliotracker.exceptions;
+
+import com.application.portfoliotracker.entities.IngestionResult;
+
+/**
+ * A bulk trade upload that stopped at a failing batch. The batches before it stay committed and are listed in
+ * the result, along with the number of the failed batch and why it failed; the cause is the batch's own failure.
+ */
+public class IngestionException extends RuntimeException {
+
+    private final IngestionResult result;
+
+    public IngestionException(IngestionResult result, RuntimeException cause) {
+        super(result.getError(), cause);
+        this.result = result;
+    }
+
+    public IngestionResult getResult() {
+        return result;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.application.portfoliotracker.repositories;
+
+import com.application.portfoliotracker.entities.HoldingCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface HoldingCheckpointRepository extends JpaRepository<HoldingCheckpoint, Long> {
+
+    //Latest checkpoint of the ticker taken at or before the given time
+    Optional<HoldingCheckpoint> findTopByPortfolioIdAndTickerAndAsOfLessThanEqualOrderByAsOfDescTradeIdDesc(
+            String portfolioId, String ticker, LocalDateTime asOf);
+
+    //Drops the checkpoints of the ticker that a trade executed at the given time invalidates
+    @Modifying
+    @Query("delete from HoldingCheckpoint c where c.portfolioId = :portfolioId and c.ticker = :ticker and c.asOf >= :asOf")
+    int deleteFrom(@Param("portfolioId") String portfolioId, @Param("ticker") String ticker, @Param("asOf") LocalDateTime asOf);
+
+    //Drops every checkpoint of the portfolio
+    @Modifying
+    @Query("delete from HoldingCheckpoint c where c.portfolioId = :portfolioId")
+    int deleteByPortfolio(@Param("portfolioId") String portfolioId);
+
+}
@@ -1,10 +1,36 @@
 package com.application.portfoliotracker.repositories;
 
 import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingId;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 @Repository
-public interface HoldingRepository extends JpaRepository<Holding, String> {
+public interface HoldingRepository extends JpaRepository<Holding, HoldingId> {
+
+    List<Holding> findByPortfolioId(String portfolioId);
+
+    //Streams every holding of the portfolio in ticker order, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Holding> streamByPortfolioIdOrderByTickerAsc(String portfolioId);
+
+    //Keyset page of the portfolio's holdings with ticker after the cursor
+    List<Holding> findByPortfolioIdAndTickerGreaterThanOrderByTickerAsc(String portfolioId, String ticker, Pageable pageable);
+
+    //Deletes every holding of the portfolio in one statement
+    @Modifying
+    @Query("delete from Holding h where h.portfolioId = :portfolioId")
+    int deleteByPortfolio(@Param("portfolioId") String portfolioId);
 
-}
\ No newline at end of file
+}
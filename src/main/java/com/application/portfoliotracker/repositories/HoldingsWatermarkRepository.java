@@ -0,0 +1,18 @@
+package com.application.portfoliotracker.repositories;
+
+import com.application.portfoliotracker.entities.HoldingsWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface HoldingsWatermarkRepository extends JpaRepository<HoldingsWatermark, String> {
+
+    //Raises the watermark to tradeId unless it is already higher, returns the rows changed
+    @Modifying
+    @Query("update HoldingsWatermark w set w.tradeId = :tradeId where w.name = :name and w.tradeId < :tradeId")
+    int advance(@Param("name") String name, @Param("tradeId") Long tradeId);
+
+}
@@ -0,0 +1,21 @@
+package com.application.portfoliotracker.repositories;
+
+import com.application.portfoliotracker.entities.PriceBar;
+import com.application.portfoliotracker.entities.PriceBarId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+@Repository
+public interface PriceBarRepository extends JpaRepository<PriceBar, PriceBarId> {
+
+    //Streams every bar grouped by ticker in day order, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<PriceBar> streamAllByOrderByTickerAscBarDateAsc();
+
+}
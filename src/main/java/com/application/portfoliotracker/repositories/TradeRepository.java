@@ -1,14 +1,106 @@
 package com.application.portfoliotracker.repositories;
 
 import com.application.portfoliotracker.entities.Trade;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 
 @Repository
 public interface TradeRepository extends JpaRepository<Trade, Long> {
-    List<Trade> findByTicker(String ticker);
+    List<Trade> findByPortfolioIdAndTicker(String portfolioId, String ticker);
+
+    List<Trade> findByPortfolioId(String portfolioId);
+
+    Optional<Trade> findByTradeIdAndPortfolioId(Long tradeId, String portfolioId);
+
+    Optional<Trade> findTopByPortfolioIdOrderByTradeIdDesc(String portfolioId);
+
+    Optional<Trade> findTopByOrderByTradeIdDesc();
+
+    //Streams every trade of the portfolio grouped by ticker in execution order, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Trade> streamByPortfolioIdOrderByTickerAscLastUpdatedAscTradeIdAsc(String portfolioId);
+
+    //Streams every trade of the portfolio grouped by ticker in the order the trades were accepted, must be consumed
+    //inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Trade> streamByPortfolioIdOrderByTickerAscTradeIdAsc(String portfolioId);
+
+    //Streams trades of the portfolio newer than the given id that the service did not fold into their holding,
+    //grouped by ticker in the order the trades were accepted, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select t from Trade t where t.portfolioId = :portfolioId and t.tradeId > :tradeId "
+            + "and (t.holdingApplied is null or t.holdingApplied = false) order by t.ticker asc, t.tradeId asc")
+    Stream<Trade> streamUnappliedAfter(@Param("portfolioId") String portfolioId, @Param("tradeId") Long tradeId);
+
+    //Streams the trades of a ticker in the order they were accepted, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Trade> streamByPortfolioIdAndTickerOrderByTradeIdAsc(String portfolioId, String ticker);
+
+    //Streams every trade of the portfolio in id order, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Trade> streamByPortfolioIdOrderByTradeIdAsc(String portfolioId);
+
+    //Streams every trade in id order, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Trade> streamAllByOrderByTradeIdAsc();
+
+    @Query("select distinct t.portfolioId from Trade t")
+    List<String> findDistinctPortfolioIds();
+
+    //Distinct tickers of the portfolio that have trades, read from the (portfolio_id, ticker, last_updated) index
+    @Query("select distinct t.ticker from Trade t where t.portfolioId = :portfolioId")
+    List<String> findDistinctTickers(@Param("portfolioId") String portfolioId);
+
+    //Streams the trades of a ticker executed up to the given time in execution order, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Trade> streamByPortfolioIdAndTickerAndLastUpdatedLessThanEqualOrderByLastUpdatedAscTradeIdAsc(
+            String portfolioId, String ticker, LocalDateTime lastUpdated);
+
+    //Streams the trades of a ticker executed after (from, tradeId) and up to the given time in execution order,
+    //must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select t from Trade t where t.portfolioId = :portfolioId and t.ticker = :ticker and t.lastUpdated <= :to "
+            + "and (t.lastUpdated > :from or (t.lastUpdated = :from and t.tradeId > :tradeId)) "
+            + "order by t.lastUpdated asc, t.tradeId asc")
+    Stream<Trade> streamByTickerBetween(@Param("portfolioId") String portfolioId, @Param("ticker") String ticker,
+                                        @Param("from") LocalDateTime from, @Param("tradeId") Long tradeId,
+                                        @Param("to") LocalDateTime to);
+
+    Optional<Trade> findByPortfolioIdAndIdempotencyKey(String portfolioId, String idempotencyKey);
+
+    List<Trade> findByPortfolioIdAndIdempotencyKeyIn(String portfolioId, Collection<String> idempotencyKeys);
+
+    //Streams the portfolio and idempotency key of every trade saved with a key, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select t.portfolioId, t.idempotencyKey from Trade t where t.idempotencyKey is not null")
+    Stream<Object[]> streamIdempotencyKeys();
+
+    //Trades of a ticker executed between the two times, both included, in execution order
+    List<Trade> findByPortfolioIdAndTickerAndLastUpdatedBetweenOrderByLastUpdatedAscTradeIdAsc(
+            String portfolioId, String ticker, LocalDateTime from, LocalDateTime to, Pageable pageable);
+
+    //Trades of the portfolio by notional, largest first
+    @Query("select t from Trade t where t.portfolioId = :portfolioId order by t.price * t.shares desc, t.tradeId asc")
+    List<Trade> findByPortfolioIdOrderByNotionalDesc(@Param("portfolioId") String portfolioId, Pageable pageable);
+
+    //Trades of the portfolio across all tickers, most recently executed first
+    List<Trade> findByPortfolioIdOrderByLastUpdatedDescTradeIdDesc(String portfolioId, Pageable pageable);
+
+    //Keyset page of the portfolio's trades with id greater than the cursor
+    List<Trade> findByPortfolioIdAndTradeIdGreaterThanOrderByTradeIdAsc(String portfolioId, Long tradeId, Pageable pageable);
 
 }
@@ -0,0 +1,167 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TradeStoreStats;
+import com.application.portfoliotracker.entities.TradeType;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import com.application.portfoliotracker.utils.AfterCommit;
+import com.application.portfoliotracker.utils.FixedPoint;
+import com.application.portfoliotracker.utils.HoldingAggregate;
+import com.application.portfoliotracker.utils.TradeColumns;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every trade in off-heap columns so as-of holdings are folded from a scan of primitive columns
+ * instead of reading trade entities from the database. Trades are loaded once on startup and then follow
+ * committed writes: changes are applied after their transaction commits, while the ticker lock is still held.
+ * With a directory the columns are memory-mapped files that survive a restart, otherwise direct buffers.
+ */
+@Slf4j
+@Component
+public class ColumnarTradeStore {
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int chunkRows;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    //Guards appends and deletes, scans of the columns take no lock
+    private final Object lock = new Object();
+
+    private TradeColumns columns;
+
+    public ColumnarTradeStore(@Value("${portfolio.columnar.enabled:false}") boolean enabled,
+                              @Value("${portfolio.columnar.directory:}") String directory,
+                              @Value("${portfolio.columnar.chunk-rows:1048576}") int chunkRows) {
+        this.enabled = enabled;
+        this.directory = directory.isEmpty() ? null : Paths.get(directory);
+        this.chunkRows = chunkRows;
+    }
+
+    //Opens the columns and loads the trades table into them, unless the mapped columns of a previous run were
+    //closed cleanly and still hold as many live trades as the table, up to the same highest trade id
+    @PostConstruct
+    public void load() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        columns = new TradeColumns(directory, chunkRows);
+        long expected = tradeRepository.count();
+        long maxTradeId = tradeRepository.findTopByOrderByTradeIdDesc().map(Trade::getTradeId).orElse(0L);
+        if (columns.isMapped() && columns.isClosedCleanly() && columns.getLiveRows() == expected && columns.getMaxTradeId() == maxTradeId) {
+            log.info("Reopened {} columnar trades from {}", expected, directory);
+            return;
+        }
+        if (columns.getRows() > 0) {
+            log.info("Discarding columnar trades at {} : closed cleanly {}, {} live rows up to trade {}, {} trades in the table up to trade {}",
+                    directory, columns.isClosedCleanly(), columns.getLiveRows(), columns.getMaxTradeId(), expected, maxTradeId);
+            TradeColumns.delete(directory);
+            columns = new TradeColumns(directory, chunkRows);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Trade> trades = tradeRepository.streamAllByOrderByTradeIdAsc()) {
+                trades.forEach(columns::append);
+            }
+        });
+        long elapsedNanos = System.nanoTime() - start;
+        log.info("Loaded {} trades into columns in {} ms, {} bytes off heap", columns.getLiveRows(),
+                elapsedNanos / 1_000_000, columns.getOffHeapBytes());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (enabled) {
+            columns.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //Applies the trade being added to or deleted from its holding once the surrounding transaction commits.
+    //The trade is captured right away, later changes to it are not applied.
+    public void append(TradeType type, Trade trade) {
+        if (!enabled) {
+            return;
+        }
+        Runnable change = capture(type, trade);
+        AfterCommit.run(change);
+    }
+
+    private Runnable capture(TradeType type, Trade trade) {
+        long tradeId = trade.getTradeId();
+        if (TradeType.DELETE == type) {
+            return () -> {
+                synchronized (lock) {
+                    columns.delete(tradeId);
+                }
+            };
+        }
+        String portfolioId = trade.getPortfolioId();
+        String ticker = trade.getTicker();
+        boolean sell = TransactionType.SELL == trade.getTransactionType();
+        long price = FixedPoint.of(trade.getPrice());
+        long shares = FixedPoint.quantity(trade.getShares());
+        LocalDateTime executedAt = trade.getLastUpdated();
+        return () -> {
+            synchronized (lock) {
+                columns.append(tradeId, portfolioId, ticker, sell, price, shares, TradeColumns.toMicros(executedAt));
+            }
+        };
+    }
+
+    //Holding of the ticker right after the last trade executed at or before the given time, empty if it had no shares then
+    public Optional<Holding> getHoldingAsOf(String portfolioId, String ticker, LocalDateTime at) {
+        return columns.fold(portfolioId, ticker, at).values().stream()
+                .filter(aggregate -> !aggregate.isEmpty())
+                .map(HoldingAggregate::toHolding)
+                .findFirst();
+    }
+
+    //Every holding of the portfolio with shares at the given time, in ticker order
+    public List<Holding> getHoldingsAsOf(String portfolioId, LocalDateTime at) {
+        return columns.fold(portfolioId, null, at).values().stream()
+                .filter(aggregate -> !aggregate.isEmpty())
+                .map(HoldingAggregate::toHolding)
+                .collect(Collectors.toList());
+    }
+
+    public TradeStoreStats getStats() {
+        if (!enabled) {
+            return TradeStoreStats.builder().enabled(false).build();
+        }
+        return TradeStoreStats.builder()
+                .enabled(true)
+                .mapped(columns.isMapped())
+                .rows(columns.getRows())
+                .liveRows(columns.getLiveRows())
+                .portfolios(columns.getPortfolios())
+                .tickers(columns.getTickers())
+                .offHeapBytes(columns.getOffHeapBytes())
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.exceptions.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Quotes prices from a local CSV file of ticker,price lines. The file is reloaded whenever its
+ * modification time changes, so an external job can refresh it while the application runs.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "portfolio.prices.provider", havingValue = "file")
+public class FilePriceProvider implements PriceProvider {
+
+    private final Path file;
+
+    private volatile Map<String, BigDecimal> prices = Collections.emptyMap();
+
+    private volatile FileTime loadedAt;
+
+    public FilePriceProvider(@Value("${portfolio.prices.file}") String file) {
+        this.file = Paths.get(file);
+    }
+
+    @Override
+    public BigDecimal getPrice(String ticker) {
+        BigDecimal price = currentPrices().get(ticker);
+        if (null == price) {
+            throw new NotFoundException(String.format("No price found for ticker : %s", ticker));
+        }
+        return price;
+    }
+
+    private Map<String, BigDecimal> currentPrices() {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (!modified.equals(loadedAt)) {
+                synchronized (this) {
+                    if (!modified.equals(loadedAt)) {
+                        prices = load();
+                        loadedAt = modified;
+                    }
+                }
+            }
+            return prices;
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    private Map<String, BigDecimal> load() throws IOException {
+        Map<String, BigDecimal> loaded = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            int skipped = 0;
+            while (null != (line = reader.readLine())) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] columns = line.split(",");
+                try {
+                    if (2 != columns.length) {
+                        throw new NumberFormatException("expected ticker,price");
+                    }
+                    loaded.put(columns[0].trim(), new BigDecimal(columns[1].trim()));
+                } catch (NumberFormatException numberFormatException) {
+                    //a first line that is not a price is the header
+                    if (1 != lineNumber) {
+                        skipped++;
+                        log.warn("Skipping malformed price row {} of {} : {}", lineNumber, file, line);
+                    }
+                }
+            }
+            if (0 != skipped) {
+                log.warn("Skipped {} malformed price rows of {}", skipped, file);
+            }
+        }
+        log.info("Loaded {} prices from {}", loaded.size(), file);
+        return loaded;
+    }
+}
@@ -0,0 +1,78 @@
+package com.application.portfoliotracker.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Replays ticker,price lines of a local file as price ticks, in file order. With loop enabled the file
+ * is replayed again from the start once it ends. Headers and malformed lines are skipped.
+ */
+@Component
+@ConditionalOnProperty(name = "portfolio.ticks.source", havingValue = "file")
+public class FileTickFeed extends TickFeed {
+
+    private final Path file;
+
+    private final boolean loop;
+
+    private BufferedReader reader;
+
+    //Ticks published since the file was last opened, a looped file without any is not replayed again
+    private long publishedThisPass;
+
+    @Autowired
+    public FileTickFeed(PriceTicks priceTicks,
+                        @Value("${portfolio.ticks.rate:100000}") long rate,
+                        @Value("${portfolio.ticks.file}") String file,
+                        @Value("${portfolio.ticks.file.loop:false}") boolean loop) {
+        super(priceTicks, rate);
+        this.file = Paths.get(file);
+        this.loop = loop;
+    }
+
+    @Override
+    protected boolean publishNext() {
+        try {
+            while (true) {
+                if (null == reader) {
+                    reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                }
+                String line = reader.readLine();
+                if (null == line) {
+                    reader.close();
+                    reader = null;
+                    if (!loop || 0 == publishedThisPass) {
+                        return false;
+                    }
+                    publishedThisPass = 0;
+                    continue;
+                }
+                int comma = line.indexOf(',');
+                if (comma <= 0) {
+                    continue;
+                }
+                try {
+                    BigDecimal price = new BigDecimal(line.substring(comma + 1).trim());
+                    priceTicks.publish(line.substring(0, comma).trim(), price);
+                    publishedThisPass++;
+                    return true;
+                } catch (NumberFormatException numberFormatException) {
+                    //header or malformed row
+                }
+            }
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+}
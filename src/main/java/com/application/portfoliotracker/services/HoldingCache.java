@@ -0,0 +1,274 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingCacheStats;
+import com.application.portfoliotracker.entities.HoldingId;
+import com.application.portfoliotracker.utils.AfterCommit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Read-through copy of the holdings table owned by PortfolioService, sharded by portfolio so the
+ * portfolios never contend on a shared lock. Writes are applied once their transaction commits. While
+ * every holding of a portfolio fits within max-size its shard is complete: misses are answered without
+ * the database and the full list is served from a shared, read-only snapshot. Past max-size entries are
+ * evicted in clock order, oldest first unless read since the hand last passed them, and full list reads of
+ * that portfolio fall back to the database.
+ * Cached holdings are shared between callers and must not be modified.
+ */
+@Component
+public class HoldingCache {
+
+    private final HoldingWriteBehind holdingWriteBehind;
+
+    private final int maxSize;
+
+    private final ConcurrentHashMap<String, Shard> shards = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public HoldingCache(HoldingWriteBehind holdingWriteBehind,
+                        @Value("${portfolio.holdings.cache.max-size:100000}") int maxSize) {
+        this.holdingWriteBehind = holdingWriteBehind;
+        this.maxSize = maxSize;
+    }
+
+    //Holding of the ticker, loaded from the database on a miss unless the portfolio's shard is complete
+    public Optional<Holding> get(String portfolioId, String ticker) {
+        return shard(portfolioId).get(ticker);
+    }
+
+    //Every holding of the portfolio, served from the snapshot when its shard is complete
+    public List<Holding> getAll(String portfolioId) {
+        return shard(portfolioId).getAll();
+    }
+
+    //Write-through of a saved holding, applied after the surrounding transaction commits
+    public void put(Holding holding) {
+        Holding copy = copy(holding);
+        Shard shard = shard(holding.getPortfolioId());
+        AfterCommit.run(() -> shard.apply(cache -> {
+            if (null == cache.put(copy.getTicker(), copy)) {
+                shard.enter(copy.getTicker());
+            }
+        }));
+    }
+
+    //Write-through of a deleted holding, applied after the surrounding transaction commits
+    public void remove(String portfolioId, String ticker) {
+        Shard shard = shard(portfolioId);
+        AfterCommit.run(() -> shard.apply(cache -> {
+            cache.remove(ticker);
+            shard.referenced.remove(ticker);
+        }));
+    }
+
+    //Replaces the portfolio's shard once the surrounding transaction commits, used after a full rebuild
+    public void replaceAll(String portfolioId, Collection<Holding> replacement) {
+        List<Holding> copies = new ArrayList<>(replacement.size());
+        replacement.forEach(holding -> copies.add(copy(holding)));
+        Shard shard = shard(portfolioId);
+        AfterCommit.run(() -> shard.replaceAll(copies));
+    }
+
+    public HoldingCacheStats getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        return HoldingCacheStats.builder()
+                .size(shards.values().stream().mapToInt(shard -> shard.holdings.size()).sum())
+                .maxSize(maxSize)
+                .complete(shards.values().stream().allMatch(shard -> shard.complete))
+                .hits(hitCount)
+                .misses(missCount)
+                .evictions(evictions.sum())
+                .hitRate(0 == hitCount + missCount ? 0 : (double) hitCount / (hitCount + missCount))
+                .build();
+    }
+
+    private Shard shard(String portfolioId) {
+        return shards.computeIfAbsent(portfolioId, Shard::new);
+    }
+
+    private final class Shard {
+
+        private final String portfolioId;
+
+        private final ConcurrentHashMap<String, Holding> holdings = new ConcurrentHashMap<>();
+
+        //Reference bits, set by reads and cleared as the clock hand passes
+        private final Set<String> referenced = ConcurrentHashMap.newKeySet();
+
+        //Clock ring in insertion order, the hand is its head. Guarded by the shard's monitor. Tickers removed
+        //from the shard stay in the ring until the hand reaches them
+        private final Deque<String> ring = new ArrayDeque<>();
+        private final Set<String> ringed = new HashSet<>();
+
+        //Commits apply under the read lock. Loads from the database and snapshot builds take the write lock,
+        //so they never overwrite or miss a newer commit
+        private final ReadWriteLock loadLock = new ReentrantReadWriteLock();
+
+        private volatile boolean complete;
+
+        private volatile List<Holding> snapshot;
+
+        private Shard(String portfolioId) {
+            this.portfolioId = portfolioId;
+        }
+
+        private Optional<Holding> get(String ticker) {
+            Holding holding = holdings.get(ticker);
+            if (null != holding || complete) {
+                if (null != holding && !referenced.contains(ticker)) {
+                    referenced.add(ticker);
+                }
+                hits.increment();
+                return Optional.ofNullable(holding);
+            }
+            misses.increment();
+            loadLock.writeLock().lock();
+            try {
+                Optional<Holding> loaded = holdingWriteBehind.findById(new HoldingId(portfolioId, ticker));
+                loaded.ifPresent(found -> {
+                    if (null == holdings.putIfAbsent(ticker, copy(found))) {
+                        enter(ticker);
+                    }
+                    snapshot = null;
+                    if (holdings.size() > maxSize) {
+                        evict();
+                    }
+                });
+                return loaded;
+            } finally {
+                loadLock.writeLock().unlock();
+            }
+        }
+
+        private List<Holding> getAll() {
+            List<Holding> current = snapshot;
+            if (null != current) {
+                hits.increment();
+                return current;
+            }
+            misses.increment();
+            if (!complete) {
+                List<Holding> loaded = load();
+                if (!complete) {
+                    return loaded;
+                }
+            }
+            loadLock.writeLock().lock();
+            try {
+                List<Holding> rebuilt = Collections.unmodifiableList(new ArrayList<>(holdings.values()));
+                snapshot = rebuilt;
+                return rebuilt;
+            } finally {
+                loadLock.writeLock().unlock();
+            }
+        }
+
+        private void replaceAll(List<Holding> copies) {
+            loadLock.writeLock().lock();
+            try {
+                clear();
+                complete = copies.size() <= maxSize;
+                copies.stream().limit(maxSize).forEach(holding -> {
+                    holdings.put(holding.getTicker(), holding);
+                    enter(holding.getTicker());
+                });
+                snapshot = null;
+            } finally {
+                loadLock.writeLock().unlock();
+            }
+        }
+
+        //Loads every holding of the portfolio from the database and keeps them if they fit, returns what was read
+        private List<Holding> load() {
+            loadLock.writeLock().lock();
+            try {
+                List<Holding> all = holdingWriteBehind.findByPortfolioId(portfolioId);
+                if (complete || all.size() > maxSize) {
+                    return all;
+                }
+                clear();
+                all.forEach(holding -> {
+                    holdings.put(holding.getTicker(), copy(holding));
+                    enter(holding.getTicker());
+                });
+                snapshot = null;
+                complete = true;
+                return all;
+            } finally {
+                loadLock.writeLock().unlock();
+            }
+        }
+
+        private void apply(Consumer<Map<String, Holding>> change) {
+            loadLock.readLock().lock();
+            try {
+                change.accept(holdings);
+                snapshot = null;
+                if (holdings.size() > maxSize) {
+                    evict();
+                }
+            } finally {
+                loadLock.readLock().unlock();
+            }
+        }
+
+        //Adds a ticker newly stored in the shard behind the clock hand
+        private synchronized void enter(String ticker) {
+            if (ringed.add(ticker)) {
+                ring.addLast(ticker);
+            }
+        }
+
+        private synchronized void clear() {
+            holdings.clear();
+            referenced.clear();
+            ring.clear();
+            ringed.clear();
+        }
+
+        //Advances the clock hand until the bound holds again. A referenced ticker loses its bit and goes to the
+        //back of the ring, the first one found without it is dropped.
+        //The shard no longer holds every holding afterwards
+        private synchronized void evict() {
+            complete = false;
+            while (holdings.size() > maxSize && !ring.isEmpty()) {
+                String ticker = ring.pollFirst();
+                if (!holdings.containsKey(ticker)) {
+                    ringed.remove(ticker);
+                } else if (referenced.remove(ticker)) {
+                    ring.addLast(ticker);
+                } else {
+                    ringed.remove(ticker);
+                    holdings.remove(ticker);
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private static Holding copy(Holding holding) {
+        return Holding.builder()
+                .portfolioId(holding.getPortfolioId())
+                .ticker(holding.getTicker())
+                .totalPrice(holding.getTotalPrice())
+                .averageBuyPrice(holding.getAverageBuyPrice())
+                .shares(holding.getShares())
+                .realizedProfit(holding.getRealizedProfit())
+                .lastUpdated(holding.getLastUpdated())
+                .build();
+    }
+}
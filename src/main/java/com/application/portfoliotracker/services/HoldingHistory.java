@@ -0,0 +1,179 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingCheckpoint;
+import com.application.portfoliotracker.entities.HoldingId;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.repositories.HoldingCheckpointRepository;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import com.application.portfoliotracker.utils.AfterCommit;
+import com.application.portfoliotracker.utils.HoldingAggregate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Point-in-time holdings folded from the trade history in execution order (last_updated, then trade id).
+ * A query starts from the latest checkpoint of the ticker at or before the requested time and replays only
+ * the trades after it, writing a new checkpoint every checkpoint-interval trades it replays. Writers fold the
+ * history the same way once checkpoint-interval trades were written to a ticker, so checkpoints keep up with a
+ * ticker that is written and never queried. A writer's fold runs once its transaction committed, in a transaction
+ * of its own, and a failing fold is logged and skipped: checkpoints only speed queries up. The cost of a query is therefore bounded by the interval rather than
+ * by the depth of the history.
+ * Trades without an execution time are not part of the history.
+ */
+@Slf4j
+@Component
+public class HoldingHistory {
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private HoldingCheckpointRepository holdingCheckpointRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TickerLocks tickerLocks;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${portfolio.history.checkpoint-interval:1000}")
+    private int checkpointInterval;
+
+    //Trades written to each ticker since a writer last folded its history
+    private final ConcurrentHashMap<HoldingId, Integer> written = new ConcurrentHashMap<>();
+
+    //Writers fold after their own transaction committed, so the fold needs a new one
+    private TransactionTemplate foldTransactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        foldTransactionTemplate = new TransactionTemplate(transactionManager);
+        foldTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    //Holding of the ticker right after the last trade executed at or before the given time,
+    //empty if the ticker had no shares then. Runs under the ticker lock so no stale checkpoint is written.
+    public Optional<Holding> getHoldingAsOf(String portfolioId, String ticker, LocalDateTime at) {
+        return tickerLocks.withLock(portfolioId, ticker,
+                () -> transactionTemplate.execute(status -> replay(portfolioId, ticker, at)));
+    }
+
+    //Every holding of the portfolio with shares at the given time, in ticker order
+    public List<Holding> getHoldingsAsOf(String portfolioId, LocalDateTime at) {
+        List<Holding> holdings = new ArrayList<>();
+        tradeRepository.findDistinctTickers(portfolioId).stream()
+                .sorted()
+                .forEach(ticker -> getHoldingAsOf(portfolioId, ticker, at).ifPresent(holdings::add));
+        return holdings;
+    }
+
+    //Drops checkpoints made stale by a trade of the ticker executed at the given time being added,
+    //changed or deleted. Must run in the writer's transaction while the ticker is locked.
+    public void invalidate(String portfolioId, String ticker, LocalDateTime executedAt) {
+        if (null != executedAt) {
+            holdingCheckpointRepository.deleteFrom(portfolioId, ticker, executedAt);
+        }
+    }
+
+    //Counts trades written to the ticker, the latest of them executed at the given time, and once checkpoint-interval
+    //of them add up folds the history up to that time, storing checkpoints as a query would. Must be called in the
+    //writer's transaction after the trades are saved, while the ticker is locked; counting and folding wait for the
+    //commit, which the writer awaits under the same lock, and a rolled back write counts nothing.
+    public void written(String portfolioId, String ticker, int trades, LocalDateTime executedAt) {
+        if (null == executedAt) {
+            return;
+        }
+        HoldingId id = new HoldingId(portfolioId, ticker);
+        AfterCommit.run(() -> {
+            if (written.merge(id, trades, Integer::sum) >= checkpointInterval) {
+                written.remove(id);
+                checkpoint(portfolioId, ticker, executedAt);
+            }
+        });
+    }
+
+    //Folds the history of the ticker up to the given time in a transaction of its own, logging and skipping a failure
+    private void checkpoint(String portfolioId, String ticker, LocalDateTime at) {
+        try {
+            foldTransactionTemplate.executeWithoutResult(status -> replay(portfolioId, ticker, at));
+        } catch (RuntimeException e) {
+            log.warn("Skipping the checkpoints of {} in portfolio {} up to {}", ticker, portfolioId, at, e);
+        }
+    }
+
+    //Drops every checkpoint of the portfolio, used when its holdings are rebuilt after trades changed outside the service
+    public void invalidateAll(String portfolioId) {
+        holdingCheckpointRepository.deleteByPortfolio(portfolioId);
+    }
+
+    private Optional<Holding> replay(String portfolioId, String ticker, LocalDateTime at) {
+        Optional<HoldingCheckpoint> checkpoint = holdingCheckpointRepository
+                .findTopByPortfolioIdAndTickerAndAsOfLessThanEqualOrderByAsOfDescTradeIdDesc(portfolioId, ticker, at);
+        HoldingAggregate aggregate = checkpoint.map(HoldingHistory::toAggregate)
+                .orElse(HoldingAggregate.empty(portfolioId, ticker));
+        int sinceCheckpoint = 0;
+        try (Stream<Trade> trades = checkpoint
+                .map(from -> tradeRepository.streamByTickerBetween(portfolioId, ticker, from.getAsOf(), from.getTradeId(), at))
+                .orElseGet(() -> tradeRepository.streamByPortfolioIdAndTickerAndLastUpdatedLessThanEqualOrderByLastUpdatedAscTradeIdAsc(
+                        portfolioId, ticker, at))) {
+            Iterator<Trade> iterator = trades.iterator();
+            while (iterator.hasNext()) {
+                Trade trade = iterator.next();
+                aggregate.apply(trade);
+                entityManager.detach(trade);
+                if (++sinceCheckpoint == checkpointInterval) {
+                    holdingCheckpointRepository.save(toCheckpoint(aggregate, trade));
+                    sinceCheckpoint = 0;
+                }
+            }
+        }
+        return aggregate.isEmpty() ? Optional.empty() : Optional.of(aggregate.toHolding());
+    }
+
+    private static HoldingAggregate toAggregate(HoldingCheckpoint checkpoint) {
+        return HoldingAggregate.of(Holding.builder()
+                .portfolioId(checkpoint.getPortfolioId())
+                .ticker(checkpoint.getTicker())
+                .shares(checkpoint.getShares())
+                .totalPrice(checkpoint.getTotalPrice())
+                .realizedProfit(checkpoint.getRealizedProfit())
+                .lastUpdated(checkpoint.getAsOf())
+                .build());
+    }
+
+    private static HoldingCheckpoint toCheckpoint(HoldingAggregate aggregate, Trade last) {
+        Holding holding = aggregate.toHolding();
+        return HoldingCheckpoint.builder()
+                .portfolioId(holding.getPortfolioId())
+                .ticker(holding.getTicker())
+                .asOf(last.getLastUpdated())
+                .tradeId(last.getTradeId())
+                .shares(holding.getShares())
+                .totalPrice(holding.getTotalPrice())
+                .realizedProfit(holding.getRealizedProfit())
+                .build();
+    }
+}
@@ -0,0 +1,321 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingId;
+import com.application.portfoliotracker.entities.HoldingsWatermark;
+import com.application.portfoliotracker.repositories.HoldingRepository;
+import com.application.portfoliotracker.repositories.HoldingsWatermarkRepository;
+import com.application.portfoliotracker.utils.AfterCommit;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Holdings as PortfolioService last wrote them. With write-behind enabled a committed trade stages its holding in
+ * memory instead of updating the holdings row: later trades of the same ticker replace the staged holding, and a
+ * flusher thread writes every staged holding in one transaction once flush-size tickers are waiting or every
+ * flush-interval. Reads go through this class so they see staged holdings before the table.
+ * The trades table stays the durable record. A marker row is dirty while staged holdings may exist, and a start
+ * that finds it dirty rebuilds the holdings from the trades, see PortfolioService.recoverWriteBehindHoldings.
+ * Without write-behind every method reads straight from the table and nothing is staged.
+ */
+@Slf4j
+@Component
+public class HoldingWriteBehind {
+
+    private static final long DIRTY = 1;
+    private static final long CLEAN = 0;
+
+    private final HoldingRepository holdingRepository;
+
+    private final HoldingsWatermarkRepository holdingsWatermarkRepository;
+
+    private final TransactionTemplate flushTransactionTemplate;
+
+    private final boolean enabled;
+
+    private final int flushSize;
+
+    private final long flushIntervalNanos;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    //Latest holding of every ticker waiting to be written, a holding with no shares deletes the row
+    private final ConcurrentHashMap<HoldingId, Holding> pending = new ConcurrentHashMap<>();
+
+    //Flushes are serialised so a later flush of a ticker never commits before an earlier one
+    private final Object flushLock = new Object();
+
+    private final LongAdder staged = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+
+    private final Timer flushTimer;
+
+    private Thread flusher;
+
+    private volatile boolean running;
+
+    private volatile boolean recoveryNeeded;
+
+    @Autowired
+    public HoldingWriteBehind(HoldingRepository holdingRepository, HoldingsWatermarkRepository holdingsWatermarkRepository,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                              @Value("${portfolio.holdings.write-behind.enabled:false}") boolean enabled,
+                              @Value("${portfolio.holdings.write-behind.flush-size:10000}") int flushSize,
+                              @Value("${portfolio.holdings.write-behind.flush-interval:100ms}") Duration flushInterval) {
+        this.holdingRepository = holdingRepository;
+        this.holdingsWatermarkRepository = holdingsWatermarkRepository;
+        this.flushTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.flushTimer = Timer.builder("portfolio.holdings.write-behind.flush")
+                .description("Time to write one group of staged holdings")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("portfolio.holdings.write-behind.pending", pending, Map::size)
+                .description("Holdings staged and not yet written")
+                .register(meterRegistry);
+        FunctionCounter.builder("portfolio.holdings.write-behind.staged", staged, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("portfolio.holdings.write-behind.coalesced", coalesced, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("portfolio.holdings.write-behind.flushed", flushed, LongAdder::sum).register(meterRegistry);
+    }
+
+    //Reads the marker left by the previous run and marks this run, then starts the flusher
+    @PostConstruct
+    public void start() {
+        recoveryNeeded = holdingsWatermarkRepository.findById(HoldingsWatermark.writeBehind())
+                .map(marker -> DIRTY == marker.getTradeId())
+                .orElse(false);
+        if (!recoveryNeeded) {
+            mark(enabled);
+        }
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "holdings-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    //Writes everything staged and marks the holdings table complete
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        flush();
+        if (!recoveryNeeded) {
+            mark(false);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //Whether the previous run stopped with staged holdings possibly unwritten
+    public boolean isRecoveryNeeded() {
+        return recoveryNeeded;
+    }
+
+    //Called once the holdings were rebuilt from the trades
+    public void recovered() {
+        mark(enabled);
+        recoveryNeeded = false;
+    }
+
+    //Stages the holding once the surrounding transaction commits, to be written by a later flush
+    public void stage(Holding holding) {
+        Holding copy = copy(holding);
+        HoldingId id = new HoldingId(copy.getPortfolioId(), copy.getTicker());
+        AfterCommit.run(() -> {
+            staged.increment();
+            if (null != pending.put(id, copy)) {
+                coalesced.increment();
+            }
+            if (pending.size() >= flushSize) {
+                LockSupport.unpark(flusher);
+            }
+        });
+    }
+
+    //Holding of the ticker, staged or from the table. With write-behind the result is a detached copy,
+    //otherwise the managed entity.
+    public Optional<Holding> findById(HoldingId id) {
+        Holding stagedHolding = pending.get(id);
+        if (null != stagedHolding) {
+            return isEmpty(stagedHolding) ? Optional.empty() : Optional.of(copy(stagedHolding));
+        }
+        Optional<Holding> stored = holdingRepository.findById(id);
+        return enabled ? stored.map(HoldingWriteBehind::copy) : stored;
+    }
+
+    //Holdings of the tickers by ticker, staged or from the table, see findById
+    public Map<String, Holding> findAllById(Collection<HoldingId> ids) {
+        Map<String, Holding> found = new HashMap<>();
+        List<HoldingId> unstaged = new ArrayList<>();
+        for (HoldingId id : ids) {
+            Holding stagedHolding = pending.get(id);
+            if (null == stagedHolding) {
+                unstaged.add(id);
+            } else if (!isEmpty(stagedHolding)) {
+                found.put(stagedHolding.getTicker(), copy(stagedHolding));
+            }
+        }
+        if (!unstaged.isEmpty()) {
+            holdingRepository.findAllById(unstaged)
+                    .forEach(holding -> found.put(holding.getTicker(), enabled ? copy(holding) : holding));
+        }
+        return found;
+    }
+
+    //Every holding of the portfolio, staged holdings in place of their rows
+    public List<Holding> findByPortfolioId(String portfolioId) {
+        Map<String, Holding> staged = stagedOf(portfolioId::equals);
+        List<Holding> stored = holdingRepository.findByPortfolioId(portfolioId);
+        if (staged.isEmpty()) {
+            return stored;
+        }
+        Map<String, Holding> merged = new LinkedHashMap<>();
+        stored.forEach(holding -> merged.put(holding.getTicker(), holding));
+        staged.values().forEach(holding -> {
+            if (isEmpty(holding)) {
+                merged.remove(holding.getTicker());
+            } else {
+                merged.put(holding.getTicker(), copy(holding));
+            }
+        });
+        return new ArrayList<>(merged.values());
+    }
+
+    //Writes every staged holding
+    public void flush() {
+        flush(portfolioId -> true);
+    }
+
+    //Writes the staged holdings of the portfolio, before reads that page or stream the table
+    public void flush(String portfolioId) {
+        flush(portfolioId::equals);
+    }
+
+    private void flush(Predicate<String> portfolios) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        synchronized (flushLock) {
+            Map<HoldingId, Holding> group = new HashMap<>();
+            pending.forEach((id, holding) -> {
+                if (portfolios.test(id.getPortfolioId())) {
+                    group.put(id, holding);
+                }
+            });
+            if (group.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            flushTransactionTemplate.executeWithoutResult(status -> write(group));
+            //Only holdings not staged again while writing leave the buffer
+            group.forEach(pending::remove);
+            flushed.add(group.size());
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    //Updates the rows of the group loaded in one query and inserts or deletes the rest, batched by Hibernate
+    private void write(Map<HoldingId, Holding> group) {
+        Map<HoldingId, Holding> stored = holdingRepository.findAllById(group.keySet()).stream()
+                .collect(Collectors.toMap(holding -> new HoldingId(holding.getPortfolioId(), holding.getTicker()), holding -> holding));
+        group.forEach((id, holding) -> {
+            Holding row = stored.get(id);
+            if (isEmpty(holding)) {
+                if (null != row) {
+                    entityManager.remove(row);
+                }
+            } else if (null == row) {
+                entityManager.persist(copy(holding));
+            } else {
+                row.setTotalPrice(holding.getTotalPrice());
+                row.setAverageBuyPrice(holding.getAverageBuyPrice());
+                row.setShares(holding.getShares());
+                row.setRealizedProfit(holding.getRealizedProfit());
+                row.setLastUpdated(holding.getLastUpdated());
+            }
+        });
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void flushLoop() {
+        while (running) {
+            LockSupport.parkNanos(flushIntervalNanos);
+            try {
+                flush();
+            } catch (RuntimeException exception) {
+                log.error("Failed to write {} staged holdings, retrying", pending.size(), exception);
+            }
+        }
+    }
+
+    private Map<String, Holding> stagedOf(Predicate<String> portfolios) {
+        Map<String, Holding> staged = new HashMap<>();
+        pending.forEach((id, holding) -> {
+            if (portfolios.test(id.getPortfolioId())) {
+                staged.put(id.getTicker(), holding);
+            }
+        });
+        return staged;
+    }
+
+    private void mark(boolean dirty) {
+        flushTransactionTemplate.executeWithoutResult(status -> holdingsWatermarkRepository.save(HoldingsWatermark.builder()
+                .name(HoldingsWatermark.writeBehind())
+                .tradeId(dirty ? DIRTY : CLEAN)
+                .build()));
+    }
+
+    private static boolean isEmpty(Holding holding) {
+        return BigInteger.ZERO.equals(holding.getShares());
+    }
+
+    private static Holding copy(Holding holding) {
+        return Holding.builder()
+                .portfolioId(holding.getPortfolioId())
+                .ticker(holding.getTicker())
+                .totalPrice(holding.getTotalPrice())
+                .averageBuyPrice(holding.getAverageBuyPrice())
+                .shares(holding.getShares())
+                .realizedProfit(holding.getRealizedProfit())
+                .lastUpdated(holding.getLastUpdated())
+                .build();
+    }
+}
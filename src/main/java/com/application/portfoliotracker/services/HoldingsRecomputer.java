@@ -0,0 +1,142 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.enums.RecomputeMode;
+import com.application.portfoliotracker.utils.HoldingAggregate;
+import com.application.portfoliotracker.utils.Utils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Folds trades into holdings according to portfolio.recompute.mode. SEQUENTIAL folds on the calling thread.
+ * PARALLEL collects the trades of every ticker on the calling thread, where the aggregate factory may use
+ * the database, then folds the tickers as fork-join tasks on a dedicated pool of portfolio.recompute.parallelism
+ * threads. Each task owns its tickers' aggregates and reads its trades only, so results match the sequential fold exactly.
+ */
+@Slf4j
+@Component
+public class HoldingsRecomputer implements DisposableBean {
+
+    //Below this many trades a task folds its tickers itself instead of splitting further
+    private static final int MIN_TRADES_PER_TASK = 4096;
+
+    private final RecomputeMode mode;
+
+    private final ForkJoinPool pool;
+
+    public HoldingsRecomputer(@Value("${portfolio.recompute.mode:SEQUENTIAL}") RecomputeMode mode,
+                              @Value("${portfolio.recompute.parallelism:0}") int parallelism) {
+        this.mode = mode;
+        this.pool = RecomputeMode.PARALLEL == mode ?
+                new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors()) : null;
+        log.info("Holdings recompute mode : {}{}", mode, null == pool ? "" : ", parallelism " + pool.getParallelism());
+    }
+
+    /**
+     * Folds trades into the running aggregate of their ticker, see Utils.applyTrades
+     *
+     * @param trades     Trades of one portfolio grouped by ticker, in trade id order within a ticker, consumed on the calling thread
+     * @param aggregates Aggregates by ticker, missing tickers are added through the factory
+     * @param factory    Creates the starting aggregate of a ticker, always called on the calling thread
+     * @return Highest trade id folded, Long.MIN_VALUE if there were no trades
+     */
+    public long applyTrades(Stream<Trade> trades, Map<String, HoldingAggregate> aggregates,
+                            Function<String, HoldingAggregate> factory) {
+        if (null == pool) {
+            return Utils.applyTrades(trades, aggregates, factory);
+        }
+        Map<String, List<Trade>> tradesByTicker = new LinkedHashMap<>();
+        long highestTradeId = Long.MIN_VALUE;
+        Iterator<Trade> iterator = trades.iterator();
+        List<Trade> current = null;
+        String currentTicker = null;
+        while (iterator.hasNext()) {
+            Trade trade = iterator.next();
+            if (null == current || !currentTicker.equals(trade.getTicker())) {
+                currentTicker = trade.getTicker();
+                aggregates.computeIfAbsent(currentTicker, factory);
+                current = tradesByTicker.computeIfAbsent(currentTicker, ticker -> new ArrayList<>());
+            }
+            current.add(trade);
+            highestTradeId = Math.max(highestTradeId, trade.getTradeId());
+        }
+        List<HoldingAggregate> tickerAggregates = new ArrayList<>(tradesByTicker.size());
+        List<List<Trade>> tickerTrades = new ArrayList<>(tradesByTicker.size());
+        tradesByTicker.forEach((ticker, tickerList) -> {
+            tickerAggregates.add(aggregates.get(ticker));
+            tickerTrades.add(tickerList);
+        });
+        long[] tradeCounts = new long[tickerTrades.size() + 1];
+        for (int index = 0; index < tickerTrades.size(); index++) {
+            tradeCounts[index + 1] = tradeCounts[index] + tickerTrades.get(index).size();
+        }
+        pool.invoke(new FoldTask(tickerAggregates, tickerTrades, tradeCounts, 0, tickerTrades.size()));
+        return highestTradeId;
+    }
+
+    //Sums the values of the items, in parallel on the recompute pool in PARALLEL mode.
+    //BigDecimal addition is exact, so the order of the additions does not change the sum.
+    public <T> Optional<BigDecimal> sum(List<T> items, Function<T, BigDecimal> value) {
+        if (null == pool) {
+            return items.stream().map(value).reduce(BigDecimal::add);
+        }
+        return pool.submit(() -> items.parallelStream().map(value).reduce(BigDecimal::add)).join();
+    }
+
+    public RecomputeMode getMode() {
+        return mode;
+    }
+
+    @Override
+    public void destroy() {
+        if (null != pool) {
+            pool.shutdown();
+        }
+    }
+
+    //Folds the tickers in [from, to), splitting the range by trade count until a task is small enough
+    private static final class FoldTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<HoldingAggregate> aggregates;
+        private final List<List<Trade>> trades;
+        private final long[] tradeCounts;
+        private final int from;
+        private final int to;
+
+        private FoldTask(List<HoldingAggregate> aggregates, List<List<Trade>> trades, long[] tradeCounts, int from, int to) {
+            this.aggregates = aggregates;
+            this.trades = trades;
+            this.tradeCounts = tradeCounts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1 || tradeCounts[to] - tradeCounts[from] <= MIN_TRADES_PER_TASK) {
+                for (int index = from; index < to; index++) {
+                    HoldingAggregate aggregate = aggregates.get(index);
+                    trades.get(index).forEach(aggregate::apply);
+                }
+                return;
+            }
+            //split where half of the range's trades fall on each side
+            long half = (tradeCounts[from] + tradeCounts[to]) / 2;
+            int middle = Arrays.binarySearch(tradeCounts, from + 1, to, half);
+            middle = middle >= 0 ? middle : Math.min(Math.max(-middle - 1, from + 1), to - 1);
+            invokeAll(new FoldTask(aggregates, trades, tradeCounts, from, middle),
+                    new FoldTask(aggregates, trades, tradeCounts, middle, to));
+        }
+    }
+}
@@ -1,24 +1,67 @@
 package com.application.portfoliotracker.services;
 
+import com.application.portfoliotracker.entities.BatchResult;
+import com.application.portfoliotracker.entities.CorrelationMatrix;
+import com.application.portfoliotracker.entities.ExportResult;
 import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingCacheStats;
+import com.application.portfoliotracker.entities.HoldingId;
+import com.application.portfoliotracker.entities.HoldingsWatermark;
+import com.application.portfoliotracker.entities.IngestionResult;
 import com.application.portfoliotracker.entities.Portfolio;
+import com.application.portfoliotracker.entities.PortfolioAnalytics;
+import com.application.portfoliotracker.entities.PortfolioReturns;
+import com.application.portfoliotracker.entities.PriceBar;
+import com.application.portfoliotracker.entities.QuoteCacheStats;
+import com.application.portfoliotracker.entities.TickStats;
 import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TradeStoreStats;
+import com.application.portfoliotracker.entities.TradeType;
 import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.enums.ExportCompression;
+import com.application.portfoliotracker.enums.ExportFormat;
+import com.application.portfoliotracker.exceptions.IngestionException;
 import com.application.portfoliotracker.exceptions.InvalidTransactionException;
 import com.application.portfoliotracker.exceptions.NotFoundException;
 import com.application.portfoliotracker.repositories.HoldingRepository;
+import com.application.portfoliotracker.repositories.HoldingsWatermarkRepository;
 import com.application.portfoliotracker.repositories.TradeRepository;
+import com.application.portfoliotracker.utils.HoldingAggregate;
 import com.application.portfoliotracker.utils.Utils;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.MathContext;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -30,144 +73,891 @@ public class PortfolioService  {
     @Autowired
     private HoldingRepository holdingRepository;
 
-    //adding new trade
-    public Trade addTrade(Trade trade) {
+    @Autowired
+    private HoldingsWatermarkRepository holdingsWatermarkRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private QuoteCache quoteCache;
+
+    @Autowired
+    private TickerLocks tickerLocks;
+
+    @Autowired
+    private HoldingCache holdingCache;
+
+    @Autowired
+    private TradeJournal tradeJournal;
+
+    @Autowired
+    private HoldingHistory holdingHistory;
+
+    @Autowired
+    private HoldingsRecomputer holdingsRecomputer;
+
+    @Autowired
+    private ReturnsLedger returnsLedger;
+
+    @Autowired
+    private ColumnarTradeStore columnarTradeStore;
+
+    @Autowired
+    private TradeDedupIndex tradeDedupIndex;
+
+    @Autowired
+    private TradeIndex tradeIndex;
+
+    @Autowired
+    private HoldingWriteBehind holdingWriteBehind;
+
+    @Autowired
+    private TradeExporter tradeExporter;
+
+    @Autowired
+    private PriceHistory priceHistory;
+
+    @Autowired
+    private RiskAnalytics riskAnalytics;
+
+    @Autowired
+    private PriceTicks priceTicks;
+
+    @Autowired
+    private ReturnsStream returnsStream;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${portfolio.ingest.batch-size:5000}")
+    private int ingestBatchSize;
+
+    //Creates watermark rows in their own transaction, before any writer of the portfolio needs them
+    private TransactionTemplate watermarkTransactionTemplate;
+
+    //Portfolios whose watermark row is known to exist
+    private final Set<String> watermarkedPortfolios = ConcurrentHashMap.newKeySet();
+
+    //Holdings written back after folding trades, by the operation that folded them
+    private Counter tradeRecomputes;
+    private Counter batchRecomputes;
+    private Counter refreshRecomputes;
+    private Counter rebuildRecomputes;
+
+    //Trades per committed ingestion batch
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    public void init() {
+        watermarkTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        watermarkTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        tradeRecomputes = recomputeCounter("trade");
+        batchRecomputes = recomputeCounter("batch");
+        refreshRecomputes = recomputeCounter("refresh");
+        rebuildRecomputes = recomputeCounter("rebuild");
+        batchSizes = DistributionSummary.builder("portfolio.ingest.batch.size")
+                .description("Trades per committed ingestion batch")
+                .baseUnit("trades")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Counter recomputeCounter(String operation) {
+        return Counter.builder("portfolio.holdings.recomputed")
+                .description("Holdings recomputed and written back")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    //adding new trade to the portfolio, committed while the ticker is locked.
+    //A trade whose idempotency key was already used returns the trade saved with it and changes nothing.
+    @Timed(value = "portfolio.service", histogram = true)
+    public Trade addTrade(String portfolioId, Trade trade) {
+        trade.setPortfolioId(portfolioId);
+        stampExecutionTime(trade);
+        ensureWatermark(portfolioId);
+        return tickerLocks.withLock(portfolioId, trade.getTicker(), () -> retryOnDuplicateKey(Collections.singletonList(trade),
+                () -> transactionTemplate.execute(status -> addTradeLocked(portfolioId, trade))));
+    }
+
+    private Trade addTradeLocked(String portfolioId, Trade trade) {
+        Optional<Trade> original = findTradeByIdempotencyKey(portfolioId, trade.getIdempotencyKey());
+        if (original.isPresent()) {
+            return original.get();
+        }
+        holdingHistory.invalidate(portfolioId, trade.getTicker(), trade.getLastUpdated());
         Holding holding = Utils.addTradeToHolding(getHoldingByTrade(trade), trade);
         saveHolding(holding);
-        return tradeRepository.save(trade);
+        tradeRecomputes.increment();
+        trade.setHoldingApplied(true);
+        Trade savedTrade = tradeRepository.save(trade);
+        holdingHistory.written(portfolioId, savedTrade.getTicker(), 1, savedTrade.getLastUpdated());
+        tradeJournal.append(TradeType.ADD, savedTrade);
+        columnarTradeStore.append(TradeType.ADD, savedTrade);
+        tradeIndex.apply(TradeType.ADD, savedTrade);
+        tradeDedupIndex.record(savedTrade);
+        return savedTrade;
     }
 
+    //Trade of the portfolio saved with the idempotency key, empty for a null or unused key
+    public Optional<Trade> findTradeByIdempotencyKey(String portfolioId, String idempotencyKey) {
+        if (null == idempotencyKey) {
+            return Optional.empty();
+        }
+        return tradeDedupIndex.find(portfolioId, idempotencyKey).flatMap(tradeRepository::findById);
+    }
 
-    //update the trade
-    public Trade updateTrade(Long id, Trade trade) {
-        Trade existingTrade= tradeRepository.findById(id).orElseThrow(
+    //Runs the write, and once more if it hit the unique index of idempotency keys. That happens for keys the
+    //dedup index did not know yet, saved straight to the table or by a concurrent request on another ticker.
+    //The retry looks those keys up in the table and skips their trades.
+    private <T> T retryOnDuplicateKey(Collection<Trade> trades, Supplier<T> write) {
+        try {
+            return write.get();
+        } catch (DataIntegrityViolationException exception) {
+            if (trades.stream().allMatch(trade -> null == trade.getIdempotencyKey())) {
+                throw exception;
+            }
+            log.info("Retrying {} trades after an idempotency key conflict : {}", trades.size(), exception.getMessage());
+            tradeDedupIndex.suspect(trades);
+            return write.get();
+        }
+    }
+
+    //Adds trades in batches of ingestBatchSize, each batch is validated, folded and committed on its own.
+    //A failing batch is rolled back and stops the upload, batches before it stay committed and are reported
+    //through an IngestionException.
+    @Timed(value = "portfolio.service", histogram = true)
+    public IngestionResult addTrades(String portfolioId, Iterator<Trade> trades) {
+        ensureWatermark(portfolioId);
+        long start = System.nanoTime();
+        List<BatchResult> batches = new ArrayList<>();
+        List<Trade> batch = new ArrayList<>(ingestBatchSize);
+        try {
+            while (trades.hasNext()) {
+                Trade next = trades.next();
+                next.setPortfolioId(portfolioId);
+                batch.add(next);
+                if (batch.size() == ingestBatchSize || !trades.hasNext()) {
+                    int number = batches.size() + 1;
+                    Set<String> tickers = batch.stream().map(Trade::getTicker).filter(Objects::nonNull).collect(Collectors.toSet());
+                    batches.add(tickerLocks.withLocks(portfolioId, tickers, () -> retryOnDuplicateKey(batch,
+                            () -> transactionTemplate.execute(status -> addTradeBatch(portfolioId, number, batch)))));
+                    batch.clear();
+                }
+            }
+        } catch (RuntimeException exception) {
+            IngestionResult committed = ingestionResult(batches, start);
+            committed.setFailedBatch(batches.size() + 1);
+            committed.setError(exception.getMessage());
+            log.warn("Upload to portfolio {} stopped at batch {} after {} committed trades : {}",
+                    portfolioId, committed.getFailedBatch(), committed.getTrades(), exception.getMessage());
+            throw new IngestionException(committed, exception);
+        }
+        return ingestionResult(batches, start);
+    }
+
+    private static IngestionResult ingestionResult(List<BatchResult> batches, long start) {
+        long elapsedNanos = System.nanoTime() - start;
+        long total = batches.stream().mapToLong(BatchResult::getTrades).sum();
+        return IngestionResult.builder()
+                .trades(total)
+                .duplicates(batches.stream().mapToLong(BatchResult::getDuplicates).sum())
+                .elapsedMillis(elapsedNanos / 1_000_000)
+                .tradesPerSecond(perSecond(total, elapsedNanos))
+                .batches(batches)
+                .build();
+    }
+
+    //Folds every trade of a ticker into its holding once, then writes holdings and trades through
+    //JDBC batching. The persistence context is cleared afterwards so memory stays flat across batches.
+    //Trades with an idempotency key already used are skipped, so a retried batch changes nothing.
+    private BatchResult addTradeBatch(String portfolioId, int number, List<Trade> batch) {
+        long start = System.nanoTime();
+        for (int index = 0; index < batch.size(); index++) {
+            Trade trade = batch.get(index);
+            try {
+                assertValidTradeValues(trade);
+            } catch (InvalidTransactionException invalidTransactionException) {
+                throw batchException(number, index, invalidTransactionException);
+            }
+            trade.setTradeId(null);
+            trade.setHoldingApplied(true);
+            stampExecutionTime(trade);
+        }
+        List<Trade> trades = dropDuplicates(portfolioId, batch);
+        Set<String> tickers = trades.stream().map(Trade::getTicker).collect(Collectors.toSet());
+        trades.stream()
+                .collect(Collectors.toMap(Trade::getTicker, Trade::getLastUpdated, BinaryOperator.minBy(Comparator.naturalOrder())))
+                .forEach((ticker, executedAt) -> holdingHistory.invalidate(portfolioId, ticker, executedAt));
+        Map<String, Holding> existing = holdingWriteBehind.findAllById(tickers.stream()
+                .map(ticker -> new HoldingId(portfolioId, ticker))
+                .collect(Collectors.toList()));
+        Map<String, Holding> holdings = new HashMap<>(existing);
+        //trades keeps the batch's order, so each trade's position in the batch is found by walking both
+        int index = 0;
+        for (Trade trade : trades) {
+            while (batch.get(index) != trade) {
+                index++;
+            }
+            try {
+                Utils.addTradeToHolding(holdings.computeIfAbsent(trade.getTicker(), ticker -> newHolding(trade)), trade);
+            } catch (InvalidTransactionException invalidTransactionException) {
+                throw batchException(number, index, invalidTransactionException);
+            }
+            index++;
+        }
+        if (holdingWriteBehind.isEnabled()) {
+            holdings.values().forEach(this::saveHolding);
+        } else {
+            for (Holding holding : holdings.values()) {
+                boolean managed = existing.containsKey(holding.getTicker());
+                if (BigInteger.ZERO.equals(holding.getShares())) {
+                    if (managed) {
+                        entityManager.remove(holding);
+                    }
+                    holdingCache.remove(portfolioId, holding.getTicker());
+                    returnsLedger.put(holding);
+                    continue;
+                }
+                if (!managed) {
+                    entityManager.persist(holding);
+                }
+                holdingCache.put(holding);
+                returnsLedger.put(holding);
+            }
+        }
+        trades.forEach(entityManager::persist);
+        trades.forEach(trade -> tradeJournal.append(TradeType.ADD, trade));
+        trades.forEach(trade -> columnarTradeStore.append(TradeType.ADD, trade));
+        trades.forEach(trade -> tradeIndex.apply(TradeType.ADD, trade));
+        trades.forEach(tradeDedupIndex::record);
+        entityManager.flush();
+        entityManager.clear();
+        trades.stream()
+                .collect(Collectors.groupingBy(Trade::getTicker))
+                .forEach((ticker, ofTicker) -> holdingHistory.written(portfolioId, ticker, ofTicker.size(), ofTicker.stream()
+                        .map(Trade::getLastUpdated)
+                        .max(Comparator.naturalOrder())
+                        .orElse(null)));
+        batchRecomputes.increment(holdings.size());
+        batchSizes.record(trades.size());
+        long elapsedNanos = System.nanoTime() - start;
+        BatchResult result = BatchResult.builder()
+                .batch(number)
+                .trades(trades.size())
+                .duplicates(batch.size() - trades.size())
+                .holdings(holdings.size())
+                .elapsedMillis(elapsedNanos / 1_000_000)
+                .tradesPerSecond(perSecond(trades.size(), elapsedNanos))
+                .build();
+        log.info("Committed trade batch {} of portfolio {} : {} trades, {} holdings in {} ms ({} trades/s)", number, portfolioId,
+                result.getTrades(), result.getHoldings(), result.getElapsedMillis(), result.getTradesPerSecond());
+        return result;
+    }
+
+    //Trades of the batch without an idempotency key, or with a key neither saved before nor used earlier in the batch
+    private List<Trade> dropDuplicates(String portfolioId, List<Trade> batch) {
+        Set<String> keys = batch.stream()
+                .map(Trade::getIdempotencyKey)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (keys.isEmpty()) {
+            return batch;
+        }
+        Set<String> used = new HashSet<>(tradeDedupIndex.findAll(portfolioId, keys).keySet());
+        List<Trade> trades = new ArrayList<>(batch.size());
+        for (Trade trade : batch) {
+            if (null == trade.getIdempotencyKey() || used.add(trade.getIdempotencyKey())) {
+                trades.add(trade);
+            }
+        }
+        return trades;
+    }
+
+    private static InvalidTransactionException batchException(int batch, int index, InvalidTransactionException cause) {
+        return new InvalidTransactionException(String.format("Batch %d, trade %d : %s", batch, index + 1, cause.getMessage()));
+    }
+
+    private static long perSecond(long count, long elapsedNanos) {
+        return 0 == elapsedNanos ? count : count * 1_000_000_000L / elapsedNanos;
+    }
+
+    //update the trade of the portfolio. Holdings of both the old and the new ticker are locked, if the stored
+    //trade moves to another ticker before the locks are taken the update is retried.
+    @Timed(value = "portfolio.service", histogram = true)
+    public Trade updateTrade(String portfolioId, Long id, Trade trade) {
+        trade.setTradeId(id);
+        trade.setPortfolioId(portfolioId);
+        stampExecutionTime(trade);
+        while (true) {
+            String ticker = findTrade(portfolioId, id).getTicker();
+            Optional<Trade> updated = tickerLocks.withLocks(portfolioId, Arrays.asList(ticker, trade.getTicker()),
+                    () -> transactionTemplate.execute(status -> {
+                        Trade existingTrade = findTrade(portfolioId, id);
+                        if (!existingTrade.getTicker().equals(ticker)) {
+                            return Optional.<Trade>empty();
+                        }
+                        assertHoldingPresent(portfolioId, trade.getTicker());
+                        trade.setIdempotencyKey(existingTrade.getIdempotencyKey());
+                        trade.setHoldingApplied(true);
+                        holdingHistory.invalidate(portfolioId, existingTrade.getTicker(), existingTrade.getLastUpdated());
+                        holdingHistory.invalidate(portfolioId, trade.getTicker(), trade.getLastUpdated());
+                        //a trade inserted outside the service and not refreshed yet has nothing to take back
+                        List<Holding> holdings = isFolded(portfolioId, existingTrade)
+                                ? Utils.updateTradeInHolding(getHoldingByTrade(existingTrade), existingTrade, getHoldingByTrade(trade), trade)
+                                : Collections.singletonList(Utils.addTradeToHolding(getHoldingByTrade(trade), trade));
+                        holdings.forEach(this::saveHolding);
+                        tradeRecomputes.increment(holdings.size());
+                        tradeJournal.append(TradeType.DELETE, existingTrade);
+                        columnarTradeStore.append(TradeType.DELETE, existingTrade);
+                        tradeIndex.apply(TradeType.DELETE, existingTrade);
+
+                        //saving existingTrade to update them
+                        Trade savedTrade = tradeRepository.save(trade);
+                        holdingHistory.written(portfolioId, savedTrade.getTicker(), 1, savedTrade.getLastUpdated());
+                        tradeJournal.append(TradeType.ADD, savedTrade);
+                        columnarTradeStore.append(TradeType.ADD, savedTrade);
+                        tradeIndex.apply(TradeType.ADD, savedTrade);
+                        return Optional.of(savedTrade);
+                    }));
+            if (updated.isPresent()) {
+                return updated.get();
+            }
+        }
+    }
+
+    private Trade findTrade(String portfolioId, Long id) {
+        return getTrade(portfolioId, id).orElseThrow(
                 ()-> new NotFoundException("trade id - "+id+ "is not found")
         );
+    }
 
-        assertHoldingPresent(trade.getTicker());
-        List<Holding> holdings = Utils.updateTradeInHolding(getHoldingByTrade(existingTrade), existingTrade, getHoldingByTrade(trade), trade);
-        holdingRepository.saveAll(holdings);
+    //method to delete trade of the portfolio by id, committed while the ticker of the trade is locked
+    @Timed(value = "portfolio.service", histogram = true)
+    public Optional<Trade> deleteTrade(String portfolioId, Long id) {
+        while (true) {
+            Optional<Trade> tradeOptional = getTrade(portfolioId, id);
+            if (!tradeOptional.isPresent()) {
+                return Optional.empty();
+            }
+            String ticker = tradeOptional.get().getTicker();
+            Optional<Optional<Trade>> deleted = tickerLocks.withLock(portfolioId, ticker, () -> transactionTemplate.execute(status -> {
+                Optional<Trade> current = getTrade(portfolioId, id);
+                if (current.isPresent() && !current.get().getTicker().equals(ticker)) {
+                    return Optional.<Optional<Trade>>empty();
+                }
+                current.ifPresent(trade -> {
+                    assertHoldingPresent(portfolioId, trade.getTicker());
+                    holdingHistory.invalidate(portfolioId, trade.getTicker(), trade.getLastUpdated());
+                    if (isFolded(portfolioId, trade)) {
+                        saveHolding(Utils.deleteTradeFromHolding(getHoldingByTrade(trade), trade));
+                        tradeRecomputes.increment();
+                    }
+                    tradeJournal.append(TradeType.DELETE, trade);
+                    columnarTradeStore.append(TradeType.DELETE, trade);
+                    tradeIndex.apply(TradeType.DELETE, trade);
+                    tradeDedupIndex.forget(trade);
+                    deleteTrade(trade);
+                });
+                return Optional.of(current);
+            }));
+            if (deleted.isPresent()) {
+                return deleted.get();
+            }
+        }
+    }
 
-        //saving existingTrade to update them
-        tradeRepository.save(trade);
-        return trade;
+    //Groups all the securities and trades corresponding to it.
+    //Trades are loaded in a single ordered query instead of one query per ticker.
+    @Transactional(readOnly = true)
+    @Timed(value = "portfolio.service", histogram = true)
+    public List<Portfolio> getPortfolio(String portfolioId) {
+        Set<String> tickers = getHoldings(portfolioId).stream()
+                .map(Holding::getTicker)
+                .collect(Collectors.toSet());
+        try (Stream<Trade> trades = tradeRepository.streamByPortfolioIdOrderByTickerAscLastUpdatedAscTradeIdAsc(portfolioId)) {
+            return Utils.getPortfoliosFromSortedTrades(trades, tickers);
+        }
     }
 
-    //method to delete trade by id
-    public Optional<Trade> deleteTrade(Long id) {
-        Optional<Trade> tradeOptional = getTrade(id);
-        if (!tradeOptional.isPresent()) {
-            return Optional.empty();
+
+    //Saves or updates holding in db. If given holding has shares or price as zero,
+    //it deletes the holding from db. With write-behind the holding is staged and written by a later group commit.
+    //The holdings cache and the returns ledger follow once the transaction commits.
+    public void saveHolding(Holding holding) {
+        boolean empty = BigInteger.ZERO.equals(holding.getShares());
+        Holding saved = holding;
+        if (holdingWriteBehind.isEnabled()) {
+            holdingWriteBehind.stage(holding);
+        } else if (empty) {
+            holdingRepository.deleteById(new HoldingId(holding.getPortfolioId(), holding.getTicker()));
+        } else {
+            saved = holdingRepository.save(holding);
         }
-        Trade trade = tradeOptional.get();
-        assertHoldingPresent(trade.getTicker());
-        Holding holding = Utils.deleteTradeFromHolding(getHoldingByTrade(trade), trade);
-        saveHolding(holding);
-        deleteTrade(trade);
-        return tradeOptional;
+        if (empty) {
+            holdingCache.remove(holding.getPortfolioId(), holding.getTicker());
+            returnsLedger.put(holding);
+            return;
+        }
+        holdingCache.put(saved);
+        returnsLedger.put(saved);
     }
 
-    //Groups all the securities and trades corresponding to it.
-    public List<Portfolio> getPortfolio() {
-        return getHoldings().stream().map(Holding::getTicker)
-                .map(this::getPortfolioByTicker)
+    //method to get trade of the portfolio based on trade id
+    public Optional<Trade> getTrade(String portfolioId, Long id) {
+        return tradeRepository.findByTradeIdAndPortfolioId(id, portfolioId);
+    }
+
+    //method to return the list of all trades of the portfolio
+    public List<Trade> getTrades(String portfolioId) {
+        return tradeRepository.findByPortfolioId(portfolioId);
+    }
+
+    //method to return a page of the portfolio's trades with id greater than the cursor, null cursor starts from the first trade
+    public List<Trade> getTrades(String portfolioId, Long after, int limit) {
+        return tradeRepository.findByPortfolioIdAndTradeIdGreaterThanOrderByTradeIdAsc(portfolioId,
+                null == after ? Long.MIN_VALUE : after, PageRequest.of(0, limit));
+    }
+
+    //Trades of the ticker executed between from and to, both included, in execution order, at most limit of them
+    public List<Trade> getTradesBetween(String portfolioId, String ticker, LocalDateTime from, LocalDateTime to, int limit) {
+        if (tradeIndex.isEnabled()) {
+            return tradeIndex.findByTickerBetween(portfolioId, ticker, from, to, limit);
+        }
+        return tradeRepository.findByPortfolioIdAndTickerAndLastUpdatedBetweenOrderByLastUpdatedAscTradeIdAsc(
+                portfolioId, ticker, from, to, PageRequest.of(0, limit));
+    }
+
+    //The limit trades of the portfolio with the largest notional (price times shares), largest first
+    public List<Trade> getTopTradesByNotional(String portfolioId, int limit) {
+        if (tradeIndex.isEnabled()) {
+            return tradeIndex.findTopByNotional(portfolioId, limit);
+        }
+        return tradeRepository.findByPortfolioIdOrderByNotionalDesc(portfolioId, PageRequest.of(0, limit));
+    }
+
+    //The limit most recently executed trades of the portfolio across all tickers, most recent first
+    public List<Trade> getRecentTrades(String portfolioId, int limit) {
+        if (tradeIndex.isEnabled()) {
+            return tradeIndex.findMostRecent(portfolioId, limit);
+        }
+        return tradeRepository.findByPortfolioIdOrderByLastUpdatedDescTradeIdDesc(portfolioId, PageRequest.of(0, limit));
+    }
+
+    //Hands every trade to the consumer in id order without materialising the full list.
+    //Each trade is detached once consumed so the persistence context stays flat.
+    @Transactional(readOnly = true)
+    public void streamTrades(String portfolioId, Consumer<Trade> consumer) {
+        try (Stream<Trade> trades = tradeRepository.streamByPortfolioIdOrderByTradeIdAsc(portfolioId)) {
+            trades.forEach(trade -> {
+                consumer.accept(trade);
+                entityManager.detach(trade);
+            });
+        }
+    }
+
+    //method to get holding of the portfolio corresponding to the ticker symbol
+    public Optional<Holding> getHolding(String portfolioId, String ticker) {
+        return holdingCache.get(portfolioId, ticker);
+    }
+
+    //method to return list of all holdings of the portfolio, a shared read-only snapshot while the cache holds all of them
+    public List<Holding> getHoldings(String portfolioId) {
+        return holdingCache.getAll(portfolioId);
+    }
+
+    //Counters of the holdings cache
+    public HoldingCacheStats getHoldingCacheStats() {
+        return holdingCache.getStats();
+    }
+
+    //method to return a page of the portfolio's holdings with ticker after the cursor, null cursor starts from the first holding
+    public List<Holding> getHoldings(String portfolioId, String after, int limit) {
+        holdingWriteBehind.flush(portfolioId);
+        return holdingRepository.findByPortfolioIdAndTickerGreaterThanOrderByTickerAsc(portfolioId,
+                null == after ? "" : after, PageRequest.of(0, limit));
+    }
+
+    //Hands every holding of the portfolio to the consumer in ticker order without materialising the full list
+    @Transactional(readOnly = true)
+    public void streamHoldings(String portfolioId, Consumer<Holding> consumer) {
+        holdingWriteBehind.flush(portfolioId);
+        try (Stream<Holding> holdings = holdingRepository.streamByPortfolioIdOrderByTickerAsc(portfolioId)) {
+            holdings.forEach(holding -> {
+                consumer.accept(holding);
+                entityManager.detach(holding);
+            });
+        }
+    }
+
+    //Writes every trade of the portfolio into the channel in the given format, returns the number of rows
+    public long exportTrades(String portfolioId, ExportFormat format, ExportCompression compression,
+                             WritableByteChannel channel) throws IOException {
+        return tradeExporter.exportTrades(portfolioId, format, compression, channel);
+    }
+
+    //Writes every holding of the portfolio into the channel in the given format, returns the number of rows
+    public long exportHoldings(String portfolioId, ExportFormat format, ExportCompression compression,
+                               WritableByteChannel channel) throws IOException {
+        return tradeExporter.exportHoldings(portfolioId, format, compression, channel);
+    }
+
+    //Exports the trades of the portfolio into a file of the export directory
+    public ExportResult exportTradesToFile(String portfolioId, ExportFormat format, ExportCompression compression) throws IOException {
+        return tradeExporter.exportTradesToFile(portfolioId, format, compression);
+    }
+
+    //Exports the holdings of the portfolio into a file of the export directory
+    public ExportResult exportHoldingsToFile(String portfolioId, ExportFormat format, ExportCompression compression) throws IOException {
+        return tradeExporter.exportHoldingsToFile(portfolioId, format, compression);
+    }
+
+    //Refreshes the holdings of the portfolio by folding in the trades above its watermark that the service did not
+    //fold when writing them, i.e. trades inserted outside the service. Every trade of the portfolio is folded once
+    //it holds all the portfolio's locks, so the watermark then moves to its highest trade id. Returns the holdings
+    //that changed.
+    @Timed(value = "portfolio.service", histogram = true)
+    public List<Holding> refreshHoldings(String portfolioId) {
+        ensureWatermark(portfolioId);
+        return tickerLocks.withAllLocks(portfolioId, () -> transactionTemplate.execute(status -> refreshHoldingsLocked(portfolioId)));
+    }
+
+    private List<Holding> refreshHoldingsLocked(String portfolioId) {
+        Map<String, HoldingAggregate> aggregates = new HashMap<>();
+        Map<String, LocalDateTime> earliest = new HashMap<>();
+        try (Stream<Trade> trades = tradeRepository.streamUnappliedAfter(portfolioId, getWatermark(portfolioId))) {
+            holdingsRecomputer.applyTrades(trades.peek(trade -> {
+                        tradeJournal.append(TradeType.ADD, trade);
+                        columnarTradeStore.append(TradeType.ADD, trade);
+                        tradeIndex.apply(TradeType.ADD, trade);
+                        if (null != trade.getLastUpdated()) {
+                            earliest.merge(trade.getTicker(), trade.getLastUpdated(), BinaryOperator.minBy(Comparator.naturalOrder()));
+                        }
+                    }), aggregates,
+                    ticker -> holdingWriteBehind.findById(new HoldingId(portfolioId, ticker))
+                            .map(HoldingAggregate::of)
+                            .orElse(HoldingAggregate.empty(portfolioId, ticker)));
+        }
+        List<Holding> holdings = aggregates.values().stream()
+                .map(HoldingAggregate::toHolding)
                 .collect(Collectors.toList());
+        holdings.forEach(this::saveHolding);
+        refreshRecomputes.increment(holdings.size());
+        earliest.forEach((ticker, executedAt) -> holdingHistory.invalidate(portfolioId, ticker, executedAt));
+        tradeRepository.findTopByPortfolioIdOrderByTradeIdDesc(portfolioId)
+                .ifPresent(highest -> advanceWatermark(portfolioId, highest.getTradeId()));
+        return holdings;
     }
 
-    //Groups all the trades corresponding to a security.
-    private Portfolio getPortfolioByTicker(String ticker) {
-        return Portfolio.builder()
-                .ticker(ticker)
-                .trades(getTradesByTicker(ticker))
-                .build();
+    //Rebuilds every holding of the portfolio from scratch in one ordered pass over its trades and resets its watermark
+    @Timed(value = "portfolio.service", histogram = true)
+    public List<Holding> rebuildHoldings(String portfolioId) {
+        ensureWatermark(portfolioId);
+        return tickerLocks.withAllLocks(portfolioId, () -> {
+            holdingWriteBehind.flush(portfolioId);
+            return transactionTemplate.execute(status -> rebuildHoldingsLocked(portfolioId));
+        });
     }
 
+    private List<Holding> rebuildHoldingsLocked(String portfolioId) {
+        Map<String, HoldingAggregate> aggregates = new HashMap<>();
+        long highestTradeId;
+        try (Stream<Trade> trades = tradeRepository.streamByPortfolioIdOrderByTickerAscTradeIdAsc(portfolioId)) {
+            highestTradeId = holdingsRecomputer.applyTrades(trades, aggregates, ticker -> HoldingAggregate.empty(portfolioId, ticker));
+        }
+        holdingRepository.deleteByPortfolio(portfolioId);
+        List<Holding> holdings = holdingRepository.saveAll(aggregates.values().stream()
+                .filter(aggregate -> !aggregate.isEmpty())
+                .map(HoldingAggregate::toHolding)
+                .collect(Collectors.toList()));
+        rebuildRecomputes.increment(holdings.size());
+        holdingCache.replaceAll(portfolioId, holdings);
+        returnsLedger.invalidate(portfolioId);
+        tradeJournal.reset(portfolioId, holdings);
+        holdingHistory.invalidateAll(portfolioId);
+        holdingsWatermarkRepository.save(HoldingsWatermark.builder()
+                .name(HoldingsWatermark.holdings(portfolioId))
+                .tradeId(highestTradeId)
+                .build());
+        return holdings;
+    }
 
-    //Saves or updates holding in db. If given holding has shares or price as zero,
-    //it deletes the holding from db
-    public void saveHolding(Holding holding) {
-        if (BigInteger.ZERO.equals(holding.getShares())) {
-            holdingRepository.deleteById(holding.getTicker());
+    //Trade id up to which every trade of the portfolio is reflected in the holdings table. Only refresh and rebuild
+    //move it; trades the service writes above it are flagged as applied instead.
+    private long getWatermark(String portfolioId) {
+        return holdingsWatermarkRepository.findById(HoldingsWatermark.holdings(portfolioId))
+                .map(HoldingsWatermark::getTradeId)
+                .orElse(Long.MIN_VALUE);
+    }
+
+    //Moves the portfolio's watermark forward to tradeId in a single conditional update, it never moves back
+    private void advanceWatermark(String portfolioId, long tradeId) {
+        holdingsWatermarkRepository.advance(HoldingsWatermark.holdings(portfolioId), tradeId);
+    }
+
+    //Whether the holding of the trade already reflects it: the service folded it when writing it, or a refresh or
+    //rebuild did
+    private boolean isFolded(String portfolioId, Trade trade) {
+        return Boolean.TRUE.equals(trade.getHoldingApplied()) || trade.getTradeId() <= getWatermark(portfolioId);
+    }
+
+    //Creates the portfolio's watermark row, committed before any writer of the portfolio takes its locks.
+    //Holdings of an existing database already reflect its trades, so the watermark starts at the
+    //highest trade id of the portfolio.
+    private void ensureWatermark(String portfolioId) {
+        if (watermarkedPortfolios.contains(portfolioId)) {
             return;
         }
-        holdingRepository.save(holding);
+        synchronized (watermarkedPortfolios) {
+            if (watermarkedPortfolios.contains(portfolioId)) {
+                return;
+            }
+            watermarkTransactionTemplate.executeWithoutResult(status -> {
+                String name = HoldingsWatermark.holdings(portfolioId);
+                if (!holdingsWatermarkRepository.existsById(name)) {
+                    holdingsWatermarkRepository.save(HoldingsWatermark.builder()
+                            .name(name)
+                            .tradeId(tradeRepository.findTopByPortfolioIdOrderByTradeIdDesc(portfolioId)
+                                    .map(Trade::getTradeId)
+                                    .orElse(Long.MIN_VALUE))
+                            .build());
+                }
+            });
+            watermarkedPortfolios.add(portfolioId);
+        }
     }
 
-    //method to get trade based on trade id
-    public Optional<Trade> getTrade(Long id) {
-        return tradeRepository.findById(id);
+    //Restores empty tables from the journal, which is far cheaper than recomputing from trades. An empty trades table
+    //gets back the journaled trades with their ids, and journaled holdings are only restored along with their trades.
+    //An empty holdings table is then seeded from the journal; a journal that is still empty starts from the holdings
+    //already in the table instead. Holds every stripe of every known portfolio, so no trade can be written between
+    //the checks and the writes. Called by StartupRecovery before the web server starts.
+    public void restoreFromJournal() {
+        if (!tradeJournal.isEnabled()) {
+            return;
+        }
+        List<Holding> journaled = tradeJournal.getHoldings();
+        List<Trade> journaledTrades = 0 == tradeRepository.count() ? tradeJournal.getTrades() : Collections.emptyList();
+        Set<String> portfolioIds = new HashSet<>(tradeRepository.findDistinctPortfolioIds());
+        journaled.forEach(holding -> portfolioIds.add(holding.getPortfolioId()));
+        journaledTrades.forEach(trade -> portfolioIds.add(trade.getPortfolioId()));
+        List<Trade> restored = tickerLocks.withAllLocks(portfolioIds, () -> transactionTemplate.execute(status -> {
+            List<Trade> trades = 0 == tradeRepository.count() ? journaledTrades : Collections.emptyList();
+            if (!trades.isEmpty()) {
+                insertTrades(trades);
+                log.info("Restored {} trades from the trade journal", trades.size());
+            }
+            if (0 == holdingRepository.count() && !journaled.isEmpty()) {
+                if (0 == tradeRepository.count()) {
+                    log.warn("Not restoring {} journaled holdings without their trades", journaled.size());
+                    return trades;
+                }
+                holdingRepository.saveAll(journaled).stream()
+                        .collect(Collectors.groupingBy(Holding::getPortfolioId))
+                        .forEach((portfolioId, holdings) -> {
+                            holdingCache.replaceAll(portfolioId, holdings);
+                            returnsLedger.invalidate(portfolioId);
+                        });
+                log.info("Restored {} holdings from the trade journal", journaled.size());
+            } else if (journaled.isEmpty()) {
+                tradeJournal.reset(holdingRepository.findAll());
+            }
+            return trades;
+        }));
+        if (!restored.isEmpty()) {
+            long highestTradeId = restored.get(restored.size() - 1).getTradeId();
+            //ids are pooled 1000 at a time and the block handed out ends at the value the sequence returns,
+            //so the next block has to end 1000 above the highest restored id
+            jdbcTemplate.execute("ALTER SEQUENCE trade_id_seq RESTART WITH " + (highestTradeId + 1000));
+            restored.stream().map(Trade::getPortfolioId).distinct().forEach(this::ensureWatermark);
+        }
     }
 
-    //method to return the list of all trades
-    public List<Trade> getTrades() {
-        return tradeRepository.findAll();
+    //Inserts trades keeping their ids, then feeds them to the in-memory views the way addTradeBatch does.
+    //They are already journaled.
+    private void insertTrades(List<Trade> trades) {
+        jdbcTemplate.batchUpdate("INSERT INTO trades (trade_id, portfolio_id, ticker, transaction_type, price, shares, last_updated, idempotency_key, holding_applied)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, TRUE)", trades, ingestBatchSize, (statement, trade) -> {
+            statement.setLong(1, trade.getTradeId());
+            statement.setString(2, trade.getPortfolioId());
+            statement.setString(3, trade.getTicker());
+            statement.setString(4, trade.getTransactionType().name());
+            statement.setBigDecimal(5, trade.getPrice());
+            statement.setBigDecimal(6, new BigDecimal(trade.getShares()));
+            statement.setTimestamp(7, null == trade.getLastUpdated() ? null : Timestamp.valueOf(trade.getLastUpdated()));
+            statement.setString(8, trade.getIdempotencyKey());
+        });
+        trades.forEach(trade -> columnarTradeStore.append(TradeType.ADD, trade));
+        trades.forEach(trade -> tradeIndex.apply(TradeType.ADD, trade));
+        trades.forEach(tradeDedupIndex::record);
     }
 
-    //method to get holding corresponding to the ticker symbol
-    public Optional<Holding> getHolding(String ticker) {
-        return holdingRepository.findById(ticker);
+    //Rebuilds every portfolio from its trades when the previous run stopped with staged holdings possibly unwritten.
+    //Each rebuild holds every stripe of its portfolio. Called by StartupRecovery after the journal restore, whose
+    //holdings it overrides, and before the web server starts.
+    public void recoverWriteBehindHoldings() {
+        if (!holdingWriteBehind.isRecoveryNeeded()) {
+            return;
+        }
+        List<String> portfolioIds = tradeRepository.findDistinctPortfolioIds();
+        portfolioIds.forEach(this::rebuildHoldings);
+        holdingWriteBehind.recovered();
+        log.info("Rebuilt the holdings of {} portfolios after an unclean stop with write-behind", portfolioIds.size());
     }
 
-    //method to return list of all holdings
-    public List<Holding> getHoldings() {
-        return holdingRepository.findAll();
+    //Unrealized returns of the portfolio, read from the incrementally maintained returns ledger
+    @Timed(value = "portfolio.service", histogram = true)
+    public Optional<BigDecimal> getReturns(String portfolioId) {
+        return returnsLedger.getReturns(portfolioId);
     }
 
-    //Refreshes all the holdings by recalculating based on all trades present.
-    public List<Holding> refreshHoldings() {
-        return holdingRepository.saveAll(Utils.getHoldingsFromTrades(getTrades()));
+    //Cost basis, market value and realized/unrealized profit of the portfolio, in total and per ticker
+    public Optional<PortfolioReturns> getReturnsBreakdown(String portfolioId) {
+        return returnsLedger.getBreakdown(portfolioId);
     }
 
+    //Saves daily closing prices, replacing bars of the same ticker and day, returns the number saved
+    public int addPriceBars(List<PriceBar> bars) {
+        return priceHistory.save(bars);
+    }
 
+    //Time-weighted return, volatility and drawdown of the portfolio and of each ticker it traded between the two days
+    @Timed(value = "portfolio.service", histogram = true)
+    public Optional<PortfolioAnalytics> getAnalytics(String portfolioId, LocalDate from, LocalDate to) {
+        return riskAnalytics.analyze(portfolioId, from, to);
+    }
 
-    //Takes all the holdings and calculates the returns
-    public Optional<BigDecimal> getReturns() {
-        return getHoldings().stream()
-                .map(this::getReturnsByHolding)
-                .reduce(BigDecimal::add);
+    //Correlation of the daily returns of the tickers between the two days, the portfolio's holdings when no tickers are given
+    @Timed(value = "portfolio.service", histogram = true)
+    public Optional<CorrelationMatrix> getCorrelations(String portfolioId, List<String> tickers, LocalDate from, LocalDate to) {
+        if (null == tickers || tickers.isEmpty()) {
+            tickers = getHoldings(portfolioId).stream().map(Holding::getTicker).collect(Collectors.toList());
+        }
+        return riskAnalytics.correlate(tickers, from, to);
     }
 
-    //Takes holding and calculates its return
-    private BigDecimal getReturnsByHolding(Holding holding) {
-        BigDecimal priceDifference = getCurrentPrice(holding).subtract(holding.getAverageBuyPrice());
-        return priceDifference.multiply(BigDecimal.valueOf(holding.getShares().intValue()));
+    //Subscribes to position and returns changes of the portfolio as Server-Sent Events
+    public SseEmitter subscribeToReturns(String portfolioId) {
+        return returnsStream.subscribe(portfolioId);
+    }
+
+    //Holding of the ticker as it was right after the last trade executed at or before the given time,
+    //folded from the columnar store when it is enabled, otherwise from checkpoints and the trades table
+    public Optional<Holding> getHoldingAsOf(String portfolioId, String ticker, LocalDateTime at) {
+        if (columnarTradeStore.isEnabled()) {
+            return columnarTradeStore.getHoldingAsOf(portfolioId, ticker, at);
+        }
+        return holdingHistory.getHoldingAsOf(portfolioId, ticker, at);
+    }
+
+    //Every holding of the portfolio as it was at the given time
+    @Timed(value = "portfolio.service", histogram = true)
+    public List<Holding> getHoldingsAsOf(String portfolioId, LocalDateTime at) {
+        if (columnarTradeStore.isEnabled()) {
+            return columnarTradeStore.getHoldingsAsOf(portfolioId, at);
+        }
+        return holdingHistory.getHoldingsAsOf(portfolioId, at);
+    }
+
+    //Returns of the portfolio's holdings as they were at the given time, valued at current prices
+    @Timed(value = "portfolio.service", histogram = true)
+    public Optional<BigDecimal> getReturnsAsOf(String portfolioId, LocalDateTime at) {
+        List<Holding> holdings = getHoldingsAsOf(portfolioId, at);
+        Map<String, BigDecimal> prices = quoteCache.getPrices(holdings.stream()
+                .map(Holding::getTicker)
+                .collect(Collectors.toList()));
+        return holdingsRecomputer.sum(holdings, holding -> getReturnsByHolding(holding, prices.get(holding.getTicker())));
+    }
+
+    //Takes holding and calculates its return at the given price
+    private BigDecimal getReturnsByHolding(Holding holding, BigDecimal currentPrice) {
+        BigDecimal priceDifference = currentPrice.subtract(holding.getAverageBuyPrice());
+        return priceDifference.multiply(new BigDecimal(holding.getShares()));
     }
 
     //checks if that Holding is present for a ticker.
-    private void assertHoldingPresent(String ticker) {
-        Optional<Holding> holdingOptional = getHolding(ticker);
+    private void assertHoldingPresent(String portfolioId, String ticker) {
+        Optional<Holding> holdingOptional = getHolding(portfolioId, ticker);
         if (!holdingOptional.isPresent()) {
-            log.error("No Holding found with ticker : {}", ticker);
+            log.error("No Holding found in portfolio {} with ticker : {}", portfolioId, ticker);
         }
     }
 
-    //Gets all the trades corresponding to a ticker
-    public List<Trade> getTradesByTicker(String ticker) {
-        return tradeRepository.findByTicker(ticker);
+    //Gets all the trades of the portfolio corresponding to a ticker
+    public List<Trade> getTradesByTicker(String portfolioId, String ticker) {
+        return tradeRepository.findByPortfolioIdAndTicker(portfolioId, ticker);
+    }
+
+    //Takes the ticker and tells it's current price through the quote cache
+    public BigDecimal getCurrentPrice(String ticker) {
+        return quoteCache.getPrice(ticker);
+    }
+
+    //Counters of the quote cache
+    public QuoteCacheStats getQuoteCacheStats() {
+        return quoteCache.getStats();
     }
 
-    //Takes the holding and tells it's current price using it's ticker (default-100)
-    private BigDecimal getCurrentPrice(Holding holding) {
-        return BigDecimal.valueOf(100);
+    //Counters of the price tick queue
+    public TickStats getTickStats() {
+        return priceTicks.getStats();
+    }
+
+    //Size of the columnar trade store
+    public TradeStoreStats getTradeStoreStats() {
+        return columnarTradeStore.getStats();
     }
 
     //method to add trade to holdings, if not present
     private Holding getHoldingByTrade(Trade trade) {
-        return holdingRepository.findById(trade.getTicker())
-                .orElse(Holding.builder()
-                        .ticker(trade.getTicker())
-                        .shares(BigInteger.ZERO)
-                        .totalPrice(BigDecimal.ZERO)
-                        .averageBuyPrice(BigDecimal.ZERO)
-                        .build());
+        return holdingWriteBehind.findById(new HoldingId(trade.getPortfolioId(), trade.getTicker()))
+                .orElse(newHolding(trade));
+    }
+
+    //empty holding for the ticker of the trade
+    private static Holding newHolding(Trade trade) {
+        return Holding.builder()
+                .portfolioId(trade.getPortfolioId())
+                .ticker(trade.getTicker())
+                .shares(BigInteger.ZERO)
+                .totalPrice(BigDecimal.ZERO)
+                .averageBuyPrice(BigDecimal.ZERO)
+                .realizedProfit(BigDecimal.ZERO)
+                .build();
+    }
+
+    //trades without an execution time are taken as executed now, so they are part of the as-of history
+    private static void stampExecutionTime(Trade trade) {
+        if (null == trade.getLastUpdated()) {
+            trade.setLastUpdated(LocalDateTime.now());
+        }
     }
 
     //check whether the given trade is valid or not
     //checks for all basic validations
-    public void isValidTrade(Trade trade) {
-        Optional<Holding> holding = getHolding(trade.getTicker());
+    public void isValidTrade(String portfolioId, Trade trade) {
+        Optional<Holding> holding = getHolding(portfolioId, trade.getTicker());
         if (TransactionType.SELL == trade.getTransactionType() && !holding.isPresent()) {
             throw new InvalidTransactionException("No shares available to sell");
+        }
+        assertValidTradeValues(trade);
+    }
+
+    //checks the fields of a trade without touching the db
+    private void assertValidTradeValues(Trade trade) {
+        if (null == trade.getTicker() || trade.getTicker().isEmpty()) {
+            throw new InvalidTransactionException("Ticker cannot be empty");
+        } else if (null == trade.getTransactionType()) {
+            throw new InvalidTransactionException("Transaction type should be BUY or SELL");
+        } else if (null == trade.getShares() || null == trade.getPrice()) {
+            throw new InvalidTransactionException("Shares and price are required");
         } else if (0 == BigInteger.ZERO.compareTo(trade.getShares())) {
             throw new InvalidTransactionException("Shares cannot be zero");
         } else if (0 < BigInteger.ZERO.compareTo(trade.getShares())) {
@@ -0,0 +1,139 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.PriceBar;
+import com.application.portfoliotracker.exceptions.BadRequestException;
+import com.application.portfoliotracker.repositories.PriceBarRepository;
+import com.application.portfoliotracker.utils.AfterCommit;
+import com.application.portfoliotracker.utils.PriceSeries;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Daily closing prices of every ticker. Bars are stored in the price_bars table and held in memory as one
+ * PriceSeries per ticker, loaded on startup. Saved bars are upserted in JDBC batches and reach the series once their
+ * transaction commits, merged into each ticker's series in one pass. A bar after the last one of its ticker updates
+ * the ticker's running statistics in constant time.
+ */
+@Slf4j
+@Component
+public class PriceHistory {
+
+    @Autowired
+    private PriceBarRepository priceBarRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${portfolio.ingest.batch-size:5000}")
+    private int batchSize;
+
+    private final ConcurrentHashMap<String, PriceSeries> series = new ConcurrentHashMap<>();
+
+    private final LongAdder applied = new LongAdder();
+
+    @Autowired
+    public PriceHistory(MeterRegistry meterRegistry) {
+        Gauge.builder("portfolio.analytics.tickers", series, Map::size)
+                .description("Tickers with a price history")
+                .register(meterRegistry);
+        FunctionCounter.builder("portfolio.analytics.bars", applied, LongAdder::sum)
+                .description("Price bars applied to the in-memory history")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<PriceBar> bars = priceBarRepository.streamAllByOrderByTickerAscBarDateAsc()) {
+                bars.forEach(this::apply);
+            }
+        });
+        log.info("Loaded {} price bars of {} tickers in {} ms", applied.sum(), series.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    //Saves the bars in one transaction, replacing bars of the same ticker and day, and applies them once it commits.
+    //Each bar is one MERGE in a JDBC batch, so a replaced bar costs no select.
+    public int save(List<PriceBar> bars) {
+        bars.forEach(PriceHistory::validate);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("MERGE INTO price_bars (ticker, bar_date, close) KEY (ticker, bar_date) VALUES (?, ?, ?)",
+                    bars, batchSize, (statement, bar) -> {
+                        statement.setString(1, bar.getTicker());
+                        statement.setDate(2, Date.valueOf(bar.getBarDate()));
+                        statement.setBigDecimal(3, bar.getClose());
+                    });
+            AfterCommit.run(() -> applyAll(bars));
+        });
+        return bars.size();
+    }
+
+    public Optional<PriceSeries> get(String ticker) {
+        return Optional.ofNullable(series.get(ticker));
+    }
+
+    //Series of the tickers that have bars, in the order of the tickers
+    public List<PriceSeries> getAll(List<String> tickers) {
+        List<PriceSeries> found = new ArrayList<>(tickers.size());
+        for (String ticker : tickers) {
+            PriceSeries prices = series.get(ticker);
+            if (null != prices) {
+                found.add(prices);
+            }
+        }
+        return found;
+    }
+
+    //Merges the bars into the series of their tickers, one putAll per ticker
+    private void applyAll(List<PriceBar> bars) {
+        Map<String, List<PriceBar>> byTicker = new LinkedHashMap<>();
+        bars.forEach(bar -> byTicker.computeIfAbsent(bar.getTicker(), ticker -> new ArrayList<>()).add(bar));
+        byTicker.forEach((ticker, tickerBars) -> {
+            int[] days = new int[tickerBars.size()];
+            double[] closes = new double[tickerBars.size()];
+            for (int index = 0; index < days.length; index++) {
+                days[index] = (int) tickerBars.get(index).getBarDate().toEpochDay();
+                closes[index] = tickerBars.get(index).getClose().doubleValue();
+            }
+            series.computeIfAbsent(ticker, PriceSeries::new).putAll(days, closes);
+        });
+        applied.add(bars.size());
+    }
+
+    private void apply(PriceBar bar) {
+        series.computeIfAbsent(bar.getTicker(), PriceSeries::new)
+                .put((int) bar.getBarDate().toEpochDay(), bar.getClose().doubleValue());
+        applied.increment();
+    }
+
+    private static void validate(PriceBar bar) {
+        if (null == bar.getTicker() || null == bar.getBarDate()) {
+            throw new BadRequestException("A price bar needs a ticker and a barDate");
+        }
+        if (null == bar.getClose() || bar.getClose().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new BadRequestException(String.format("Close of %s on %s should be greater than 0", bar.getTicker(), bar.getBarDate()));
+        }
+    }
+}
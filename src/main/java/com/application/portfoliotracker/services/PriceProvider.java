@@ -0,0 +1,25 @@
+package com.application.portfoliotracker.services;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Source of current market prices. Implementations are selected with portfolio.prices.provider
+ * and are always read through QuoteCache.
+ */
+public interface PriceProvider {
+
+    //Current price of the ticker, throws NotFoundException if the provider has no quote for it
+    BigDecimal getPrice(String ticker);
+
+    //Current prices of several tickers in one fetch, providers with a bulk API should override it
+    default Map<String, BigDecimal> getPrices(Collection<String> tickers) {
+        Map<String, BigDecimal> prices = new HashMap<>();
+        for (String ticker : tickers) {
+            prices.put(ticker, getPrice(ticker));
+        }
+        return prices;
+    }
+}
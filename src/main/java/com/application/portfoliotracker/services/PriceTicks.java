@@ -0,0 +1,177 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.TickStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process queue of price ticks. Ticks are coalesced per ticker while they wait, so a ticker that moves
+ * faster than the queue drains costs one update per batch instead of one per tick, and the queue never holds
+ * more than one tick per ticker. A single thread drains up to batch-size tickers at a time into the quote
+ * cache, whose listeners mark to market only the holdings of the ticked tickers. The thread blocks while the
+ * queue is empty, and it is started with the application when a tick source is configured, otherwise by the
+ * first published tick.
+ * Lag is measured from the publication of the newest tick of a ticker to its application.
+ */
+@Slf4j
+@Component
+public class PriceTicks implements DisposableBean {
+
+    private final QuoteCache quoteCache;
+
+    private final int batchSize;
+
+    private final ConcurrentHashMap<String, Tick> pending = new ConcurrentHashMap<>();
+
+    //Last applied price of every ticker, quoted by the ticks price provider
+    private final ConcurrentHashMap<String, BigDecimal> latest = new ConcurrentHashMap<>();
+
+    //Tickers with a pending tick, each queued once until it is drained
+    private final BlockingQueue<String> queued = new LinkedBlockingQueue<>();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private final Timer lag;
+
+    private final Thread drainer;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public PriceTicks(QuoteCache quoteCache, MeterRegistry meterRegistry,
+                      @Value("${portfolio.ticks.batch-size:10000}") int batchSize,
+                      @Value("${portfolio.ticks.source:none}") String source) {
+        this.quoteCache = quoteCache;
+        this.batchSize = batchSize;
+        this.lag = Timer.builder("portfolio.ticks.lag")
+                .description("Time from publishing a price tick to marking holdings with it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("portfolio.ticks.pending", pending, Map::size)
+                .description("Tickers with a tick waiting to be applied")
+                .register(meterRegistry);
+        FunctionCounter.builder("portfolio.ticks.received", received, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("portfolio.ticks.coalesced", coalesced, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("portfolio.ticks.applied", applied, LongAdder::sum).register(meterRegistry);
+        this.drainer = new Thread(this::drain, "price-ticks");
+        this.drainer.setDaemon(true);
+        if (!"none".equals(source)) {
+            startDrainer();
+        }
+    }
+
+    //Queues the price of the ticker, replacing a tick of the same ticker that is still waiting
+    public void publish(String ticker, BigDecimal price) {
+        if (!started.get()) {
+            startDrainer();
+        }
+        received.increment();
+        if (null == pending.put(ticker, new Tick(price, System.nanoTime()))) {
+            queued.offer(ticker);
+        } else {
+            coalesced.increment();
+        }
+    }
+
+    //Last applied price of the ticker, null if no tick of it was applied yet
+    public BigDecimal getLatestPrice(String ticker) {
+        return latest.get(ticker);
+    }
+
+    public TickStats getStats() {
+        return TickStats.builder()
+                .received(received.sum())
+                .coalesced(coalesced.sum())
+                .applied(applied.sum())
+                .batches(batches.sum())
+                .pending(pending.size())
+                .meanLagMicros((long) lag.mean(TimeUnit.MICROSECONDS))
+                .maxLagMicros((long) lag.max(TimeUnit.MICROSECONDS))
+                .build();
+    }
+
+    private void startDrainer() {
+        if (started.compareAndSet(false, true)) {
+            drainer.start();
+        }
+    }
+
+    //Blocks until a ticker is queued, then takes it and whatever else is queued, up to batch-size tickers
+    private void drain() {
+        Map<String, BigDecimal> batch = new HashMap<>();
+        long[] publishedAt = new long[batchSize];
+        while (running) {
+            String ticker;
+            try {
+                ticker = queued.take();
+            } catch (InterruptedException exception) {
+                return;
+            }
+            int size = 0;
+            do {
+                Tick tick = pending.remove(ticker);
+                if (null != tick) {
+                    batch.put(ticker, tick.price);
+                    publishedAt[size++] = tick.publishedAt;
+                }
+            } while (size < batchSize && null != (ticker = queued.poll()));
+            if (0 == size) {
+                continue;
+            }
+            latest.putAll(batch);
+            try {
+                quoteCache.putAll(batch);
+            } catch (RuntimeException exception) {
+                log.error("Failed to apply a batch of {} price ticks", size, exception);
+            }
+            long now = System.nanoTime();
+            for (int index = 0; index < size; index++) {
+                lag.record(now - publishedAt[index], TimeUnit.NANOSECONDS);
+            }
+            applied.add(size);
+            batches.increment();
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (started.get()) {
+            drainer.interrupt();
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private static final class Tick {
+        private final BigDecimal price;
+        private final long publishedAt;
+
+        private Tick(BigDecimal price, long publishedAt) {
+            this.price = price;
+            this.publishedAt = publishedAt;
+        }
+    }
+}
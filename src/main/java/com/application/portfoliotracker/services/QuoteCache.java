@@ -0,0 +1,239 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.QuoteCacheStats;
+import com.application.portfoliotracker.exceptions.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded cache in front of the PriceProvider. Quotes expire after the configured ttl and the least
+ * recently used quote is dropped once max-size is reached. Concurrent misses for a ticker share one fetch: the
+ * first claims it with computeIfAbsent and checks the cache again, so a miss racing a fetch that just finished
+ * takes the stored quote instead of fetching a second time.
+ * Listeners are told about every quote stored, on the thread that fetched it.
+ */
+@Component
+public class QuoteCache {
+
+    private final PriceProvider priceProvider;
+
+    private final long ttlNanos;
+
+    private final Map<String, Quote> quotes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<BigDecimal>> inFlight = new ConcurrentHashMap<>();
+
+    private final List<BiConsumer<String, BigDecimal>> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public QuoteCache(PriceProvider priceProvider,
+                      @Value("${portfolio.prices.cache.ttl:PT5S}") Duration ttl,
+                      @Value("${portfolio.prices.cache.max-size:10000}") int maxSize) {
+        this.priceProvider = priceProvider;
+        this.ttlNanos = ttl.toNanos();
+        this.quotes = new LinkedHashMap<String, Quote>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Quote> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //Current price of the ticker, fetched from the provider only when the cached quote is missing or expired
+    public BigDecimal getPrice(String ticker) {
+        BigDecimal cached = lookup(ticker, System.nanoTime());
+        if (null != cached) {
+            return cached;
+        }
+        CompletableFuture<BigDecimal> fetch = new CompletableFuture<>();
+        CompletableFuture<BigDecimal> running = inFlight.computeIfAbsent(ticker, key -> fetch);
+        if (fetch != running) {
+            coalesced.increment();
+            return await(running);
+        }
+        try {
+            BigDecimal price = fresh(ticker, System.nanoTime());
+            if (null == price) {
+                fetches.increment();
+                price = priceProvider.getPrice(ticker);
+                store(ticker, price);
+            }
+            fetch.complete(price);
+            return price;
+        } catch (RuntimeException exception) {
+            fetch.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            inFlight.remove(ticker, fetch);
+        }
+    }
+
+    //Current prices of all tickers. Every miss not already being fetched is loaded in one bulk provider call.
+    public Map<String, BigDecimal> getPrices(Collection<String> tickers) {
+        long now = System.nanoTime();
+        Map<String, BigDecimal> prices = new HashMap<>();
+        Map<String, CompletableFuture<BigDecimal>> owned = new HashMap<>();
+        Map<String, CompletableFuture<BigDecimal>> waiting = new HashMap<>();
+        for (String ticker : tickers) {
+            BigDecimal cached = lookup(ticker, now);
+            if (null != cached) {
+                prices.put(ticker, cached);
+                continue;
+            }
+            CompletableFuture<BigDecimal> fetch = new CompletableFuture<>();
+            CompletableFuture<BigDecimal> running = inFlight.computeIfAbsent(ticker, key -> fetch);
+            if (fetch != running) {
+                coalesced.increment();
+                waiting.put(ticker, running);
+                continue;
+            }
+            BigDecimal stored = fresh(ticker, System.nanoTime());
+            if (null == stored) {
+                owned.put(ticker, fetch);
+            } else {
+                fetch.complete(stored);
+                inFlight.remove(ticker, fetch);
+                prices.put(ticker, stored);
+            }
+        }
+        if (!owned.isEmpty()) {
+            NotFoundException missing = null;
+            try {
+                fetches.increment();
+                Map<String, BigDecimal> fetched = priceProvider.getPrices(owned.keySet());
+                //every priced ticker is stored even when others are missing, so a retry only fetches the missing ones
+                for (Map.Entry<String, CompletableFuture<BigDecimal>> entry : new TreeMap<>(owned).entrySet()) {
+                    BigDecimal price = fetched.get(entry.getKey());
+                    if (null == price) {
+                        NotFoundException notFound = new NotFoundException(String.format("No price found for ticker : %s", entry.getKey()));
+                        entry.getValue().completeExceptionally(notFound);
+                        missing = null == missing ? notFound : missing;
+                        continue;
+                    }
+                    store(entry.getKey(), price);
+                    entry.getValue().complete(price);
+                    prices.put(entry.getKey(), price);
+                }
+            } catch (RuntimeException exception) {
+                owned.values().forEach(fetch -> fetch.completeExceptionally(exception));
+                throw exception;
+            } finally {
+                owned.forEach(inFlight::remove);
+            }
+            if (null != missing) {
+                throw missing;
+            }
+        }
+        waiting.forEach((ticker, running) -> prices.put(ticker, await(running)));
+        return prices;
+    }
+
+    //Stores pushed quotes, e.g. a batch of price ticks, as if they had just been fetched
+    public void putAll(Map<String, BigDecimal> prices) {
+        long now = System.nanoTime();
+        synchronized (quotes) {
+            prices.forEach((ticker, price) -> quotes.put(ticker, new Quote(price, now)));
+        }
+        prices.forEach((ticker, price) -> listeners.forEach(listener -> listener.accept(ticker, price)));
+    }
+
+    //Last quote stored for the ticker, expired or not, without fetching. Null if it was never quoted or was evicted.
+    public BigDecimal peekPrice(String ticker) {
+        synchronized (quotes) {
+            Quote quote = quotes.get(ticker);
+            return null == quote ? null : quote.price;
+        }
+    }
+
+    //Registers a listener called with the ticker and price of every stored quote, outside any cache lock
+    public void addListener(BiConsumer<String, BigDecimal> listener) {
+        listeners.add(listener);
+    }
+
+    public QuoteCacheStats getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (quotes) {
+            size = quotes.size();
+        }
+        return QuoteCacheStats.builder()
+                .size(size)
+                .hits(hitCount)
+                .misses(missCount)
+                .coalesced(coalesced.sum())
+                .fetches(fetches.sum())
+                .evictions(evictions.sum())
+                .hitRate(0 == hitCount + missCount ? 0 : (double) hitCount / (hitCount + missCount))
+                .build();
+    }
+
+    private BigDecimal lookup(String ticker, long now) {
+        BigDecimal price = fresh(ticker, now);
+        if (null != price) {
+            hits.increment();
+            return price;
+        }
+        misses.increment();
+        return null;
+    }
+
+    //Cached price of the ticker if it has not expired, without counting a hit or a miss
+    private BigDecimal fresh(String ticker, long now) {
+        Quote quote;
+        synchronized (quotes) {
+            quote = quotes.get(ticker);
+        }
+        return null != quote && now - quote.fetchedAt < ttlNanos ? quote.price : null;
+    }
+
+    private void store(String ticker, BigDecimal price) {
+        Quote quote = new Quote(price, System.nanoTime());
+        synchronized (quotes) {
+            quotes.put(ticker, quote);
+        }
+        listeners.forEach(listener -> listener.accept(ticker, price));
+    }
+
+    private static BigDecimal await(CompletableFuture<BigDecimal> fetch) {
+        try {
+            return fetch.join();
+        } catch (CompletionException completionException) {
+            if (completionException.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) completionException.getCause();
+            }
+            throw completionException;
+        }
+    }
+
+    private static final class Quote {
+        private final BigDecimal price;
+        private final long fetchedAt;
+
+        private Quote(BigDecimal price, long fetchedAt) {
+            this.price = price;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
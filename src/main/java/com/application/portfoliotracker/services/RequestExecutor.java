@@ -0,0 +1,147 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.EndpointStats;
+import com.application.portfoliotracker.enums.ExecutionMode;
+import com.application.portfoliotracker.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs controller work according to portfolio.execution.mode. BLOCKING runs it on the request thread.
+ * ASYNC hands it to a bounded pool so the servlet thread is released while the service waits on the db.
+ * A full queue rejects the request with 503 instead of queueing without limit.
+ * Queued, active, completed and rejected requests are kept per endpoint and exposed as meters tagged by endpoint.
+ */
+@Slf4j
+@Component
+public class RequestExecutor implements DisposableBean {
+
+    private final ExecutionMode mode;
+
+    private final ThreadPoolExecutor executor;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public RequestExecutor(MeterRegistry meterRegistry,
+                           @Value("${portfolio.execution.mode:BLOCKING}") ExecutionMode mode,
+                           @Value("${portfolio.execution.threads:32}") int threads,
+                           @Value("${portfolio.execution.queue-capacity:1000}") int queueCapacity) {
+        this.mode = mode;
+        this.meterRegistry = meterRegistry;
+        if (ExecutionMode.ASYNC == mode) {
+            AtomicLong created = new AtomicLong();
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "portfolio-exec-" + created.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+        } else {
+            this.executor = null;
+        }
+        log.info("Request execution mode : {}", mode);
+    }
+
+    //Runs the task for the endpoint, inline in BLOCKING mode and on the pool in ASYNC mode
+    public <T> CompletableFuture<T> submit(String endpoint, Supplier<T> task) {
+        Counters endpointCounters = counters.computeIfAbsent(endpoint, this::register);
+        if (null == executor) {
+            endpointCounters.active.incrementAndGet();
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } finally {
+                endpointCounters.active.decrementAndGet();
+                endpointCounters.completed.increment();
+            }
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        endpointCounters.queued.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                endpointCounters.queued.decrementAndGet();
+                endpointCounters.active.incrementAndGet();
+                try {
+                    future.complete(task.get());
+                } catch (Throwable throwable) {
+                    future.completeExceptionally(throwable);
+                } finally {
+                    endpointCounters.active.decrementAndGet();
+                    endpointCounters.completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            endpointCounters.queued.decrementAndGet();
+            endpointCounters.rejected.increment();
+            throw new ServiceUnavailableException("Too many requests in flight, retry later");
+        }
+        return future;
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    //Counters per endpoint, sorted by endpoint name
+    public Map<String, EndpointStats> getStats() {
+        Map<String, EndpointStats> stats = new TreeMap<>();
+        counters.forEach((endpoint, endpointCounters) -> stats.put(endpoint, EndpointStats.builder()
+                .queued(endpointCounters.queued.get())
+                .active(endpointCounters.active.get())
+                .completed(endpointCounters.completed.sum())
+                .rejected(endpointCounters.rejected.sum())
+                .build()));
+        return stats;
+    }
+
+    //Counters of a first seen endpoint, registered as meters tagged by it
+    private Counters register(String endpoint) {
+        Counters endpointCounters = new Counters();
+        Gauge.builder("portfolio.execution.queued", endpointCounters.queued, AtomicInteger::get)
+                .description("Requests waiting for an execution thread")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Gauge.builder("portfolio.execution.active", endpointCounters.active, AtomicInteger::get)
+                .description("Requests being executed")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        FunctionCounter.builder("portfolio.execution.completed", endpointCounters.completed, LongAdder::sum)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        FunctionCounter.builder("portfolio.execution.rejected", endpointCounters.rejected, LongAdder::sum)
+                .description("Requests answered with 503 because the queue was full")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        return endpointCounters;
+    }
+
+    @Override
+    public void destroy() {
+        if (null != executor) {
+            executor.shutdown();
+        }
+    }
+
+    private static final class Counters {
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+    }
+}
@@ -0,0 +1,425 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.PortfolioReturns;
+import com.application.portfoliotracker.entities.TickerReturns;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import com.application.portfoliotracker.utils.AfterCommit;
+import com.application.portfoliotracker.utils.FixedPoint;
+import com.application.portfoliotracker.utils.HoldingAggregate;
+import com.application.portfoliotracker.utils.Utils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cost basis, market value and realized/unrealized profit of every portfolio, maintained incrementally instead
+ * of being reduced over all holdings on each read. A portfolio's book is loaded from the holdings table on first
+ * use. After that every committed holding change and every stored quote moves the totals by the difference to
+ * the previous position, so reading the returns costs the same whatever the number of holdings.
+ * A position closed by selling every share leaves its realized profit behind as a closed entry of the ticker, so the
+ * realized total keeps it; on load the realized profit of tickers that have trades but no holding is folded from
+ * their trades. Closed entries without realized profit are dropped.
+ * Quotes older than the quote cache ttl are refreshed in one bulk call on read, at most once per ttl.
+ * Listeners are told which position of a loaded book changed, or that the whole book was dropped.
+ */
+@Slf4j
+@Component
+public class ReturnsLedger {
+
+    private final HoldingWriteBehind holdingWriteBehind;
+
+    private final QuoteCache quoteCache;
+
+    private final TradeRepository tradeRepository;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<String, Book> books = new ConcurrentHashMap<>();
+
+    //Books holding each ticker, so a quote only touches the portfolios it marks
+    private final ConcurrentHashMap<String, Set<Book>> holders = new ConcurrentHashMap<>();
+
+    private final List<BiConsumer<String, String>> listeners = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public ReturnsLedger(HoldingWriteBehind holdingWriteBehind, QuoteCache quoteCache, TradeRepository tradeRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${portfolio.prices.cache.ttl:PT5S}") Duration ttl) {
+        this.holdingWriteBehind = holdingWriteBehind;
+        this.quoteCache = quoteCache;
+        this.tradeRepository = tradeRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.ttlNanos = ttl.toNanos();
+        quoteCache.addListener(this::mark);
+    }
+
+    //Unrealized profit of the portfolio at current prices, empty if it has no holdings
+    public Optional<BigDecimal> getReturns(String portfolioId) {
+        Book book = priced(portfolioId);
+        synchronized (book) {
+            return book.positions.isEmpty()
+                    ? Optional.empty()
+                    : Optional.of(FixedPoint.toBigDecimal(FixedPoint.subtract(book.marketValue, book.costBasis)));
+        }
+    }
+
+    //Totals of the portfolio with the breakdown per ticker, closed tickers included with no shares,
+    //empty if it has neither holdings nor closed tickers
+    public Optional<PortfolioReturns> getBreakdown(String portfolioId) {
+        Book book = priced(portfolioId);
+        synchronized (book) {
+            if (book.isEmpty()) {
+                return Optional.empty();
+            }
+            Map<String, TickerReturns> tickers = new TreeMap<>();
+            book.positions.values().forEach(position -> tickers.put(position.ticker, position.toTickerReturns()));
+            book.closed.forEach((ticker, realizedProfit) -> tickers.put(ticker, closedReturns(ticker, realizedProfit)));
+            return Optional.of(book.totals()
+                    .tickers(new ArrayList<>(tickers.values()))
+                    .build());
+        }
+    }
+
+    //Totals of the portfolio without the per ticker breakdown, empty if it has neither holdings nor closed tickers
+    public Optional<PortfolioReturns> getTotals(String portfolioId) {
+        Book book = priced(portfolioId);
+        synchronized (book) {
+            if (book.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(book.totals().build());
+        }
+    }
+
+    //Returns of one ticker of the portfolio, with no shares once it was closed, empty if it is neither held nor closed
+    public Optional<TickerReturns> getPosition(String portfolioId, String ticker) {
+        Book book = priced(portfolioId);
+        synchronized (book) {
+            Position position = book.positions.get(ticker);
+            if (null != position) {
+                return Optional.of(position.toTickerReturns());
+            }
+            return Optional.ofNullable(book.closed.get(ticker)).map(realizedProfit -> closedReturns(ticker, realizedProfit));
+        }
+    }
+
+    //Registers a listener called with the portfolio and ticker of every changed position, outside any lock of the ledger.
+    //The ticker is null when the portfolio's book was dropped and every position may have changed.
+    public void addListener(BiConsumer<String, String> listener) {
+        listeners.add(listener);
+    }
+
+    //Moves the holding's position to its saved state once the surrounding transaction commits.
+    //A holding without shares closes the position, keeping its realized profit.
+    public void put(Holding holding) {
+        Position position = Position.of(holding);
+        String portfolioId = holding.getPortfolioId();
+        AfterCommit.run(() -> update(portfolioId, position.ticker, position));
+    }
+
+    //Forgets the portfolio's book once the surrounding transaction commits, used after its holdings were replaced.
+    //The next read loads it again from the committed holdings.
+    public void invalidate(String portfolioId) {
+        AfterCommit.run(() -> discard(portfolioId));
+    }
+
+    private void update(String portfolioId, String ticker, Position position) {
+        Book book = books.get(portfolioId);
+        if (null == book) {
+            return;
+        }
+        synchronized (book) {
+            if (books.get(portfolioId) != book) {
+                return;
+            }
+            try {
+                book.replace(ticker, position);
+            } catch (ArithmeticException arithmeticException) {
+                log.warn("Returns of portfolio {} overflowed, reloading on next read", portfolioId, arithmeticException);
+                discard(portfolioId);
+                return;
+            }
+        }
+        notifyListeners(portfolioId, ticker);
+    }
+
+    //Marks every position of the ticker at the quoted price
+    private void mark(String ticker, BigDecimal price) {
+        Set<Book> marked = holders.get(ticker);
+        if (null == marked) {
+            return;
+        }
+        long amount = FixedPoint.of(price);
+        for (Book book : marked) {
+            boolean changed;
+            synchronized (book) {
+                try {
+                    changed = book.mark(ticker, amount);
+                } catch (ArithmeticException arithmeticException) {
+                    log.warn("Returns of portfolio {} overflowed, reloading on next read", book.portfolioId, arithmeticException);
+                    discard(book.portfolioId);
+                    continue;
+                }
+            }
+            if (changed) {
+                notifyListeners(book.portfolioId, ticker);
+            }
+        }
+    }
+
+    private static TickerReturns closedReturns(String ticker, long realizedProfit) {
+        return TickerReturns.builder()
+                .ticker(ticker)
+                .shares(BigInteger.ZERO)
+                .price(BigDecimal.ZERO)
+                .costBasis(BigDecimal.ZERO)
+                .marketValue(BigDecimal.ZERO)
+                .unrealizedProfit(BigDecimal.ZERO)
+                .realizedProfit(FixedPoint.toBigDecimal(realizedProfit))
+                .build();
+    }
+
+    //Realized profit of a ticker without a holding, folded from its trades in the order they were accepted
+    private long closedRealizedProfit(String portfolioId, String ticker) {
+        return readOnlyTransactionTemplate.execute(status -> {
+            Map<String, HoldingAggregate> aggregates = new HashMap<>();
+            try (Stream<Trade> trades = tradeRepository.streamByPortfolioIdAndTickerOrderByTradeIdAsc(portfolioId, ticker)) {
+                Utils.applyTrades(trades, aggregates, HoldingAggregate::empty);
+            }
+            HoldingAggregate aggregate = aggregates.get(ticker);
+            return null == aggregate ? 0L : aggregate.getRealizedProfit();
+        });
+    }
+
+    private void discard(String portfolioId) {
+        Book book = books.remove(portfolioId);
+        if (null != book) {
+            synchronized (book) {
+                book.positions.keySet().forEach(ticker -> unhold(ticker, book));
+            }
+            notifyListeners(portfolioId, null);
+        }
+    }
+
+    private void notifyListeners(String portfolioId, String ticker) {
+        listeners.forEach(listener -> listener.accept(portfolioId, ticker));
+    }
+
+    //Loaded book of the portfolio with every position marked. Quotes are fetched outside the book's lock,
+    //the quote cache calls back into mark on the fetching thread.
+    private Book priced(String portfolioId) {
+        while (true) {
+            Book book = books.computeIfAbsent(portfolioId, Book::new);
+            Collection<String> tickers;
+            synchronized (book) {
+                if (books.get(portfolioId) != book) {
+                    continue;
+                }
+                try {
+                    book.load();
+                } catch (RuntimeException exception) {
+                    discard(portfolioId);
+                    throw exception;
+                }
+                tickers = book.toPrice(System.nanoTime());
+            }
+            if (!tickers.isEmpty()) {
+                quoteCache.getPrices(tickers).forEach(this::mark);
+            }
+            return book;
+        }
+    }
+
+    private void hold(String ticker, Book book) {
+        holders.computeIfAbsent(ticker, key -> ConcurrentHashMap.newKeySet()).add(book);
+    }
+
+    private void unhold(String ticker, Book book) {
+        holders.computeIfPresent(ticker, (key, marked) -> {
+            marked.remove(book);
+            return marked.isEmpty() ? null : marked;
+        });
+    }
+
+    private final class Book {
+
+        private final String portfolioId;
+
+        private final Map<String, Position> positions = new HashMap<>();
+
+        //Realized profit of the tickers whose position was closed
+        private final Map<String, Long> closed = new HashMap<>();
+
+        //Positions without a quote yet, priced on the next read
+        private final Set<String> unpriced = new HashSet<>();
+
+        private boolean loaded;
+
+        private long pricedAt;
+
+        private long costBasis;
+        private long marketValue;
+        private long realizedProfit;
+
+        private Book(String portfolioId) {
+            this.portfolioId = portfolioId;
+        }
+
+        private void load() {
+            if (loaded) {
+                return;
+            }
+            holdingWriteBehind.findByPortfolioId(portfolioId).forEach(holding -> replace(holding.getTicker(), Position.of(holding)));
+            for (String ticker : tradeRepository.findDistinctTickers(portfolioId)) {
+                if (!positions.containsKey(ticker)) {
+                    close(ticker, closedRealizedProfit(portfolioId, ticker));
+                }
+            }
+            loaded = true;
+            pricedAt = System.nanoTime();
+        }
+
+        private PortfolioReturns.PortfolioReturnsBuilder totals() {
+            return PortfolioReturns.builder()
+                    .portfolioId(portfolioId)
+                    .costBasis(FixedPoint.toBigDecimal(costBasis))
+                    .marketValue(FixedPoint.toBigDecimal(marketValue))
+                    .unrealizedProfit(FixedPoint.toBigDecimal(FixedPoint.subtract(marketValue, costBasis)))
+                    .realizedProfit(FixedPoint.toBigDecimal(realizedProfit));
+        }
+
+        //Tickers to quote before a read : the unpriced ones, or all of them once the ttl has passed
+        private Collection<String> toPrice(long now) {
+            if (now - pricedAt >= ttlNanos) {
+                pricedAt = now;
+                return new ArrayList<>(positions.keySet());
+            }
+            return unpriced.isEmpty() ? Collections.emptyList() : new ArrayList<>(unpriced);
+        }
+
+        private boolean isEmpty() {
+            return positions.isEmpty() && closed.isEmpty();
+        }
+
+        //Swaps the ticker's position or closed entry for the given position, one without shares closes the ticker.
+        //The totals move by the difference.
+        private void replace(String ticker, Position position) {
+            Position previous = positions.remove(ticker);
+            if (null != previous) {
+                costBasis = FixedPoint.subtract(costBasis, previous.costBasis);
+                marketValue = FixedPoint.subtract(marketValue, previous.marketValue());
+                realizedProfit = FixedPoint.subtract(realizedProfit, previous.realizedProfit);
+            }
+            Long closedProfit = closed.remove(ticker);
+            if (null != closedProfit) {
+                realizedProfit = FixedPoint.subtract(realizedProfit, closedProfit);
+            }
+            if (0 == position.shares) {
+                unpriced.remove(ticker);
+                unhold(ticker, this);
+                close(ticker, position.realizedProfit);
+                return;
+            }
+            if (null != previous && previous.priced) {
+                position.price = previous.price;
+                position.priced = true;
+            } else {
+                BigDecimal quoted = quoteCache.peekPrice(ticker);
+                position.priced = null != quoted;
+                position.price = null == quoted ? 0 : FixedPoint.of(quoted);
+            }
+            positions.put(ticker, position);
+            costBasis = FixedPoint.add(costBasis, position.costBasis);
+            marketValue = FixedPoint.add(marketValue, position.marketValue());
+            realizedProfit = FixedPoint.add(realizedProfit, position.realizedProfit);
+            if (position.priced) {
+                unpriced.remove(ticker);
+            } else {
+                unpriced.add(ticker);
+            }
+            hold(ticker, this);
+        }
+
+        //Keeps the realized profit of a ticker without shares, one without realized profit leaves nothing behind
+        private void close(String ticker, long closedProfit) {
+            if (0 != closedProfit) {
+                closed.put(ticker, closedProfit);
+                realizedProfit = FixedPoint.add(realizedProfit, closedProfit);
+            }
+        }
+
+        //Marks the ticker's position at the price, returns whether its market value changed
+        private boolean mark(String ticker, long price) {
+            Position position = positions.get(ticker);
+            if (null == position || (position.priced && position.price == price)) {
+                return false;
+            }
+            long value = FixedPoint.multiply(price, position.shares);
+            marketValue = FixedPoint.add(FixedPoint.subtract(marketValue, position.marketValue()), value);
+            position.price = price;
+            position.priced = true;
+            unpriced.remove(ticker);
+            return true;
+        }
+    }
+
+    //Amounts of one holding as FixedPoint mantissas
+    private static final class Position {
+
+        private final String ticker;
+        private final long shares;
+        private final long costBasis;
+        private final long realizedProfit;
+        private long price;
+        private boolean priced;
+
+        private Position(String ticker, long shares, long costBasis, long realizedProfit) {
+            this.ticker = ticker;
+            this.shares = shares;
+            this.costBasis = costBasis;
+            this.realizedProfit = realizedProfit;
+        }
+
+        private static Position of(Holding holding) {
+            return new Position(holding.getTicker(),
+                    FixedPoint.quantity(holding.getShares()),
+                    FixedPoint.of(holding.getTotalPrice()),
+                    null == holding.getRealizedProfit() ? 0 : FixedPoint.of(holding.getRealizedProfit()));
+        }
+
+        private long marketValue() {
+            return priced ? FixedPoint.multiply(price, shares) : 0;
+        }
+
+        private TickerReturns toTickerReturns() {
+            long value = marketValue();
+            return TickerReturns.builder()
+                    .ticker(ticker)
+                    .shares(BigInteger.valueOf(shares))
+                    .price(FixedPoint.toBigDecimal(price))
+                    .costBasis(FixedPoint.toBigDecimal(costBasis))
+                    .marketValue(FixedPoint.toBigDecimal(value))
+                    .unrealizedProfit(FixedPoint.toBigDecimal(FixedPoint.subtract(value, costBasis)))
+                    .realizedProfit(FixedPoint.toBigDecimal(realizedProfit))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.PortfolioReturns;
+import com.application.portfoliotracker.entities.TickerReturns;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes position and returns changes of a portfolio to its Server-Sent Events subscribers. Every subscriber
+ * starts with a snapshot of the portfolio, then gets a position event per changed ticker and a returns event
+ * with the new totals. Changes are not queued as events: a subscriber only remembers which tickers changed,
+ * so a slow subscriber is sent each ticker once with its latest state instead of every intermediate one.
+ * Once more than buffer-size tickers are waiting the subscriber drops them and is sent a fresh snapshot.
+ * A pool of sender threads serves all subscribers, each subscriber is sent to by one thread at a time.
+ * A send still running after send-timeout evicts its subscriber: the emitter is completed with an error, which
+ * closes the connection and fails the blocked write, so a stalled client holds a sender thread for a bounded time.
+ */
+@Slf4j
+@Component
+public class ReturnsStream implements DisposableBean {
+
+    private final ReturnsLedger returnsLedger;
+
+    private final int bufferSize;
+
+    private final long timeoutMillis;
+
+    private final long sendTimeoutNanos;
+
+    private final ExecutorService senders;
+
+    private final ScheduledExecutorService watchdog;
+
+    private final ConcurrentHashMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicLong subscriberCount = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public ReturnsStream(ReturnsLedger returnsLedger, MeterRegistry meterRegistry,
+                         @Value("${portfolio.stream.threads:4}") int threads,
+                         @Value("${portfolio.stream.buffer-size:256}") int bufferSize,
+                         @Value("${portfolio.stream.timeout:30m}") Duration timeout,
+                         @Value("${portfolio.stream.send-timeout:5s}") Duration sendTimeout) {
+        this.returnsLedger = returnsLedger;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeout.toMillis();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        AtomicLong created = new AtomicLong();
+        this.senders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "returns-stream-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "returns-stream-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkEveryMillis = Math.max(10, sendTimeout.toMillis() / 4);
+        watchdog.scheduleAtFixedRate(this::evictStalled, checkEveryMillis, checkEveryMillis, TimeUnit.MILLISECONDS);
+        Gauge.builder("portfolio.stream.subscribers", subscriberCount, AtomicLong::get)
+                .description("Open returns stream subscriptions")
+                .register(meterRegistry);
+        FunctionCounter.builder("portfolio.stream.events.sent", sent, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("portfolio.stream.events.merged", merged, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("portfolio.stream.resyncs", resyncs, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("portfolio.stream.evictions", evictions, LongAdder::sum)
+                .description("Subscribers dropped because a send took longer than the send timeout")
+                .register(meterRegistry);
+        returnsLedger.addListener(this::changed);
+    }
+
+    //Opens a subscription to the portfolio, its first event is a snapshot
+    public SseEmitter subscribe(String portfolioId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(portfolioId, emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        subscribers.computeIfAbsent(portfolioId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+        subscriber.schedule();
+        return emitter;
+    }
+
+    private void changed(String portfolioId, String ticker) {
+        Set<Subscriber> subscribed = subscribers.get(portfolioId);
+        if (null == subscribed) {
+            return;
+        }
+        subscribed.forEach(subscriber -> subscriber.changed(ticker));
+    }
+
+    //Drops subscribers whose current send has been blocked for longer than the send timeout
+    private void evictStalled() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(subscribed -> subscribed.forEach(subscriber -> {
+            long since = subscriber.sendingSince;
+            if (NOT_SENDING != since && now - since > sendTimeoutNanos) {
+                log.debug("Evicting returns subscriber of portfolio {} after a send of {} ms", subscriber.portfolioId, (now - since) / 1_000_000);
+                evictions.increment();
+                subscriber.emitter.completeWithError(new IOException("Send timed out"));
+                subscriber.close();
+            }
+        }));
+    }
+
+    @Override
+    public void destroy() {
+        watchdog.shutdownNow();
+        subscribers.values().forEach(subscribed -> subscribed.forEach(subscriber -> subscriber.emitter.complete()));
+        senders.shutdownNow();
+    }
+
+    private static final long NOT_SENDING = Long.MIN_VALUE;
+
+    private final class Subscriber implements Runnable {
+
+        private final String portfolioId;
+
+        private final SseEmitter emitter;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        //Start of the send in progress, NOT_SENDING between sends
+        private volatile long sendingSince = NOT_SENDING;
+
+        //Guarded by this. Tickers changed since the last send, in the order they first changed.
+        private final Set<String> dirty = new LinkedHashSet<>();
+        private boolean returnsDirty;
+        private boolean resync = true;
+
+        private Subscriber(String portfolioId, SseEmitter emitter) {
+            this.portfolioId = portfolioId;
+            this.emitter = emitter;
+        }
+
+        private void changed(String ticker) {
+            synchronized (this) {
+                if (resync) {
+                    merged.increment();
+                } else if (null == ticker || dirty.size() >= bufferSize && !dirty.contains(ticker)) {
+                    dirty.clear();
+                    resync = true;
+                    resyncs.increment();
+                } else if (!dirty.add(ticker)) {
+                    merged.increment();
+                }
+                returnsDirty = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!closed.get() && scheduled.compareAndSet(false, true)) {
+                senders.execute(this);
+            }
+        }
+
+        //Sends everything pending, then hands the subscriber back. Changes that arrive while sending are
+        //picked up by the next run, scheduled here if nobody else did.
+        @Override
+        public void run() {
+            try {
+                sendPending();
+            } catch (IOException | RuntimeException exception) {
+                log.debug("Dropping returns subscriber of portfolio {}", portfolioId, exception);
+                emitter.completeWithError(exception);
+                close();
+                return;
+            }
+            scheduled.set(false);
+            if (hasPending()) {
+                schedule();
+            }
+        }
+
+        private void sendPending() throws IOException {
+            boolean snapshot;
+            List<String> tickers;
+            boolean returns;
+            synchronized (this) {
+                snapshot = resync;
+                tickers = new ArrayList<>(dirty);
+                returns = returnsDirty;
+                resync = false;
+                dirty.clear();
+                returnsDirty = false;
+            }
+            if (snapshot) {
+                send("snapshot", returnsLedger.getBreakdown(portfolioId).orElseGet(this::empty));
+                return;
+            }
+            for (String ticker : tickers) {
+                Optional<TickerReturns> position = returnsLedger.getPosition(portfolioId, ticker);
+                if (position.isPresent()) {
+                    send("position", position.get());
+                } else {
+                    send("removed", ticker);
+                }
+            }
+            if (returns) {
+                send("returns", returnsLedger.getTotals(portfolioId).orElseGet(this::empty));
+            }
+        }
+
+        private synchronized boolean hasPending() {
+            return resync || returnsDirty || !dirty.isEmpty();
+        }
+
+        private void send(String name, Object data) throws IOException {
+            if (closed.get()) {
+                throw new IOException("Subscriber closed");
+            }
+            sendingSince = System.nanoTime();
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data));
+            } finally {
+                sendingSince = NOT_SENDING;
+            }
+            sent.increment();
+        }
+
+        private PortfolioReturns empty() {
+            return PortfolioReturns.builder()
+                    .portfolioId(portfolioId)
+                    .costBasis(BigDecimal.ZERO)
+                    .marketValue(BigDecimal.ZERO)
+                    .unrealizedProfit(BigDecimal.ZERO)
+                    .realizedProfit(BigDecimal.ZERO)
+                    .tickers(Collections.emptyList())
+                    .build();
+        }
+
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            subscribers.computeIfPresent(portfolioId, (id, subscribed) -> {
+                subscribed.remove(this);
+                return subscribed.isEmpty() ? null : subscribed;
+            });
+            subscriberCount.decrementAndGet();
+        }
+    }
+}
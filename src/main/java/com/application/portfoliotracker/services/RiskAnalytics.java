@@ -0,0 +1,146 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.CorrelationMatrix;
+import com.application.portfoliotracker.entities.PortfolioAnalytics;
+import com.application.portfoliotracker.entities.TickerAnalytics;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import com.application.portfoliotracker.utils.PositionSeries;
+import com.application.portfoliotracker.utils.PriceSeries;
+import com.application.portfoliotracker.utils.RiskEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Risk analytics of portfolios from the daily price history: time-weighted return, volatility and maximum drawdown
+ * of the portfolio and of each ticker it traded, and the correlation matrix of tickers. Positions are rebuilt from
+ * the trades on each request, the price series are shared with PriceHistory, and the per-ticker work runs on a
+ * dedicated pool of portfolio.analytics.parallelism threads. Without a window, per-ticker statistics are the
+ * running statistics of the whole history that each new bar updates.
+ */
+@Slf4j
+@Component
+public class RiskAnalytics implements DisposableBean {
+
+    private final TradeRepository tradeRepository;
+
+    private final PriceHistory priceHistory;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final ForkJoinPool pool;
+
+    private final RiskEngine riskEngine;
+
+    @Autowired
+    public RiskAnalytics(TradeRepository tradeRepository, PriceHistory priceHistory, PlatformTransactionManager transactionManager,
+                         @Value("${portfolio.analytics.parallelism:0}") int parallelism) {
+        this.tradeRepository = tradeRepository;
+        this.priceHistory = priceHistory;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.riskEngine = new RiskEngine(pool);
+    }
+
+    //Analytics of the portfolio between the two days, both included and either open, empty if none of its tickers has bars
+    public Optional<PortfolioAnalytics> analyze(String portfolioId, LocalDate from, LocalDate to) {
+        Map<String, PositionSeries> positions = loadPositions(portfolioId);
+        List<PriceSeries> prices = priceHistory.getAll(new ArrayList<>(positions.keySet()));
+        if (prices.isEmpty()) {
+            return Optional.empty();
+        }
+        List<PositionSeries> held = prices.stream()
+                .map(series -> positions.get(series.getTicker()))
+                .collect(Collectors.toList());
+        int fromDay = toDay(from, Integer.MIN_VALUE);
+        int toDay = toDay(to, Integer.MAX_VALUE);
+        int[] calendar = riskEngine.calendar(prices, fromDay, toDay);
+        RiskEngine.Result result = riskEngine.portfolio(prices, held, calendar);
+        boolean window = null != from || null != to;
+        List<TickerAnalytics> holdings = pool.submit(() -> prices.parallelStream()
+                .map(series -> toTickerAnalytics(series.getTicker(), window ? series.getStats(fromDay, toDay) : series.getStats()))
+                .collect(Collectors.toList())).join();
+        return Optional.of(PortfolioAnalytics.builder()
+                .from(toDate(calendar, 0))
+                .to(toDate(calendar, calendar.length - 1))
+                .days(result.getDays())
+                .returnDays(result.getReturnDays())
+                .timeWeightedReturn(result.getTimeWeightedReturn())
+                .volatility(result.getVolatility())
+                .maxDrawdown(result.getMaxDrawdown())
+                .holdings(holdings)
+                .build());
+    }
+
+    //Correlation of the daily returns of the tickers that have bars, empty if none has
+    public Optional<CorrelationMatrix> correlate(List<String> tickers, LocalDate from, LocalDate to) {
+        List<PriceSeries> prices = priceHistory.getAll(tickers);
+        if (prices.isEmpty()) {
+            return Optional.empty();
+        }
+        int[] calendar = riskEngine.calendar(prices, toDay(from, Integer.MIN_VALUE), toDay(to, Integer.MAX_VALUE));
+        return Optional.of(CorrelationMatrix.builder()
+                .from(toDate(calendar, 0))
+                .to(toDate(calendar, calendar.length - 1))
+                .days(calendar.length)
+                .tickers(prices.stream().map(PriceSeries::getTicker).collect(Collectors.toList()))
+                .values(riskEngine.correlation(prices, calendar))
+                .build());
+    }
+
+    //Shares held by the portfolio over time, per ticker in ticker order
+    private Map<String, PositionSeries> loadPositions(String portfolioId) {
+        Map<String, PositionSeries> positions = new LinkedHashMap<>();
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Trade> trades = tradeRepository.streamByPortfolioIdOrderByTickerAscLastUpdatedAscTradeIdAsc(portfolioId)) {
+                trades.filter(trade -> null != trade.getLastUpdated()).forEach(trade -> {
+                    double shares = trade.getShares().doubleValue();
+                    positions.computeIfAbsent(trade.getTicker(), PositionSeries::new)
+                            .add((int) trade.getLastUpdated().toLocalDate().toEpochDay(),
+                                    TransactionType.SELL == trade.getTransactionType() ? -shares : shares);
+                });
+            }
+        });
+        return positions;
+    }
+
+    private static TickerAnalytics toTickerAnalytics(String ticker, PriceSeries.Stats stats) {
+        return TickerAnalytics.builder()
+                .ticker(ticker)
+                .bars(stats.getBars())
+                .totalReturn(stats.getTotalReturn())
+                .volatility(stats.getVolatility())
+                .maxDrawdown(stats.getMaxDrawdown())
+                .build();
+    }
+
+    private static int toDay(LocalDate date, int open) {
+        return null == date ? open : (int) date.toEpochDay();
+    }
+
+    private static LocalDate toDate(int[] calendar, int index) {
+        return 0 == calendar.length ? null : LocalDate.ofEpochDay(calendar[index]);
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,70 @@
+package com.application.portfoliotracker.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * In-process feed that quotes every ticker around a base price. The quote moves once per tick interval
+ * by a deterministic amount derived from the ticker and the tick, so it needs no network and is reproducible.
+ * With zero volatility every ticker is quoted at the base price.
+ */
+@Component
+@ConditionalOnProperty(name = "portfolio.prices.provider", havingValue = "simulated", matchIfMissing = true)
+public class SimulatedPriceProvider implements PriceProvider {
+
+    @Value("${portfolio.prices.simulated.base-price:100}")
+    private BigDecimal basePrice;
+
+    @Value("${portfolio.prices.simulated.volatility:0}")
+    private double volatility;
+
+    @Value("${portfolio.prices.simulated.tick-millis:1000}")
+    private long tickMillis;
+
+    @Value("${portfolio.prices.simulated.latency-millis:0}")
+    private long latencyMillis;
+
+    @Override
+    public BigDecimal getPrice(String ticker) {
+        simulateLatency();
+        return quote(ticker);
+    }
+
+    @Override
+    public Map<String, BigDecimal> getPrices(Collection<String> tickers) {
+        simulateLatency();
+        Map<String, BigDecimal> prices = new HashMap<>();
+        for (String ticker : tickers) {
+            prices.put(ticker, quote(ticker));
+        }
+        return prices;
+    }
+
+    private BigDecimal quote(String ticker) {
+        if (0 == volatility) {
+            return basePrice;
+        }
+        long tick = System.currentTimeMillis() / tickMillis;
+        double move = new SplittableRandom(ticker.hashCode() * 31L + tick).nextDouble(-1, 1) * volatility;
+        return basePrice.multiply(BigDecimal.valueOf(1 + move)).setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    private void simulateLatency() {
+        if (latencyMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
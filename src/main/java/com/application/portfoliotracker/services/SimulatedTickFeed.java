@@ -0,0 +1,51 @@
+package com.application.portfoliotracker.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Random walk of prefix0 .. prefix(tickers - 1) around the simulated base price. Each tick moves one ticker,
+ * picked at random, by up to step of its price.
+ */
+@Component
+@ConditionalOnProperty(name = "portfolio.ticks.source", havingValue = "simulated")
+public class SimulatedTickFeed extends TickFeed {
+
+    private final String[] tickers;
+
+    private final double[] prices;
+
+    private final double step;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Autowired
+    public SimulatedTickFeed(PriceTicks priceTicks,
+                             @Value("${portfolio.ticks.rate:100000}") long rate,
+                             @Value("${portfolio.ticks.simulated.tickers:1000}") int tickers,
+                             @Value("${portfolio.ticks.simulated.ticker-prefix:TCK}") String prefix,
+                             @Value("${portfolio.ticks.simulated.step:0.001}") double step,
+                             @Value("${portfolio.prices.simulated.base-price:100}") double basePrice) {
+        super(priceTicks, rate);
+        this.tickers = new String[tickers];
+        Arrays.setAll(this.tickers, index -> prefix + index);
+        this.prices = new double[tickers];
+        Arrays.fill(this.prices, basePrice);
+        this.step = step;
+    }
+
+    @Override
+    protected boolean publishNext() {
+        int index = random.nextInt(tickers.length);
+        prices[index] = Math.max(0.01, prices[index] * (1 + random.nextDouble(-step, step)));
+        priceTicks.publish(tickers[index], BigDecimal.valueOf(prices[index]).setScale(2, RoundingMode.HALF_EVEN));
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package com.application.portfoliotracker.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Brings the trades and holdings tables back in line with the previous run before the web server accepts requests.
+ * The web server starts in lifecycle phase Integer.MAX_VALUE - 1, this runs in an earlier phase, so no request can
+ * write a trade while recovery checks and rewrites holdings. The steps run in a fixed order: first trades and
+ * holdings are restored from the trade journal, then portfolios left with unwritten write-behind holdings are
+ * rebuilt from their trades, which are authoritative over the journal.
+ */
+@Slf4j
+@Component
+public class StartupRecovery implements SmartLifecycle {
+
+    //Ahead of the web server, see the class comment
+    private static final int PHASE = Integer.MAX_VALUE - 1024;
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        long start = System.nanoTime();
+        portfolioService.restoreFromJournal();
+        portfolioService.recoverWriteBehindHoldings();
+        running = true;
+        log.debug("Startup recovery took {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
@@ -0,0 +1,68 @@
+package com.application.portfoliotracker.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Source of price ticks selected with portfolio.ticks.source, published into PriceTicks on its own thread.
+ * Ticks are paced to the configured rate per second, a rate of 0 publishes as fast as the source can.
+ */
+@Slf4j
+abstract class TickFeed {
+
+    protected final PriceTicks priceTicks;
+
+    private final long rate;
+
+    private Thread thread;
+
+    private volatile boolean running;
+
+    protected TickFeed(PriceTicks priceTicks, long rate) {
+        this.priceTicks = priceTicks;
+        this.rate = rate;
+    }
+
+    //Publishes the next tick, returns false once the source is exhausted
+    protected abstract boolean publishNext();
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "price-tick-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void run() {
+        double perNano = rate / 1e9;
+        long started = System.nanoTime();
+        long published = 0;
+        try {
+            while (running) {
+                if (rate > 0 && published >= (long) ((System.nanoTime() - started) * perNano)) {
+                    LockSupport.parkNanos(100_000);
+                    continue;
+                }
+                if (!publishNext()) {
+                    break;
+                }
+                published++;
+            }
+        } catch (RuntimeException exception) {
+            log.error("Price tick feed stopped after {} ticks", published, exception);
+            return;
+        }
+        log.info("Price tick feed stopped after {} ticks", published);
+    }
+}
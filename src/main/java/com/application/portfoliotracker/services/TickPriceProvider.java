@@ -0,0 +1,32 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.exceptions.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Quotes the last applied price tick of each ticker, so expired quotes are refetched from the tick feed
+ * instead of from a source that would undo the ticks.
+ */
+@Component
+@ConditionalOnProperty(name = "portfolio.prices.provider", havingValue = "ticks")
+public class TickPriceProvider implements PriceProvider {
+
+    //Lazy, PriceTicks feeds the quote cache this provider sits behind
+    @Lazy
+    @Autowired
+    private PriceTicks priceTicks;
+
+    @Override
+    public BigDecimal getPrice(String ticker) {
+        BigDecimal price = priceTicks.getLatestPrice(ticker);
+        if (null == price) {
+            throw new NotFoundException(String.format("No price found for ticker : %s", ticker));
+        }
+        return price;
+    }
+}
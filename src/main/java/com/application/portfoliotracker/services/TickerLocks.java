@@ -0,0 +1,102 @@
+package com.application.portfoliotracker.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks serialising holding writes per ticker, sharded by portfolio. Every portfolio owns its own
+ * stripes, so writers of different portfolios never share a lock. Within a portfolio a ticker always maps
+ * to the same stripe, so writes on one ticker are ordered while writes on tickers of different stripes run
+ * in parallel. Several stripes are always taken in ascending order, which keeps multi-ticker writers free
+ * of deadlocks. Callers must commit before the lock is released, i.e. the transaction has to run inside the supplier.
+ */
+@Component
+public class TickerLocks {
+
+    private final int size;
+
+    private final ConcurrentHashMap<String, ReentrantLock[]> portfolios = new ConcurrentHashMap<>();
+
+    public TickerLocks(@Value("${portfolio.locks.stripes:64}") int stripes) {
+        this.size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    }
+
+    //Runs the action while holding the stripe of the ticker in the portfolio
+    public <T> T withLock(String portfolioId, String ticker, Supplier<T> action) {
+        ReentrantLock lock = stripes(portfolioId)[stripe(ticker)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Runs the action while holding the stripes of all the tickers in the portfolio
+    public <T> T withLocks(String portfolioId, Collection<String> tickers, Supplier<T> action) {
+        return withStripes(stripes(portfolioId), tickers.stream().mapToInt(this::stripe).distinct().sorted().toArray(), action);
+    }
+
+    //Runs the action while holding every stripe of the portfolio, for writers that touch all its holdings
+    public <T> T withAllLocks(String portfolioId, Supplier<T> action) {
+        int[] all = new int[size];
+        Arrays.setAll(all, index -> index);
+        return withStripes(stripes(portfolioId), all, action);
+    }
+
+    //Runs the action while holding every stripe of every given portfolio, for startup recovery writing all holdings
+    //at once. Portfolios are locked in sorted order and no other writer holds stripes of two portfolios.
+    public <T> T withAllLocks(Collection<String> portfolioIds, Supplier<T> action) {
+        List<ReentrantLock> locked = new ArrayList<>();
+        try {
+            for (String portfolioId : new TreeSet<>(portfolioIds)) {
+                for (ReentrantLock lock : stripes(portfolioId)) {
+                    lock.lock();
+                    locked.add(lock);
+                }
+            }
+            return action.get();
+        } finally {
+            for (int index = locked.size() - 1; index >= 0; index--) {
+                locked.get(index).unlock();
+            }
+        }
+    }
+
+    private ReentrantLock[] stripes(String portfolioId) {
+        return portfolios.computeIfAbsent(portfolioId, id -> {
+            ReentrantLock[] locks = new ReentrantLock[size];
+            Arrays.setAll(locks, index -> new ReentrantLock());
+            return locks;
+        });
+    }
+
+    private static <T> T withStripes(ReentrantLock[] stripes, int[] sortedStripes, Supplier<T> action) {
+        int locked = 0;
+        try {
+            for (int stripe : sortedStripes) {
+                stripes[stripe].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int index = locked - 1; index >= 0; index--) {
+                stripes[sortedStripes[index]].unlock();
+            }
+        }
+    }
+
+    private int stripe(String ticker) {
+        int hash = ticker.hashCode();
+        return (hash ^ (hash >>> 16)) & (size - 1);
+    }
+}
@@ -0,0 +1,171 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import com.application.portfoliotracker.utils.AfterCommit;
+import com.application.portfoliotracker.utils.BloomFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Answers whether an idempotency key was already used by a trade of the portfolio, mostly without a query.
+ * Keys recorded within the last window, up to window-size of them, are answered from memory. Every key ever
+ * saved is also added to a Bloom filter loaded from the trades table on startup, so a key it has never seen
+ * is new without asking the table. Only keys the filter might have seen that are no longer in the window are
+ * looked up. The unique index on (portfolio_id, idempotency_key) stays the authority, see PortfolioService.
+ */
+@Slf4j
+@Component
+public class TradeDedupIndex {
+
+    private final TradeRepository tradeRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long windowNanos;
+
+    private final BloomFilter filter;
+
+    //Guarded by itself. Trade id of each recently recorded key, oldest first.
+    private final LinkedHashMap<String, Recent> recent;
+
+    private final LongAdder windowHits = new LongAdder();
+    private final LongAdder filterNegatives = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+
+    @Autowired
+    public TradeDedupIndex(TradeRepository tradeRepository, TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                           @Value("${portfolio.dedup.window-size:100000}") int windowSize,
+                           @Value("${portfolio.dedup.window:PT24H}") Duration window,
+                           @Value("${portfolio.dedup.filter.expected-keys:1000000}") long expectedKeys,
+                           @Value("${portfolio.dedup.filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.tradeRepository = tradeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.windowNanos = window.toNanos();
+        this.filter = new BloomFilter(expectedKeys, falsePositiveRate);
+        this.recent = new LinkedHashMap<String, Recent>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Recent> eldest) {
+                return size() > windowSize;
+            }
+        };
+        FunctionCounter.builder("portfolio.dedup.window.hits", windowHits, LongAdder::sum)
+                .description("Idempotency keys found among the recently recorded keys")
+                .register(meterRegistry);
+        FunctionCounter.builder("portfolio.dedup.filter.negatives", filterNegatives, LongAdder::sum)
+                .description("Idempotency keys known to be new without a query")
+                .register(meterRegistry);
+        FunctionCounter.builder("portfolio.dedup.lookups", lookups, LongAdder::sum)
+                .description("Idempotency keys looked up in the trades table")
+                .register(meterRegistry);
+    }
+
+    //Adds the keys already in the trades table to the filter
+    @PostConstruct
+    public void load() {
+        long start = System.nanoTime();
+        long loaded = transactionTemplate.execute(status -> {
+            try (Stream<Object[]> keys = tradeRepository.streamIdempotencyKeys()) {
+                return keys.peek(key -> filter.add(key((String) key[0], (String) key[1]))).count();
+            }
+        });
+        log.info("Loaded {} idempotency keys into a {} byte filter in {} ms", loaded, filter.getBytes(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    //Id of the trade of the portfolio saved with the key, empty if there is none
+    public Optional<Long> find(String portfolioId, String idempotencyKey) {
+        return Optional.ofNullable(findAll(portfolioId, Collections.singleton(idempotencyKey)).get(idempotencyKey));
+    }
+
+    //Ids of the trades of the portfolio saved with any of the keys, by key
+    public Map<String, Long> findAll(String portfolioId, Collection<String> idempotencyKeys) {
+        Map<String, Long> found = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (recent) {
+            for (String idempotencyKey : idempotencyKeys) {
+                Recent entry = recent.get(key(portfolioId, idempotencyKey));
+                if (null != entry && now - entry.recordedAt <= windowNanos) {
+                    found.put(idempotencyKey, entry.tradeId);
+                } else {
+                    unknown.add(idempotencyKey);
+                }
+            }
+        }
+        windowHits.add(found.size());
+        List<String> suspected = unknown.stream()
+                .filter(idempotencyKey -> filter.mightContain(key(portfolioId, idempotencyKey)))
+                .collect(Collectors.toList());
+        filterNegatives.add(unknown.size() - suspected.size());
+        if (!suspected.isEmpty()) {
+            lookups.add(suspected.size());
+            tradeRepository.findByPortfolioIdAndIdempotencyKeyIn(portfolioId, suspected)
+                    .forEach(trade -> found.put(trade.getIdempotencyKey(), trade.getTradeId()));
+        }
+        return found;
+    }
+
+    //Records the key of the saved trade once the surrounding transaction commits
+    public void record(Trade trade) {
+        if (null == trade.getIdempotencyKey()) {
+            return;
+        }
+        String key = key(trade.getPortfolioId(), trade.getIdempotencyKey());
+        long tradeId = trade.getTradeId();
+        AfterCommit.run(() -> {
+            filter.add(key);
+            synchronized (recent) {
+                recent.put(key, new Recent(tradeId, System.nanoTime()));
+            }
+        });
+    }
+
+    //Forgets the key of the deleted trade once the surrounding transaction commits, so it can be used again.
+    //The filter cannot forget it, later checks of the key are looked up in the table.
+    public void forget(Trade trade) {
+        if (null == trade.getIdempotencyKey()) {
+            return;
+        }
+        String key = key(trade.getPortfolioId(), trade.getIdempotencyKey());
+        AfterCommit.run(() -> {
+            synchronized (recent) {
+                recent.remove(key);
+            }
+        });
+    }
+
+    //Makes the next check of the keys of the trades look them up in the table. For keys saved without going
+    //through this index, found out when an insert hits the unique index.
+    public void suspect(Collection<Trade> trades) {
+        trades.stream()
+                .filter(trade -> null != trade.getIdempotencyKey())
+                .forEach(trade -> filter.add(key(trade.getPortfolioId(), trade.getIdempotencyKey())));
+    }
+
+    private static String key(String portfolioId, String idempotencyKey) {
+        return portfolioId + '\u0000' + idempotencyKey;
+    }
+
+    private static final class Recent {
+        private final long tradeId;
+        private final long recordedAt;
+
+        private Recent(long tradeId, long recordedAt) {
+            this.tradeId = tradeId;
+            this.recordedAt = recordedAt;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.ExportResult;
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.enums.ExportCompression;
+import com.application.portfoliotracker.enums.ExportFormat;
+import com.application.portfoliotracker.repositories.HoldingRepository;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import com.application.portfoliotracker.utils.ExportColumn;
+import com.application.portfoliotracker.utils.ExportWriter;
+import com.application.portfoliotracker.utils.GzipChannel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Exports the trades or holdings of a portfolio as CSV or as the block columnar format of ExportWriter, optionally
+ * gzipped, into any channel: an HTTP response or a file under portfolio.export.directory. Rows come from a database
+ * cursor in a read-only transaction and each one is detached once written, so neither the persistence context nor
+ * the export buffers grow with the number of rows.
+ */
+@Slf4j
+@Component
+public class TradeExporter {
+
+    public static final List<ExportColumn<Trade>> TRADE_COLUMNS = Arrays.asList(
+            ExportColumn.integer("tradeId", Trade::getTradeId),
+            ExportColumn.text("portfolioId", Trade::getPortfolioId),
+            ExportColumn.text("ticker", Trade::getTicker),
+            ExportColumn.text("transactionType", Trade::getTransactionType),
+            ExportColumn.amount("price", Trade::getPrice),
+            ExportColumn.integer("shares", Trade::getShares),
+            ExportColumn.time("lastUpdated", Trade::getLastUpdated),
+            ExportColumn.text("idempotencyKey", Trade::getIdempotencyKey));
+
+    public static final List<ExportColumn<Holding>> HOLDING_COLUMNS = Arrays.asList(
+            ExportColumn.text("portfolioId", Holding::getPortfolioId),
+            ExportColumn.text("ticker", Holding::getTicker),
+            ExportColumn.integer("shares", Holding::getShares),
+            ExportColumn.amount("totalPrice", Holding::getTotalPrice),
+            ExportColumn.amount("averageBuyPrice", Holding::getAverageBuyPrice),
+            ExportColumn.amount("realizedProfit", Holding::getRealizedProfit),
+            ExportColumn.time("lastUpdated", Holding::getLastUpdated));
+
+    //Anything but letters, digits, dots, dashes and underscores is replaced in export file names
+    private static final Pattern UNSAFE_FILE_NAME_CHARACTERS = Pattern.compile("[^A-Za-z0-9._-]");
+
+    private final TradeRepository tradeRepository;
+
+    private final HoldingRepository holdingRepository;
+
+    private final HoldingWriteBehind holdingWriteBehind;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final Path directory;
+
+    private final int blockRows;
+
+    private final int gzipLevel;
+
+    private final int bufferSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public TradeExporter(TradeRepository tradeRepository, HoldingRepository holdingRepository,
+                         HoldingWriteBehind holdingWriteBehind, PlatformTransactionManager transactionManager,
+                         @Value("${portfolio.export.directory:export}") String directory,
+                         @Value("${portfolio.export.block-rows:65536}") int blockRows,
+                         @Value("${portfolio.export.gzip-level:1}") int gzipLevel,
+                         @Value("${portfolio.export.buffer-size:262144}") int bufferSize) {
+        this.tradeRepository = tradeRepository;
+        this.holdingRepository = holdingRepository;
+        this.holdingWriteBehind = holdingWriteBehind;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.directory = Paths.get(directory);
+        this.blockRows = blockRows;
+        this.gzipLevel = gzipLevel;
+        this.bufferSize = bufferSize;
+    }
+
+    //Writes every trade of the portfolio in id order into the channel, returns the number of rows
+    public long exportTrades(String portfolioId, ExportFormat format, ExportCompression compression,
+                             WritableByteChannel channel) throws IOException {
+        return export(TRADE_COLUMNS, format, compression, channel,
+                () -> tradeRepository.streamByPortfolioIdOrderByTradeIdAsc(portfolioId));
+    }
+
+    //Writes every holding of the portfolio in ticker order into the channel, staged holdings written first
+    public long exportHoldings(String portfolioId, ExportFormat format, ExportCompression compression,
+                               WritableByteChannel channel) throws IOException {
+        holdingWriteBehind.flush(portfolioId);
+        return export(HOLDING_COLUMNS, format, compression, channel,
+                () -> holdingRepository.streamByPortfolioIdOrderByTickerAsc(portfolioId));
+    }
+
+    //Exports the trades of the portfolio into a file of the export directory, replacing an earlier export
+    public ExportResult exportTradesToFile(String portfolioId, ExportFormat format, ExportCompression compression) throws IOException {
+        Path file = directory.resolve(fileName(portfolioId, "trades", format, compression));
+        return toFile(file, channel -> exportTrades(portfolioId, format, compression, channel));
+    }
+
+    //Exports the holdings of the portfolio into a file of the export directory, replacing an earlier export
+    public ExportResult exportHoldingsToFile(String portfolioId, ExportFormat format, ExportCompression compression) throws IOException {
+        Path file = directory.resolve(fileName(portfolioId, "holdings", format, compression));
+        return toFile(file, channel -> exportHoldings(portfolioId, format, compression, channel));
+    }
+
+    //Name of an export file, the portfolio id reduced to characters safe in a path and a header
+    public static String fileName(String portfolioId, String kind, ExportFormat format, ExportCompression compression) {
+        String name = UNSAFE_FILE_NAME_CHARACTERS.matcher(portfolioId).replaceAll("_") + "-" + kind + "." + format.name().toLowerCase(Locale.ROOT);
+        return ExportCompression.GZIP == compression ? name + ".gz" : name;
+    }
+
+    private <T> long export(List<ExportColumn<T>> columns, ExportFormat format, ExportCompression compression,
+                            WritableByteChannel channel, Supplier<Stream<T>> rows) throws IOException {
+        GzipChannel gzip = ExportCompression.GZIP == compression ? new GzipChannel(channel, gzipLevel, bufferSize) : null;
+        ExportWriter<T> writer = ExportWriter.of(format, columns, null == gzip ? channel : gzip, blockRows);
+        try {
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                try (Stream<T> stream = rows.get()) {
+                    stream.forEach(row -> {
+                        try {
+                            writer.write(row);
+                        } catch (IOException ioException) {
+                            throw new UncheckedIOException(ioException);
+                        }
+                        entityManager.detach(row);
+                    });
+                }
+            });
+        } catch (UncheckedIOException uncheckedIOException) {
+            throw uncheckedIOException.getCause();
+        }
+        writer.finish();
+        if (null != gzip) {
+            gzip.finish();
+        }
+        return writer.getRows();
+    }
+
+    private ExportResult toFile(Path file, ChannelExport export) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        long start = System.nanoTime();
+        long rows;
+        long bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            rows = export.to(channel);
+            bytes = channel.size();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Exported {} rows, {} bytes to {} in {} ms", rows, bytes, file, elapsedMillis);
+        return ExportResult.builder()
+                .file(file.toAbsolutePath().toString())
+                .rows(rows)
+                .bytes(bytes)
+                .elapsedMillis(elapsedMillis)
+                .rowsPerSecond(0 == elapsedMillis ? rows * 1000 : rows * 1000 / elapsedMillis)
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface ChannelExport {
+        long to(WritableByteChannel channel) throws IOException;
+    }
+}
@@ -0,0 +1,227 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TradeType;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import com.application.portfoliotracker.utils.AfterCommit;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Sorted in-memory views of every trade, so range and top-N queries walk a skip list instead of the trades table:
+ * per ticker by execution time, per portfolio by execution time and per portfolio by notional (price times shares).
+ * Trades are loaded once on startup and then follow committed writes, applied after their transaction commits
+ * while the ticker lock is still held. Queries read the skip lists without locking and see every change
+ * committed before they started.
+ */
+@Slf4j
+@Component
+public class TradeIndex {
+
+    //Execution order, trade id breaking ties. Trades written without a time sort first.
+    private static final Comparator<Entry> BY_TIME = Comparator.<Entry, LocalDateTime>comparing(entry -> entry.executedAt,
+                    Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingLong(entry -> entry.tradeId);
+
+    //Largest notional first, lowest trade id breaking ties
+    private static final Comparator<Entry> BY_NOTIONAL = Comparator.<Entry, BigDecimal>comparing(entry -> entry.notional)
+            .reversed()
+            .thenComparingLong(entry -> entry.tradeId);
+
+    private final boolean enabled;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ConcurrentHashMap<String, PortfolioTrades> portfolios = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TradeIndex(@Value("${portfolio.trade-index.enabled:false}") boolean enabled, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        Gauge.builder("portfolio.trade-index.trades", portfolios,
+                        all -> all.values().stream().mapToInt(trades -> trades.byId.size()).sum())
+                .description("Trades held by the sorted trade index")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Trade> trades = tradeRepository.streamAllByOrderByTradeIdAsc()) {
+                trades.forEach(trade -> add(new Entry(trade)));
+            }
+        });
+        log.info("Indexed {} trades of {} portfolios in {} ms", portfolios.values().stream().mapToInt(trades -> trades.byId.size()).sum(),
+                portfolios.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //Adds the trade to or removes it from the index once the surrounding transaction commits.
+    //The trade is captured right away, later changes to it are not applied.
+    public void apply(TradeType type, Trade trade) {
+        if (!enabled) {
+            return;
+        }
+        Runnable change;
+        if (TradeType.DELETE == type) {
+            String portfolioId = trade.getPortfolioId();
+            long tradeId = trade.getTradeId();
+            change = () -> remove(portfolioId, tradeId);
+        } else {
+            Entry entry = new Entry(trade);
+            change = () -> add(entry);
+        }
+        AfterCommit.run(change);
+    }
+
+    //Trades of the ticker executed between from and to, both included, in execution order, at most limit of them
+    public List<Trade> findByTickerBetween(String portfolioId, String ticker, LocalDateTime from, LocalDateTime to, int limit) {
+        PortfolioTrades trades = portfolios.get(portfolioId);
+        NavigableSet<Entry> byTime = null == trades ? null : trades.byTicker.get(ticker);
+        if (null == byTime) {
+            return Collections.emptyList();
+        }
+        return first(byTime.subSet(Entry.bound(from, Long.MIN_VALUE), true, Entry.bound(to, Long.MAX_VALUE), true), limit);
+    }
+
+    //The limit trades of the portfolio with the largest notional, largest first
+    public List<Trade> findTopByNotional(String portfolioId, int limit) {
+        PortfolioTrades trades = portfolios.get(portfolioId);
+        return null == trades ? Collections.emptyList() : first(trades.byNotional, limit);
+    }
+
+    //The limit most recently executed trades of the portfolio across all tickers, most recent first
+    public List<Trade> findMostRecent(String portfolioId, int limit) {
+        PortfolioTrades trades = portfolios.get(portfolioId);
+        return null == trades ? Collections.emptyList() : first(trades.byTime.descendingSet(), limit);
+    }
+
+    private void add(Entry entry) {
+        PortfolioTrades trades = portfolios.computeIfAbsent(entry.trade.getPortfolioId(), portfolioId -> new PortfolioTrades());
+        Entry previous = trades.byId.put(entry.tradeId, entry);
+        if (null != previous) {
+            trades.unlink(previous);
+        }
+        trades.link(entry);
+        trades.byTime.add(entry);
+        trades.byNotional.add(entry);
+    }
+
+    private void remove(String portfolioId, long tradeId) {
+        PortfolioTrades trades = portfolios.get(portfolioId);
+        Entry entry = null == trades ? null : trades.byId.remove(tradeId);
+        if (null != entry) {
+            trades.unlink(entry);
+        }
+    }
+
+    //Copies of the first limit trades of the set, callers may change them freely
+    private static List<Trade> first(NavigableSet<Entry> entries, int limit) {
+        List<Trade> trades = new ArrayList<>(Math.min(limit, 64));
+        Iterator<Entry> iterator = entries.iterator();
+        while (trades.size() < limit && iterator.hasNext()) {
+            trades.add(copy(iterator.next().trade));
+        }
+        return trades;
+    }
+
+    private static Trade copy(Trade trade) {
+        return Trade.builder()
+                .tradeId(trade.getTradeId())
+                .portfolioId(trade.getPortfolioId())
+                .ticker(trade.getTicker())
+                .transactionType(trade.getTransactionType())
+                .price(trade.getPrice())
+                .shares(trade.getShares())
+                .lastUpdated(trade.getLastUpdated())
+                .idempotencyKey(trade.getIdempotencyKey())
+                .build();
+    }
+
+    private static final class PortfolioTrades {
+
+        private final ConcurrentHashMap<Long, Entry> byId = new ConcurrentHashMap<>();
+
+        private final ConcurrentHashMap<String, ConcurrentSkipListSet<Entry>> byTicker = new ConcurrentHashMap<>();
+
+        private final ConcurrentSkipListSet<Entry> byTime = new ConcurrentSkipListSet<>(BY_TIME);
+
+        private final ConcurrentSkipListSet<Entry> byNotional = new ConcurrentSkipListSet<>(BY_NOTIONAL);
+
+        //Adds the entry to its ticker's set inside the map's compute, so it never lands in a set being dropped
+        private void link(Entry entry) {
+            byTicker.compute(entry.trade.getTicker(), (ticker, ofTicker) -> {
+                ConcurrentSkipListSet<Entry> linked = null == ofTicker ? new ConcurrentSkipListSet<>(BY_TIME) : ofTicker;
+                linked.add(entry);
+                return linked;
+            });
+        }
+
+        //Removes the entry from every view, dropping its ticker's set once it is empty
+        private void unlink(Entry entry) {
+            byTicker.computeIfPresent(entry.trade.getTicker(), (ticker, ofTicker) -> {
+                ofTicker.remove(entry);
+                return ofTicker.isEmpty() ? null : ofTicker;
+            });
+            byTime.remove(entry);
+            byNotional.remove(entry);
+        }
+    }
+
+    //A trade as it was committed with the sort keys of the index
+    private static final class Entry {
+
+        private final Trade trade;
+        private final long tradeId;
+        private final LocalDateTime executedAt;
+        private final BigDecimal notional;
+
+        private Entry(Trade trade) {
+            this.trade = copy(trade);
+            this.tradeId = trade.getTradeId();
+            this.executedAt = trade.getLastUpdated();
+            this.notional = null == trade.getPrice() || null == trade.getShares() ? BigDecimal.ZERO
+                    : trade.getPrice().multiply(new BigDecimal(trade.getShares()));
+        }
+
+        private Entry(LocalDateTime executedAt, long tradeId) {
+            this.trade = null;
+            this.tradeId = tradeId;
+            this.executedAt = executedAt;
+            this.notional = null;
+        }
+
+        //Key sorting before or after every trade executed at the given time, for range bounds
+        private static Entry bound(LocalDateTime executedAt, long tradeId) {
+            return new Entry(executedAt, tradeId);
+        }
+    }
+}
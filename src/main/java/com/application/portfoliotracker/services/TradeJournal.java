@@ -0,0 +1,336 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingId;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TradeType;
+import com.application.portfoliotracker.exceptions.InvalidTransactionException;
+import com.application.portfoliotracker.utils.AfterCommit;
+import com.application.portfoliotracker.utils.HoldingsSnapshot;
+import com.application.portfoliotracker.utils.JournalFile;
+import com.application.portfoliotracker.utils.TradeEvent;
+import com.application.portfoliotracker.utils.Utils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only log of every committed trade change, with the holdings it produces kept in memory.
+ * Every snapshot-every events the holdings are snapshotted in the background, so startup only loads
+ * the latest snapshot and replays the events written after it instead of recomputing from all trades.
+ * Events are appended once their transaction commits, while the ticker lock is still held, so the
+ * journal order per ticker matches the order of the holdings table. Events carry the whole trade, so
+ * replaying the journal from its start also gives back every live trade.
+ *
+ * An event that cannot be written does not fail the committed request: the journal is marked degraded,
+ * stops journaling, and is discarded on the next start instead of restoring anything from it.
+ */
+@Slf4j
+@Component
+public class TradeJournal {
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final long snapshotEvery;
+    private final boolean fsync;
+
+    //Written once an event could not be journaled, the journal misses it from then on
+    private static final String DEGRADED_MARKER = "degraded";
+
+    //Guards the file and the state together, so a snapshot always matches its journal position
+    private final Object lock = new Object();
+
+    private final Map<HoldingId, Holding> holdings = new HashMap<>();
+
+    private JournalFile journal;
+    private long sinceSnapshot;
+    private boolean snapshotRunning;
+    private ExecutorService snapshotter;
+    private volatile boolean degraded;
+
+    public TradeJournal(@Value("${portfolio.journal.enabled:false}") boolean enabled,
+                        @Value("${portfolio.journal.directory:journal}") String directory,
+                        @Value("${portfolio.journal.segment-size:67108864}") int segmentSize,
+                        @Value("${portfolio.journal.snapshot-every:100000}") long snapshotEvery,
+                        @Value("${portfolio.journal.fsync:false}") boolean fsync) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.snapshotEvery = snapshotEvery;
+        this.fsync = fsync;
+    }
+
+    //Loads the latest snapshot and replays the journal tail into the in-memory holdings
+    @PostConstruct
+    public void recover() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        Path marker = directory.resolve(DEGRADED_MARKER);
+        if (Files.exists(marker)) {
+            log.warn("Discarding the journal at {} : a previous run could not write all of its events", directory);
+            JournalFile.delete(directory);
+            HoldingsSnapshot.delete(directory);
+            Files.delete(marker);
+        }
+        Optional<HoldingsSnapshot> snapshot = HoldingsSnapshot.readLatest(directory);
+        snapshot.ifPresent(latest -> latest.getHoldings().forEach(holding -> holdings.put(key(holding), holding)));
+        long from = snapshot.map(HoldingsSnapshot::getPosition).orElse(JournalFile.position(1, 0));
+        long events = JournalFile.replay(directory, from, event -> apply(holdings, event));
+        journal = new JournalFile(directory, segmentSize);
+        sinceSnapshot = events;
+        snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long elapsedNanos = System.nanoTime() - start;
+        log.info("Recovered {} holdings from journal : snapshot {}, {} events replayed in {} ms ({} events/s)",
+                holdings.size(), snapshot.isPresent() ? "loaded" : "absent", events, elapsedNanos / 1_000_000,
+                0 == elapsedNanos ? events : events * 1_000_000_000L / elapsedNanos);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            journal.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //Whether an event could not be written, the journal is then incomplete until the next start
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    //Journals the trade being added to or deleted from its holding once the surrounding transaction commits.
+    //The trade is captured right away, later changes to it are not journaled.
+    public void append(TradeType type, Trade trade) {
+        if (!enabled) {
+            return;
+        }
+        TradeEvent event = TradeEvent.of(type, trade);
+        AfterCommit.run(() -> write(event));
+    }
+
+    //Holdings rebuilt from the journal, copies safe to persist
+    public List<Holding> getHoldings() {
+        if (!enabled || degraded) {
+            return Collections.emptyList();
+        }
+        synchronized (lock) {
+            List<Holding> copies = new ArrayList<>(holdings.size());
+            holdings.values().forEach(holding -> copies.add(copy(holding)));
+            return copies;
+        }
+    }
+
+    /**
+     * Live trades replayed from the start of the journal with their ids, in trade id order. Empty when the
+     * journal is degraded or cannot be read, and when it does not go back to the first trade of its holdings,
+     * e.g. it was started on a table that already had trades: the holdings folded from the replayed trades
+     * then differ from the journaled ones.
+     */
+    public List<Trade> getTrades() {
+        if (!enabled || degraded) {
+            return Collections.emptyList();
+        }
+        Map<Long, TradeEvent> live = new HashMap<>();
+        Map<HoldingId, Holding> replayed = new HashMap<>();
+        synchronized (lock) {
+            try {
+                JournalFile.replay(directory, JournalFile.position(1, 0), event -> {
+                    if (TradeType.DELETE == event.getType()) {
+                        live.remove(event.getTradeId());
+                    } else {
+                        live.put(event.getTradeId(), event);
+                    }
+                    apply(replayed, event);
+                });
+            } catch (IOException ioException) {
+                log.error("Could not replay the trades of the journal at {}", directory, ioException);
+                return Collections.emptyList();
+            }
+            if (!sameHoldings(replayed, holdings)) {
+                log.warn("The journal at {} does not hold every trade of its holdings, its trades cannot be restored", directory);
+                return Collections.emptyList();
+            }
+        }
+        List<Trade> trades = new ArrayList<>(live.size());
+        live.values().stream()
+                .sorted(Comparator.comparingLong(TradeEvent::getTradeId))
+                .forEach(event -> trades.add(event.toTrade()));
+        return trades;
+    }
+
+    //Replaces every journaled holding and snapshots them right away,
+    //events before the snapshot are no longer needed for recovery
+    public void reset(Collection<Holding> replacement) {
+        reset(null, replacement);
+    }
+
+    //Replaces the journaled holdings of the portfolio after a rebuild and snapshots them right away
+    public void reset(String portfolioId, Collection<Holding> replacement) {
+        if (!enabled) {
+            return;
+        }
+        List<Holding> copies = new ArrayList<>(replacement.size());
+        replacement.forEach(holding -> copies.add(copy(holding)));
+        Runnable action = () -> {
+            synchronized (lock) {
+                if (degraded) {
+                    return;
+                }
+                holdings.keySet().removeIf(key -> null == portfolioId || portfolioId.equals(key.getPortfolioId()));
+                copies.forEach(holding -> holdings.put(key(holding), holding));
+                long position = journal.position();
+                writeSnapshot(position, HoldingsSnapshot.encode(position, holdings.values()));
+                sinceSnapshot = 0;
+            }
+        };
+        AfterCommit.run(action);
+    }
+
+    //Runs after the trade's transaction committed, so a failure is logged instead of failing the request
+    private void write(TradeEvent event) {
+        synchronized (lock) {
+            if (degraded) {
+                return;
+            }
+            try {
+                journal.append(event);
+                if (fsync) {
+                    journal.force();
+                }
+            } catch (IOException | RuntimeException exception) {
+                degrade(event, exception);
+                return;
+            }
+            apply(holdings, event);
+            if (++sinceSnapshot >= snapshotEvery && !snapshotRunning) {
+                snapshotRunning = true;
+                sinceSnapshot = 0;
+                long position = journal.position();
+                byte[] encoded = HoldingsSnapshot.encode(position, holdings.values());
+                snapshotter.execute(() -> {
+                    writeSnapshot(position, encoded);
+                    synchronized (lock) {
+                        snapshotRunning = false;
+                    }
+                });
+            }
+        }
+    }
+
+    //Stops journaling and leaves a marker, so the next start discards the incomplete journal
+    private void degrade(TradeEvent event, Exception cause) {
+        degraded = true;
+        holdings.clear();
+        log.error("Could not journal trade {} of portfolio {}, the journal is degraded until the next start",
+                event.getTradeId(), event.getPortfolioId(), cause);
+        try {
+            Files.write(directory.resolve(DEGRADED_MARKER), new byte[0]);
+        } catch (IOException ioException) {
+            log.error("Could not mark the journal at {} degraded", directory, ioException);
+        }
+    }
+
+    private void writeSnapshot(long position, byte[] encoded) {
+        try {
+            journal.force();
+            HoldingsSnapshot.write(directory, position, encoded);
+        } catch (IOException ioException) {
+            log.error("Could not write holdings snapshot at journal position {}", position, ioException);
+        }
+    }
+
+    //Folds the event into the holdings the same way PortfolioService folds it into the table.
+    //The fold runs on a copy, an event that cannot be applied leaves the holding untouched.
+    private static void apply(Map<HoldingId, Holding> holdings, TradeEvent event) {
+        Trade trade = event.toTrade();
+        HoldingId key = new HoldingId(event.getPortfolioId(), event.getTicker());
+        Holding current = holdings.get(key);
+        Holding holding = null == current ? Holding.builder()
+                .portfolioId(event.getPortfolioId())
+                .ticker(event.getTicker())
+                .shares(BigInteger.ZERO)
+                .totalPrice(BigDecimal.ZERO)
+                .averageBuyPrice(BigDecimal.ZERO)
+                .realizedProfit(BigDecimal.ZERO)
+                .build() : copy(current);
+        try {
+            if (TradeType.DELETE == event.getType()) {
+                Utils.deleteTradeFromHolding(holding, trade);
+            } else {
+                Utils.addTradeToHolding(holding, trade);
+            }
+        } catch (InvalidTransactionException invalidTransactionException) {
+            log.error("Skipping journal event of trade {} : {}", trade.getTradeId(), invalidTransactionException.getMessage());
+            return;
+        }
+        if (BigInteger.ZERO.equals(holding.getShares())) {
+            holdings.remove(key);
+        } else {
+            holdings.put(key, holding);
+        }
+    }
+
+    private static boolean sameHoldings(Map<HoldingId, Holding> left, Map<HoldingId, Holding> right) {
+        if (!left.keySet().equals(right.keySet())) {
+            return false;
+        }
+        return left.entrySet().stream().allMatch(entry -> {
+            Holding other = right.get(entry.getKey());
+            return Objects.equals(entry.getValue().getShares(), other.getShares())
+                    && sameAmount(entry.getValue().getTotalPrice(), other.getTotalPrice())
+                    && sameAmount(entry.getValue().getRealizedProfit(), other.getRealizedProfit());
+        });
+    }
+
+    private static boolean sameAmount(BigDecimal left, BigDecimal right) {
+        return null == left || null == right ? left == right : 0 == left.compareTo(right);
+    }
+
+    private static HoldingId key(Holding holding) {
+        return new HoldingId(holding.getPortfolioId(), holding.getTicker());
+    }
+
+    private static Holding copy(Holding holding) {
+        return Holding.builder()
+                .portfolioId(holding.getPortfolioId())
+                .ticker(holding.getTicker())
+                .totalPrice(holding.getTotalPrice())
+                .averageBuyPrice(holding.getAverageBuyPrice())
+                .shares(holding.getShares())
+                .realizedProfit(holding.getRealizedProfit())
+                .lastUpdated(holding.getLastUpdated())
+                .build();
+    }
+}
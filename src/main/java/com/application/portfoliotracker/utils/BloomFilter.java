@@ -0,0 +1,74 @@
+package com.application.portfoliotracker.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter of strings. mightContain never answers false for an added string, and answers true
+ * for a string never added with about the false positive rate it was sized for while at most expectedEntries
+ * were added, growing past it. Adds and lookups are lock-free and may run concurrently.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+
+    private final long bits;
+
+    private final int hashes;
+
+    /**
+     * @param expectedEntries     Entries the filter is sized for
+     * @param falsePositiveRate   False positive rate at expectedEntries, between 0 and 1
+     */
+    public BloomFilter(long expectedEntries, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (optimalBits + 63) >>> 6));
+        this.words = new AtomicLongArray(wordCount);
+        this.bits = (long) wordCount << 6;
+        this.hashes = (int) Math.max(1, Math.round((double) bits / Math.max(1, expectedEntries) * Math.log(2)));
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int step = (int) (hash >>> 32) | 1;
+        for (int n = 0; n < hashes; n++) {
+            long bit = Math.floorMod((int) hash + (long) n * step, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while (0 == (current & mask) && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int step = (int) (hash >>> 32) | 1;
+        for (int n = 0; n < hashes; n++) {
+            long bit = Math.floorMod((int) hash + (long) n * step, bits);
+            if (0 == (words.get((int) (bit >>> 6)) & (1L << bit))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Size of the bit set in bytes
+    public long getBytes() {
+        return bits >>> 3;
+    }
+
+    //64-bit FNV-1a over the UTF-8 bytes, finished with a murmur mix so both halves are usable as hashes
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,87 @@
+package com.application.portfoliotracker.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * One column of an export: its name, its type and how to read it from a row. Numbers, amounts and times are
+ * read as primitive longs so writers can encode them without boxing. Nulls of those are NULL.
+ */
+public final class ExportColumn<T> {
+
+    //Value of a missing number, amount or time
+    public static final long NULL = Long.MIN_VALUE;
+
+    public enum Type {
+        //Plain long
+        LONG,
+        //Fixed-point mantissa with FixedPoint.SCALE decimals
+        AMOUNT,
+        //Epoch microseconds, UTC
+        TIME,
+        //String, null allowed
+        TEXT
+    }
+
+    private final String name;
+    private final Type type;
+    private final ToLongFunction<T> number;
+    private final Function<T, String> text;
+
+    private ExportColumn(String name, Type type, ToLongFunction<T> number, Function<T, String> text) {
+        this.name = name;
+        this.type = type;
+        this.number = number;
+        this.text = text;
+    }
+
+    public static <T> ExportColumn<T> integer(String name, Function<T, ? extends Number> value) {
+        return new ExportColumn<>(name, Type.LONG, row -> {
+            Number number = value.apply(row);
+            if (null == number) {
+                return NULL;
+            }
+            return number instanceof BigInteger ? ((BigInteger) number).longValueExact() : number.longValue();
+        }, null);
+    }
+
+    public static <T> ExportColumn<T> amount(String name, Function<T, BigDecimal> value) {
+        return new ExportColumn<>(name, Type.AMOUNT, row -> {
+            BigDecimal amount = value.apply(row);
+            return null == amount ? NULL : FixedPoint.of(amount);
+        }, null);
+    }
+
+    public static <T> ExportColumn<T> time(String name, Function<T, LocalDateTime> value) {
+        return new ExportColumn<>(name, Type.TIME, row -> {
+            LocalDateTime time = value.apply(row);
+            return null == time ? NULL : TradeColumns.toMicros(time);
+        }, null);
+    }
+
+    public static <T> ExportColumn<T> text(String name, Function<T, ?> value) {
+        return new ExportColumn<>(name, Type.TEXT, null, row -> {
+            Object text = value.apply(row);
+            return null == text ? null : text.toString();
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getLong(T row) {
+        return number.applyAsLong(row);
+    }
+
+    public String getText(T row) {
+        return text.apply(row);
+    }
+}
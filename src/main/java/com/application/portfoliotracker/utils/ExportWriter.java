@@ -0,0 +1,303 @@
+package com.application.portfoliotracker.utils;
+
+import com.application.portfoliotracker.enums.ExportFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes rows into a channel through direct buffers allocated once, so the heap it uses does not depend on the
+ * number of rows. CSV writes a header line and one line per row, amounts with up to FixedPoint.SCALE decimals and
+ * times as ISO-8601. COLUMNAR writes blocks of up to blockRows rows, each column of a block contiguous:
+ *
+ * file    : "PTC1", int columns, per column (byte type, short name length, name bytes), blocks, int 0
+ * block   : int rows, per column its values
+ * LONG, AMOUNT, TIME : rows longs, Long.MIN_VALUE for null
+ * TEXT    : int dictionary size, per entry (int length, UTF-8 bytes), then rows int codes, -1 for null
+ *
+ * Integers are little-endian. Dictionaries are per block, which keeps them bounded for unique values such as keys.
+ */
+public abstract class ExportWriter<T> {
+
+    protected final List<ExportColumn<T>> columns;
+
+    protected final WritableByteChannel channel;
+
+    protected final ByteBuffer buffer;
+
+    private long rows;
+
+    protected ExportWriter(List<ExportColumn<T>> columns, WritableByteChannel channel, int bufferSize) {
+        this.columns = columns;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static <T> ExportWriter<T> of(ExportFormat format, List<ExportColumn<T>> columns, WritableByteChannel channel,
+                                         int blockRows) throws IOException {
+        if (ExportFormat.CSV == format) {
+            return new Csv<>(columns, channel);
+        }
+        return new Columnar<>(columns, channel, blockRows);
+    }
+
+    public void write(T row) throws IOException {
+        append(row);
+        rows++;
+    }
+
+    //Writes what is buffered and the end of the export, the channel stays open
+    public abstract void finish() throws IOException;
+
+    public long getRows() {
+        return rows;
+    }
+
+    protected abstract void append(T row) throws IOException;
+
+    protected void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    protected void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static final class Csv<T> extends ExportWriter<T> {
+
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        //Longest field written without a length check, longer text goes through putText
+        private static final int MAX_NUMBER = 32;
+
+        private Csv(List<ExportColumn<T>> columns, WritableByteChannel channel) throws IOException {
+            super(columns, channel, BUFFER_SIZE);
+            for (int index = 0; index < columns.size(); index++) {
+                if (index > 0) {
+                    buffer.put((byte) ',');
+                }
+                putText(columns.get(index).getName());
+            }
+            buffer.put((byte) '\n');
+        }
+
+        @Override
+        protected void append(T row) throws IOException {
+            for (int index = 0; index < columns.size(); index++) {
+                ExportColumn<T> column = columns.get(index);
+                ensure(MAX_NUMBER + 1);
+                if (index > 0) {
+                    buffer.put((byte) ',');
+                }
+                switch (column.getType()) {
+                    case LONG:
+                        putLong(column.getLong(row));
+                        break;
+                    case AMOUNT:
+                        putAmount(column.getLong(row));
+                        break;
+                    case TIME:
+                        long micros = column.getLong(row);
+                        if (ExportColumn.NULL != micros) {
+                            putText(TradeColumns.fromMicros(micros).toString());
+                        }
+                        break;
+                    default:
+                        String text = column.getText(row);
+                        if (null != text) {
+                            putText(text);
+                        }
+                }
+            }
+            ensure(1);
+            buffer.put((byte) '\n');
+        }
+
+        private void putLong(long value) {
+            if (ExportColumn.NULL == value) {
+                return;
+            }
+            if (value < 0) {
+                buffer.put((byte) '-');
+                value = -value;
+            }
+            putDigits(value, 1);
+        }
+
+        //Mantissa with FixedPoint.SCALE decimals, trailing zero decimals dropped
+        private void putAmount(long mantissa) {
+            if (ExportColumn.NULL == mantissa) {
+                return;
+            }
+            if (mantissa < 0) {
+                buffer.put((byte) '-');
+                mantissa = -mantissa;
+            }
+            putDigits(mantissa / FixedPoint.ONE, 1);
+            long fraction = mantissa % FixedPoint.ONE;
+            if (0 == fraction) {
+                return;
+            }
+            int decimals = FixedPoint.SCALE;
+            while (0 == fraction % 10) {
+                fraction /= 10;
+                decimals--;
+            }
+            buffer.put((byte) '.');
+            putDigits(fraction, decimals);
+        }
+
+        //Writes the value with at least minDigits digits, left padded with zeros
+        private void putDigits(long value, int minDigits) {
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            for (int pad = digits; pad < minDigits; pad++) {
+                buffer.put((byte) '0');
+            }
+            int end = buffer.position() + digits;
+            for (int at = end - 1; at >= end - digits; at--) {
+                buffer.put(at, (byte) ('0' + value % 10));
+                value /= 10;
+            }
+            buffer.position(end);
+        }
+
+        //Quotes the text if it holds a separator, a quote or a line break
+        private void putText(String text) throws IOException {
+            boolean quoted = text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+            if (quoted) {
+                text = '"' + text.replace("\"", "\"\"") + '"';
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            drain();
+        }
+    }
+
+    private static final class Columnar<T> extends ExportWriter<T> {
+
+        private static final int MAGIC = 0x31435450;
+
+        private static final int STAGING_SIZE = 1 << 16;
+
+        private final int blockRows;
+
+        //Values of the current block, one direct buffer per column
+        private final ByteBuffer[] values;
+
+        //Dictionaries of the current block, null for columns that are not TEXT
+        private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+
+        private int blockSize;
+
+        private Columnar(List<ExportColumn<T>> columns, WritableByteChannel channel, int blockRows) throws IOException {
+            super(columns, channel, STAGING_SIZE);
+            this.blockRows = blockRows;
+            this.values = new ByteBuffer[columns.size()];
+            buffer.putInt(MAGIC);
+            buffer.putInt(columns.size());
+            for (int index = 0; index < columns.size(); index++) {
+                ExportColumn<T> column = columns.get(index);
+                boolean text = ExportColumn.Type.TEXT == column.getType();
+                byte[] name = column.getName().getBytes(StandardCharsets.UTF_8);
+                buffer.put((byte) column.getType().ordinal());
+                buffer.putShort((short) name.length);
+                buffer.put(name);
+                values[index] = ByteBuffer.allocateDirect(blockRows * (text ? 4 : 8)).order(ByteOrder.LITTLE_ENDIAN);
+                dictionaries.add(text ? new HashMap<>() : null);
+            }
+        }
+
+        @Override
+        protected void append(T row) throws IOException {
+            for (int index = 0; index < columns.size(); index++) {
+                ExportColumn<T> column = columns.get(index);
+                if (ExportColumn.Type.TEXT == column.getType()) {
+                    String text = column.getText(row);
+                    Map<String, Integer> dictionary = dictionaries.get(index);
+                    values[index].putInt(null == text ? -1 : dictionary.computeIfAbsent(text, entry -> dictionary.size()));
+                } else {
+                    values[index].putLong(column.getLong(row));
+                }
+            }
+            if (++blockSize == blockRows) {
+                writeBlock();
+            }
+        }
+
+        //Stages the block and dictionary headers, then writes each column buffer to the channel as it is
+        private void writeBlock() throws IOException {
+            ensure(4);
+            buffer.putInt(blockSize);
+            for (int index = 0; index < columns.size(); index++) {
+                Map<String, Integer> dictionary = dictionaries.get(index);
+                if (null != dictionary) {
+                    String[] entries = new String[dictionary.size()];
+                    dictionary.forEach((text, code) -> entries[code] = text);
+                    ensure(4);
+                    buffer.putInt(entries.length);
+                    for (String entry : entries) {
+                        byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                        ensure(4);
+                        buffer.putInt(bytes.length);
+                        putBytes(bytes);
+                    }
+                    dictionary.clear();
+                }
+                drain();
+                ByteBuffer column = values[index];
+                column.flip();
+                while (column.hasRemaining()) {
+                    channel.write(column);
+                }
+                column.clear();
+            }
+            blockSize = 0;
+        }
+
+        private void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (blockSize > 0) {
+                writeBlock();
+            }
+            ensure(4);
+            buffer.putInt(0);
+            drain();
+        }
+    }
+}
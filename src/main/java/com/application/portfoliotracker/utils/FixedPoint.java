@@ -0,0 +1,101 @@
+package com.application.portfoliotracker.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point arithmetic on primitive longs. Amounts are stored as a long mantissa with SCALE
+ * implied decimal places, quantities are plain longs. Every operation is exact or rounds half-even,
+ * and throws ArithmeticException instead of silently overflowing.
+ */
+public final class FixedPoint {
+
+    public static final int SCALE = 6;
+
+    public static final long ONE = 1_000_000L;
+
+    private FixedPoint() {
+    }
+
+    //Converts an amount coming from JPA/JSON to its mantissa, rounding half-even to SCALE places
+    public static long of(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    //Converts a share count to a quantity, failing instead of truncating large values
+    public static long quantity(BigInteger shares) {
+        return shares.longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long amount) {
+        return BigDecimal.valueOf(amount, SCALE);
+    }
+
+    public static long add(long amount, long other) {
+        return Math.addExact(amount, other);
+    }
+
+    public static long subtract(long amount, long other) {
+        return Math.subtractExact(amount, other);
+    }
+
+    //Amount times a quantity, e.g. price per share times shares
+    public static long multiply(long amount, long quantity) {
+        return Math.multiplyExact(amount, quantity);
+    }
+
+    /**
+     * Computes value * multiplier / divisor with a 128 bit intermediate product, rounded half-even
+     *
+     * @param value      Amount or quantity
+     * @param multiplier Amount or quantity
+     * @param divisor    Non zero amount or quantity
+     * @return Rounded quotient
+     * @throws ArithmeticException if divisor is zero or the quotient does not fit in a long
+     */
+    public static long mulDiv(long value, long multiplier, long divisor) {
+        if (0 == divisor) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (Long.MIN_VALUE == value || Long.MIN_VALUE == multiplier || Long.MIN_VALUE == divisor) {
+            throw new ArithmeticException("long overflow");
+        }
+        boolean negative = (value < 0) ^ (multiplier < 0) ^ (divisor < 0);
+        long a = Math.abs(value);
+        long b = Math.abs(multiplier);
+        long d = Math.abs(divisor);
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        long quotient;
+        long remainder;
+        if (0 == high && low >= 0) {
+            quotient = low / d;
+            remainder = low % d;
+        } else {
+            if (Long.compareUnsigned(high, d) >= 0) {
+                throw new ArithmeticException("long overflow");
+            }
+            //Shift-subtract division of the unsigned 128 bit product, high < d keeps the quotient in 64 bits
+            quotient = 0;
+            remainder = high;
+            for (int bit = 63; bit >= 0; bit--) {
+                boolean carry = remainder < 0;
+                remainder = (remainder << 1) | ((low >>> bit) & 1);
+                quotient <<= 1;
+                if (carry || Long.compareUnsigned(remainder, d) >= 0) {
+                    remainder -= d;
+                    quotient |= 1;
+                }
+            }
+        }
+        int half = Long.compareUnsigned(remainder, d - remainder);
+        if (half > 0 || (0 == half && 0 != (quotient & 1))) {
+            quotient++;
+        }
+        if (quotient < 0) {
+            throw new ArithmeticException("long overflow");
+        }
+        return negative ? -quotient : quotient;
+    }
+}
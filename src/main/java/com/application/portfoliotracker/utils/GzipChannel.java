@@ -0,0 +1,99 @@
+package com.application.portfoliotracker.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Channel writing the gzip format (RFC 1952) of what is written to it into another channel. Input is deflated
+ * straight from the caller's buffer, direct buffers included, into a direct output buffer, so no byte arrays are
+ * copied on the way. finish writes the trailer and leaves the target open.
+ */
+public final class GzipChannel implements WritableByteChannel {
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final ByteBuffer NO_INPUT = ByteBuffer.allocate(0);
+
+    private final WritableByteChannel target;
+
+    private final Deflater deflater;
+
+    private final CRC32 crc = new CRC32();
+
+    private final ByteBuffer output;
+
+    private long inputBytes;
+
+    private boolean finished;
+
+    public GzipChannel(WritableByteChannel target, int level, int bufferSize) throws IOException {
+        this.target = target;
+        this.deflater = new Deflater(level, true);
+        this.output = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+        output.put(HEADER);
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        int length = source.remaining();
+        ByteBuffer forCrc = source.duplicate();
+        crc.update(forCrc);
+        deflater.setInput(source);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+        //The deflater keeps the buffer it was given, drop it before the caller reuses it
+        deflater.setInput(NO_INPUT);
+        inputBytes += length;
+        return length;
+    }
+
+    //Deflates whatever is left, writes the trailer and drains everything to the target
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate();
+        }
+        if (output.remaining() < 8) {
+            drain();
+        }
+        output.putInt((int) crc.getValue());
+        output.putInt((int) inputBytes);
+        drain();
+        deflater.end();
+    }
+
+    private void deflate() throws IOException {
+        if (!output.hasRemaining()) {
+            drain();
+        }
+        deflater.deflate(output);
+    }
+
+    private void drain() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            target.write(output);
+        }
+        output.clear();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !finished;
+    }
+
+    //Same as finish, the target stays open
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+}
@@ -0,0 +1,165 @@
+package com.application.portfoliotracker.utils;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.exceptions.InvalidTransactionException;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+/**
+ * Running totals of a single ticker. Trades are folded one at a time in execution order,
+ * a sell releases cost at the current average buy price and books the difference as realized profit.
+ */
+public class HoldingAggregate {
+
+    private final String portfolioId;
+    private final String ticker;
+    private long shares;
+    private long totalPrice;
+    private long realizedProfit;
+    private LocalDateTime lastUpdated;
+
+    private HoldingAggregate(String portfolioId, String ticker, long shares, long totalPrice, long realizedProfit,
+                             LocalDateTime lastUpdated) {
+        this.portfolioId = portfolioId;
+        this.ticker = ticker;
+        this.shares = shares;
+        this.totalPrice = totalPrice;
+        this.realizedProfit = realizedProfit;
+        this.lastUpdated = lastUpdated;
+    }
+
+    public static HoldingAggregate empty(String ticker) {
+        return empty(null, ticker);
+    }
+
+    public static HoldingAggregate empty(String portfolioId, String ticker) {
+        return new HoldingAggregate(portfolioId, ticker, 0, 0, 0, null);
+    }
+
+    public static HoldingAggregate of(Holding holding) {
+        return new HoldingAggregate(holding.getPortfolioId(), holding.getTicker(),
+                null == holding.getShares() ? 0 : FixedPoint.quantity(holding.getShares()),
+                null == holding.getTotalPrice() ? 0 : FixedPoint.of(holding.getTotalPrice()),
+                null == holding.getRealizedProfit() ? 0 : FixedPoint.of(holding.getRealizedProfit()),
+                holding.getLastUpdated());
+    }
+
+    //Folds one trade of this ticker into the running totals
+    public void apply(Trade trade) {
+        long tradeShares;
+        long price;
+        try {
+            tradeShares = FixedPoint.quantity(trade.getShares());
+            price = FixedPoint.of(trade.getPrice());
+        } catch (ArithmeticException arithmeticException) {
+            throw new InvalidTransactionException("Invalid Transaction Causing Overflow");
+        }
+        apply(TransactionType.BUY == trade.getTransactionType(), price, tradeShares);
+        executedAt(trade.getLastUpdated());
+    }
+
+    //Folds one trade given as a fixed-point price and quantity, lastUpdated is left to executedAt.
+    //The totals are only changed once every step fits in a long.
+    public void apply(boolean buy, long price, long tradeShares) {
+        try {
+            long tradeValue = FixedPoint.multiply(price, tradeShares);
+            if (buy) {
+                long newTotalPrice = FixedPoint.add(totalPrice, tradeValue);
+                shares = Math.addExact(shares, tradeShares);
+                totalPrice = newTotalPrice;
+            } else {
+                if (tradeShares > shares) {
+                    throw new InvalidTransactionException("Invalid Transaction Causing Shares Negative");
+                }
+                long cost = tradeShares == shares ? totalPrice : FixedPoint.mulDiv(totalPrice, tradeShares, shares);
+                long newRealizedProfit = FixedPoint.add(realizedProfit, FixedPoint.subtract(tradeValue, cost));
+                totalPrice = FixedPoint.subtract(totalPrice, cost);
+                shares -= tradeShares;
+                realizedProfit = newRealizedProfit;
+            }
+        } catch (ArithmeticException arithmeticException) {
+            throw new InvalidTransactionException("Invalid Transaction Causing Overflow");
+        }
+    }
+
+    //Takes a folded trade back out of the running totals. A BUY releases its own value, a SELL puts its shares back
+    //at the current average cost and takes its profit against that cost off the realized profit.
+    //The totals are only changed once every step fits in a long.
+    public void revert(Trade trade) {
+        try {
+            long tradeShares = FixedPoint.quantity(trade.getShares());
+            long tradeValue = FixedPoint.multiply(FixedPoint.of(trade.getPrice()), tradeShares);
+            if (TransactionType.BUY == trade.getTransactionType()) {
+                long newTotalPrice = FixedPoint.subtract(totalPrice, tradeValue);
+                shares = Math.subtractExact(shares, tradeShares);
+                totalPrice = newTotalPrice;
+            } else {
+                if (0 == shares) {
+                    throw new InvalidTransactionException("No shares available to sell");
+                }
+                long cost = FixedPoint.mulDiv(totalPrice, tradeShares, shares);
+                long newRealizedProfit = FixedPoint.subtract(realizedProfit, FixedPoint.subtract(tradeValue, cost));
+                long newTotalPrice = FixedPoint.add(totalPrice, cost);
+                shares = Math.addExact(shares, tradeShares);
+                totalPrice = newTotalPrice;
+                realizedProfit = newRealizedProfit;
+            }
+        } catch (ArithmeticException arithmeticException) {
+            throw new InvalidTransactionException("Invalid Transaction Causing Overflow");
+        }
+    }
+
+    //Moves lastUpdated forward to the execution time of a folded trade
+    public void executedAt(LocalDateTime executedAt) {
+        if (null == lastUpdated || (null != executedAt && executedAt.isAfter(lastUpdated))) {
+            lastUpdated = executedAt;
+        }
+    }
+
+    public String getTicker() {
+        return ticker;
+    }
+
+    public long getShares() {
+        return shares;
+    }
+
+    public long getTotalPrice() {
+        return totalPrice;
+    }
+
+    public long getRealizedProfit() {
+        return realizedProfit;
+    }
+
+    public boolean isEmpty() {
+        return 0 == shares;
+    }
+
+    //Writes the running totals into the holding, leaving its identity and lastUpdated untouched
+    public void writeTo(Holding holding) {
+        holding.setShares(BigInteger.valueOf(shares));
+        holding.setTotalPrice(FixedPoint.toBigDecimal(totalPrice));
+        holding.setAverageBuyPrice(FixedPoint.toBigDecimal(averageBuyPrice()));
+        holding.setRealizedProfit(FixedPoint.toBigDecimal(realizedProfit));
+    }
+
+    public Holding toHolding() {
+        return Holding.builder()
+                .portfolioId(portfolioId)
+                .ticker(ticker)
+                .shares(BigInteger.valueOf(shares))
+                .totalPrice(FixedPoint.toBigDecimal(totalPrice))
+                .averageBuyPrice(FixedPoint.toBigDecimal(averageBuyPrice()))
+                .realizedProfit(FixedPoint.toBigDecimal(realizedProfit))
+                .lastUpdated(null == lastUpdated ? LocalDateTime.now() : lastUpdated)
+                .build();
+    }
+
+    private long averageBuyPrice() {
+        return 0 >= shares ? 0 : FixedPoint.mulDiv(totalPrice, 1, shares);
+    }
+}
@@ -0,0 +1,143 @@
+package com.application.portfoliotracker.utils;
+
+import com.application.portfoliotracker.entities.Holding;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Point-in-time copy of every holding together with the journal position it reflects. Snapshots are
+ * written to snapshot-POSITION.bin through a temporary file and an atomic move, so a crash never
+ * leaves a partial snapshot behind. Only the latest two snapshots are kept.
+ */
+public final class HoldingsSnapshot {
+
+    private static final int MAGIC = 0x484C4432;
+    private static final int KEEP = 2;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private final long position;
+    private final List<Holding> holdings;
+
+    private HoldingsSnapshot(long position, List<Holding> holdings) {
+        this.position = position;
+        this.holdings = holdings;
+    }
+
+    //Journal position right after the last event folded into the holdings
+    public long getPosition() {
+        return position;
+    }
+
+    public List<Holding> getHoldings() {
+        return holdings;
+    }
+
+    //Serialises the holdings, called while they cannot change so the bytes match the position
+    public static byte[] encode(long position, Collection<Holding> holdings) {
+        List<byte[]> keys = new ArrayList<>(2 * holdings.size());
+        holdings.forEach(holding -> {
+            keys.add(holding.getPortfolioId().getBytes(StandardCharsets.UTF_8));
+            keys.add(holding.getTicker().getBytes(StandardCharsets.UTF_8));
+        });
+        int size = 4 + 8 + 4 + keys.stream().mapToInt(key -> 2 + key.length).sum() + holdings.size() * 5 * 8;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putLong(position).putInt(holdings.size());
+        Iterator<byte[]> keyBytes = keys.iterator();
+        for (Holding holding : holdings) {
+            byte[] portfolioId = keyBytes.next();
+            byte[] ticker = keyBytes.next();
+            buffer.putShort((short) portfolioId.length).put(portfolioId);
+            buffer.putShort((short) ticker.length).put(ticker);
+            buffer.putLong(FixedPoint.quantity(holding.getShares()));
+            buffer.putLong(FixedPoint.of(holding.getTotalPrice()));
+            buffer.putLong(FixedPoint.of(holding.getAverageBuyPrice()));
+            buffer.putLong(null == holding.getRealizedProfit() ? 0 : FixedPoint.of(holding.getRealizedProfit()));
+            buffer.putLong(null == holding.getLastUpdated() ? Long.MIN_VALUE :
+                    holding.getLastUpdated().toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+        return buffer.array();
+    }
+
+    //Atomically writes an encoded snapshot and drops all but the latest ones
+    public static void write(Path directory, long position, byte[] encoded) throws IOException {
+        Path target = directory.resolve(String.format("%s%016x%s", PREFIX, position, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        Files.write(temporary, encoded);
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        List<Path> snapshots = list(directory);
+        for (int index = KEEP; index < snapshots.size(); index++) {
+            Files.deleteIfExists(snapshots.get(index));
+        }
+    }
+
+    //Deletes every snapshot in the directory
+    public static void delete(Path directory) throws IOException {
+        for (Path snapshot : list(directory)) {
+            Files.delete(snapshot);
+        }
+    }
+
+    //Latest readable snapshot, if any
+    public static Optional<HoldingsSnapshot> readLatest(Path directory) throws IOException {
+        for (Path path : list(directory)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (buffer.remaining() < 16 || MAGIC != buffer.getInt()) {
+                continue;
+            }
+            long position = buffer.getLong();
+            int count = buffer.getInt();
+            List<Holding> holdings = new ArrayList<>(count);
+            for (int index = 0; index < count; index++) {
+                byte[] portfolioId = new byte[buffer.getShort()];
+                buffer.get(portfolioId);
+                byte[] ticker = new byte[buffer.getShort()];
+                buffer.get(ticker);
+                long shares = buffer.getLong();
+                long totalPrice = buffer.getLong();
+                long averageBuyPrice = buffer.getLong();
+                long realizedProfit = buffer.getLong();
+                long lastUpdated = buffer.getLong();
+                holdings.add(Holding.builder()
+                        .portfolioId(new String(portfolioId, StandardCharsets.UTF_8))
+                        .ticker(new String(ticker, StandardCharsets.UTF_8))
+                        .shares(BigInteger.valueOf(shares))
+                        .totalPrice(FixedPoint.toBigDecimal(totalPrice))
+                        .averageBuyPrice(FixedPoint.toBigDecimal(averageBuyPrice))
+                        .realizedProfit(FixedPoint.toBigDecimal(realizedProfit))
+                        .lastUpdated(Long.MIN_VALUE == lastUpdated ? null :
+                                LocalDateTime.ofInstant(Instant.ofEpochMilli(lastUpdated), ZoneOffset.UTC))
+                        .build());
+            }
+            return Optional.of(new HoldingsSnapshot(position, holdings));
+        }
+        return Optional.empty();
+    }
+
+    //Snapshot files, newest first
+    private static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed())
+                    .collect(Collectors.toList());
+        }
+    }
+}
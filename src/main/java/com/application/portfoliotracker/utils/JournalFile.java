@@ -0,0 +1,191 @@
+package com.application.portfoliotracker.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of TradeEvents stored in fixed size, memory-mapped segment files named
+ * journal-NNNNNNNN.seg. Each record is [int length][int crc32][payload]; a zero length marks the end
+ * of the written part of a segment. A position packs the segment number and byte offset into a long.
+ */
+public class JournalFile implements Closeable {
+
+    private static final int RECORD_HEADER = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+
+    private int segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    public JournalFile(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        this.segment = Math.max(1, lastSegment(directory));
+        openSegment(segment);
+        //find the end of the last segment, a record with a bad checksum is a torn write and is overwritten
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - 4 || !checksumMatches(buffer, length)) {
+                buffer.position(start);
+                break;
+            }
+            buffer.position(start + RECORD_HEADER + length);
+        }
+    }
+
+    //Deletes every segment of the journal in the directory
+    public static void delete(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().matches("journal-\\d{8}\\.seg")) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    public static long position(int segment, int offset) {
+        return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    public static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    public static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    //Appends the event and returns the position right after it
+    public synchronized long append(TradeEvent event) throws IOException {
+        int length = event.encodedLength();
+        if (RECORD_HEADER + length + 4 > segmentSize) {
+            throw new IllegalArgumentException("Event larger than a journal segment");
+        }
+        if (buffer.remaining() < RECORD_HEADER + length + 4) {
+            openSegment(segment + 1);
+        }
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER);
+        event.encode(buffer);
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + RECORD_HEADER).limit(start + RECORD_HEADER + length);
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        //the length is written last, so a reader never sees a record whose body is incomplete
+        buffer.putInt(start, length);
+        return position(segment, buffer.position());
+    }
+
+    //Position right after the last appended event
+    public synchronized long position() {
+        return position(segment, buffer.position());
+    }
+
+    //Flushes appended events to the storage device
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    /**
+     * Reads every event after the position, in append order
+     *
+     * @param directory Directory holding the segments
+     * @param from      Position to start after, position(1, 0) reads the whole journal
+     * @param consumer  Receives each event
+     * @return Number of events read
+     */
+    public static long replay(Path directory, long from, Consumer<TradeEvent> consumer) throws IOException {
+        long events = 0;
+        int last = lastSegment(directory);
+        CRC32 checksum = new CRC32();
+        for (int current = Math.max(1, segmentOf(from)); current <= last; current++) {
+            Path path = segmentPath(directory, current);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer segmentBuffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                segmentBuffer.position(current == segmentOf(from) ? offsetOf(from) : 0);
+                while (segmentBuffer.remaining() >= RECORD_HEADER) {
+                    int length = segmentBuffer.getInt();
+                    if (length <= 0 || length > segmentBuffer.remaining() - 4) {
+                        break;
+                    }
+                    int expected = segmentBuffer.getInt();
+                    ByteBuffer payload = segmentBuffer.slice();
+                    payload.limit(length);
+                    checksum.reset();
+                    checksum.update(payload.duplicate());
+                    if ((int) checksum.getValue() != expected) {
+                        break;
+                    }
+                    consumer.accept(TradeEvent.decode(payload));
+                    segmentBuffer.position(segmentBuffer.position() + length);
+                    events++;
+                }
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private boolean checksumMatches(MappedByteBuffer source, int length) {
+        int expected = source.getInt();
+        ByteBuffer payload = source.slice();
+        payload.limit(length);
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue() == expected;
+    }
+
+    private void openSegment(int number) throws IOException {
+        if (null != channel) {
+            buffer.force();
+            channel.close();
+        }
+        segment = number;
+        channel = FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private static Path segmentPath(Path directory, int number) {
+        return directory.resolve(String.format("journal-%08d.seg", number));
+    }
+
+    private static int lastSegment(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.matches("journal-\\d{8}\\.seg"))
+                    .mapToInt(name -> Integer.parseInt(name.substring(8, 16)))
+                    .max()
+                    .orElse(0);
+        }
+    }
+}
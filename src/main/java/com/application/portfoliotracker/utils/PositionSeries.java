@@ -0,0 +1,55 @@
+package com.application.portfoliotracker.utils;
+
+import java.util.Arrays;
+
+/**
+ * Shares of one ticker held by a portfolio over time, as the shares after the trades of each day that had trades.
+ * Built from the trades in execution order, days are epoch days.
+ */
+public final class PositionSeries {
+
+    private final String ticker;
+
+    private int[] days = new int[8];
+    private double[] shares = new double[8];
+    private int size;
+
+    public PositionSeries(String ticker) {
+        this.ticker = ticker;
+    }
+
+    public String getTicker() {
+        return ticker;
+    }
+
+    //Adds shares bought, or sold when negative, on the day. Days must not decrease.
+    public void add(int day, double change) {
+        if (size > 0 && days[size - 1] == day) {
+            shares[size - 1] += change;
+            return;
+        }
+        if (size > 0 && day < days[size - 1]) {
+            throw new IllegalArgumentException("Trades of " + ticker + " are not in execution order");
+        }
+        if (size == days.length) {
+            days = Arrays.copyOf(days, size * 2);
+            shares = Arrays.copyOf(shares, size * 2);
+        }
+        days[size] = day;
+        shares[size] = (size > 0 ? shares[size - 1] : 0) + change;
+        size++;
+    }
+
+    //Writes the shares held at the close of each day of the calendar into held
+    public void fill(int[] calendar, int length, double[] held) {
+        int change = 0;
+        double current = 0;
+        for (int index = 0; index < length; index++) {
+            int day = calendar[index];
+            while (change < size && days[change] <= day) {
+                current = shares[change++];
+            }
+            held[index] = current;
+        }
+    }
+}
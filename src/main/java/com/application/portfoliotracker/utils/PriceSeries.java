@@ -0,0 +1,264 @@
+package com.application.portfoliotracker.utils;
+
+import java.util.Arrays;
+
+/**
+ * Daily closes of one ticker in day order, held in primitive arrays, with running statistics of its whole history:
+ * count, mean and sum of squared deviations of the daily simple returns (Welford), running peak and maximum drawdown.
+ * A bar after the last one updates them in constant time; a bar replacing or preceding existing bars recomputes
+ * them in one pass, once per batch when the bars come through putAll. Days are epoch days. Every method is
+ * synchronized on the series.
+ */
+public final class PriceSeries {
+
+    //Trading days in a year, used to annualize daily volatility
+    public static final double TRADING_DAYS = 252;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String ticker;
+
+    private int[] days = new int[INITIAL_CAPACITY];
+    private double[] closes = new double[INITIAL_CAPACITY];
+    private int size;
+
+    private long returns;
+    private double mean;
+    private double m2;
+    private double peak;
+    private double maxDrawdown;
+
+    public PriceSeries(String ticker) {
+        this.ticker = ticker;
+    }
+
+    public String getTicker() {
+        return ticker;
+    }
+
+    //Adds the close of the day, replacing the close already held for that day
+    public synchronized void put(int day, double close) {
+        if (0 == size || day > days[size - 1]) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                closes = Arrays.copyOf(closes, size * 2);
+            }
+            days[size] = day;
+            closes[size] = close;
+            size++;
+            accumulate(size - 1);
+            return;
+        }
+        int index = Arrays.binarySearch(days, 0, size, day);
+        if (index >= 0) {
+            closes[index] = close;
+        } else {
+            int at = -index - 1;
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                closes = Arrays.copyOf(closes, size * 2);
+            }
+            System.arraycopy(days, at, days, at + 1, size - at);
+            System.arraycopy(closes, at, closes, at + 1, size - at);
+            days[at] = day;
+            closes[at] = close;
+            size++;
+        }
+        recompute();
+    }
+
+    //Adds the closes of the days, a later close of the same day winning. The bars are merged in one pass and the
+    //statistics folded once: from the first added bar when all of them follow the last one, otherwise from the start.
+    public synchronized void putAll(int[] newDays, double[] newCloses) {
+        int count = newDays.length;
+        if (0 == count) {
+            return;
+        }
+        Integer[] order = new Integer[count];
+        for (int index = 0; index < count; index++) {
+            order[index] = index;
+        }
+        //stable, so among bars of the same day the last one sent comes last
+        Arrays.sort(order, (left, right) -> Integer.compare(newDays[left], newDays[right]));
+        int[] mergedDays = new int[Math.max(INITIAL_CAPACITY, size + count)];
+        double[] mergedCloses = new double[mergedDays.length];
+        int merged = 0;
+        int existing = 0;
+        int added = 0;
+        boolean appendOnly = 0 == size || newDays[order[0]] > days[size - 1];
+        while (existing < size || added < count) {
+            int day;
+            double close;
+            if (added == count || (existing < size && days[existing] < newDays[order[added]])) {
+                day = days[existing];
+                close = closes[existing++];
+            } else {
+                day = newDays[order[added]];
+                close = newCloses[order[added++]];
+                if (existing < size && days[existing] == day) {
+                    existing++;
+                }
+            }
+            if (merged > 0 && mergedDays[merged - 1] == day) {
+                mergedCloses[merged - 1] = close;
+            } else {
+                mergedDays[merged] = day;
+                mergedCloses[merged++] = close;
+            }
+        }
+        int folded = size;
+        days = mergedDays;
+        closes = mergedCloses;
+        size = merged;
+        if (appendOnly) {
+            for (int bar = folded; bar < size; bar++) {
+                accumulate(bar);
+            }
+        } else {
+            recompute();
+        }
+    }
+
+    //Folds every bar into statistics started over
+    private void recompute() {
+        returns = 0;
+        mean = 0;
+        m2 = 0;
+        peak = 0;
+        maxDrawdown = 0;
+        for (int bar = 0; bar < size; bar++) {
+            accumulate(bar);
+        }
+    }
+
+    //Folds the bar into the running statistics, the bars before it already folded
+    private void accumulate(int bar) {
+        double close = closes[bar];
+        if (bar > 0) {
+            double value = close / closes[bar - 1] - 1;
+            returns++;
+            double delta = value - mean;
+            mean += delta / returns;
+            m2 += delta * (value - mean);
+        }
+        if (close > peak) {
+            peak = close;
+        } else {
+            maxDrawdown = Math.max(maxDrawdown, 1 - close / peak);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    //Statistics of the whole history, from the running sums
+    public synchronized Stats getStats() {
+        if (0 == size) {
+            return Stats.EMPTY;
+        }
+        return new Stats(size, closes[size - 1] / closes[0] - 1, annualize(returns, m2), maxDrawdown);
+    }
+
+    //Statistics of the bars from fromDay to toDay, both included, in one pass over them
+    public synchronized Stats getStats(int fromDay, int toDay) {
+        int from = lowerBound(fromDay);
+        int to = lowerBound(toDay + 1);
+        if (from >= to) {
+            return Stats.EMPTY;
+        }
+        long count = 0;
+        double windowMean = 0;
+        double windowM2 = 0;
+        double windowPeak = closes[from];
+        double windowDrawdown = 0;
+        for (int bar = from + 1; bar < to; bar++) {
+            double close = closes[bar];
+            double value = close / closes[bar - 1] - 1;
+            count++;
+            double delta = value - windowMean;
+            windowMean += delta / count;
+            windowM2 += delta * (value - windowMean);
+            if (close > windowPeak) {
+                windowPeak = close;
+            } else {
+                windowDrawdown = Math.max(windowDrawdown, 1 - close / windowPeak);
+            }
+        }
+        return new Stats(to - from, closes[to - 1] / closes[from] - 1, annualize(count, windowM2), windowDrawdown);
+    }
+
+    //Writes the close in force on each day of the calendar into prices, the last close at or before the day.
+    //Days before the first bar get NaN.
+    public synchronized void fill(int[] calendar, int length, double[] prices) {
+        int bar = 0;
+        double last = Double.NaN;
+        for (int index = 0; index < length; index++) {
+            int day = calendar[index];
+            while (bar < size && days[bar] <= day) {
+                last = closes[bar++];
+            }
+            prices[index] = last;
+        }
+    }
+
+    //Marks the days of bars from fromDay to toDay, both included, as offsets from fromDay
+    public synchronized void markDays(int fromDay, int toDay, boolean[] marks) {
+        for (int bar = lowerBound(fromDay); bar < size && days[bar] <= toDay; bar++) {
+            marks[days[bar] - fromDay] = true;
+        }
+    }
+
+    public synchronized int getFirstDay() {
+        return 0 == size ? Integer.MAX_VALUE : days[0];
+    }
+
+    public synchronized int getLastDay() {
+        return 0 == size ? Integer.MIN_VALUE : days[size - 1];
+    }
+
+    private int lowerBound(int day) {
+        int index = Arrays.binarySearch(days, 0, size, day);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    //Annualized sample standard deviation of count returns, 0 below two returns
+    static double annualize(long count, double m2) {
+        return count < 2 ? 0 : Math.sqrt(m2 / (count - 1) * TRADING_DAYS);
+    }
+
+    //Summary of a run of bars: bars, price return from the first to the last close, annualized volatility of the
+    //daily returns and largest fall from a running peak as a fraction of it
+    public static final class Stats {
+
+        public static final Stats EMPTY = new Stats(0, 0, 0, 0);
+
+        private final int bars;
+        private final double totalReturn;
+        private final double volatility;
+        private final double maxDrawdown;
+
+        public Stats(int bars, double totalReturn, double volatility, double maxDrawdown) {
+            this.bars = bars;
+            this.totalReturn = totalReturn;
+            this.volatility = volatility;
+            this.maxDrawdown = maxDrawdown;
+        }
+
+        public int getBars() {
+            return bars;
+        }
+
+        public double getTotalReturn() {
+            return totalReturn;
+        }
+
+        public double getVolatility() {
+            return volatility;
+        }
+
+        public double getMaxDrawdown() {
+            return maxDrawdown;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.application.portfoliotracker.utils;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Risk statistics over daily price series, computed on primitive arrays and spread across tickers as parallel
+ * streams on the given pool. Series are aligned on a calendar made of every day any of them has a bar in the
+ * window, each ticker taking its last close on days it has no bar. Daily returns are simple returns, volatility
+ * is the sample standard deviation annualized over PriceSeries.TRADING_DAYS and drawdowns are fractions of the
+ * running peak.
+ */
+public final class RiskEngine {
+
+    //Rows of a correlation tile, two tiles of this many rows stay in cache while their dot products are taken
+    private static final int BLOCK = 64;
+
+    private final ForkJoinPool pool;
+
+    public RiskEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    //Every day from fromDay to toDay, both included, on which at least one of the series has a bar, in order
+    public int[] calendar(List<PriceSeries> series, int fromDay, int toDay) {
+        int first = Math.max(fromDay, series.stream().mapToInt(PriceSeries::getFirstDay).min().orElse(Integer.MAX_VALUE));
+        int last = Math.min(toDay, series.stream().mapToInt(PriceSeries::getLastDay).max().orElse(Integer.MIN_VALUE));
+        if (first > last) {
+            return new int[0];
+        }
+        boolean[] marks = new boolean[last - first + 1];
+        pool.submit(() -> series.parallelStream().forEach(prices -> prices.markDays(first, last, marks))).join();
+        int count = 0;
+        for (boolean mark : marks) {
+            if (mark) {
+                count++;
+            }
+        }
+        int[] calendar = new int[count];
+        int index = 0;
+        for (int offset = 0; offset < marks.length; offset++) {
+            if (marks[offset]) {
+                calendar[index++] = first + offset;
+            }
+        }
+        return calendar;
+    }
+
+    /**
+     * Time-weighted return, volatility and maximum drawdown of a portfolio over the calendar. The return of a day
+     * is the change in value of the shares held at the previous close, so shares bought or sold during the day are
+     * cash flows that do not count as return. Tickers without a close on both days are left out of that day.
+     *
+     * @param prices    Price series of the tickers
+     * @param positions Positions of the same tickers, index for index
+     */
+    public Result portfolio(List<PriceSeries> prices, List<PositionSeries> positions, int[] calendar) {
+        int length = calendar.length;
+        if (length < 2) {
+            return new Result(length, 0, 0, 0, 0);
+        }
+        //opening[t] : value at the close of day t - 1 of the shares held then, closing[t] : the same shares at the close of day t
+        Sums sums = pool.submit(() -> IntStream.range(0, prices.size()).parallel().collect(
+                () -> new Sums(length),
+                (partial, ticker) -> partial.add(prices.get(ticker), positions.get(ticker), calendar),
+                Sums::merge)).join();
+        long count = 0;
+        double mean = 0;
+        double m2 = 0;
+        double wealth = 1;
+        double peak = 1;
+        double maxDrawdown = 0;
+        for (int day = 1; day < length; day++) {
+            if (sums.opening[day] <= 0) {
+                continue;
+            }
+            double value = sums.closing[day] / sums.opening[day] - 1;
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+            wealth *= 1 + value;
+            if (wealth > peak) {
+                peak = wealth;
+            } else {
+                maxDrawdown = Math.max(maxDrawdown, 1 - wealth / peak);
+            }
+        }
+        return new Result(length, count, wealth - 1, PriceSeries.annualize(count, m2), maxDrawdown);
+    }
+
+    /**
+     * Pearson correlation of the daily returns of every pair of series over the calendar, as a symmetric matrix in
+     * the order of the series. Returns are centred and scaled to unit length once per series, so a correlation is a
+     * single dot product. Series without any movement over the calendar correlate 0 with everything, themselves included.
+     */
+    public double[][] correlation(List<PriceSeries> prices, int[] calendar) {
+        int tickers = prices.size();
+        int returns = Math.max(0, calendar.length - 1);
+        double[][] normalized = new double[tickers][];
+        pool.submit(() -> IntStream.range(0, tickers).parallel()
+                .forEach(ticker -> normalized[ticker] = normalizedReturns(prices.get(ticker), calendar, returns))).join();
+        double[][] matrix = new double[tickers][tickers];
+        int blocks = (tickers + BLOCK - 1) / BLOCK;
+        pool.submit(() -> IntStream.range(0, blocks * blocks).parallel()
+                .filter(tile -> tile / blocks <= tile % blocks)
+                .forEach(tile -> correlateTile(normalized, matrix, tile / blocks * BLOCK, tile % blocks * BLOCK))).join();
+        return matrix;
+    }
+
+    //Daily returns of the series on the calendar minus their mean, divided by their Euclidean norm. A day without
+    //a close on both sides counts as no move.
+    private static double[] normalizedReturns(PriceSeries series, int[] calendar, int returns) {
+        double[] closes = new double[calendar.length];
+        series.fill(calendar, calendar.length, closes);
+        double[] values = new double[returns];
+        double sum = 0;
+        for (int day = 0; day < returns; day++) {
+            double previous = closes[day];
+            double close = closes[day + 1];
+            double value = Double.isNaN(previous) ? 0 : close / previous - 1;
+            values[day] = value;
+            sum += value;
+        }
+        double mean = returns == 0 ? 0 : sum / returns;
+        double squares = 0;
+        for (int day = 0; day < returns; day++) {
+            double centred = values[day] - mean;
+            values[day] = centred;
+            squares += centred * centred;
+        }
+        double scale = squares > 0 ? 1 / Math.sqrt(squares) : 0;
+        for (int day = 0; day < returns; day++) {
+            values[day] *= scale;
+        }
+        return values;
+    }
+
+    //Fills the cells of rows [rowStart, rowStart + BLOCK) and columns [columnStart, columnStart + BLOCK), and their
+    //mirror, on or above the diagonal only
+    private static void correlateTile(double[][] normalized, double[][] matrix, int rowStart, int columnStart) {
+        int rowEnd = Math.min(rowStart + BLOCK, normalized.length);
+        int columnEnd = Math.min(columnStart + BLOCK, normalized.length);
+        for (int row = rowStart; row < rowEnd; row++) {
+            for (int column = Math.max(columnStart, row); column < columnEnd; column++) {
+                double value = Math.max(-1, Math.min(1, dot(normalized[row], normalized[column])));
+                matrix[row][column] = value;
+                matrix[column][row] = value;
+            }
+        }
+    }
+
+    //Four independent sums so the additions pipeline instead of waiting on each other
+    private static double dot(double[] left, double[] right) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int length = left.length;
+        int index = 0;
+        for (; index + 3 < length; index += 4) {
+            sum0 += left[index] * right[index];
+            sum1 += left[index + 1] * right[index + 1];
+            sum2 += left[index + 2] * right[index + 2];
+            sum3 += left[index + 3] * right[index + 3];
+        }
+        for (; index < length; index++) {
+            sum0 += left[index] * right[index];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    //Portfolio values of each day summed over the tickers folded by one stream task, with its scratch arrays
+    private static final class Sums {
+
+        private final double[] opening;
+        private final double[] closing;
+        private final double[] closes;
+        private final double[] held;
+
+        private Sums(int length) {
+            this.opening = new double[length];
+            this.closing = new double[length];
+            this.closes = new double[length];
+            this.held = new double[length];
+        }
+
+        private void add(PriceSeries prices, PositionSeries position, int[] calendar) {
+            int length = calendar.length;
+            prices.fill(calendar, length, closes);
+            position.fill(calendar, length, held);
+            for (int day = 1; day < length; day++) {
+                double shares = held[day - 1];
+                double previous = closes[day - 1];
+                if (0 != shares && !Double.isNaN(previous)) {
+                    opening[day] += shares * previous;
+                    closing[day] += shares * closes[day];
+                }
+            }
+        }
+
+        private void merge(Sums other) {
+            for (int day = 0; day < opening.length; day++) {
+                opening[day] += other.opening[day];
+                closing[day] += other.closing[day];
+            }
+        }
+    }
+
+    //Outcome of a portfolio computation, see portfolio
+    public static final class Result {
+
+        private final int days;
+        private final long returnDays;
+        private final double timeWeightedReturn;
+        private final double volatility;
+        private final double maxDrawdown;
+
+        public Result(int days, long returnDays, double timeWeightedReturn, double volatility, double maxDrawdown) {
+            this.days = days;
+            this.returnDays = returnDays;
+            this.timeWeightedReturn = timeWeightedReturn;
+            this.volatility = volatility;
+            this.maxDrawdown = maxDrawdown;
+        }
+
+        //Days of the calendar
+        public int getDays() {
+            return days;
+        }
+
+        //Days with a position held from the previous close, the days returns were measured on
+        public long getReturnDays() {
+            return returnDays;
+        }
+
+        public double getTimeWeightedReturn() {
+            return timeWeightedReturn;
+        }
+
+        public double getVolatility() {
+            return volatility;
+        }
+
+        public double getMaxDrawdown() {
+            return maxDrawdown;
+        }
+    }
+}
@@ -0,0 +1,589 @@
+package com.application.portfoliotracker.utils;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Off-heap columnar copy of trades. Rows live in chunks of chunkRows rows, each chunk one direct buffer
+ * or one memory-mapped file holding a column per field: trade id, execution time in epoch microseconds,
+ * fixed-point price, quantity, dictionary codes of portfolio and ticker, and a flags byte (sell, deleted).
+ * A row takes 41 bytes outside the heap against a few hundred for a Trade entity.
+ *
+ * Appends and deletes are serialised by the caller. Scans need no lock: rows are published through a
+ * volatile row count after their columns are written, and a delete only flips the deleted flag.
+ * An update is a delete of the old row followed by an append, so a scan running in between misses the trade.
+ */
+public final class TradeColumns implements Closeable {
+
+    private static final int MAGIC = 0x54434C31;
+
+    private static final int HEADER = 16;
+
+    private static final int ROW_BYTES = 41;
+
+    //File written by close once the chunks are forced, removed again when the store is opened
+    private static final String CLEAN_MARKER = "clean";
+
+    private static final byte SELL = 1;
+    private static final byte DELETED = 2;
+
+    //Execution time of trades without one, never part of an as-of scan
+    private static final long UNKNOWN_TIME = Long.MAX_VALUE;
+
+    private final Path directory;
+
+    private final int chunkRows;
+    private final int chunkShift;
+
+    private final Dictionary portfolios;
+    private final Dictionary tickers;
+
+    private final boolean closedCleanly;
+
+    //Row of every live trade id
+    private final LongIntMap rowsByTradeId = new LongIntMap();
+
+    private volatile Chunk[] chunks = new Chunk[0];
+
+    private volatile int rows;
+
+    private int liveRows;
+
+    /**
+     * Opens a store, loading every chunk already in the directory
+     *
+     * @param directory Directory of the memory-mapped chunks and dictionaries, null keeps the columns in direct buffers
+     * @param chunkRows Rows per chunk, a power of two small enough for a chunk to fit one buffer
+     */
+    public TradeColumns(Path directory, int chunkRows) throws IOException {
+        if (Integer.bitCount(chunkRows) != 1 || chunkRows > 1 << 25) {
+            throw new IllegalArgumentException("Rows per chunk must be a power of two up to 2^25 : " + chunkRows);
+        }
+        this.directory = directory;
+        this.chunkRows = chunkRows;
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkRows);
+        if (null != directory) {
+            Files.createDirectories(directory);
+        }
+        this.portfolios = new Dictionary(null == directory ? null : directory.resolve("portfolios.dict"));
+        this.tickers = new Dictionary(null == directory ? null : directory.resolve("tickers.dict"));
+        this.closedCleanly = null != directory && Files.deleteIfExists(directory.resolve(CLEAN_MARKER));
+        if (null != directory) {
+            openChunks();
+        }
+    }
+
+    //Deletes the chunks and dictionaries of a memory-mapped store
+    public static void delete(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("columns-") || name.endsWith(".dict") || CLEAN_MARKER.equals(name)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    //Appends the trade, replacing the row of the same trade id if there is one
+    public void append(Trade trade) {
+        append(trade.getTradeId(), trade.getPortfolioId(), trade.getTicker(), TransactionType.SELL == trade.getTransactionType(),
+                FixedPoint.of(trade.getPrice()), FixedPoint.quantity(trade.getShares()), toMicros(trade.getLastUpdated()));
+    }
+
+    public void append(long tradeId, String portfolioId, String ticker, boolean sell, long price, long shares, long executedAt) {
+        delete(tradeId);
+        int row = rows;
+        int chunkIndex = row >>> chunkShift;
+        Chunk[] current = chunks;
+        if (chunkIndex == current.length) {
+            current = Arrays.copyOf(current, chunkIndex + 1);
+            current[chunkIndex] = newChunk(chunkIndex);
+            chunks = current;
+        }
+        Chunk chunk = current[chunkIndex];
+        int index = row & (chunkRows - 1);
+        chunk.buffer.putLong(chunk.tradeIds + (index << 3), tradeId);
+        chunk.buffer.putLong(chunk.executedAt + (index << 3), executedAt);
+        chunk.buffer.putLong(chunk.prices + (index << 3), price);
+        chunk.buffer.putLong(chunk.shares + (index << 3), shares);
+        chunk.buffer.putInt(chunk.portfolios + (index << 2), portfolios.code(portfolioId));
+        chunk.buffer.putInt(chunk.tickers + (index << 2), tickers.code(ticker));
+        chunk.buffer.put(chunk.flags + index, sell ? SELL : 0);
+        chunk.buffer.putInt(4, index + 1);
+        rowsByTradeId.put(tradeId, row);
+        liveRows++;
+        rows = row + 1;
+    }
+
+    //Marks the row of the trade id deleted, returns whether there was one
+    public boolean delete(long tradeId) {
+        int row = rowsByTradeId.remove(tradeId);
+        if (row < 0) {
+            return false;
+        }
+        Chunk chunk = chunks[row >>> chunkShift];
+        int flagAt = chunk.flags + (row & (chunkRows - 1));
+        chunk.buffer.put(flagAt, (byte) (chunk.buffer.get(flagAt) | DELETED));
+        liveRows--;
+        return true;
+    }
+
+    /**
+     * Folds the live trades of the portfolio executed at or before the given time into one aggregate per ticker,
+     * in execution order (execution time, then trade id) like the trades table
+     *
+     * @param portfolioId Portfolio to fold
+     * @param ticker      Only ticker to fold, null folds every ticker of the portfolio
+     * @param at          Latest execution time folded, null folds every trade including those without an execution time
+     * @return Aggregates by ticker, in ticker order
+     */
+    public SortedMap<String, HoldingAggregate> fold(String portfolioId, String ticker, LocalDateTime at) {
+        SortedMap<String, HoldingAggregate> aggregates = new TreeMap<>();
+        int portfolio = portfolios.find(portfolioId);
+        int onlyTicker = null == ticker ? -1 : tickers.find(ticker);
+        if (portfolio < 0 || (null != ticker && onlyTicker < 0)) {
+            return aggregates;
+        }
+        long until = null == at ? Long.MAX_VALUE : toMicros(at);
+        int count = rows;
+        Chunk[] current = chunks;
+        int tickerCount = tickers.size();
+
+        //One pass reads the flags of every row once and keeps the matching rows with their ticker, so a delete
+        //racing the scan either drops the row or not, then the kept rows are bucketed by ticker
+        MatchedRows matched = new MatchedRows();
+        forEachMatch(current, count, portfolio, onlyTicker, until, (chunk, index, row) ->
+                matched.add(row, chunk.buffer.getInt(chunk.tickers + (index << 2))));
+        int[] offsets = new int[tickerCount + 1];
+        for (int match = 0; match < matched.size; match++) {
+            offsets[matched.tickers[match] + 1]++;
+        }
+        for (int code = 0; code < tickerCount; code++) {
+            offsets[code + 1] += offsets[code];
+        }
+        int[] bucketed = new int[matched.size];
+        int[] fill = Arrays.copyOf(offsets, tickerCount);
+        for (int match = 0; match < matched.size; match++) {
+            bucketed[fill[matched.tickers[match]]++] = matched.rows[match];
+        }
+
+        for (int code = 0; code < tickerCount; code++) {
+            int from = offsets[code];
+            int to = offsets[code + 1];
+            if (from == to) {
+                continue;
+            }
+            sortByExecution(current, bucketed, from, to);
+            HoldingAggregate aggregate = HoldingAggregate.empty(portfolioId, tickers.name(code));
+            long latest = Long.MIN_VALUE;
+            for (int position = from; position < to; position++) {
+                int row = bucketed[position];
+                Chunk chunk = current[row >>> chunkShift];
+                int index = row & (chunkRows - 1);
+                aggregate.apply(0 == (chunk.buffer.get(chunk.flags + index) & SELL),
+                        chunk.buffer.getLong(chunk.prices + (index << 3)),
+                        chunk.buffer.getLong(chunk.shares + (index << 3)));
+                long executedAt = chunk.buffer.getLong(chunk.executedAt + (index << 3));
+                if (UNKNOWN_TIME != executedAt) {
+                    latest = Math.max(latest, executedAt);
+                }
+            }
+            if (Long.MIN_VALUE != latest) {
+                aggregate.executedAt(fromMicros(latest));
+            }
+            aggregates.put(aggregate.getTicker(), aggregate);
+        }
+        return aggregates;
+    }
+
+    //Rows ever appended, deleted ones included
+    public int getRows() {
+        return rows;
+    }
+
+    public int getLiveRows() {
+        return liveRows;
+    }
+
+    //Highest trade id of a live row, 0 without any
+    public long getMaxTradeId() {
+        return rowsByTradeId.maxKey();
+    }
+
+    public int getPortfolios() {
+        return portfolios.size();
+    }
+
+    public int getTickers() {
+        return tickers.size();
+    }
+
+    //Bytes of column storage outside the heap, mapped or direct
+    public long getOffHeapBytes() {
+        return (long) chunks.length * chunkBytes();
+    }
+
+    public boolean isMapped() {
+        return null != directory;
+    }
+
+    //Whether the mapped chunks were opened after a close of the previous run. A store that was not closed may
+    //miss trades committed before the process stopped.
+    public boolean isClosedCleanly() {
+        return closedCleanly;
+    }
+
+    //Writes the mapped chunks back to their files and marks them complete for the next run
+    @Override
+    public void close() {
+        for (Chunk chunk : chunks) {
+            if (chunk.buffer instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) chunk.buffer).force();
+            }
+        }
+        if (null != directory) {
+            try {
+                Files.write(directory.resolve(CLEAN_MARKER), new byte[0]);
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+        }
+    }
+
+    //Rows of a scan with the ticker code of each, in row order
+    private static final class MatchedRows {
+
+        private int[] rows = new int[64];
+        private int[] tickers = new int[64];
+        private int size;
+
+        private void add(int row, int ticker) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                tickers = Arrays.copyOf(tickers, size * 2);
+            }
+            rows[size] = row;
+            tickers[size] = ticker;
+            size++;
+        }
+    }
+
+    private interface RowConsumer {
+        void accept(Chunk chunk, int index, int row);
+    }
+
+    private void forEachMatch(Chunk[] current, int count, int portfolio, int onlyTicker, long until, RowConsumer consumer) {
+        for (int row = 0; row < count; row++) {
+            Chunk chunk = current[row >>> chunkShift];
+            int index = row & (chunkRows - 1);
+            if (chunk.buffer.getInt(chunk.portfolios + (index << 2)) != portfolio
+                    || 0 != (chunk.buffer.get(chunk.flags + index) & DELETED)
+                    || chunk.buffer.getLong(chunk.executedAt + (index << 3)) > until
+                    || (onlyTicker >= 0 && chunk.buffer.getInt(chunk.tickers + (index << 2)) != onlyTicker)) {
+                continue;
+            }
+            consumer.accept(chunk, index, row);
+        }
+    }
+
+    //Rows are appended close to execution order, so a bucket is usually sorted already and only checked
+    private void sortByExecution(Chunk[] current, int[] bucketed, int from, int to) {
+        Comparator<Integer> order = Comparator.<Integer>comparingLong(row -> executedAt(current, row))
+                .thenComparingLong(row -> tradeId(current, row));
+        boolean sorted = true;
+        for (int position = from + 1; position < to && sorted; position++) {
+            sorted = order.compare(bucketed[position - 1], bucketed[position]) <= 0;
+        }
+        if (sorted) {
+            return;
+        }
+        Integer[] boxed = new Integer[to - from];
+        for (int position = from; position < to; position++) {
+            boxed[position - from] = bucketed[position];
+        }
+        Arrays.sort(boxed, order);
+        for (int position = from; position < to; position++) {
+            bucketed[position] = boxed[position - from];
+        }
+    }
+
+    private long executedAt(Chunk[] current, int row) {
+        Chunk chunk = current[row >>> chunkShift];
+        return chunk.buffer.getLong(chunk.executedAt + ((row & (chunkRows - 1)) << 3));
+    }
+
+    private long tradeId(Chunk[] current, int row) {
+        Chunk chunk = current[row >>> chunkShift];
+        return chunk.buffer.getLong(chunk.tradeIds + ((row & (chunkRows - 1)) << 3));
+    }
+
+    private int chunkBytes() {
+        return HEADER + ROW_BYTES * chunkRows;
+    }
+
+    private Chunk newChunk(int chunkIndex) {
+        if (null == directory) {
+            return new Chunk(ByteBuffer.allocateDirect(chunkBytes()).order(ByteOrder.nativeOrder()), chunkRows);
+        }
+        try {
+            Chunk chunk = new Chunk(map(chunkFile(chunkIndex)), chunkRows);
+            chunk.buffer.putInt(0, MAGIC);
+            return chunk;
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    //Maps the chunks left by a previous run, stopping at the first chunk that is not full.
+    //Deleted flags are kept, the trade id index is rebuilt from the live rows.
+    private void openChunks() throws IOException {
+        List<Chunk> opened = new ArrayList<>();
+        int count = 0;
+        for (int chunkIndex = 0; Files.exists(chunkFile(chunkIndex)); chunkIndex++) {
+            Chunk chunk = new Chunk(map(chunkFile(chunkIndex)), chunkRows);
+            if (MAGIC != chunk.buffer.getInt(0)) {
+                break;
+            }
+            int chunkRowCount = chunk.buffer.getInt(4);
+            opened.add(chunk);
+            count += chunkRowCount;
+            if (chunkRowCount < chunkRows) {
+                break;
+            }
+        }
+        chunks = opened.toArray(new Chunk[0]);
+        for (int row = 0; row < count; row++) {
+            Chunk chunk = chunks[row >>> chunkShift];
+            int index = row & (chunkRows - 1);
+            if (0 == (chunk.buffer.get(chunk.flags + index) & DELETED)) {
+                rowsByTradeId.put(chunk.buffer.getLong(chunk.tradeIds + (index << 3)), row);
+                liveRows++;
+            }
+        }
+        rows = count;
+    }
+
+    private Path chunkFile(int chunkIndex) {
+        return directory.resolve(String.format("columns-%06d.bin", chunkIndex));
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, chunkBytes());
+            buffer.order(ByteOrder.nativeOrder());
+            return buffer;
+        }
+    }
+
+    public static long toMicros(LocalDateTime time) {
+        if (null == time) {
+            return UNKNOWN_TIME;
+        }
+        return Math.addExact(Math.multiplyExact(time.toEpochSecond(ZoneOffset.UTC), 1_000_000L), time.getNano() / 1_000);
+    }
+
+    public static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    //Byte offsets of the columns inside one chunk buffer
+    private static final class Chunk {
+        private final ByteBuffer buffer;
+        private final int tradeIds;
+        private final int executedAt;
+        private final int prices;
+        private final int shares;
+        private final int portfolios;
+        private final int tickers;
+        private final int flags;
+
+        private Chunk(ByteBuffer buffer, int capacity) {
+            this.buffer = buffer;
+            this.tradeIds = HEADER;
+            this.executedAt = tradeIds + 8 * capacity;
+            this.prices = executedAt + 8 * capacity;
+            this.shares = prices + 8 * capacity;
+            this.portfolios = shares + 8 * capacity;
+            this.tickers = portfolios + 4 * capacity;
+            this.flags = tickers + 4 * capacity;
+        }
+    }
+
+    //Dense codes of strings in first seen order, appended to the dictionary file of a mapped store before first use
+    private static final class Dictionary {
+
+        private final Path file;
+
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        private volatile String[] names = new String[16];
+
+        private volatile int size;
+
+        private Dictionary(Path file) throws IOException {
+            this.file = file;
+            if (null != file && Files.exists(file)) {
+                for (String name : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    add(name);
+                }
+            }
+        }
+
+        private int code(String name) {
+            Integer code = codes.get(name);
+            if (null != code) {
+                return code;
+            }
+            if (null != file) {
+                try {
+                    Files.write(file, (name + "\n").getBytes(StandardCharsets.UTF_8),
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                } catch (IOException ioException) {
+                    throw new UncheckedIOException(ioException);
+                }
+            }
+            return add(name);
+        }
+
+        private int add(String name) {
+            int code = size;
+            String[] current = names;
+            if (code == current.length) {
+                current = Arrays.copyOf(current, code * 2);
+            }
+            current[code] = name;
+            names = current;
+            synchronized (codes) {
+                codes.put(name, code);
+            }
+            size = code + 1;
+            return code;
+        }
+
+        //Code of the name, -1 if it was never appended. Safe to call while appends run.
+        private int find(String name) {
+            String[] current = names;
+            int count = Math.min(size, current.length);
+            synchronized (codes) {
+                Integer code = codes.get(name);
+                return null == code || code >= count ? -1 : code;
+            }
+        }
+
+        private String name(int code) {
+            return names[code];
+        }
+
+        private int size() {
+            return size;
+        }
+    }
+
+    //Open addressing map of trade id to row with linear probing, Long.MIN_VALUE marks a free slot
+    private static final class LongIntMap {
+
+        private static final long FREE = Long.MIN_VALUE;
+
+        private long[] keys = newKeys(1 << 16);
+        private int[] values = new int[1 << 16];
+        private int size;
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, FREE);
+            return keys;
+        }
+
+        private static int slot(long key, int mask) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        private void put(long key, int value) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (FREE != keys[slot]) {
+                if (key == keys[slot]) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+
+        //Removes the key, returns its value or -1 if it was absent. Later entries of the probe run are shifted back.
+        private int remove(long key) {
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (key != keys[slot]) {
+                if (FREE == keys[slot]) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int value = values[slot];
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            while (FREE != keys[next]) {
+                int home = slot(keys[next], mask);
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = FREE;
+            size--;
+            return value;
+        }
+
+        private long maxKey() {
+            long max = 0;
+            for (long key : keys) {
+                max = Math.max(max, key);
+            }
+            return max;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (FREE != oldKeys[slot]) {
+                    put(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.application.portfoliotracker.utils;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.exceptions.BadRequestException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads trades lazily from CSV with the header ticker,transactionType,price,shares[,lastUpdated[,idempotencyKey]].
+ * lastUpdated is ISO-8601, it and idempotencyKey may be left empty. Blank lines are skipped.
+ */
+public class TradeCsvReader implements Iterator<Trade> {
+
+    private static final String HEADER = "ticker,transactionType,price,shares";
+
+    private final BufferedReader reader;
+    private String line;
+    private int lineNumber;
+
+    public TradeCsvReader(BufferedReader reader) {
+        this.reader = reader;
+        String header = readLine();
+        if (null == header || !header.replace(" ", "").startsWith(HEADER)) {
+            throw new BadRequestException("CSV header should be " + HEADER + "[,lastUpdated[,idempotencyKey]]");
+        }
+        line = readLine();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return null != line;
+    }
+
+    @Override
+    public Trade next() {
+        if (null == line) {
+            throw new NoSuchElementException();
+        }
+        Trade trade = parse(line);
+        line = readLine();
+        return trade;
+    }
+
+    private Trade parse(String row) {
+        String[] columns = row.split(",", -1);
+        if (columns.length < 4 || columns.length > 6) {
+            throw new BadRequestException("Invalid CSV row at line " + lineNumber);
+        }
+        try {
+            return Trade.builder()
+                    .ticker(columns[0].trim())
+                    .transactionType(TransactionType.valueOf(columns[1].trim()))
+                    .price(new BigDecimal(columns[2].trim()))
+                    .shares(new BigInteger(columns[3].trim()))
+                    .lastUpdated(columns.length >= 5 && !columns[4].trim().isEmpty() ?
+                            LocalDateTime.parse(columns[4].trim()) : null)
+                    .idempotencyKey(columns.length == 6 && !columns[5].trim().isEmpty() ? columns[5].trim() : null)
+                    .build();
+        } catch (IllegalArgumentException | DateTimeParseException exception) {
+            throw new BadRequestException("Invalid CSV row at line " + lineNumber + " : " + exception.getMessage());
+        }
+    }
+
+    private String readLine() {
+        try {
+            String next;
+            do {
+                next = reader.readLine();
+                lineNumber++;
+            } while (null != next && next.trim().isEmpty());
+            return next;
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+}
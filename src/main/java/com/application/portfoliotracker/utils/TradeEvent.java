@@ -0,0 +1,147 @@
+package com.application.portfoliotracker.utils;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TradeType;
+import com.application.portfoliotracker.entities.TransactionType;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Immutable journal record of a trade being added to or deleted from its holding. An update is
+ * journaled as a delete of the old trade followed by an add of the new one.
+ * Amounts are fixed-point mantissas, timestamps are UTC epoch millis. The idempotency key is the last field and
+ * optional, records written before it was journaled decode with no key.
+ */
+public final class TradeEvent {
+
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final short NO_KEY = -1;
+
+    private final TradeType type;
+    private final long tradeId;
+    private final String portfolioId;
+    private final byte[] portfolioBytes;
+    private final String ticker;
+    private final byte[] tickerBytes;
+    private final TransactionType transactionType;
+    private final long price;
+    private final long shares;
+    private final long lastUpdated;
+    private final String idempotencyKey;
+    private final byte[] idempotencyKeyBytes;
+
+    private TradeEvent(TradeType type, long tradeId, String portfolioId, String ticker, TransactionType transactionType,
+                       long price, long shares, long lastUpdated, String idempotencyKey) {
+        this.type = type;
+        this.tradeId = tradeId;
+        this.portfolioId = portfolioId;
+        this.portfolioBytes = portfolioId.getBytes(StandardCharsets.UTF_8);
+        this.ticker = ticker;
+        this.tickerBytes = ticker.getBytes(StandardCharsets.UTF_8);
+        this.transactionType = transactionType;
+        this.price = price;
+        this.shares = shares;
+        this.lastUpdated = lastUpdated;
+        this.idempotencyKey = idempotencyKey;
+        this.idempotencyKeyBytes = null == idempotencyKey ? null : idempotencyKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    //Captures the trade as it is now, later changes to the trade do not affect the event
+    public static TradeEvent of(TradeType type, Trade trade) {
+        if (TradeType.UPDATE == type) {
+            throw new IllegalArgumentException("Updates are journaled as DELETE followed by ADD");
+        }
+        return new TradeEvent(type,
+                null == trade.getTradeId() ? 0 : trade.getTradeId(),
+                trade.getPortfolioId(),
+                trade.getTicker(),
+                trade.getTransactionType(),
+                FixedPoint.of(trade.getPrice()),
+                FixedPoint.quantity(trade.getShares()),
+                null == trade.getLastUpdated() ? NO_TIMESTAMP :
+                        trade.getLastUpdated().toInstant(ZoneOffset.UTC).toEpochMilli(),
+                trade.getIdempotencyKey());
+    }
+
+    public TradeType getType() {
+        return type;
+    }
+
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public String getTicker() {
+        return ticker;
+    }
+
+    public long getTradeId() {
+        return tradeId;
+    }
+
+    public Trade toTrade() {
+        return Trade.builder()
+                .tradeId(tradeId)
+                .portfolioId(portfolioId)
+                .ticker(ticker)
+                .transactionType(transactionType)
+                .price(FixedPoint.toBigDecimal(price))
+                .shares(BigInteger.valueOf(shares))
+                .lastUpdated(NO_TIMESTAMP == lastUpdated ? null :
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(lastUpdated), ZoneOffset.UTC))
+                .idempotencyKey(idempotencyKey)
+                .build();
+    }
+
+    public int encodedLength() {
+        return 1 + 8 + 1 + 8 + 8 + 8 + 2 + portfolioBytes.length + 2 + tickerBytes.length
+                + 2 + (null == idempotencyKeyBytes ? 0 : idempotencyKeyBytes.length);
+    }
+
+    public void encode(ByteBuffer buffer) {
+        buffer.put((byte) type.ordinal());
+        buffer.putLong(tradeId);
+        buffer.put((byte) transactionType.ordinal());
+        buffer.putLong(price);
+        buffer.putLong(shares);
+        buffer.putLong(lastUpdated);
+        buffer.putShort((short) portfolioBytes.length);
+        buffer.put(portfolioBytes);
+        buffer.putShort((short) tickerBytes.length);
+        buffer.put(tickerBytes);
+        if (null == idempotencyKeyBytes) {
+            buffer.putShort(NO_KEY);
+        } else {
+            buffer.putShort((short) idempotencyKeyBytes.length);
+            buffer.put(idempotencyKeyBytes);
+        }
+    }
+
+    public static TradeEvent decode(ByteBuffer buffer) {
+        TradeType type = TradeType.values()[buffer.get()];
+        long tradeId = buffer.getLong();
+        TransactionType transactionType = TransactionType.values()[buffer.get()];
+        long price = buffer.getLong();
+        long shares = buffer.getLong();
+        long lastUpdated = buffer.getLong();
+        byte[] portfolioBytes = new byte[buffer.getShort()];
+        buffer.get(portfolioBytes);
+        byte[] tickerBytes = new byte[buffer.getShort()];
+        buffer.get(tickerBytes);
+        String idempotencyKey = null;
+        short keyLength = buffer.remaining() >= 2 ? buffer.getShort() : NO_KEY;
+        if (NO_KEY != keyLength) {
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+            idempotencyKey = new String(keyBytes, StandardCharsets.UTF_8);
+        }
+        return new TradeEvent(type, tradeId, new String(portfolioBytes, StandardCharsets.UTF_8), new String(tickerBytes, StandardCharsets.UTF_8),
+                transactionType, price, shares, lastUpdated, idempotencyKey);
+    }
+}
@@ -1,6 +1,7 @@
 package com.application.portfoliotracker.utils;
 
 import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Portfolio;
 import com.application.portfoliotracker.entities.Trade;
 import com.application.portfoliotracker.entities.TradeType;
 import com.application.portfoliotracker.entities.TransactionType;
@@ -11,7 +12,9 @@ import java.math.BigInteger;
 import java.math.MathContext;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Utils {
 
@@ -35,25 +38,36 @@ public class Utils {
     }
 
     //Updates holdings price and shares after adding, updating or deleting trade
-    //Both trades should be of same ticker
+    //Both trades should be of same ticker. The holding is folded on longs and converted back once.
     private static Holding updateTradeInHolding(TradeType tradeType, Holding holding, Trade trade, Trade newTrade) {
-
-        if (TradeType.UPDATE == tradeType) {
-            updatePriceAndShare(TradeType.DELETE, holding, trade);
-            updatePriceAndShare(TradeType.ADD, holding, newTrade);
+        HoldingAggregate aggregate = HoldingAggregate.of(holding);
+        if (TradeType.ADD == tradeType) {
+            addTrade(aggregate, trade);
         } else {
-            updatePriceAndShare(tradeType, holding, trade);
+            aggregate.revert(trade);
+            if (TradeType.UPDATE == tradeType) {
+                addTrade(aggregate, newTrade);
+            }
         }
-        if (holding.getTotalPrice().doubleValue() < 0) {
+        if (aggregate.getTotalPrice() < 0) {
             throw new InvalidTransactionException("Invalid Transaction Causing Price Negative");
         }
-        if (holding.getShares().longValue() < 0) {
+        if (aggregate.getShares() < 0) {
             throw new InvalidTransactionException("Invalid Transaction Causing Shares Negative");
         }
+        aggregate.writeTo(holding);
         holding.setLastUpdated(LocalDateTime.now());
         return holding;
     }
 
+    //Folds the trade into the aggregate, a sell needs shares to sell from
+    private static void addTrade(HoldingAggregate aggregate, Trade trade) {
+        if (TransactionType.SELL == trade.getTransactionType() && 0 == aggregate.getShares()) {
+            throw new InvalidTransactionException("No shares available to sell");
+        }
+        aggregate.apply(trade);
+    }
+
 
 
     //Updates holding's price and shares after deleting oldTrade from it
@@ -76,7 +90,7 @@ public class Utils {
     /**
      * Updates all holdings price and shares after updating it based on trades
      *
-     * @param trades Trades based on which the holdings will get updated
+     * @param trades Trades of a single portfolio based on which the holdings will get updated
      * @return Holdings after updating it's price and shares
      */
     public static List<Holding> getHoldingsFromTrades(List<Trade> trades) {
@@ -92,47 +106,64 @@ public class Utils {
                 .collect(Collectors.toList());
     }
 
-
-     /* Updates holdings price and shares after adding or deleting trade
+    /**
+     * Folds trades into the running aggregate of their ticker in a single pass, without grouping
      *
-     * @param tradeType Tells whether trade is to be added or deleted trade
-     * @param holding   Holding to be updated
-     * @param trade     Trade to be added or deleted
+     * @param trades     Trades of one portfolio in execution order per ticker
+     * @param aggregates Aggregates by ticker, missing tickers are added through the factory
+     * @param factory    Creates the starting aggregate of a ticker seen for the first time
+     * @return Highest trade id folded, Long.MIN_VALUE if there were no trades
      */
-    private static void updatePriceAndShare(TradeType tradeType, Holding holding, Trade trade) {
-        BigDecimal tradeShares = BigDecimal.valueOf(trade.getShares().longValue());
-        BigDecimal price = TransactionType.BUY == trade.getTransactionType() ?
-                tradeShares.multiply(trade.getPrice()) :
-                tradeShares.multiply(holding.getTotalPrice())
-                        .divide(BigDecimal.valueOf(holding.getShares().longValue()), MathContext.DECIMAL128);
-        if (TradeType.DELETE == tradeType) {
-            trade.setTransactionType(TransactionType.BUY == trade.getTransactionType() ? TransactionType.SELL : TransactionType.BUY);
+    public static long applyTrades(Stream<Trade> trades, Map<String, HoldingAggregate> aggregates,
+                                   Function<String, HoldingAggregate> factory) {
+        Iterator<Trade> iterator = trades.iterator();
+        HoldingAggregate current = null;
+        long highestTradeId = Long.MIN_VALUE;
+        while (iterator.hasNext()) {
+            Trade trade = iterator.next();
+            if (null == current || !current.getTicker().equals(trade.getTicker())) {
+                current = aggregates.computeIfAbsent(trade.getTicker(), factory);
+            }
+            current.apply(trade);
+            highestTradeId = Math.max(highestTradeId, trade.getTradeId());
         }
-        if (TransactionType.BUY == trade.getTransactionType()) {
-            holding.setTotalPrice(holding.getTotalPrice().add(price));
-            holding.setShares(holding.getShares().add(trade.getShares()));
-            if (TradeType.DELETE != tradeType) {
-                holding.setAverageBuyPrice(
-                        holding.getTotalPrice().divide(
-                                BigDecimal.valueOf(holding.getShares().intValue()), MathContext.DECIMAL128
-                        )
-                );
+        return highestTradeId;
+    }
+
+    /**
+     * Folds trades sorted by ticker into one portfolio per ticker in a single pass
+     *
+     * @param trades  Trades ordered by ticker, consecutive trades of a ticker form its portfolio
+     * @param tickers Tickers held, trades of any other ticker are skipped
+     * @return One portfolio per held ticker in ticker order, with no trades for a ticker none of the trades belongs to
+     */
+    public static List<Portfolio> getPortfoliosFromSortedTrades(Stream<Trade> trades, Set<String> tickers) {
+        List<Portfolio> portfolios = new ArrayList<>(tickers.size());
+        Iterator<Trade> iterator = trades.iterator();
+        Portfolio current = null;
+        while (iterator.hasNext()) {
+            Trade trade = iterator.next();
+            if (!tickers.contains(trade.getTicker())) {
+                continue;
             }
-        } else {
-            BigDecimal netPrice = holding.getTotalPrice().subtract(price);
-            holding.setTotalPrice(netPrice);
-            BigInteger netShares = holding.getShares().subtract(trade.getShares());
-            holding.setShares(netShares);
-            if (BigInteger.ZERO.equals(holding.getShares())) {
-                holding.setAverageBuyPrice(BigDecimal.ZERO);
-            } else if (TradeType.DELETE == tradeType) {
-                holding.setAverageBuyPrice(
-                        holding.getTotalPrice().divide(
-                                BigDecimal.valueOf(holding.getShares().intValue()), MathContext.DECIMAL128
-                        )
-                );
+            if (null == current || !current.getTicker().equals(trade.getTicker())) {
+                current = Portfolio.builder()
+                        .ticker(trade.getTicker())
+                        .trades(new ArrayList<>())
+                        .build();
+                portfolios.add(current);
             }
+            current.getTrades().add(trade);
+        }
+        //a holding whose trades are not in the table still belongs to the portfolio, as it did with a query per holding
+        if (portfolios.size() < tickers.size()) {
+            Set<String> folded = portfolios.stream().map(Portfolio::getTicker).collect(Collectors.toSet());
+            tickers.stream()
+                    .filter(ticker -> !folded.contains(ticker))
+                    .forEach(ticker -> portfolios.add(Portfolio.builder().ticker(ticker).trades(new ArrayList<>()).build()));
+            portfolios.sort(Comparator.comparing(Portfolio::getTicker));
         }
+        return portfolios;
     }
 
     /**
@@ -163,10 +194,11 @@ public class Utils {
                     BigInteger trade2Shares = trade2.getShares();
                     BigInteger netShares = trade1Shares.subtract(trade2Shares);
                     BigDecimal netPrice = trade1.getPrice()
-                            .multiply(BigDecimal.valueOf(netShares.intValue()))
-                            .divide(BigDecimal.valueOf(trade1Shares.intValue()), MathContext.DECIMAL128);
+                            .multiply(new BigDecimal(netShares))
+                            .divide(new BigDecimal(trade1Shares), MathContext.DECIMAL128);
                     LocalDateTime lastUpdated = trade2.getLastUpdated().isAfter(trade1.getLastUpdated()) ? trade2.getLastUpdated() : trade1.getLastUpdated();
                     return Trade.builder()
+                            .portfolioId(trade2.getPortfolioId())
                             .ticker(trade2.getTicker())
                             .shares(netShares)
                             .price(netPrice)
@@ -185,9 +217,18 @@ public class Utils {
     private static Optional<Trade> getTradesCombinedByTransactionType(List<Trade> trades) {
         return trades.stream()
                 .sorted(Comparator.comparing(Trade::getLastUpdated))
-                .peek(trade -> trade.setPrice(trade.getPrice().multiply(BigDecimal.valueOf(trade.getShares().intValue()))))
+                //combines copies carrying the notional as price, the trades themselves are left untouched
+                .map(trade -> Trade.builder()
+                        .portfolioId(trade.getPortfolioId())
+                        .ticker(trade.getTicker())
+                        .shares(trade.getShares())
+                        .price(trade.getPrice().multiply(new BigDecimal(trade.getShares())))
+                        .transactionType(trade.getTransactionType())
+                        .lastUpdated(trade.getLastUpdated())
+                        .build())
                 .reduce((trade1, trade2) -> {
                     return Trade.builder()
+                            .portfolioId(trade2.getPortfolioId())
                             .ticker(trade2.getTicker())
                             .shares(trade1.getShares().add(trade2.getShares()))
                             .price(trade1.getPrice().add(trade2.getPrice()))
@@ -205,8 +246,9 @@ public class Utils {
      */
     private static Holding getHoldings(Trade trade) {
         BigDecimal averagePrice = trade.getPrice()
-                .divide(BigDecimal.valueOf(trade.getShares().intValue()), MathContext.DECIMAL128);
+                .divide(new BigDecimal(trade.getShares()), MathContext.DECIMAL128);
         return Holding.builder()
+                .portfolioId(trade.getPortfolioId())
                 .ticker(trade.getTicker())
                 .shares(trade.getShares())
                 .totalPrice(trade.getPrice())
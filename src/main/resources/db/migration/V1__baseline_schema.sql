@@ -0,0 +1,52 @@
+-- Schema of the persistent profile, matching the JPA entities.
+-- Amounts keep the 6 decimal places of the fixed-point holding arithmetic.
+
+CREATE SEQUENCE trade_id_seq START WITH 1 INCREMENT BY 1000;
+CREATE SEQUENCE checkpoint_id_seq START WITH 1 INCREMENT BY 1000;
+
+CREATE TABLE trades (
+    trade_id         BIGINT         NOT NULL,
+    portfolio_id     VARCHAR(255),
+    ticker           VARCHAR(255),
+    transaction_type VARCHAR(255),
+    price            NUMERIC(38, 6),
+    shares           NUMERIC(38, 0),
+    last_updated     TIMESTAMP,
+    CONSTRAINT pk_trades PRIMARY KEY (trade_id)
+);
+
+-- per ticker reads of a portfolio in execution order : fetch-portfolio, as-of replays, trades by ticker
+CREATE INDEX idx_trades_portfolio_ticker_last_updated ON trades (portfolio_id, ticker, last_updated);
+-- trade lookups, cursor pages and watermark refreshes of a portfolio
+CREATE INDEX idx_trades_portfolio_trade_id ON trades (portfolio_id, trade_id);
+
+CREATE TABLE holdings (
+    portfolio_id      VARCHAR(255)   NOT NULL,
+    ticker            VARCHAR(255)   NOT NULL,
+    total_price       NUMERIC(38, 6),
+    average_buy_price NUMERIC(38, 6),
+    shares            NUMERIC(38, 0),
+    realized_profit   NUMERIC(38, 6),
+    last_updated      TIMESTAMP,
+    CONSTRAINT pk_holdings PRIMARY KEY (portfolio_id, ticker)
+);
+
+CREATE TABLE holding_checkpoints (
+    checkpoint_id   BIGINT         NOT NULL,
+    portfolio_id    VARCHAR(255),
+    ticker          VARCHAR(255),
+    as_of           TIMESTAMP,
+    trade_id        BIGINT,
+    shares          NUMERIC(38, 0),
+    total_price     NUMERIC(38, 6),
+    realized_profit NUMERIC(38, 6),
+    CONSTRAINT pk_holding_checkpoints PRIMARY KEY (checkpoint_id)
+);
+
+CREATE INDEX idx_holding_checkpoints_portfolio_ticker_as_of ON holding_checkpoints (portfolio_id, ticker, as_of);
+
+CREATE TABLE holdings_watermark (
+    name     VARCHAR(255) NOT NULL,
+    trade_id BIGINT,
+    CONSTRAINT pk_holdings_watermark PRIMARY KEY (name)
+);
@@ -0,0 +1,6 @@
+-- Client supplied idempotency keys of trades, a retried trade with a known key is not inserted again.
+-- Trades without a key are not constrained, the unique index ignores NULLs.
+
+ALTER TABLE trades ADD COLUMN idempotency_key VARCHAR(255);
+
+CREATE UNIQUE INDEX uk_trades_portfolio_idempotency_key ON trades (portfolio_id, idempotency_key);
@@ -0,0 +1,8 @@
+-- Daily closing prices, the history risk analytics are computed from. One bar per ticker and day.
+
+CREATE TABLE price_bars (
+    ticker   VARCHAR(255)   NOT NULL,
+    bar_date DATE           NOT NULL,
+    close    NUMERIC(38, 6),
+    CONSTRAINT pk_price_bars PRIMARY KEY (ticker, bar_date)
+);
@@ -0,0 +1,3 @@
+-- Set on trades whose holding change the service applied when writing them. A refresh folds only the trades
+-- above the portfolio's watermark without it, i.e. the trades inserted outside the service.
+ALTER TABLE trades ADD COLUMN holding_applied BOOLEAN;
@@ -0,0 +1,56 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.services.PortfolioService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a point-in-time holding query at a random time over histories of growing depth.
+ * Checkpoints are built during warmup, after which the cost should not depend on tradesPerTicker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AsOfHoldingsBenchmark {
+
+    @Param({"10"})
+    private int tickers;
+
+    @Param({"1000", "10000", "100000"})
+    private int tradesPerTicker;
+
+    private ConfigurableApplicationContext context;
+    private PortfolioService portfolioService;
+    private LocalDateTime start;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("as-of");
+        start = LocalDateTime.now().minusDays(tradesPerTicker);
+        BenchmarkContexts.seedBook(context.getBean(JdbcTemplate.class), tickers, tradesPerTicker);
+        portfolioService = context.getBean(PortfolioService.class);
+        random = new SplittableRandom(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Holding> getHoldingAsOf() {
+        return portfolioService.getHoldingAsOf(BenchmarkContexts.PORTFOLIO, BenchmarkContexts.ticker(random.nextInt(tickers)),
+                start.plusDays(random.nextInt(tradesPerTicker)));
+    }
+}
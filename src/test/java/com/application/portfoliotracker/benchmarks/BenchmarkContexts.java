@@ -0,0 +1,119 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.PortfolioTrackerApplication;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+//Shared helpers to boot the application and seed synthetic books for benchmarks
+final class BenchmarkContexts {
+
+    private static final int INSERT_BATCH = 5_000;
+
+    //Portfolio every synthetic trade and seeded holding belongs to
+    static final String PORTFOLIO = "bench";
+
+    private BenchmarkContexts() {
+    }
+
+    //Starts the application without a web server on a private in-memory database
+    static ConfigurableApplicationContext start(String name, String... properties) {
+        return start(WebApplicationType.NONE, name, properties);
+    }
+
+    //Starts the application with its web server on a random port, see port(context)
+    static ConfigurableApplicationContext startWeb(String name, String... properties) {
+        List<String> all = new ArrayList<>(List.of(properties));
+        all.add("server.port=0");
+        return start(WebApplicationType.SERVLET, name, all.toArray(new String[0]));
+    }
+
+    static int port(ConfigurableApplicationContext context) {
+        return Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType type, String name, String... properties) {
+        List<String> all = new ArrayList<>();
+        all.add("spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        all.add("spring.jpa.properties.hibernate.generate_statistics=true");
+        all.add("logging.level.root=WARN");
+        all.addAll(List.of(properties));
+        return new SpringApplicationBuilder(PortfolioTrackerApplication.class)
+                .web(type)
+                .properties(all.toArray(new String[0]))
+                .run();
+    }
+
+    static String ticker(int index) {
+        return "TCK" + index;
+    }
+
+    //Deterministic trades spread round-robin over the tickers in increasing time. The first trade of a
+    //ticker is a BUY, later ones are BUY four times out of five and sells stay well below the bought shares.
+    static List<Trade> syntheticTrades(int rows, int tickers, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+        List<Trade> trades = new ArrayList<>(rows);
+        for (int n = 0; n < rows; n++) {
+            boolean buy = n < tickers || random.nextInt(5) != 0;
+            trades.add(Trade.builder()
+                    .tradeId((long) n + 1)
+                    .portfolioId(PORTFOLIO)
+                    .ticker(ticker(n % tickers))
+                    .transactionType(buy ? TransactionType.BUY : TransactionType.SELL)
+                    .shares(BigInteger.valueOf(buy ? 10 + random.nextInt(90) : 1 + random.nextInt(5)))
+                    .price(BigDecimal.valueOf(1_000 + random.nextInt(100_000), 2))
+                    .lastUpdated(start.plusSeconds(n))
+                    .build());
+        }
+        return trades;
+    }
+
+    //Inserts BUY trades and their matching holdings straight through JDBC, bypassing the service
+    static void seedBook(JdbcTemplate jdbcTemplate, int tickers, int tradesPerTicker) {
+        LocalDateTime start = LocalDateTime.now().minusDays(tradesPerTicker);
+        List<Object[]> trades = new ArrayList<>(INSERT_BATCH);
+        List<Object[]> holdings = new ArrayList<>(INSERT_BATCH);
+        long tradeId = 1;
+        for (int t = 0; t < tickers; t++) {
+            for (int n = 0; n < tradesPerTicker; n++) {
+                trades.add(new Object[]{tradeId++, PORTFOLIO, ticker(t), "BUY", BigDecimal.TEN, 10,
+                        Timestamp.valueOf(start.plusDays(n))});
+                if (trades.size() == INSERT_BATCH) {
+                    insertTrades(jdbcTemplate, trades);
+                }
+            }
+            long shares = 10L * tradesPerTicker;
+            holdings.add(new Object[]{PORTFOLIO, ticker(t), BigDecimal.TEN.multiply(BigDecimal.valueOf(shares)), BigDecimal.TEN,
+                    shares, Timestamp.valueOf(start.plusDays(tradesPerTicker))});
+            if (holdings.size() == INSERT_BATCH) {
+                insertHoldings(jdbcTemplate, holdings);
+            }
+        }
+        insertTrades(jdbcTemplate, trades);
+        insertHoldings(jdbcTemplate, holdings);
+    }
+
+    private static void insertTrades(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("insert into trades (trade_id, portfolio_id, ticker, transaction_type, price, shares, last_updated) "
+                + "values (?, ?, ?, ?, ?, ?, ?)", rows);
+        rows.clear();
+    }
+
+    private static void insertHoldings(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("insert into holdings (portfolio_id, ticker, total_price, average_buy_price, shares, last_updated) "
+                + "values (?, ?, ?, ?, ?, ?)", rows);
+        rows.clear();
+    }
+}
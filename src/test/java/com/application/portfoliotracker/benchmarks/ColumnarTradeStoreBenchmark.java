@@ -0,0 +1,96 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.utils.HoldingAggregate;
+import com.application.portfoliotracker.utils.TradeColumns;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folding every holding of a portfolio as of the middle of its history, from trade entities on the heap
+ * against the off-heap trade columns. The heap taken by the entities and the bytes taken by the columns
+ * are reported as secondary results of each benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-XX:MaxDirectMemorySize=4g"})
+public class ColumnarTradeStoreBenchmark {
+
+    @Param({"1000"})
+    private int tickers;
+
+    @Param({"1000000", "10000000"})
+    private int rows;
+
+    private List<Trade> trades;
+    private TradeColumns columns;
+    private LocalDateTime at;
+    private long entityBytes;
+
+    //Reported next to the timings, the same values on every invocation
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long entityBytes;
+        public long offHeapBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            entityBytes = 0;
+            offHeapBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        long before = usedHeap();
+        trades = BenchmarkContexts.syntheticTrades(rows, tickers, 42);
+        entityBytes = usedHeap() - before;
+        columns = new TradeColumns(null, 1 << 20);
+        trades.forEach(columns::append);
+        at = trades.get(rows / 2).getLastUpdated();
+    }
+
+    @Benchmark
+    public Map<String, HoldingAggregate> foldEntities(Footprint footprint) {
+        report(footprint);
+        SortedMap<String, HoldingAggregate> aggregates = new TreeMap<>();
+        for (Trade trade : trades) {
+            if (!trade.getLastUpdated().isAfter(at)) {
+                aggregates.computeIfAbsent(trade.getTicker(), ticker -> HoldingAggregate.empty(BenchmarkContexts.PORTFOLIO, ticker))
+                        .apply(trade);
+            }
+        }
+        return aggregates;
+    }
+
+    @Benchmark
+    public Map<String, HoldingAggregate> foldColumns(Footprint footprint) {
+        report(footprint);
+        return columns.fold(BenchmarkContexts.PORTFOLIO, null, at);
+    }
+
+    private void report(Footprint footprint) {
+        footprint.entityBytes = entityBytes;
+        footprint.offHeapBytes = columns.getOffHeapBytes();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int n = 0; n < 3; n++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
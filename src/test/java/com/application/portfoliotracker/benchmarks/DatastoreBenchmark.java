@@ -0,0 +1,82 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.services.PortfolioService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write and read latency of the in-memory database against the persistent profile (file-backed H2 with the
+ * migrated schema and pooled sequence ids) on the same seeded book.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DatastoreBenchmark {
+
+    private static final int TICKERS = 10_000;
+
+    private static final int TRADES_PER_TICKER = 10;
+
+    @Param({"memory", "persistent"})
+    private String profile;
+
+    private Path dataDir;
+    private ConfigurableApplicationContext context;
+    private PortfolioService portfolioService;
+    private final SplittableRandom random = new SplittableRandom(11);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("portfolio-datastore");
+        context = BenchmarkContexts.start("datastore",
+                "spring.profiles.active=" + ("persistent".equals(profile) ? "persistent" : "default"),
+                "portfolio.data-dir=" + dataDir);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        BenchmarkContexts.seedBook(jdbcTemplate, TICKERS, TRADES_PER_TICKER);
+        //seeded rows carry explicit ids, new trades are allocated past them
+        jdbcTemplate.execute("alter sequence trade_id_seq restart with " + (TICKERS * TRADES_PER_TICKER + 1_001));
+        portfolioService = context.getBean(PortfolioService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public Trade addTrade() {
+        return portfolioService.addTrade(BenchmarkContexts.PORTFOLIO, Trade.builder()
+                .ticker(BenchmarkContexts.ticker(random.nextInt(TICKERS)))
+                .transactionType(TransactionType.BUY)
+                .shares(BigInteger.ONE)
+                .price(BigDecimal.TEN)
+                .build());
+    }
+
+    @Benchmark
+    public List<Trade> getTradesByTicker() {
+        return portfolioService.getTradesByTicker(BenchmarkContexts.PORTFOLIO, BenchmarkContexts.ticker(random.nextInt(TICKERS)));
+    }
+
+    @Benchmark
+    public Object getTradeById() {
+        return portfolioService.getTrade(BenchmarkContexts.PORTFOLIO, 1L + random.nextInt(TICKERS * TRADES_PER_TICKER));
+    }
+}
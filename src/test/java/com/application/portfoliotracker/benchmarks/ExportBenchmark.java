@@ -0,0 +1,100 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.enums.ExportCompression;
+import com.application.portfoliotracker.enums.ExportFormat;
+import com.application.portfoliotracker.services.PortfolioService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second of exporting a 10M trade portfolio, per format and compression, into a channel that discards
+ * what it is given so only reading the cursor and encoding are measured. The bytes of one export are reported as
+ * an auxiliary counter next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class ExportBenchmark {
+
+    private static final int TICKERS = 1_000;
+
+    private static final int TRADES_PER_TICKER = 10_000;
+
+    private static final int ROWS = TICKERS * TRADES_PER_TICKER;
+
+    @Param({"CSV", "COLUMNAR"})
+    private ExportFormat format;
+
+    @Param({"NONE", "GZIP"})
+    private ExportCompression compression;
+
+    private ConfigurableApplicationContext context;
+    private PortfolioService portfolioService;
+    private DiscardingChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("export");
+        portfolioService = context.getBean(PortfolioService.class);
+        BenchmarkContexts.seedBook(context.getBean(JdbcTemplate.class), TICKERS, TRADES_PER_TICKER);
+        channel = new DiscardingChannel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    //Reported next to the throughput, the same value on every invocation
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Output {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long exportTrades(Output output) throws IOException {
+        long before = channel.bytes;
+        long rows = portfolioService.exportTrades(BenchmarkContexts.PORTFOLIO, format, compression, channel);
+        output.bytes = channel.bytes - before;
+        return rows;
+    }
+
+    private static final class DiscardingChannel implements WritableByteChannel {
+
+        private long bytes;
+
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            source.position(source.limit());
+            bytes += length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.utils.FixedPoint;
+import com.application.portfoliotracker.utils.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares one buy followed by one sell on a holding through the former BigDecimal/DECIMAL128
+ * arithmetic, through Utils.addTradeToHolding on the fixed-point core, and through the bare core on longs.
+ * Run with -prof gc to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HoldingArithmeticBenchmark {
+
+    private Holding holding;
+    private Trade buy;
+    private Trade sell;
+
+    private long shares;
+    private long totalPrice;
+    private long averageBuyPrice;
+    private long buyShares;
+    private long buyPrice;
+    private long sellShares;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        holding = Holding.builder()
+                .ticker("TCK")
+                .shares(BigInteger.valueOf(1_000))
+                .totalPrice(BigDecimal.valueOf(123_456.75))
+                .averageBuyPrice(BigDecimal.valueOf(123.45675))
+                .realizedProfit(BigDecimal.ZERO)
+                .lastUpdated(LocalDateTime.now())
+                .build();
+        buy = Trade.builder().ticker("TCK").transactionType(TransactionType.BUY)
+                .shares(BigInteger.valueOf(37)).price(BigDecimal.valueOf(101.25)).build();
+        sell = Trade.builder().ticker("TCK").transactionType(TransactionType.SELL)
+                .shares(BigInteger.valueOf(37)).price(BigDecimal.valueOf(99.5)).build();
+        shares = FixedPoint.quantity(holding.getShares());
+        totalPrice = FixedPoint.of(holding.getTotalPrice());
+        averageBuyPrice = FixedPoint.of(holding.getAverageBuyPrice());
+        buyShares = FixedPoint.quantity(buy.getShares());
+        buyPrice = FixedPoint.of(buy.getPrice());
+        sellShares = FixedPoint.quantity(sell.getShares());
+    }
+
+    @Benchmark
+    public Holding bigDecimal() {
+        bigDecimalUpdate(holding, buy);
+        bigDecimalUpdate(holding, sell);
+        return holding;
+    }
+
+    @Benchmark
+    public Holding fixedPoint() {
+        Utils.addTradeToHolding(holding, buy);
+        Utils.addTradeToHolding(holding, sell);
+        return holding;
+    }
+
+    @Benchmark
+    public long fixedPointCore() {
+        totalPrice = FixedPoint.add(totalPrice, FixedPoint.multiply(buyPrice, buyShares));
+        shares = Math.addExact(shares, buyShares);
+        averageBuyPrice = FixedPoint.mulDiv(totalPrice, 1, shares);
+        totalPrice = FixedPoint.subtract(totalPrice, FixedPoint.mulDiv(totalPrice, sellShares, shares));
+        shares = Math.subtractExact(shares, sellShares);
+        return averageBuyPrice;
+    }
+
+    //The add path of Utils.addTradeToHolding before the fixed-point core
+    private static void bigDecimalUpdate(Holding holding, Trade trade) {
+        BigDecimal tradeShares = BigDecimal.valueOf(trade.getShares().longValue());
+        if (TransactionType.BUY == trade.getTransactionType()) {
+            holding.setTotalPrice(holding.getTotalPrice().add(tradeShares.multiply(trade.getPrice())));
+            holding.setShares(holding.getShares().add(trade.getShares()));
+            holding.setAverageBuyPrice(holding.getTotalPrice()
+                    .divide(BigDecimal.valueOf(holding.getShares().intValue()), MathContext.DECIMAL128));
+        } else {
+            BigDecimal price = tradeShares.multiply(holding.getTotalPrice())
+                    .divide(BigDecimal.valueOf(holding.getShares().longValue()), MathContext.DECIMAL128);
+            holding.setTotalPrice(holding.getTotalPrice().subtract(price));
+            holding.setShares(holding.getShares().subtract(trade.getShares()));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.services.PortfolioService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trades per second through PortfolioService.addTrade on a few hot tickers, with every holding written in
+ * the trade's transaction against holdings staged and written in group commits by the write-behind flusher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HoldingWriteBehindBenchmark {
+
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    @Param({"1", "16", "1000"})
+    private int tickers;
+
+    private ConfigurableApplicationContext context;
+    private PortfolioService portfolioService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("write-behind-" + writeBehind + "-" + tickers,
+                "portfolio.holdings.write-behind.enabled=" + writeBehind);
+        portfolioService = context.getBean(PortfolioService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Trade addTrade() {
+        return portfolioService.addTrade(BenchmarkContexts.PORTFOLIO, Trade.builder()
+                .ticker(BenchmarkContexts.ticker(ThreadLocalRandom.current().nextInt(tickers)))
+                .transactionType(TransactionType.BUY)
+                .price(BigDecimal.TEN)
+                .shares(BigInteger.ONE)
+                .build());
+    }
+}
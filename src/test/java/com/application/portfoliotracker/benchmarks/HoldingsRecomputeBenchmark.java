@@ -0,0 +1,55 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.utils.HoldingAggregate;
+import com.application.portfoliotracker.utils.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full recomputation of holdings from synthetic trade sets of 1k to 10M rows. Neither path modifies
+ * the trades, so one generated set is shared by every invocation of a trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class HoldingsRecomputeBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int rows;
+
+    @Param({"10", "1000", "100000"})
+    private int tickers;
+
+    private List<Trade> trades;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        trades = BenchmarkContexts.syntheticTrades(rows, Math.min(rows, tickers), 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        trades = null;
+    }
+
+    @Benchmark
+    public List<Holding> getHoldingsFromTrades() {
+        return Utils.getHoldingsFromTrades(trades);
+    }
+
+    @Benchmark
+    public Map<String, HoldingAggregate> applyTrades() {
+        Map<String, HoldingAggregate> aggregates = new HashMap<>();
+        Utils.applyTrades(trades.stream(), aggregates, HoldingAggregate::empty);
+        return aggregates;
+    }
+}
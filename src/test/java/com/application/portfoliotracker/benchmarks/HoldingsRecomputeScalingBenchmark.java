@@ -0,0 +1,65 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.enums.RecomputeMode;
+import com.application.portfoliotracker.services.HoldingsRecomputer;
+import com.application.portfoliotracker.utils.HoldingAggregate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the PARALLEL recompute mode from 1 to 16 fork-join threads against the sequential fold.
+ * Speed-up for a thread count is sequential time divided by parallel time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class HoldingsRecomputeScalingBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int rows;
+
+    @Param({"1000", "100000"})
+    private int tickers;
+
+    @Param({"1", "2", "4", "8", "16"})
+    private int parallelism;
+
+    private List<Trade> trades;
+    private HoldingsRecomputer sequential;
+    private HoldingsRecomputer parallel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        trades = BenchmarkContexts.syntheticTrades(rows, tickers, 42);
+        sequential = new HoldingsRecomputer(RecomputeMode.SEQUENTIAL, 0);
+        parallel = new HoldingsRecomputer(RecomputeMode.PARALLEL, parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parallel.destroy();
+        trades = null;
+    }
+
+    @Benchmark
+    public Map<String, HoldingAggregate> sequential() {
+        Map<String, HoldingAggregate> aggregates = new HashMap<>();
+        sequential.applyTrades(trades.stream(), aggregates, HoldingAggregate::empty);
+        return aggregates;
+    }
+
+    @Benchmark
+    public Map<String, HoldingAggregate> parallel() {
+        Map<String, HoldingAggregate> aggregates = new HashMap<>();
+        parallel.applyTrades(trades.stream(), aggregates, HoldingAggregate::empty);
+        return aggregates;
+    }
+}
@@ -0,0 +1,80 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.services.PortfolioService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the idempotency check on /add-trade. newKey checks a key never used, answered by the Bloom filter,
+ * retriedKey checks a key used by a trade within the window, answered from memory, evictedKey checks a used key
+ * that fell out of the window and is looked up in the trades table. addTrade adds a trade with a fresh key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IdempotencyKeyBenchmark {
+
+    private static final int KEYS = 20_000;
+
+    private static final int WINDOW = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private PortfolioService portfolioService;
+    private List<Trade> trades;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("idempotency", "portfolio.dedup.window-size=" + WINDOW);
+        portfolioService = context.getBean(PortfolioService.class);
+        trades = BenchmarkContexts.syntheticTrades(KEYS, 100, 42);
+        for (Trade trade : trades) {
+            trade.setTradeId(null);
+            trade.setIdempotencyKey("seed-" + trade.getLastUpdated());
+        }
+        portfolioService.addTrades(BenchmarkContexts.PORTFOLIO, trades.iterator());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Trade> newKey() {
+        return portfolioService.findTradeByIdempotencyKey(BenchmarkContexts.PORTFOLIO, "new-" + next++);
+    }
+
+    @Benchmark
+    public Optional<Trade> retriedKey() {
+        return portfolioService.findTradeByIdempotencyKey(BenchmarkContexts.PORTFOLIO,
+                trades.get(KEYS - 1 - (int) (next++ % WINDOW)).getIdempotencyKey());
+    }
+
+    @Benchmark
+    public Optional<Trade> evictedKey() {
+        return portfolioService.findTradeByIdempotencyKey(BenchmarkContexts.PORTFOLIO,
+                trades.get((int) (next++ % (KEYS - WINDOW))).getIdempotencyKey());
+    }
+
+    @Benchmark
+    public Trade addTrade() {
+        Trade template = trades.get((int) (next % KEYS));
+        return portfolioService.addTrade(BenchmarkContexts.PORTFOLIO, Trade.builder()
+                .ticker(template.getTicker())
+                .transactionType(TransactionType.BUY)
+                .price(template.getPrice())
+                .shares(template.getShares())
+                .idempotencyKey("add-" + next++)
+                .build());
+    }
+}
@@ -0,0 +1,82 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TradeType;
+import com.application.portfoliotracker.services.TradeJournal;
+import com.application.portfoliotracker.utils.HoldingAggregate;
+import com.application.portfoliotracker.utils.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup cost of rebuilding holdings from the trade journal, replaying every event or only the tail
+ * after a snapshot taken at 90% of the journal, against recomputing the holdings from the trades.
+ * Events per second are rows divided by the reported time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class JournalReplayBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    @Param({"1000"})
+    private int tickers;
+
+    @Param({"none", "tail"})
+    private String snapshot;
+
+    private Path directory;
+    private List<Trade> trades;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        trades = BenchmarkContexts.syntheticTrades(rows, tickers, 42);
+        TradeJournal journal = journal("none".equals(snapshot) ? Long.MAX_VALUE : rows * 9L / 10);
+        trades.forEach(trade -> journal.append(TradeType.ADD, trade));
+        journal.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<Holding> journalRecovery() throws IOException {
+        TradeJournal journal = journal(Long.MAX_VALUE);
+        List<Holding> holdings = journal.getHoldings();
+        journal.close();
+        return holdings;
+    }
+
+    @Benchmark
+    public Map<String, HoldingAggregate> recomputeFromTrades() {
+        Map<String, HoldingAggregate> aggregates = new HashMap<>();
+        Utils.applyTrades(trades.stream(), aggregates, HoldingAggregate::empty);
+        return aggregates;
+    }
+
+    private TradeJournal journal(long snapshotEvery) throws IOException {
+        TradeJournal journal = new TradeJournal(true, directory.toString(), 64 << 20, snapshotEvery, false);
+        journal.recover();
+        return journal;
+    }
+}
@@ -0,0 +1,85 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Portfolio;
+import com.application.portfoliotracker.services.PortfolioService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares /fetch-portfolio assembly from one ordered trade query against the former
+ * query-per-ticker lookup. The queries counter reports prepared statements per iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PortfolioFetchBenchmark {
+
+    @Param("10000")
+    private int tickers;
+
+    @Param("5")
+    private int tradesPerTicker;
+
+    private ConfigurableApplicationContext context;
+    private PortfolioService portfolioService;
+    private Statistics statistics;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class QueryCounter {
+        public long queries;
+        public long calls;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("portfolio-fetch");
+        BenchmarkContexts.seedBook(context.getBean(JdbcTemplate.class), tickers, tradesPerTicker);
+        portfolioService = context.getBean(PortfolioService.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Portfolio> singlePass(QueryCounter counter) {
+        long before = statistics.getPrepareStatementCount();
+        List<Portfolio> portfolios = portfolioService.getPortfolio(BenchmarkContexts.PORTFOLIO);
+        count(counter, before);
+        return portfolios;
+    }
+
+    @Benchmark
+    public List<Portfolio> queryPerTicker(QueryCounter counter) {
+        long before = statistics.getPrepareStatementCount();
+        List<Portfolio> portfolios = portfolioService.getHoldings(BenchmarkContexts.PORTFOLIO).stream()
+                .map(Holding::getTicker)
+                .map(ticker -> Portfolio.builder()
+                        .ticker(ticker)
+                        .trades(portfolioService.getTradesByTicker(BenchmarkContexts.PORTFOLIO, ticker))
+                        .build())
+                .collect(Collectors.toList());
+        count(counter, before);
+        return portfolios;
+    }
+
+    private void count(QueryCounter counter, long before) {
+        counter.queries += statistics.getPrepareStatementCount() - before;
+        counter.calls++;
+    }
+}
@@ -0,0 +1,73 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.TickStats;
+import com.application.portfoliotracker.services.PortfolioService;
+import com.application.portfoliotracker.services.PriceTicks;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained price ticks per second from publishing into PriceTicks until every tick is applied, i.e. quoted
+ * and marked to market on a seeded book whose returns ledger is loaded. Ticks hit random tickers of the book.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PriceTickThroughputBenchmark {
+
+    private static final int TICKS = 100_000;
+
+    @Param({"1000", "10000"})
+    private int tickers;
+
+    private ConfigurableApplicationContext context;
+    private PriceTicks priceTicks;
+
+    private String[] names;
+    private BigDecimal[] prices;
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("ticks");
+        BenchmarkContexts.seedBook(context.getBean(JdbcTemplate.class), tickers, 1);
+        context.getBean(PortfolioService.class).getReturns(BenchmarkContexts.PORTFOLIO);
+        priceTicks = context.getBean(PriceTicks.class);
+        names = new String[tickers];
+        for (int index = 0; index < tickers; index++) {
+            names[index] = BenchmarkContexts.ticker(index);
+        }
+        prices = new BigDecimal[64];
+        for (int index = 0; index < prices.length; index++) {
+            prices[index] = BigDecimal.valueOf(9_000 + index * 50L, 2);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public TickStats publishAndApply() {
+        for (int n = 0; n < TICKS; n++) {
+            priceTicks.publish(names[random.nextInt(tickers)], prices[n & 63]);
+        }
+        while (true) {
+            TickStats stats = priceTicks.getStats();
+            if (stats.getApplied() + stats.getCoalesced() == stats.getReceived()) {
+                return stats;
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
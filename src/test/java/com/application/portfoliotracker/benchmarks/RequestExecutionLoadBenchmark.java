@@ -0,0 +1,76 @@
+package com.application.portfoliotracker.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Burst load against a live server in BLOCKING and ASYNC execution mode. Tomcat is limited to a few
+ * threads and the price feed simulates a slow upstream, so the blocking mode saturates the servlet pool.
+ * The rejected counter reports 503 responses caused by backpressure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(128)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RequestExecutionLoadBenchmark {
+
+    @Param({"BLOCKING", "ASYNC"})
+    private String mode;
+
+    @Param({"/portfolios/bench/holdings/all", "/portfolios/bench/fetch-returns"})
+    private String endpoint;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI uri;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Responses {
+        public long ok;
+        public long rejected;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.startWeb("load-" + mode,
+                "portfolio.execution.mode=" + mode,
+                "portfolio.execution.threads=64",
+                "portfolio.execution.queue-capacity=256",
+                "server.tomcat.threads.max=16",
+                "portfolio.prices.cache.ttl=PT0S",
+                "portfolio.prices.simulated.latency-millis=5");
+        BenchmarkContexts.seedBook(context.getBean(JdbcTemplate.class), 1_000, 1);
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        uri = URI.create("http://localhost:" + BenchmarkContexts.port(context) + endpoint);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int request(Responses responses) throws IOException, InterruptedException {
+        int status = client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding())
+                .statusCode();
+        if (503 == status) {
+            responses.rejected++;
+        } else {
+            responses.ok++;
+        }
+        return status;
+    }
+}
@@ -0,0 +1,55 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.services.PortfolioService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end cost of PortfolioService.getReturns over a seeded in-memory book, read from the returns ledger,
+ * against getReturnsAsOf at the current time, which still reduces over every holding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReturnsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int tickers;
+
+    @Param({"1", "10"})
+    private int tradesPerTicker;
+
+    private ConfigurableApplicationContext context;
+    private PortfolioService portfolioService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("returns");
+        BenchmarkContexts.seedBook(context.getBean(JdbcTemplate.class), tickers, tradesPerTicker);
+        portfolioService = context.getBean(PortfolioService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<BigDecimal> getReturns() {
+        return portfolioService.getReturns(BenchmarkContexts.PORTFOLIO);
+    }
+
+    @Benchmark
+    public Optional<BigDecimal> reduceHoldings() {
+        return portfolioService.getReturnsAsOf(BenchmarkContexts.PORTFOLIO, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,112 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.services.PortfolioService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local load test of the returns stream. Opens many Server-Sent Events subscriptions to one portfolio on a
+ * live server, then measures the time from committing a trade until every subscriber received its position event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReturnsStreamLoadBenchmark {
+
+    @Param({"100", "2000"})
+    private int subscribers;
+
+    private ConfigurableApplicationContext context;
+    private PortfolioService portfolioService;
+    private final List<CompletableFuture<HttpResponse<Void>>> streams = new ArrayList<>();
+
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong positions = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        context = BenchmarkContexts.startWeb("stream", "server.tomcat.max-connections=" + (subscribers + 100));
+        BenchmarkContexts.seedBook(context.getBean(JdbcTemplate.class), 1_000, 1);
+        portfolioService = context.getBean(PortfolioService.class);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        URI uri = URI.create("http://localhost:" + BenchmarkContexts.port(context)
+                + "/portfolios/" + BenchmarkContexts.PORTFOLIO + "/returns/stream");
+        for (int n = 0; n < subscribers; n++) {
+            streams.add(client.sendAsync(HttpRequest.newBuilder(uri).GET().build(),
+                    HttpResponse.BodyHandlers.fromLineSubscriber(new EventCounter())));
+        }
+        while (snapshots.get() < subscribers) {
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        streams.forEach(stream -> stream.cancel(true));
+        context.close();
+    }
+
+    @Benchmark
+    public long tradeToAllSubscribers() {
+        long expected = positions.get() + subscribers;
+        portfolioService.addTrade(BenchmarkContexts.PORTFOLIO, Trade.builder()
+                .ticker(BenchmarkContexts.ticker(0))
+                .transactionType(TransactionType.BUY)
+                .shares(BigInteger.ONE)
+                .price(BigDecimal.TEN)
+                .build());
+        while (positions.get() < expected) {
+            Thread.onSpinWait();
+        }
+        return positions.get();
+    }
+
+    //Counts the snapshot and position events of one subscription
+    private final class EventCounter implements Flow.Subscriber<String> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.startsWith("event:snapshot")) {
+                snapshots.incrementAndGet();
+            } else if (line.startsWith("event:position")) {
+                positions.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
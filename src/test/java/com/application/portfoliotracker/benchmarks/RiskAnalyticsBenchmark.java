@@ -0,0 +1,108 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.utils.PositionSeries;
+import com.application.portfoliotracker.utils.PriceSeries;
+import com.application.portfoliotracker.utils.RiskEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Risk analytics over 5k tickers with 10 years of daily bars each. portfolio computes the time-weighted return,
+ * volatility and drawdown of a portfolio holding every ticker, tickerStats the windowed statistics of every ticker,
+ * correlation the full correlation matrix. appendBar adds the next day's bar to one ticker, updating its running
+ * statistics, against replaceBar which rewrites an old bar and recomputes them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class RiskAnalyticsBenchmark {
+
+    private static final int TICKERS = 5_000;
+
+    private static final int BARS = 2_520;
+
+    private List<PriceSeries> prices;
+    private List<PositionSeries> positions;
+    private RiskEngine riskEngine;
+    private ForkJoinPool pool;
+    private int[] calendar;
+    private SplittableRandom random;
+    private int[] nextDay;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new SplittableRandom(42);
+        prices = new ArrayList<>(TICKERS);
+        positions = new ArrayList<>(TICKERS);
+        nextDay = new int[TICKERS];
+        for (int ticker = 0; ticker < TICKERS; ticker++) {
+            PriceSeries series = new PriceSeries(BenchmarkContexts.ticker(ticker));
+            double close = 100;
+            for (int day = 0; day < BARS; day++) {
+                close *= 1 + (random.nextDouble() - 0.5) * 0.04;
+                series.put(day, close);
+            }
+            prices.add(series);
+            nextDay[ticker] = BARS;
+            PositionSeries position = new PositionSeries(series.getTicker());
+            position.add(0, 100);
+            position.add(BARS / 2, ticker % 2 == 0 ? 50 : -50);
+            positions.add(position);
+        }
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        riskEngine = new RiskEngine(pool);
+        calendar = riskEngine.calendar(prices, 0, BARS - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public RiskEngine.Result portfolio() {
+        return riskEngine.portfolio(prices, positions, riskEngine.calendar(prices, 0, BARS - 1));
+    }
+
+    @Benchmark
+    public double tickerStats() {
+        return pool.submit(() -> prices.parallelStream()
+                .mapToDouble(series -> series.getStats(BARS / 4, BARS - 1).getVolatility())
+                .sum()).join();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public double[][] correlation() {
+        return riskEngine.correlation(prices, calendar);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public PriceSeries.Stats appendBar() {
+        int ticker = (int) (next++ % TICKERS);
+        PriceSeries series = prices.get(ticker);
+        series.put(nextDay[ticker]++, 50 + random.nextDouble() * 100);
+        return series.getStats();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public PriceSeries.Stats replaceBar() {
+        PriceSeries series = prices.get((int) (next++ % TICKERS));
+        series.put(BARS / 2, 50 + random.nextDouble() * 100);
+        return series.getStats();
+    }
+}
@@ -0,0 +1,69 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.services.PortfolioService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Range, top-by-notional and recent trade queries answered by the in-memory trade index against the same
+ * queries on the trades table. A range covers one day of one ticker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TradeIndexBenchmark {
+
+    private static final int TICKERS = 100;
+
+    private static final int LIMIT = 10;
+
+    @Param({"true", "false"})
+    private boolean indexed;
+
+    @Param({"200000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private PortfolioService portfolioService;
+    private List<Trade> trades;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("trade-index-" + indexed, "portfolio.trade-index.enabled=" + indexed);
+        portfolioService = context.getBean(PortfolioService.class);
+        trades = BenchmarkContexts.syntheticTrades(rows, TICKERS, 42);
+        trades.forEach(trade -> trade.setTradeId(null));
+        portfolioService.addTrades(BenchmarkContexts.PORTFOLIO, trades.iterator());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Trade> tickerRange() {
+        Trade trade = trades.get((int) (next++ % rows));
+        LocalDateTime from = trade.getLastUpdated();
+        return portfolioService.getTradesBetween(BenchmarkContexts.PORTFOLIO, trade.getTicker(), from, from.plusDays(1), 1000);
+    }
+
+    @Benchmark
+    public List<Trade> topByNotional() {
+        return portfolioService.getTopTradesByNotional(BenchmarkContexts.PORTFOLIO, LIMIT);
+    }
+
+    @Benchmark
+    public List<Trade> recent() {
+        return portfolioService.getRecentTrades(BenchmarkContexts.PORTFOLIO, LIMIT);
+    }
+}
@@ -0,0 +1,76 @@
+package com.application.portfoliotracker.benchmarks;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.utils.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of folding a single trade into its holding through Utils.addTradeToHolding and
+ * Utils.updateTradeInHolding. Each call takes the next trade of a synthetic set, so the
+ * row count and ticker cardinality drive the working set the holdings live in.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TradeToHoldingBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"10", "1000", "100000"})
+    private int tickers;
+
+    private Trade[] trades;
+    private Map<String, Holding> holdings;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Trade> synthetic = BenchmarkContexts.syntheticTrades(rows, Math.min(rows, tickers), 42);
+        trades = synthetic.toArray(new Trade[0]);
+        holdings = new HashMap<>();
+        //Holdings start deep enough that no sell or reversed buy can take them negative
+        for (Trade trade : trades) {
+            holdings.computeIfAbsent(trade.getTicker(), ticker -> Holding.builder()
+                    .ticker(ticker)
+                    .shares(BigInteger.valueOf(1_000_000_000L))
+                    .totalPrice(BigDecimal.valueOf(100_000_000_000L))
+                    .averageBuyPrice(BigDecimal.valueOf(100))
+                    .realizedProfit(BigDecimal.ZERO)
+                    .lastUpdated(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    private Trade nextTrade() {
+        Trade trade = trades[next];
+        next = next + 1 == trades.length ? 0 : next + 1;
+        return trade;
+    }
+
+    @Benchmark
+    public Holding addTradeToHolding() {
+        Trade trade = nextTrade();
+        return Utils.addTradeToHolding(holdings.get(trade.getTicker()), trade);
+    }
+
+    @Benchmark
+    public List<Holding> updateTradeInHolding() {
+        Trade oldTrade = nextTrade();
+        Trade newTrade = nextTrade();
+        return Utils.updateTradeInHolding(holdings.get(oldTrade.getTicker()), oldTrade,
+                holdings.get(newTrade.getTicker()), newTrade);
+    }
+}
@@ -0,0 +1,174 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class HoldingCacheTests {
+
+    private static final String PORTFOLIO = "cache";
+
+    private final HoldingWriteBehind holdingWriteBehind = mock(HoldingWriteBehind.class);
+
+    //Rows of the holdings table as the cache would load them
+    private final Map<String, Holding> stored = new HashMap<>();
+
+    HoldingCacheTests() {
+        when(holdingWriteBehind.findById(any())).thenAnswer(invocation ->
+                Optional.ofNullable(stored.get(invocation.<HoldingId>getArgument(0).getTicker())));
+        when(holdingWriteBehind.findByPortfolioId(anyString())).thenAnswer(invocation -> new ArrayList<>(stored.values()));
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    //Past max-size the oldest holding not read since the hand last passed it is dropped, a read one gets a second chance
+    @Test
+    void readHoldingSurvivesEviction() {
+        HoldingCache holdingCache = new HoldingCache(holdingWriteBehind, 2);
+        store("AAA", "BBB", "CCC");
+        holdingCache.get(PORTFOLIO, "AAA");
+        holdingCache.get(PORTFOLIO, "BBB");
+        holdingCache.get(PORTFOLIO, "AAA");
+
+        holdingCache.get(PORTFOLIO, "CCC");
+
+        assertCached(holdingCache, "AAA", "CCC");
+        assertEquals(1, holdingCache.getStats().getEvictions());
+        assertFalse(holdingCache.getStats().isComplete());
+    }
+
+    //The hand clears the bit of a holding it spares, so it is dropped on the next sweep unless read again
+    @Test
+    void sparedHoldingLosesItsSecondChance() {
+        HoldingCache holdingCache = new HoldingCache(holdingWriteBehind, 2);
+        store("AAA", "BBB", "CCC", "DDD");
+        holdingCache.get(PORTFOLIO, "AAA");
+        holdingCache.get(PORTFOLIO, "BBB");
+        holdingCache.get(PORTFOLIO, "AAA");
+        holdingCache.get(PORTFOLIO, "CCC");
+
+        holdingCache.get(PORTFOLIO, "CCC");
+        holdingCache.get(PORTFOLIO, "DDD");
+
+        assertCached(holdingCache, "CCC", "DDD");
+        assertEquals(2, holdingCache.getStats().getEvictions());
+    }
+
+    //A removed holding leaves the ring behind without counting as an eviction
+    @Test
+    void removedHoldingIsSkippedByTheHand() {
+        HoldingCache holdingCache = new HoldingCache(holdingWriteBehind, 2);
+        store("AAA", "BBB", "CCC");
+        holdingCache.get(PORTFOLIO, "AAA");
+        holdingCache.get(PORTFOLIO, "BBB");
+
+        holdingCache.remove(PORTFOLIO, "AAA");
+        stored.remove("AAA");
+        holdingCache.put(holding("CCC", 3));
+        holdingCache.put(holding("DDD", 4));
+
+        assertEquals(2, holdingCache.getStats().getSize());
+        assertEquals(1, holdingCache.getStats().getEvictions());
+        assertCached(holdingCache, "CCC", "DDD");
+    }
+
+    //A write is applied once its transaction commits, reads before that still see the previous holding
+    @Test
+    void writeAppliesAfterCommit() {
+        HoldingCache holdingCache = new HoldingCache(holdingWriteBehind, 10);
+        store("AAA");
+        assertEquals(BigInteger.ONE, holdingCache.get(PORTFOLIO, "AAA").get().getShares());
+
+        TransactionSynchronizationManager.initSynchronization();
+        holdingCache.put(holding("AAA", 5));
+        holdingCache.put(holding("BBB", 7));
+        holdingCache.remove(PORTFOLIO, "AAA");
+        assertEquals(BigInteger.ONE, holdingCache.get(PORTFOLIO, "AAA").get().getShares());
+        stored.remove("AAA");
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertFalse(holdingCache.get(PORTFOLIO, "AAA").isPresent());
+        assertEquals(BigInteger.valueOf(7), holdingCache.get(PORTFOLIO, "BBB").get().getShares());
+    }
+
+    //A rolled back write never reaches the cache
+    @Test
+    void rolledBackWriteIsDropped() {
+        HoldingCache holdingCache = new HoldingCache(holdingWriteBehind, 10);
+        store("AAA");
+        List<Holding> all = holdingCache.getAll(PORTFOLIO);
+        assertEquals(1, all.size());
+        assertTrue(holdingCache.getStats().isComplete());
+
+        TransactionSynchronizationManager.initSynchronization();
+        holdingCache.put(holding("AAA", 5));
+        holdingCache.put(holding("BBB", 7));
+        holdingCache.replaceAll(PORTFOLIO, Collections.emptyList());
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertSame(all, holdingCache.getAll(PORTFOLIO));
+        assertEquals(BigInteger.ONE, holdingCache.get(PORTFOLIO, "AAA").get().getShares());
+        //the shard is complete, so a ticker only the rolled back write knew is answered as absent without the db
+        assertFalse(holdingCache.get(PORTFOLIO, "BBB").isPresent());
+        verify(holdingWriteBehind, never()).findById(any());
+    }
+
+    //Runs the registered synchronizations as the transaction manager would on commit or rollback
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (TransactionSynchronization.STATUS_COMMITTED == status) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    //Checks the shard holds exactly the tickers, through reads that must not reach the db
+    private void assertCached(HoldingCache holdingCache, String... tickers) {
+        assertEquals(tickers.length, holdingCache.getStats().getSize());
+        long misses = holdingCache.getStats().getMisses();
+        for (String ticker : tickers) {
+            assertTrue(holdingCache.get(PORTFOLIO, ticker).isPresent(), ticker);
+        }
+        assertEquals(misses, holdingCache.getStats().getMisses());
+    }
+
+    private void store(String... tickers) {
+        for (int index = 0; index < tickers.length; index++) {
+            stored.put(tickers[index], holding(tickers[index], index + 1));
+        }
+    }
+
+    private static Holding holding(String ticker, long shares) {
+        return Holding.builder()
+                .portfolioId(PORTFOLIO)
+                .ticker(ticker)
+                .shares(BigInteger.valueOf(shares))
+                .totalPrice(BigDecimal.TEN.multiply(BigDecimal.valueOf(shares)))
+                .realizedProfit(BigDecimal.ZERO)
+                .build();
+    }
+}
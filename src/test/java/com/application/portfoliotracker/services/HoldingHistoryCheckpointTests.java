@@ -0,0 +1,148 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingCheckpoint;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.repositories.HoldingCheckpointRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "portfolio.history.checkpoint-interval=3")
+class HoldingHistoryCheckpointTests {
+
+    private static final String TICKER = "HST";
+
+    private static final LocalDateTime START = LocalDateTime.of(2021, 3, 1, 10, 0);
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private HoldingHistory holdingHistory;
+
+    @Autowired
+    private HoldingCheckpointRepository holdingCheckpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //Writing checkpoint-interval trades leaves a checkpoint at the last of them once the writes committed
+    @Test
+    void writerCheckpointsAfterInterval() {
+        String portfolioId = "history-writer";
+        addBuys(portfolioId, 1, 2, 3);
+
+        Optional<HoldingCheckpoint> checkpoint = checkpointAt(portfolioId, START.plusMinutes(2));
+        assertTrue(checkpoint.isPresent());
+        assertEquals(START.plusMinutes(2), checkpoint.get().getAsOf());
+        assertEquals(BigInteger.valueOf(6), checkpoint.get().getShares());
+    }
+
+    //A query exactly at a checkpoint's time returns the holding right after the checkpoint's trade
+    @Test
+    void queryAtCheckpointTimeIncludesItsTrade() {
+        String portfolioId = "history-exact";
+        addBuys(portfolioId, 1, 2, 3, 4);
+
+        Holding holding = holdingHistory.getHoldingAsOf(portfolioId, TICKER, START.plusMinutes(2)).get();
+        assertEquals(BigInteger.valueOf(6), holding.getShares());
+        assertEquals(0, new BigDecimal("60.00").compareTo(holding.getTotalPrice()));
+        assertEquals(BigInteger.valueOf(3), holdingHistory.getHoldingAsOf(portfolioId, TICKER, START.plusMinutes(1)).get().getShares());
+        assertEquals(BigInteger.valueOf(10), holdingHistory.getHoldingAsOf(portfolioId, TICKER, START.plusMinutes(3)).get().getShares());
+        assertFalse(holdingHistory.getHoldingAsOf(portfolioId, TICKER, START.minusMinutes(1)).isPresent());
+    }
+
+    //Queries at or after a checkpoint start from it instead of replaying the trades before it
+    @Test
+    void queryStartsFromCheckpoint() {
+        String portfolioId = "history-hit";
+        addBuys(portfolioId, 1, 2, 3, 4);
+        //a checkpoint that disagrees with the trades shows whether a query used it
+        jdbcTemplate.update("UPDATE holding_checkpoints SET shares = shares + 100 WHERE portfolio_id = ?", portfolioId);
+
+        assertEquals(BigInteger.valueOf(106), holdingHistory.getHoldingAsOf(portfolioId, TICKER, START.plusMinutes(2)).get().getShares());
+        assertEquals(BigInteger.valueOf(110), holdingHistory.getHoldingAsOf(portfolioId, TICKER, START.plusMinutes(3)).get().getShares());
+        assertEquals(BigInteger.valueOf(3), holdingHistory.getHoldingAsOf(portfolioId, TICKER, START.plusMinutes(1)).get().getShares());
+    }
+
+    //Updating a trade older than a checkpoint drops the checkpoint, and queries see the new trade
+    @Test
+    void updateOfOlderTradeInvalidatesCheckpoint() {
+        String portfolioId = "history-update";
+        List<Trade> trades = addBuys(portfolioId, 1, 2, 3);
+        assertTrue(checkpointAt(portfolioId, START.plusMinutes(2)).isPresent());
+
+        portfolioService.updateTrade(portfolioId, trades.get(0).getTradeId(), buy(5, START));
+
+        assertFalse(checkpointAt(portfolioId, START.plusMinutes(2)).isPresent());
+        assertEquals(BigInteger.valueOf(10), holdingHistory.getHoldingAsOf(portfolioId, TICKER, START.plusMinutes(2)).get().getShares());
+    }
+
+    //Deleting a trade older than a checkpoint drops the checkpoint, and queries no longer see the trade
+    @Test
+    void deleteOfOlderTradeInvalidatesCheckpoint() {
+        String portfolioId = "history-delete";
+        List<Trade> trades = addBuys(portfolioId, 1, 2, 3);
+        assertTrue(checkpointAt(portfolioId, START.plusMinutes(2)).isPresent());
+
+        portfolioService.deleteTrade(portfolioId, trades.get(1).getTradeId());
+
+        assertFalse(checkpointAt(portfolioId, START.plusMinutes(2)).isPresent());
+        assertEquals(BigInteger.valueOf(4), holdingHistory.getHoldingAsOf(portfolioId, TICKER, START.plusMinutes(2)).get().getShares());
+    }
+
+    //A writer's fold that fails, here because a SELL is stamped before the BUYs it sells from, is skipped and
+    //leaves the committed trade in place
+    @Test
+    void failingWriterFoldKeepsTheWrite() {
+        String portfolioId = "history-failing-fold";
+        addBuys(portfolioId, 1, 2);
+
+        Trade sell = portfolioService.addTrade(portfolioId, Trade.builder()
+                .ticker(TICKER)
+                .transactionType(TransactionType.SELL)
+                .shares(BigInteger.valueOf(3))
+                .price(new BigDecimal("12.00"))
+                .lastUpdated(START.minusDays(1))
+                .build());
+
+        assertTrue(portfolioService.getTrade(portfolioId, sell.getTradeId()).isPresent());
+        assertEquals(BigInteger.ZERO, portfolioService.getHolding(portfolioId, TICKER).map(Holding::getShares).orElse(BigInteger.ZERO));
+        assertFalse(checkpointAt(portfolioId, START.plusMinutes(1)).isPresent());
+    }
+
+    //Adds a BUY at 10.00 per share for each quantity, a minute apart from START
+    private List<Trade> addBuys(String portfolioId, long... shares) {
+        List<Trade> saved = new ArrayList<>();
+        for (int index = 0; index < shares.length; index++) {
+            saved.add(portfolioService.addTrade(portfolioId, buy(shares[index], START.plusMinutes(index))));
+        }
+        return saved;
+    }
+
+    private Optional<HoldingCheckpoint> checkpointAt(String portfolioId, LocalDateTime at) {
+        return holdingCheckpointRepository.findTopByPortfolioIdAndTickerAndAsOfLessThanEqualOrderByAsOfDescTradeIdDesc(portfolioId, TICKER, at);
+    }
+
+    private static Trade buy(long shares, LocalDateTime lastUpdated) {
+        return Trade.builder()
+                .ticker(TICKER)
+                .transactionType(TransactionType.BUY)
+                .shares(BigInteger.valueOf(shares))
+                .price(new BigDecimal("10.00"))
+                .lastUpdated(lastUpdated)
+                .build();
+    }
+}
@@ -0,0 +1,167 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingId;
+import com.application.portfoliotracker.entities.HoldingsWatermark;
+import com.application.portfoliotracker.repositories.HoldingRepository;
+import com.application.portfoliotracker.repositories.HoldingsWatermarkRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class HoldingWriteBehindTests {
+
+    private static final String PORTFOLIO = "write-behind";
+
+    private final HoldingRepository holdingRepository = mock(HoldingRepository.class);
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final EntityManager entityManager = mock(EntityManager.class);
+
+    //Marker rows kept across instances, as the holdings_watermark table would between two runs
+    private final Map<String, HoldingsWatermark> markers = new HashMap<>();
+
+    private final HoldingsWatermarkRepository holdingsWatermarkRepository = mock(HoldingsWatermarkRepository.class);
+
+    private final List<HoldingWriteBehind> started = new ArrayList<>();
+
+    HoldingWriteBehindTests() {
+        when(holdingsWatermarkRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(markers.get(invocation.<String>getArgument(0))));
+        when(holdingsWatermarkRepository.save(any())).thenAnswer(invocation -> {
+            HoldingsWatermark marker = invocation.getArgument(0);
+            markers.put(marker.getName(), marker);
+            return marker;
+        });
+    }
+
+    @AfterEach
+    void stopFlushers() {
+        started.forEach(writeBehind -> ReflectionTestUtils.setField(writeBehind, "running", false));
+    }
+
+    //Holdings staged until flush-size tickers wait are written by the flusher in one transaction
+    @Test
+    void flushSizeTriggersOneGroupCommit() {
+        HoldingWriteBehind writeBehind = start(3, Duration.ofHours(1));
+        reset(transactionManager);
+
+        writeBehind.stage(holding("AAA", 1));
+        writeBehind.stage(holding("BBB", 2));
+        writeBehind.stage(holding("CCC", 3));
+
+        verify(entityManager, timeout(5_000).times(3)).persist(any(Holding.class));
+        verify(transactionManager, timeout(5_000)).commit(any());
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(entityManager).flush();
+    }
+
+    //A ticker staged twice before a flush is written once, with the later holding
+    @Test
+    void restagedTickerIsWrittenOnceWithLatestHolding() {
+        HoldingWriteBehind writeBehind = start(10_000, Duration.ofHours(1));
+        writeBehind.stage(holding("AAA", 1));
+        writeBehind.stage(holding("AAA", 7));
+
+        writeBehind.flush();
+
+        verify(entityManager, times(1)).persist(any());
+        verify(entityManager).persist(argThat(holding -> BigInteger.valueOf(7).equals(((Holding) holding).getShares())));
+    }
+
+    //Reads see a staged holding before it reaches the table, and the table once it was flushed
+    @Test
+    void readsSeeStagedHoldingBeforeTheTable() {
+        HoldingWriteBehind writeBehind = start(10_000, Duration.ofHours(1));
+        HoldingId id = new HoldingId(PORTFOLIO, "AAA");
+        when(holdingRepository.findById(id)).thenReturn(Optional.of(holding("AAA", 1)));
+        when(holdingRepository.findByPortfolioId(PORTFOLIO)).thenReturn(List.of(holding("AAA", 1), holding("BBB", 4)));
+        writeBehind.stage(holding("AAA", 5));
+        writeBehind.stage(holding("BBB", 0));
+
+        assertEquals(BigInteger.valueOf(5), writeBehind.findById(id).map(Holding::getShares).orElse(null));
+        assertTrue(writeBehind.findById(new HoldingId(PORTFOLIO, "BBB")).isEmpty());
+        List<Holding> holdings = writeBehind.findByPortfolioId(PORTFOLIO);
+        assertEquals(1, holdings.size());
+        assertEquals(BigInteger.valueOf(5), holdings.get(0).getShares());
+        verify(holdingRepository, never()).findById(id);
+
+        writeBehind.flush();
+
+        assertEquals(BigInteger.ONE, writeBehind.findById(id).map(Holding::getShares).orElse(null));
+        verify(holdingRepository).findById(id);
+    }
+
+    //A run that stops with holdings staged and unwritten leaves the marker dirty, and the next run asks for the
+    //holdings to be rebuilt without clearing the marker until recovered is called
+    @Test
+    void crashBetweenStageAndFlushNeedsRecovery() {
+        HoldingWriteBehind crashed = start(10_000, Duration.ofHours(1));
+        assertFalse(crashed.isRecoveryNeeded());
+        crashed.stage(holding("AAA", 1));
+        verify(entityManager, never()).persist(any());
+
+        HoldingWriteBehind restarted = start(10_000, Duration.ofHours(1));
+        assertTrue(restarted.isRecoveryNeeded());
+        assertEquals(1L, markers.get(HoldingsWatermark.writeBehind()).getTradeId());
+        assertTrue(restarted.findById(new HoldingId(PORTFOLIO, "AAA")).isEmpty());
+
+        restarted.recovered();
+
+        assertFalse(restarted.isRecoveryNeeded());
+        assertEquals(1L, markers.get(HoldingsWatermark.writeBehind()).getTradeId());
+    }
+
+    //A clean stop writes what is staged and clears the marker, so the next run rebuilds nothing
+    @Test
+    void cleanStopClearsTheMarker() throws InterruptedException {
+        HoldingWriteBehind stopped = start(10_000, Duration.ofHours(1));
+        stopped.stage(holding("AAA", 1));
+
+        stopped.stop();
+
+        verify(entityManager).persist(any(Holding.class));
+        assertEquals(0L, markers.get(HoldingsWatermark.writeBehind()).getTradeId());
+        assertFalse(start(10_000, Duration.ofHours(1)).isRecoveryNeeded());
+    }
+
+    private HoldingWriteBehind start(int flushSize, Duration flushInterval) {
+        HoldingWriteBehind writeBehind = new HoldingWriteBehind(holdingRepository, holdingsWatermarkRepository, transactionManager,
+                new SimpleMeterRegistry(), true, flushSize, flushInterval);
+        ReflectionTestUtils.setField(writeBehind, "entityManager", entityManager);
+        writeBehind.start();
+        started.add(writeBehind);
+        return writeBehind;
+    }
+
+    private static Holding holding(String ticker, long shares) {
+        return Holding.builder()
+                .portfolioId(PORTFOLIO)
+                .ticker(ticker)
+                .totalPrice(BigDecimal.TEN.multiply(BigDecimal.valueOf(shares)))
+                .averageBuyPrice(BigDecimal.TEN)
+                .shares(BigInteger.valueOf(shares))
+                .realizedProfit(BigDecimal.ZERO)
+                .lastUpdated(LocalDateTime.of(2021, 1, 1, 0, 0))
+                .build();
+    }
+}
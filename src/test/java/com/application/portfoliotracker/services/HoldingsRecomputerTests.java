@@ -0,0 +1,69 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.enums.RecomputeMode;
+import com.application.portfoliotracker.utils.HoldingAggregate;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HoldingsRecomputerTests {
+
+    private static final int TICKERS = 500;
+    private static final int TRADES = 200_000;
+
+    //Sells release cost at the running average, so any reordering or shared state shows up in the totals
+    @Test
+    void parallelRecomputeMatchesSequential() {
+        List<Trade> trades = trades();
+        Map<String, HoldingAggregate> sequential = new HashMap<>();
+        Map<String, HoldingAggregate> parallel = new HashMap<>();
+        HoldingsRecomputer parallelRecomputer = new HoldingsRecomputer(RecomputeMode.PARALLEL, 4);
+        try {
+            long sequentialHighest = new HoldingsRecomputer(RecomputeMode.SEQUENTIAL, 0)
+                    .applyTrades(trades.stream(), sequential, HoldingAggregate::empty);
+            long parallelHighest = parallelRecomputer.applyTrades(trades.stream(), parallel, HoldingAggregate::empty);
+            assertEquals(sequentialHighest, parallelHighest);
+        } finally {
+            parallelRecomputer.destroy();
+        }
+        assertEquals(sequential.keySet(), parallel.keySet());
+        sequential.forEach((ticker, aggregate) -> {
+            Holding expected = aggregate.toHolding();
+            Holding actual = parallel.get(ticker).toHolding();
+            assertEquals(expected.getShares(), actual.getShares());
+            assertEquals(expected.getTotalPrice(), actual.getTotalPrice());
+            assertEquals(expected.getAverageBuyPrice(), actual.getAverageBuyPrice());
+            assertEquals(expected.getRealizedProfit(), actual.getRealizedProfit());
+        });
+    }
+
+    private static List<Trade> trades() {
+        SplittableRandom random = new SplittableRandom(7);
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+        long[] shares = new long[TICKERS];
+        List<Trade> trades = new ArrayList<>(TRADES);
+        for (int n = 0; n < TRADES; n++) {
+            int ticker = random.nextInt(TICKERS);
+            boolean buy = shares[ticker] < 10 || random.nextInt(3) != 0;
+            long quantity = buy ? 1 + random.nextInt(100) : 1 + random.nextLong(shares[ticker]);
+            shares[ticker] += buy ? quantity : -quantity;
+            trades.add(Trade.builder()
+                    .tradeId((long) n + 1)
+                    .ticker("TCK" + ticker)
+                    .transactionType(buy ? TransactionType.BUY : TransactionType.SELL)
+                    .shares(BigInteger.valueOf(quantity))
+                    .price(BigDecimal.valueOf(100 + random.nextInt(1_000_000), 4))
+                    .lastUpdated(start.plusSeconds(n))
+                    .build());
+        }
+        return trades;
+    }
+}
@@ -0,0 +1,79 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.utils.HoldingAggregate;
+import com.application.portfoliotracker.utils.Utils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest
+class PortfolioServiceConcurrencyTests {
+
+    private static final String PORTFOLIO = "stress";
+    private static final String PREFIX = "STRESS";
+    private static final int THREADS = 8;
+    private static final int TRADES_PER_THREAD = 200;
+    private static final int TICKERS = 4;
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    //Every thread hammers the same few tickers, so without per-ticker locking holdings lose updates.
+    //Buys are order independent, so the final holdings must equal a serial replay of the stored trades.
+    @Test
+    void concurrentTradesMatchSerialReplay() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            SplittableRandom random = new SplittableRandom(thread);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int n = 0; n < TRADES_PER_THREAD; n++) {
+                    portfolioService.addTrade(PORTFOLIO, Trade.builder()
+                            .ticker(PREFIX + random.nextInt(TICKERS))
+                            .transactionType(TransactionType.BUY)
+                            .shares(BigInteger.valueOf(1 + random.nextInt(100)))
+                            .price(BigDecimal.valueOf(100 + random.nextInt(10_000), 2))
+                            .lastUpdated(LocalDateTime.now())
+                            .build());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        List<Trade> trades = portfolioService.getTrades(PORTFOLIO).stream()
+                .filter(trade -> trade.getTicker().startsWith(PREFIX))
+                .sorted(Comparator.comparing(Trade::getTradeId))
+                .collect(Collectors.toList());
+        assertEquals(THREADS * TRADES_PER_THREAD, trades.size());
+        Map<String, HoldingAggregate> replay = new HashMap<>();
+        Utils.applyTrades(trades.stream(), replay, HoldingAggregate::empty);
+        for (HoldingAggregate aggregate : replay.values()) {
+            Holding expected = aggregate.toHolding();
+            Holding actual = portfolioService.getHolding(PORTFOLIO, expected.getTicker()).orElse(null);
+            assertNotNull(actual);
+            assertEquals(expected.getShares(), actual.getShares());
+            assertEquals(0, expected.getTotalPrice().compareTo(actual.getTotalPrice()),
+                    () -> expected.getTotalPrice() + " != " + actual.getTotalPrice());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class PortfolioServiceHoldingsRefreshTests {
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //A trade inserted outside the service is folded by the next refresh even when the service wrote a trade
+    //after it, whatever order their ids came in
+    @Test
+    void refreshFoldsExternalInsertAfterLaterServiceWrite() {
+        String portfolioId = "refresh-external";
+        portfolioService.addTrade(portfolioId, trade(TransactionType.BUY, 1, LocalDateTime.now()));
+        jdbcTemplate.update("INSERT INTO trades (trade_id, portfolio_id, ticker, transaction_type, price, shares, last_updated)"
+                        + " VALUES (NEXT VALUE FOR trade_id_seq, ?, 'RFX', 'BUY', 20.00, 5, ?)",
+                portfolioId, Timestamp.valueOf(LocalDateTime.now()));
+        portfolioService.addTrade(portfolioId, trade(TransactionType.BUY, 2, LocalDateTime.now()));
+
+        portfolioService.refreshHoldings(portfolioId);
+
+        Optional<Holding> holding = portfolioService.getHolding(portfolioId, "RFX");
+        assertTrue(holding.isPresent());
+        assertEquals(BigInteger.valueOf(8), holding.get().getShares());
+        assertEquals(0, new BigDecimal("130.00").compareTo(holding.get().getTotalPrice()));
+
+        //a second refresh finds nothing left to fold
+        assertTrue(portfolioService.refreshHoldings(portfolioId).isEmpty());
+        assertEquals(BigInteger.valueOf(8), portfolioService.getHolding(portfolioId, "RFX").get().getShares());
+    }
+
+    //A SELL stamped before the BUY it sells from was accepted in id order, and a rebuild folds it the same way
+    @Test
+    void rebuildFoldsInAcceptanceOrder() {
+        String portfolioId = "refresh-out-of-order";
+        LocalDateTime now = LocalDateTime.now();
+        portfolioService.addTrade(portfolioId, trade(TransactionType.BUY, 10, now));
+        portfolioService.addTrade(portfolioId, trade(TransactionType.SELL, 4, now.minusDays(1)));
+
+        assertDoesNotThrow(() -> portfolioService.rebuildHoldings(portfolioId));
+
+        assertEquals(BigInteger.valueOf(6), portfolioService.getHolding(portfolioId, "RFX").get().getShares());
+    }
+
+    private static Trade trade(TransactionType type, long shares, LocalDateTime lastUpdated) {
+        return Trade.builder()
+                .ticker("RFX")
+                .transactionType(type)
+                .shares(BigInteger.valueOf(shares))
+                .price(new BigDecimal("10.00"))
+                .lastUpdated(lastUpdated)
+                .build();
+    }
+}
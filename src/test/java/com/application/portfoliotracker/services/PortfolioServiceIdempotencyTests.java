@@ -0,0 +1,68 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class PortfolioServiceIdempotencyTests {
+
+    private static final String PORTFOLIO = "idempotency";
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    //A trade sent again with its key returns the trade saved the first time and leaves the holding alone
+    @Test
+    void duplicateKeyReturnsOriginalTrade() {
+        Trade first = portfolioService.addTrade(PORTFOLIO, trade("IDEM1", "retried-1", 10));
+        Trade second = portfolioService.addTrade(PORTFOLIO, trade("IDEM1", "retried-1", 10));
+
+        assertEquals(first.getTradeId(), second.getTradeId());
+        assertEquals(1, tradeRepository.findByPortfolioIdAndTicker(PORTFOLIO, "IDEM1").size());
+        Optional<Holding> holding = portfolioService.getHolding(PORTFOLIO, "IDEM1");
+        assertTrue(holding.isPresent());
+        assertEquals(BigInteger.TEN, holding.get().getShares());
+    }
+
+    //A key saved straight to the table is unknown to the dedup index, so the insert hits the unique index.
+    //The write is rolled back and retried, and the retry finds the saved trade in the table.
+    @Test
+    void retryAfterUniqueIndexViolationReturnsSavedTrade() {
+        Trade direct = trade("IDEM2", "direct-1", 5);
+        direct.setPortfolioId(PORTFOLIO);
+        Trade saved = tradeRepository.save(direct);
+
+        Trade returned = portfolioService.addTrade(PORTFOLIO, trade("IDEM2", "direct-1", 5));
+
+        assertEquals(saved.getTradeId(), returned.getTradeId());
+        assertEquals(1, tradeRepository.findByPortfolioIdAndTicker(PORTFOLIO, "IDEM2").size());
+        assertTrue(portfolioService.getHolding(PORTFOLIO, "IDEM2").isEmpty());
+    }
+
+    private static Trade trade(String ticker, String idempotencyKey, long shares) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(TransactionType.BUY)
+                .shares(BigInteger.valueOf(shares))
+                .price(new BigDecimal("25.00"))
+                .lastUpdated(LocalDateTime.now())
+                .idempotencyKey(idempotencyKey)
+                .build();
+    }
+}
@@ -0,0 +1,111 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.BatchResult;
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.IngestionResult;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.exceptions.IngestionException;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "portfolio.ingest.batch-size=2")
+class PortfolioServiceIngestionTests {
+
+    private static final String TICKER = "ING";
+
+    private static final LocalDateTime START = LocalDateTime.of(2021, 3, 1, 10, 0);
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    //Every batch commits on its own and is reported in order
+    @Test
+    void everyBatchIsCommitted() {
+        String portfolioId = "ingest-committed";
+
+        IngestionResult result = portfolioService.addTrades(portfolioId, Arrays.asList(
+                trade(TransactionType.BUY, 2, START),
+                trade(TransactionType.BUY, 1, START.plusMinutes(1)),
+                trade(TransactionType.SELL, 1, START.plusMinutes(2))).iterator());
+
+        assertEquals(3, result.getTrades());
+        assertNull(result.getFailedBatch());
+        assertNull(result.getError());
+        assertEquals(Arrays.asList(1, 2), result.getBatches().stream().map(BatchResult::getBatch).collect(Collectors.toList()));
+        assertEquals(3, tradeRepository.findByPortfolioId(portfolioId).size());
+        assertEquals(BigInteger.valueOf(2), portfolioService.getHolding(portfolioId, TICKER).get().getShares());
+    }
+
+    //A failing batch is rolled back and named along with the trade that failed, batches before it stay committed.
+    //The two SELLs of the failing batch are equal, so the error has to point at the second one by position.
+    @Test
+    void failingBatchIsRolledBackAndReported() {
+        String portfolioId = "ingest-failed";
+        List<Trade> trades = Arrays.asList(
+                trade(TransactionType.BUY, 2, START),
+                trade(TransactionType.BUY, 1, START.plusMinutes(1)),
+                trade(TransactionType.SELL, 3, START.plusMinutes(2)),
+                trade(TransactionType.SELL, 3, START.plusMinutes(2)),
+                trade(TransactionType.BUY, 5, START.plusMinutes(3)));
+
+        IngestionException ingestionException = assertThrows(IngestionException.class,
+                () -> portfolioService.addTrades(portfolioId, trades.iterator()));
+
+        IngestionResult result = ingestionException.getResult();
+        assertEquals(2, result.getTrades());
+        assertEquals(1, result.getBatches().size());
+        assertEquals(2, result.getBatches().get(0).getTrades());
+        assertEquals(Integer.valueOf(2), result.getFailedBatch());
+        assertTrue(result.getError().startsWith("Batch 2, trade 2 : "), result.getError());
+        assertEquals(2, tradeRepository.findByPortfolioId(portfolioId).size());
+        assertTrue(tradeRepository.findByPortfolioId(portfolioId).stream()
+                .allMatch(trade -> TransactionType.BUY == trade.getTransactionType()));
+        Holding holding = portfolioService.getHolding(portfolioId, TICKER).get();
+        assertEquals(BigInteger.valueOf(3), holding.getShares());
+        assertEquals(0, new BigDecimal("30.00").compareTo(holding.getTotalPrice()));
+    }
+
+    //An invalid value fails its batch before anything is folded, with the same position in the error
+    @Test
+    void invalidValueIsReportedByPosition() {
+        String portfolioId = "ingest-invalid";
+
+        IngestionException ingestionException = assertThrows(IngestionException.class,
+                () -> portfolioService.addTrades(portfolioId, Arrays.asList(
+                        trade(TransactionType.BUY, 2, START),
+                        trade(TransactionType.BUY, 0, START.plusMinutes(1))).iterator()));
+
+        IngestionResult result = ingestionException.getResult();
+        assertEquals(0, result.getTrades());
+        assertTrue(result.getBatches().isEmpty());
+        assertEquals(Integer.valueOf(1), result.getFailedBatch());
+        assertTrue(result.getError().startsWith("Batch 1, trade 2 : "), result.getError());
+        assertTrue(tradeRepository.findByPortfolioId(portfolioId).isEmpty());
+        assertFalse(portfolioService.getHolding(portfolioId, TICKER).isPresent());
+    }
+
+    private static Trade trade(TransactionType type, long shares, LocalDateTime lastUpdated) {
+        return Trade.builder()
+                .ticker(TICKER)
+                .transactionType(type)
+                .shares(BigInteger.valueOf(shares))
+                .price(new BigDecimal("10.00"))
+                .lastUpdated(lastUpdated)
+                .build();
+    }
+}
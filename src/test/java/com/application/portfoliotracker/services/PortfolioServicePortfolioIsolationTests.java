@@ -0,0 +1,187 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.HoldingCheckpoint;
+import com.application.portfoliotracker.entities.HoldingsWatermark;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.repositories.HoldingCheckpointRepository;
+import com.application.portfoliotracker.repositories.HoldingsWatermarkRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "portfolio.history.checkpoint-interval=3")
+class PortfolioServicePortfolioIsolationTests {
+
+    private static final String TICKER = "ISO";
+
+    private static final LocalDateTime START = LocalDateTime.of(2021, 3, 1, 10, 0);
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private TickerLocks tickerLocks;
+
+    @Autowired
+    private HoldingsWatermarkRepository holdingsWatermarkRepository;
+
+    @Autowired
+    private HoldingCheckpointRepository holdingCheckpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService writers = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void stopWriters() {
+        writers.shutdownNow();
+    }
+
+    //The same ticker keeps one holding and one set of trades per portfolio
+    @Test
+    void sameTickerKeepsSeparateHoldings() {
+        Trade first = portfolioService.addTrade("isolation-a", trade(TransactionType.BUY, 10, START));
+        portfolioService.addTrade("isolation-b", trade(TransactionType.BUY, 4, START));
+        portfolioService.addTrade("isolation-a", trade(TransactionType.SELL, 3, START.plusMinutes(1)));
+
+        assertEquals(BigInteger.valueOf(7), portfolioService.getHolding("isolation-a", TICKER).get().getShares());
+        assertEquals(BigInteger.valueOf(4), portfolioService.getHolding("isolation-b", TICKER).get().getShares());
+        assertEquals(2, portfolioService.getTrades("isolation-a").size());
+        assertEquals(1, portfolioService.getTrades("isolation-b").size());
+        assertFalse(portfolioService.getTrade("isolation-b", first.getTradeId()).isPresent());
+        assertFalse(portfolioService.deleteTrade("isolation-b", first.getTradeId()).isPresent());
+
+        portfolioService.rebuildHoldings("isolation-b");
+
+        assertEquals(BigInteger.valueOf(7), portfolioService.getHolding("isolation-a", TICKER).get().getShares());
+        assertEquals(BigInteger.valueOf(4), portfolioService.getHolding("isolation-b", TICKER).get().getShares());
+    }
+
+    //A writer holding the ticker's lock in one portfolio blocks writers of that portfolio only
+    @Test
+    void tickerLockOfOnePortfolioDoesNotBlockTheOther() throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = writers.submit(() -> tickerLocks.withLock("locks-a", TICKER, () -> {
+            locked.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }));
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        Future<Trade> blocked = writers.submit(() -> portfolioService.addTrade("locks-a", trade(TransactionType.BUY, 1, START)));
+        Trade other = portfolioService.addTrade("locks-b", trade(TransactionType.BUY, 2, START));
+
+        assertNotNull(other.getTradeId());
+        assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertNotNull(blocked.get(5, TimeUnit.SECONDS).getTradeId());
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals(BigInteger.ONE, portfolioService.getHolding("locks-a", TICKER).get().getShares());
+    }
+
+    //Refreshing one portfolio folds only its own external trades and moves only its own watermark
+    @Test
+    void refreshMovesOnlyItsPortfolioWatermark() {
+        portfolioService.addTrade("watermark-a", trade(TransactionType.BUY, 1, START));
+        portfolioService.addTrade("watermark-b", trade(TransactionType.BUY, 1, START));
+        long watermarkB = watermark("watermark-b");
+        insertExternally("watermark-a", 5);
+        insertExternally("watermark-b", 7);
+
+        portfolioService.refreshHoldings("watermark-a");
+
+        assertEquals(BigInteger.valueOf(6), portfolioService.getHolding("watermark-a", TICKER).get().getShares());
+        assertEquals(BigInteger.ONE, portfolioService.getHolding("watermark-b", TICKER).get().getShares());
+        assertEquals(highestTradeId("watermark-a"), watermark("watermark-a"));
+        assertEquals(watermarkB, watermark("watermark-b"));
+
+        portfolioService.refreshHoldings("watermark-b");
+
+        assertEquals(BigInteger.valueOf(8), portfolioService.getHolding("watermark-b", TICKER).get().getShares());
+        assertEquals(BigInteger.valueOf(6), portfolioService.getHolding("watermark-a", TICKER).get().getShares());
+        assertEquals(highestTradeId("watermark-b"), watermark("watermark-b"));
+    }
+
+    //Checkpoints count and invalidate per portfolio, a write to one never drops or feeds the other's
+    @Test
+    void checkpointsAreKeptPerPortfolio() {
+        List<Trade> tradesA = addBuys("checkpoint-a", 1, 2, 3);
+        List<Trade> tradesB = addBuys("checkpoint-b", 10, 20);
+
+        assertEquals(BigInteger.valueOf(6), checkpointAt("checkpoint-a", START.plusMinutes(2)).get().getShares());
+        assertFalse(checkpointAt("checkpoint-b", START.plusMinutes(2)).isPresent());
+
+        portfolioService.deleteTrade("checkpoint-b", tradesB.get(0).getTradeId());
+
+        assertEquals(BigInteger.valueOf(6), checkpointAt("checkpoint-a", START.plusMinutes(2)).get().getShares());
+        assertEquals(BigInteger.valueOf(20), portfolioService.getHoldingAsOf("checkpoint-b", TICKER, START.plusMinutes(2)).get().getShares());
+        assertEquals(BigInteger.valueOf(6), portfolioService.getHoldingAsOf("checkpoint-a", TICKER, START.plusMinutes(2)).get().getShares());
+
+        portfolioService.deleteTrade("checkpoint-a", tradesA.get(0).getTradeId());
+
+        assertFalse(checkpointAt("checkpoint-a", START.plusMinutes(2)).isPresent());
+        assertEquals(BigInteger.valueOf(5), portfolioService.getHoldingAsOf("checkpoint-a", TICKER, START.plusMinutes(2)).get().getShares());
+    }
+
+    //Adds a BUY for each quantity, a minute apart from START
+    private List<Trade> addBuys(String portfolioId, long... shares) {
+        List<Trade> saved = new ArrayList<>();
+        for (int index = 0; index < shares.length; index++) {
+            saved.add(portfolioService.addTrade(portfolioId, trade(TransactionType.BUY, shares[index], START.plusMinutes(index))));
+        }
+        return saved;
+    }
+
+    private void insertExternally(String portfolioId, long shares) {
+        jdbcTemplate.update("INSERT INTO trades (trade_id, portfolio_id, ticker, transaction_type, price, shares, last_updated)"
+                        + " VALUES (NEXT VALUE FOR trade_id_seq, ?, ?, 'BUY', 10.00, ?, ?)",
+                portfolioId, TICKER, shares, Timestamp.valueOf(START.plusHours(1)));
+    }
+
+    private long watermark(String portfolioId) {
+        return holdingsWatermarkRepository.findById(HoldingsWatermark.holdings(portfolioId)).get().getTradeId();
+    }
+
+    private long highestTradeId(String portfolioId) {
+        return jdbcTemplate.queryForObject("SELECT MAX(trade_id) FROM trades WHERE portfolio_id = ?", Long.class, portfolioId);
+    }
+
+    private Optional<HoldingCheckpoint> checkpointAt(String portfolioId, LocalDateTime at) {
+        return holdingCheckpointRepository.findTopByPortfolioIdAndTickerAndAsOfLessThanEqualOrderByAsOfDescTradeIdDesc(portfolioId, TICKER, at);
+    }
+
+    private static Trade trade(TransactionType type, long shares, LocalDateTime lastUpdated) {
+        return Trade.builder()
+                .ticker(TICKER)
+                .transactionType(type)
+                .shares(BigInteger.valueOf(shares))
+                .price(new BigDecimal("10.00"))
+                .lastUpdated(lastUpdated)
+                .build();
+    }
+}
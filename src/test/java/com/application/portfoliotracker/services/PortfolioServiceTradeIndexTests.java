@@ -0,0 +1,128 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.exceptions.InvalidTransactionException;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "portfolio.trade-index.enabled=true")
+class PortfolioServiceTradeIndexTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2021, 3, 1, 10, 0);
+
+    private static final int LIMIT = 100;
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //Every write path keeps the index answering exactly what the trades table answers
+    @Test
+    void indexFollowsEveryWrite() {
+        String portfolioId = "index-sync";
+        Trade first = portfolioService.addTrade(portfolioId, trade("IDX", TransactionType.BUY, 10, "10.00", START));
+        Trade second = portfolioService.addTrade(portfolioId, trade("IDX", TransactionType.BUY, 5, "30.00", START.plusMinutes(1)));
+        portfolioService.addTrade(portfolioId, trade("IDY", TransactionType.BUY, 2, "50.00", START.plusMinutes(2)));
+        assertMatchesTable(portfolioId);
+
+        //moves the trade to the other ticker and to a later time
+        portfolioService.updateTrade(portfolioId, second.getTradeId(), trade("IDY", TransactionType.BUY, 5, "40.00", START.plusMinutes(3)));
+        assertMatchesTable(portfolioId);
+        assertEquals(Arrays.asList(first.getTradeId()), ids(portfolioService.getTradesBetween(portfolioId, "IDX", START, START.plusHours(1), LIMIT)));
+
+        portfolioService.deleteTrade(portfolioId, first.getTradeId());
+        assertMatchesTable(portfolioId);
+        assertTrue(portfolioService.getTradesBetween(portfolioId, "IDX", START, START.plusHours(1), LIMIT).isEmpty());
+
+        jdbcTemplate.update("INSERT INTO trades (trade_id, portfolio_id, ticker, transaction_type, price, shares, last_updated)"
+                        + " VALUES (NEXT VALUE FOR trade_id_seq, ?, 'IDX', 'BUY', 70.00, 3, ?)",
+                portfolioId, Timestamp.valueOf(START.plusMinutes(4)));
+        assertEquals(2, portfolioService.getRecentTrades(portfolioId, LIMIT).size());
+        portfolioService.refreshHoldings(portfolioId);
+        assertMatchesTable(portfolioId);
+        assertEquals(3, portfolioService.getRecentTrades(portfolioId, LIMIT).size());
+    }
+
+    //A write that is rolled back never reaches the index
+    @Test
+    void rejectedWriteIsNotIndexed() {
+        String portfolioId = "index-rollback";
+        portfolioService.addTrade(portfolioId, trade("IDX", TransactionType.BUY, 1, "10.00", START));
+
+        assertThrows(InvalidTransactionException.class,
+                () -> portfolioService.addTrade(portfolioId, trade("IDX", TransactionType.SELL, 5, "10.00", START.plusMinutes(1))));
+
+        assertEquals(1, portfolioService.getRecentTrades(portfolioId, LIMIT).size());
+        assertMatchesTable(portfolioId);
+    }
+
+    //Both bounds are included, trades executed at the same time come in id order, and limit cuts the range
+    @Test
+    void rangeIncludesBothBounds() {
+        String portfolioId = "index-bounds";
+        Trade before = portfolioService.addTrade(portfolioId, trade("IDB", TransactionType.BUY, 1, "10.00", START.minusSeconds(1)));
+        Trade atFrom = portfolioService.addTrade(portfolioId, trade("IDB", TransactionType.BUY, 1, "10.00", START));
+        Trade atFromAgain = portfolioService.addTrade(portfolioId, trade("IDB", TransactionType.BUY, 1, "10.00", START));
+        Trade inside = portfolioService.addTrade(portfolioId, trade("IDB", TransactionType.BUY, 1, "10.00", START.plusMinutes(30)));
+        Trade atTo = portfolioService.addTrade(portfolioId, trade("IDB", TransactionType.BUY, 1, "10.00", START.plusHours(1)));
+        Trade after = portfolioService.addTrade(portfolioId, trade("IDB", TransactionType.BUY, 1, "10.00", START.plusHours(1).plusSeconds(1)));
+
+        List<Long> range = ids(portfolioService.getTradesBetween(portfolioId, "IDB", START, START.plusHours(1), LIMIT));
+
+        assertEquals(Arrays.asList(atFrom.getTradeId(), atFromAgain.getTradeId(), inside.getTradeId(), atTo.getTradeId()), range);
+        assertFalse(range.contains(before.getTradeId()));
+        assertFalse(range.contains(after.getTradeId()));
+        assertEquals(Arrays.asList(atFrom.getTradeId(), atFromAgain.getTradeId()),
+                ids(portfolioService.getTradesBetween(portfolioId, "IDB", START, START.plusHours(1), 2)));
+        assertEquals(Arrays.asList(atTo.getTradeId()),
+                ids(portfolioService.getTradesBetween(portfolioId, "IDB", START.plusHours(1), START.plusHours(1), LIMIT)));
+        assertMatchesTable(portfolioId);
+    }
+
+    //Compares every indexed query of the portfolio with the repository query the service falls back to
+    private void assertMatchesTable(String portfolioId) {
+        for (String ticker : Arrays.asList("IDX", "IDY", "IDB")) {
+            assertEquals(ids(tradeRepository.findByPortfolioIdAndTickerAndLastUpdatedBetweenOrderByLastUpdatedAscTradeIdAsc(
+                            portfolioId, ticker, START, START.plusHours(1), PageRequest.of(0, LIMIT))),
+                    ids(portfolioService.getTradesBetween(portfolioId, ticker, START, START.plusHours(1), LIMIT)), ticker);
+        }
+        assertEquals(ids(tradeRepository.findByPortfolioIdOrderByNotionalDesc(portfolioId, PageRequest.of(0, LIMIT))),
+                ids(portfolioService.getTopTradesByNotional(portfolioId, LIMIT)));
+        assertEquals(ids(tradeRepository.findByPortfolioIdOrderByLastUpdatedDescTradeIdDesc(portfolioId, PageRequest.of(0, LIMIT))),
+                ids(portfolioService.getRecentTrades(portfolioId, LIMIT)));
+    }
+
+    private static List<Long> ids(List<Trade> trades) {
+        return trades.stream().map(Trade::getTradeId).collect(Collectors.toList());
+    }
+
+    private static Trade trade(String ticker, TransactionType type, long shares, String price, LocalDateTime lastUpdated) {
+        return Trade.builder()
+                .ticker(ticker)
+                .transactionType(type)
+                .shares(BigInteger.valueOf(shares))
+                .price(new BigDecimal(price))
+                .lastUpdated(lastUpdated)
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.HoldingsWatermark;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.repositories.HoldingRepository;
+import com.application.portfoliotracker.repositories.HoldingsWatermarkRepository;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "portfolio.holdings.write-behind.enabled=true")
+class PortfolioServiceWriteBehindRecoveryTests {
+
+    private static final String PORTFOLIO = "write-behind-recovery";
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private HoldingWriteBehind holdingWriteBehind;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private HoldingRepository holdingRepository;
+
+    @Autowired
+    private HoldingsWatermarkRepository holdingsWatermarkRepository;
+
+    //A start that found the marker dirty rebuilds the holdings from the trades, dropping whatever the table had,
+    //and consumes the marker so the next start does not rebuild again
+    @Test
+    void dirtyMarkerRebuildsHoldingsFromTrades() {
+        tradeRepository.save(trade(10));
+        tradeRepository.save(trade(5));
+        holdingRepository.save(Holding.builder()
+                .portfolioId(PORTFOLIO)
+                .ticker("WBR")
+                .totalPrice(new BigDecimal("25.00"))
+                .averageBuyPrice(new BigDecimal("25.00"))
+                .shares(BigInteger.ONE)
+                .realizedProfit(BigDecimal.ZERO)
+                .lastUpdated(LocalDateTime.now())
+                .build());
+        holdingsWatermarkRepository.save(HoldingsWatermark.builder().name(HoldingsWatermark.writeBehind()).tradeId(1L).build());
+        //as if this run had started on the marker an unclean stop left behind
+        ReflectionTestUtils.setField(holdingWriteBehind, "recoveryNeeded", true);
+
+        portfolioService.recoverWriteBehindHoldings();
+
+        assertFalse(holdingWriteBehind.isRecoveryNeeded());
+        Optional<Holding> holding = portfolioService.getHolding(PORTFOLIO, "WBR");
+        assertTrue(holding.isPresent());
+        assertEquals(BigInteger.valueOf(15), holding.get().getShares());
+    }
+
+    private static Trade trade(long shares) {
+        return Trade.builder()
+                .portfolioId(PORTFOLIO)
+                .ticker("WBR")
+                .transactionType(TransactionType.BUY)
+                .shares(BigInteger.valueOf(shares))
+                .price(new BigDecimal("25.00"))
+                .lastUpdated(LocalDateTime.now())
+                .build();
+    }
+}
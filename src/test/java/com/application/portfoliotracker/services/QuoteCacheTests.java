@@ -0,0 +1,181 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.exceptions.NotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteCacheTests {
+
+    private static final BigDecimal PRICE = new BigDecimal("42.00");
+
+    private final CountingPriceProvider provider = new CountingPriceProvider();
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void stopCallers() {
+        provider.release.countDown();
+        callers.shutdownNow();
+    }
+
+    //A quote is served from the cache until the ttl passes, then fetched again
+    @Test
+    void expiredQuoteIsFetchedAgain() throws InterruptedException {
+        QuoteCache quoteCache = new QuoteCache(provider, Duration.ofMillis(200), 100);
+
+        assertEquals(PRICE, quoteCache.getPrice("AAA"));
+        assertEquals(PRICE, quoteCache.getPrice("AAA"));
+        assertEquals(1, provider.single.get());
+
+        Thread.sleep(300);
+
+        assertEquals(PRICE, quoteCache.getPrice("AAA"));
+        assertEquals(2, provider.single.get());
+        assertEquals(1, quoteCache.getStats().getHits());
+        assertEquals(2, quoteCache.getStats().getMisses());
+    }
+
+    //Past max-size the least recently used quote is dropped, not the least recently stored one
+    @Test
+    void leastRecentlyUsedQuoteIsEvicted() {
+        QuoteCache quoteCache = new QuoteCache(provider, Duration.ofHours(1), 2);
+        quoteCache.getPrice("AAA");
+        quoteCache.getPrice("BBB");
+        quoteCache.getPrice("AAA");
+
+        quoteCache.getPrice("CCC");
+
+        assertNotNull(quoteCache.peekPrice("AAA"));
+        assertNull(quoteCache.peekPrice("BBB"));
+        assertNotNull(quoteCache.peekPrice("CCC"));
+        assertEquals(1, quoteCache.getStats().getEvictions());
+        assertEquals(2, quoteCache.getStats().getSize());
+    }
+
+    //Concurrent misses of one ticker share a single provider call
+    @Test
+    void concurrentMissesOfTickerShareOneFetch() throws Exception {
+        QuoteCache quoteCache = new QuoteCache(provider, Duration.ofHours(1), 100);
+        provider.blocking = true;
+        List<Future<BigDecimal>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(() -> quoteCache.getPrice("AAA")));
+        }
+        assertTrue(provider.entered.await(5, TimeUnit.SECONDS));
+        await(() -> 7 == quoteCache.getStats().getCoalesced());
+
+        provider.release.countDown();
+
+        for (Future<BigDecimal> result : results) {
+            assertEquals(PRICE, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, provider.single.get());
+        assertEquals(1, quoteCache.getStats().getFetches());
+    }
+
+    //A bulk read waits on tickers another bulk read is fetching and fetches only the rest itself
+    @Test
+    void bulkReadsShareInFlightTickers() throws Exception {
+        QuoteCache quoteCache = new QuoteCache(provider, Duration.ofHours(1), 100);
+        provider.blocking = true;
+        Future<Map<String, BigDecimal>> first = callers.submit(() -> quoteCache.getPrices(Arrays.asList("AAA", "BBB")));
+        assertTrue(provider.entered.await(5, TimeUnit.SECONDS));
+        provider.blocking = false;
+
+        Future<Map<String, BigDecimal>> second = callers.submit(() -> quoteCache.getPrices(Arrays.asList("BBB", "CCC")));
+        await(() -> 1 == quoteCache.getStats().getCoalesced() && 2 == provider.bulk.size());
+        provider.release.countDown();
+
+        assertEquals(new HashSet<>(Arrays.asList("AAA", "BBB")), first.get(5, TimeUnit.SECONDS).keySet());
+        assertEquals(new HashSet<>(Arrays.asList("BBB", "CCC")), second.get(5, TimeUnit.SECONDS).keySet());
+        assertEquals(Arrays.asList(new HashSet<>(Arrays.asList("AAA", "BBB")), Collections.singleton("CCC")), provider.bulk);
+        assertEquals(0, provider.single.get());
+    }
+
+    //A bulk fetch missing one ticker stores the others, fails the callers waiting on the missing one,
+    //and a retry fetches only the missing ticker
+    @Test
+    void partialBulkFailureKeepsPricedTickers() throws Exception {
+        QuoteCache quoteCache = new QuoteCache(provider, Duration.ofHours(1), 100);
+        provider.blocking = true;
+        Future<Map<String, BigDecimal>> bulk = callers.submit(() -> quoteCache.getPrices(Arrays.asList("AAA", "MISSING", "ZZZ")));
+        assertTrue(provider.entered.await(5, TimeUnit.SECONDS));
+        Future<BigDecimal> waiter = callers.submit(() -> quoteCache.getPrice("MISSING"));
+        await(() -> 1 == quoteCache.getStats().getCoalesced());
+
+        provider.release.countDown();
+
+        ExecutionException bulkFailure = assertThrows(ExecutionException.class, () -> bulk.get(5, TimeUnit.SECONDS));
+        assertTrue(bulkFailure.getCause() instanceof NotFoundException);
+        ExecutionException waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertTrue(waiterFailure.getCause() instanceof NotFoundException);
+        assertEquals(PRICE, quoteCache.peekPrice("AAA"));
+        assertEquals(PRICE, quoteCache.peekPrice("ZZZ"));
+
+        provider.blocking = false;
+        assertThrows(NotFoundException.class, () -> quoteCache.getPrices(Arrays.asList("AAA", "MISSING", "ZZZ")));
+        assertEquals(Collections.singleton("MISSING"), provider.bulk.get(1));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+
+    //Prices every ticker at PRICE except MISSING, counting calls and optionally holding them until released
+    private static final class CountingPriceProvider implements PriceProvider {
+
+        private final AtomicInteger single = new AtomicInteger();
+
+        private final List<Set<String>> bulk = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private volatile boolean blocking;
+
+        @Override
+        public BigDecimal getPrice(String ticker) {
+            single.incrementAndGet();
+            hold();
+            if ("MISSING".equals(ticker)) {
+                throw new NotFoundException(String.format("No price found for ticker : %s", ticker));
+            }
+            return PRICE;
+        }
+
+        @Override
+        public Map<String, BigDecimal> getPrices(Collection<String> tickers) {
+            bulk.add(new HashSet<>(tickers));
+            hold();
+            Map<String, BigDecimal> prices = new HashMap<>();
+            tickers.stream().filter(ticker -> !"MISSING".equals(ticker)).forEach(ticker -> prices.put(ticker, PRICE));
+            return prices;
+        }
+
+        private void hold() {
+            if (!blocking) {
+                return;
+            }
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.PortfolioReturns;
+import com.application.portfoliotracker.entities.TickerReturns;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReturnsLedgerTests {
+
+    private static final String PORTFOLIO = "ledger";
+
+    private final HoldingWriteBehind holdingWriteBehind = mock(HoldingWriteBehind.class);
+
+    private final QuoteCache quoteCache = mock(QuoteCache.class);
+
+    private final TradeRepository tradeRepository = mock(TradeRepository.class);
+
+    private final List<Holding> stored = new ArrayList<>();
+
+    private final List<Trade> trades = new ArrayList<>();
+
+    private final ReturnsLedger returnsLedger = new ReturnsLedger(holdingWriteBehind, quoteCache, tradeRepository,
+            mock(PlatformTransactionManager.class), Duration.ofHours(1));
+
+    ReturnsLedgerTests() {
+        when(holdingWriteBehind.findByPortfolioId(PORTFOLIO)).thenAnswer(invocation -> new ArrayList<>(stored));
+        when(tradeRepository.findDistinctTickers(PORTFOLIO)).thenAnswer(invocation -> trades.stream()
+                .map(Trade::getTicker)
+                .distinct()
+                .collect(Collectors.toList()));
+        when(tradeRepository.streamByPortfolioIdAndTickerOrderByTradeIdAsc(eq(PORTFOLIO), anyString()))
+                .thenAnswer(invocation -> trades.stream().filter(trade -> trade.getTicker().equals(invocation.getArgument(1))));
+        when(quoteCache.getPrices(any())).thenReturn(Collections.emptyMap());
+        when(quoteCache.peekPrice("AAA")).thenReturn(new BigDecimal("12.00"));
+        when(quoteCache.peekPrice("BBB")).thenReturn(new BigDecimal("30.00"));
+    }
+
+    //Closing a position keeps its realized profit in the totals and lists the ticker with no shares
+    @Test
+    void closedPositionKeepsRealizedProfit() {
+        stored.add(holding("AAA", 10, "100.00", "0"));
+        stored.add(holding("BBB", 2, "50.00", "5.00"));
+        assertEquals(0, new BigDecimal("5.00").compareTo(totals().getRealizedProfit()));
+
+        returnsLedger.put(holding("AAA", 0, "0", "40.00"));
+
+        PortfolioReturns totals = totals();
+        assertEquals(0, new BigDecimal("45.00").compareTo(totals.getRealizedProfit()));
+        assertEquals(0, new BigDecimal("50.00").compareTo(totals.getCostBasis()));
+        assertEquals(0, new BigDecimal("60.00").compareTo(totals.getMarketValue()));
+        Map<String, TickerReturns> breakdown = breakdown();
+        assertEquals(2, breakdown.size());
+        assertEquals(BigInteger.ZERO, breakdown.get("AAA").getShares());
+        assertEquals(0, new BigDecimal("40.00").compareTo(breakdown.get("AAA").getRealizedProfit()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(breakdown.get("AAA").getMarketValue()));
+        assertEquals(BigInteger.ZERO, returnsLedger.getPosition(PORTFOLIO, "AAA").get().getShares());
+    }
+
+    //Buying a closed ticker again replaces its closed entry, its realized profit is counted once
+    @Test
+    void reopenedPositionCountsRealizedProfitOnce() {
+        stored.add(holding("AAA", 10, "100.00", "0"));
+        totals();
+        returnsLedger.put(holding("AAA", 0, "0", "40.00"));
+
+        returnsLedger.put(holding("AAA", 5, "60.00", "40.00"));
+
+        PortfolioReturns totals = totals();
+        assertEquals(0, new BigDecimal("40.00").compareTo(totals.getRealizedProfit()));
+        assertEquals(0, new BigDecimal("60.00").compareTo(totals.getCostBasis()));
+        assertEquals(BigInteger.valueOf(5), breakdown().get("AAA").getShares());
+    }
+
+    //Only closed tickers left still report their realized profit
+    @Test
+    void onlyClosedTickersStillReportTotals() {
+        stored.add(holding("AAA", 10, "100.00", "0"));
+        totals();
+
+        returnsLedger.put(holding("AAA", 0, "0", "-8.50"));
+
+        assertEquals(0, new BigDecimal("-8.50").compareTo(totals().getRealizedProfit()));
+        assertFalse(returnsLedger.getReturns(PORTFOLIO).isPresent());
+    }
+
+    //A loaded book folds the realized profit of tickers that have trades but no holding
+    @Test
+    void loadFoldsRealizedProfitOfClosedTickers() {
+        stored.add(holding("BBB", 2, "50.00", "0"));
+        trades.add(trade(1, "BBB", TransactionType.BUY, 2, "25.00"));
+        trades.add(trade(2, "AAA", TransactionType.BUY, 10, "10.00"));
+        trades.add(trade(3, "AAA", TransactionType.SELL, 4, "15.00"));
+        trades.add(trade(4, "AAA", TransactionType.SELL, 6, "11.00"));
+
+        PortfolioReturns totals = totals();
+
+        //4 * (15 - 10) + 6 * (11 - 10)
+        assertEquals(0, new BigDecimal("26.00").compareTo(totals.getRealizedProfit()));
+        assertEquals(0, new BigDecimal("26.00").compareTo(breakdown().get("AAA").getRealizedProfit()));
+        verify(tradeRepository, never()).streamByPortfolioIdAndTickerOrderByTradeIdAsc(PORTFOLIO, "BBB");
+    }
+
+    //A closed ticker that booked nothing leaves no entry behind
+    @Test
+    void closedTickerWithoutRealizedProfitIsDropped() {
+        stored.add(holding("AAA", 10, "100.00", "0"));
+        stored.add(holding("BBB", 2, "50.00", "0"));
+        totals();
+
+        returnsLedger.put(holding("AAA", 0, "0", "0"));
+
+        assertFalse(breakdown().containsKey("AAA"));
+        assertFalse(returnsLedger.getPosition(PORTFOLIO, "AAA").isPresent());
+    }
+
+    private PortfolioReturns totals() {
+        Optional<PortfolioReturns> totals = returnsLedger.getTotals(PORTFOLIO);
+        assertTrue(totals.isPresent());
+        return totals.get();
+    }
+
+    private Map<String, TickerReturns> breakdown() {
+        return returnsLedger.getBreakdown(PORTFOLIO).get().getTickers().stream()
+                .collect(Collectors.toMap(TickerReturns::getTicker, tickerReturns -> tickerReturns));
+    }
+
+    private static Holding holding(String ticker, long shares, String totalPrice, String realizedProfit) {
+        return Holding.builder()
+                .portfolioId(PORTFOLIO)
+                .ticker(ticker)
+                .shares(BigInteger.valueOf(shares))
+                .totalPrice(new BigDecimal(totalPrice))
+                .realizedProfit(new BigDecimal(realizedProfit))
+                .build();
+    }
+
+    private static Trade trade(long tradeId, String ticker, TransactionType type, long shares, String price) {
+        return Trade.builder()
+                .tradeId(tradeId)
+                .portfolioId(PORTFOLIO)
+                .ticker(ticker)
+                .transactionType(type)
+                .shares(BigInteger.valueOf(shares))
+                .price(new BigDecimal(price))
+                .build();
+    }
+}
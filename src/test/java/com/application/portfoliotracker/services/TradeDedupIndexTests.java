@@ -0,0 +1,98 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.repositories.TradeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class TradeDedupIndexTests {
+
+    private static final String PORTFOLIO = "dedup";
+
+    private final TradeRepository tradeRepository = mock(TradeRepository.class);
+
+    //Keys recorded within the window are answered from memory
+    @Test
+    void recentKeyIsFoundWithoutQuery() {
+        TradeDedupIndex index = index(16);
+        index.record(trade(7, "recent"));
+
+        assertEquals(Optional.of(7L), index.find(PORTFOLIO, "recent"));
+        verifyNoInteractions(tradeRepository);
+    }
+
+    //A key the filter has never seen is new without asking the table
+    @Test
+    void unseenKeyIsNewWithoutQuery() {
+        TradeDedupIndex index = index(16);
+        index.record(trade(7, "seen"));
+
+        assertEquals(Optional.empty(), index.find(PORTFOLIO, "never-seen"));
+        verifyNoInteractions(tradeRepository);
+    }
+
+    //The filter keeps a forgotten key, so the next check is a false positive that the table answers
+    @Test
+    void filterFalsePositiveFallsBackToTable() {
+        TradeDedupIndex index = index(16);
+        Trade deleted = trade(7, "reused");
+        index.record(deleted);
+        index.forget(deleted);
+        when(tradeRepository.findByPortfolioIdAndIdempotencyKeyIn(anyString(), any())).thenReturn(Collections.emptyList());
+
+        assertEquals(Optional.empty(), index.find(PORTFOLIO, "reused"));
+        verify(tradeRepository).findByPortfolioIdAndIdempotencyKeyIn(PORTFOLIO, List.of("reused"));
+    }
+
+    //A key pushed out of the window is still known to the filter and found in the table
+    @Test
+    void keyOutOfWindowIsFoundInTable() {
+        TradeDedupIndex index = index(1);
+        Trade first = trade(1, "first");
+        index.record(first);
+        index.record(trade(2, "second"));
+        when(tradeRepository.findByPortfolioIdAndIdempotencyKeyIn(PORTFOLIO, List.of("first"))).thenReturn(List.of(first));
+
+        assertEquals(Optional.of(1L), index.find(PORTFOLIO, "first"));
+        assertEquals(Optional.of(2L), index.find(PORTFOLIO, "second"));
+        verify(tradeRepository).findByPortfolioIdAndIdempotencyKeyIn(PORTFOLIO, List.of("first"));
+    }
+
+    //Keys found out through the unique index are looked up from then on
+    @Test
+    void suspectedKeyIsLookedUp() {
+        TradeDedupIndex index = index(16);
+        Trade saved = trade(3, "saved-elsewhere");
+        when(tradeRepository.findByPortfolioIdAndIdempotencyKeyIn(PORTFOLIO, List.of("saved-elsewhere"))).thenReturn(List.of(saved));
+        assertEquals(Optional.empty(), index.find(PORTFOLIO, "saved-elsewhere"));
+
+        index.suspect(List.of(saved));
+
+        assertEquals(Optional.of(3L), index.find(PORTFOLIO, "saved-elsewhere"));
+    }
+
+    private TradeDedupIndex index(int windowSize) {
+        return new TradeDedupIndex(tradeRepository, mock(TransactionTemplate.class), new SimpleMeterRegistry(),
+                windowSize, Duration.ofHours(1), 10_000, 0.001);
+    }
+
+    private static Trade trade(long tradeId, String idempotencyKey) {
+        return Trade.builder()
+                .tradeId(tradeId)
+                .portfolioId(PORTFOLIO)
+                .ticker("DDP")
+                .idempotencyKey(idempotencyKey)
+                .build();
+    }
+}
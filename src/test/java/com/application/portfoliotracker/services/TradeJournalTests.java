@@ -0,0 +1,175 @@
+package com.application.portfoliotracker.services;
+
+import com.application.portfoliotracker.entities.Holding;
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TradeType;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.utils.JournalFile;
+import com.application.portfoliotracker.utils.TradeEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TradeJournalTests {
+
+    private static final int SEGMENT_SIZE = 1 << 16;
+
+    @TempDir
+    Path directory;
+
+    //A record whose payload no longer matches its checksum ends the replay, later records included
+    @Test
+    void replayStopsAtChecksumMismatch() throws IOException {
+        List<Integer> offsets = new ArrayList<>();
+        try (JournalFile journal = new JournalFile(directory, SEGMENT_SIZE)) {
+            for (long tradeId = 1; tradeId <= 3; tradeId++) {
+                offsets.add(JournalFile.offsetOf(journal.position()));
+                journal.append(TradeEvent.of(TradeType.ADD, trade(tradeId, "AAA", TransactionType.BUY, 10)));
+            }
+        }
+        corrupt(offsets.get(1) + 8 + 3);
+
+        assertEquals(Collections.singletonList(1L), replayedTradeIds());
+    }
+
+    //A torn record after the last complete one is not replayed and the next append overwrites it
+    @Test
+    void tornTailIsTruncatedOnReopen() throws IOException {
+        int tail;
+        try (JournalFile journal = new JournalFile(directory, SEGMENT_SIZE)) {
+            journal.append(TradeEvent.of(TradeType.ADD, trade(1, "AAA", TransactionType.BUY, 10)));
+            journal.append(TradeEvent.of(TradeType.ADD, trade(2, "AAA", TransactionType.BUY, 10)));
+            tail = JournalFile.offsetOf(journal.position());
+        }
+        //length of a record whose checksum and payload never made it to the file
+        try (FileChannel channel = FileChannel.open(segment(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.putInt(tail, 40);
+            buffer.force();
+        }
+        assertEquals(List.of(1L, 2L), replayedTradeIds());
+
+        try (JournalFile journal = new JournalFile(directory, SEGMENT_SIZE)) {
+            assertEquals(tail, JournalFile.offsetOf(journal.position()));
+            journal.append(TradeEvent.of(TradeType.ADD, trade(3, "AAA", TransactionType.BUY, 10)));
+        }
+        assertEquals(List.of(1L, 2L, 3L), replayedTradeIds());
+    }
+
+    //Startup loads the latest snapshot and folds only the events written after it, and trades of a journal
+    //whose holdings do not follow from its events are not handed out
+    @Test
+    void recoverLoadsSnapshotThenReplaysTail() throws IOException {
+        TradeJournal journal = open();
+        journal.append(TradeType.ADD, trade(1, "AAA", TransactionType.BUY, 10));
+        journal.append(TradeType.ADD, trade(2, "BBB", TransactionType.BUY, 5));
+        List<Holding> snapshotted = journal.getHoldings();
+        snapshotted.stream().filter(holding -> "AAA".equals(holding.getTicker())).forEach(holding -> holding.setShares(BigInteger.valueOf(100)));
+        journal.reset(snapshotted);
+        journal.append(TradeType.ADD, trade(3, "AAA", TransactionType.BUY, 1));
+        journal.append(TradeType.DELETE, trade(2, "BBB", TransactionType.BUY, 5));
+        journal.close();
+
+        TradeJournal recovered = open();
+        List<Holding> holdings = recovered.getHoldings();
+        List<Trade> trades = recovered.getTrades();
+        recovered.close();
+
+        assertEquals(1, holdings.size());
+        assertEquals("AAA", holdings.get(0).getTicker());
+        assertEquals(BigInteger.valueOf(101), holdings.get(0).getShares());
+        assertTrue(trades.isEmpty());
+    }
+
+    //Trades replayed from a complete journal come back live only, with their ids and keys
+    @Test
+    void tradesAreReplayedFromTheStart() throws IOException {
+        TradeJournal journal = open();
+        journal.append(TradeType.ADD, trade(1, "AAA", TransactionType.BUY, 10));
+        journal.append(TradeType.ADD, trade(2, "BBB", TransactionType.BUY, 5));
+        journal.append(TradeType.ADD, trade(3, "AAA", TransactionType.SELL, 4));
+        journal.append(TradeType.DELETE, trade(2, "BBB", TransactionType.BUY, 5));
+        journal.close();
+
+        TradeJournal recovered = open();
+        List<Trade> trades = recovered.getTrades();
+        recovered.close();
+
+        assertEquals(List.of(1L, 3L), trades.stream().map(Trade::getTradeId).collect(Collectors.toList()));
+        assertEquals("key-3", trades.get(1).getIdempotencyKey());
+        assertEquals(TransactionType.SELL, trades.get(1).getTransactionType());
+    }
+
+    //An event that cannot be written is logged instead of thrown at the committed request, and the incomplete
+    //journal is discarded on the next start
+    @Test
+    void failedWriteDegradesInsteadOfThrowing() throws IOException {
+        TradeJournal journal = new TradeJournal(true, directory.toString(), 128, 1_000, false);
+        journal.recover();
+        journal.append(TradeType.ADD, trade(1, "AAA", TransactionType.BUY, 10));
+        assertDoesNotThrow(() -> journal.append(TradeType.ADD, trade(2, "A".repeat(200), TransactionType.BUY, 10)));
+        assertTrue(journal.isDegraded());
+        assertTrue(journal.getHoldings().isEmpty());
+        journal.close();
+
+        TradeJournal recovered = new TradeJournal(true, directory.toString(), 128, 1_000, false);
+        recovered.recover();
+        assertFalse(recovered.isDegraded());
+        assertTrue(recovered.getHoldings().isEmpty());
+        assertTrue(recovered.getTrades().isEmpty());
+        recovered.close();
+    }
+
+    private TradeJournal open() throws IOException {
+        TradeJournal journal = new TradeJournal(true, directory.toString(), SEGMENT_SIZE, 1_000, false);
+        journal.recover();
+        return journal;
+    }
+
+    private List<Long> replayedTradeIds() throws IOException {
+        List<Long> tradeIds = new ArrayList<>();
+        JournalFile.replay(directory, JournalFile.position(1, 0), event -> tradeIds.add(event.getTradeId()));
+        return tradeIds;
+    }
+
+    private void corrupt(int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, offset);
+            one.put(0, (byte) (one.get(0) ^ 0x5A)).rewind();
+            channel.write(one, offset);
+        }
+    }
+
+    private Path segment() {
+        return directory.resolve("journal-00000001.seg");
+    }
+
+    private static Trade trade(long tradeId, String ticker, TransactionType type, long shares) {
+        return Trade.builder()
+                .tradeId(tradeId)
+                .portfolioId("journal")
+                .ticker(ticker)
+                .transactionType(type)
+                .price(new BigDecimal("12.5"))
+                .shares(BigInteger.valueOf(shares))
+                .lastUpdated(LocalDateTime.of(2021, 1, 1, 0, 0).plusMinutes(tradeId))
+                .idempotencyKey("key-" + tradeId)
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+package com.application.portfoliotracker.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointTests {
+
+    //Products that fit in a long are divided directly
+    @Test
+    void smallProductIsDividedExactly() {
+        assertEquals(6, FixedPoint.mulDiv(4, 3, 2));
+        assertEquals(2, FixedPoint.mulDiv(5, 1, 3));
+        assertEquals(Long.MAX_VALUE, FixedPoint.mulDiv(Long.MAX_VALUE, 3, 3));
+    }
+
+    //Products past 2^63 go through the 128 bit division and still match BigDecimal
+    @Test
+    void productAboveLongRangeMatchesBigDecimal() {
+        assertEquals(reference(Long.MAX_VALUE, 4, 8), FixedPoint.mulDiv(Long.MAX_VALUE, 4, 8));
+        assertEquals(Long.MAX_VALUE - 1, FixedPoint.mulDiv(Long.MAX_VALUE, Long.MAX_VALUE - 1, Long.MAX_VALUE));
+        assertEquals(reference(3_000_000_000_000L, 7_000_000_000L, 9_999_991L),
+                FixedPoint.mulDiv(3_000_000_000_000L, 7_000_000_000L, 9_999_991L));
+    }
+
+    //A high word equal to the divisor minus one passes the upfront check, but the quotient is at least 2^63
+    @Test
+    void highWordOneBelowDivisorOverflows() {
+        long divisor = 1L << 40;
+        long value = 1L << 62;
+        long multiplier = (1L << 42) - 1;
+        assertEquals(divisor - 1, Math.multiplyHigh(value, multiplier));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(value, multiplier, divisor));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(value, multiplier, divisor - 1));
+    }
+
+    //A quotient of Long.MAX_VALUE and a half rounds half-even up past the long range
+    @Test
+    void quotientRoundingUpToOverflowThrows() {
+        long value = (1L << 32) + 1;
+        long multiplier = (1L << 32) - 1;
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(value, multiplier, 2));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(-value, multiplier, 2));
+    }
+
+    //The sign of the quotient follows the signs of the three operands, ties round half-even either way
+    @Test
+    void signCombinations() {
+        assertEquals(10, FixedPoint.mulDiv(7, 3, 2));
+        assertEquals(-10, FixedPoint.mulDiv(-7, 3, 2));
+        assertEquals(-10, FixedPoint.mulDiv(7, -3, 2));
+        assertEquals(-10, FixedPoint.mulDiv(7, 3, -2));
+        assertEquals(10, FixedPoint.mulDiv(-7, -3, 2));
+        assertEquals(10, FixedPoint.mulDiv(-7, 3, -2));
+        assertEquals(10, FixedPoint.mulDiv(7, -3, -2));
+        assertEquals(-10, FixedPoint.mulDiv(-7, -3, -2));
+        assertEquals(-2, FixedPoint.mulDiv(-5, 1, 3));
+        assertEquals(reference(-Long.MAX_VALUE, 5, 7), FixedPoint.mulDiv(-Long.MAX_VALUE, 5, 7));
+        assertEquals(reference(Long.MAX_VALUE, -5, -7), FixedPoint.mulDiv(Long.MAX_VALUE, -5, -7));
+    }
+
+    //Exact ties round to the even neighbour, on both the 64 and the 128 bit path
+    @Test
+    void exactTiesRoundHalfEven() {
+        assertEquals(2, FixedPoint.mulDiv(5, 1, 2));
+        assertEquals(4, FixedPoint.mulDiv(7, 1, 2));
+        assertEquals(-2, FixedPoint.mulDiv(-5, 1, 2));
+        assertEquals(-4, FixedPoint.mulDiv(-7, 1, 2));
+        //(2^64 - 2) / 4 = 2^62 - 0.5, the lower neighbour is odd
+        assertEquals(1L << 62, FixedPoint.mulDiv(Long.MAX_VALUE, 2, 4));
+        //(2^63 + 2) / 4 = 2^61 + 0.5, the lower neighbour is even
+        assertEquals(1L << 61, FixedPoint.mulDiv(2, (1L << 62) + 1, 4));
+        //(2^63 + 6) / 4 = 2^61 + 1.5, the lower neighbour is odd
+        assertEquals((1L << 61) + 2, FixedPoint.mulDiv(2, (1L << 62) + 3, 4));
+        assertEquals(-(1L << 61), FixedPoint.mulDiv(-2, (1L << 62) + 1, 4));
+    }
+
+    @Test
+    void invalidOperandsThrow() {
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(1, 1, 0));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(Long.MIN_VALUE, 1, 1));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(1, Long.MIN_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(1, 1, Long.MIN_VALUE));
+    }
+
+    //Random operands across the whole range agree with BigDecimal wherever the quotient fits in a long
+    @Test
+    void randomOperandsMatchBigDecimal() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >> random.nextInt(63);
+            long multiplier = random.nextLong() >> random.nextInt(63);
+            long divisor = random.nextLong() >> random.nextInt(63);
+            if (0 == divisor || Long.MIN_VALUE == value || Long.MIN_VALUE == multiplier || Long.MIN_VALUE == divisor) {
+                continue;
+            }
+            BigInteger expected = referenceExact(value, multiplier, divisor);
+            if (expected.bitLength() < 64) {
+                assertEquals(expected.longValueExact(), FixedPoint.mulDiv(value, multiplier, divisor),
+                        value + " * " + multiplier + " / " + divisor);
+            } else {
+                assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(value, multiplier, divisor),
+                        value + " * " + multiplier + " / " + divisor);
+            }
+        }
+    }
+
+    @Test
+    void conversionsRoundHalfEvenAndRoundTrip() {
+        assertEquals(1_234_568L, FixedPoint.of(new BigDecimal("1.2345675")));
+        assertEquals(1_234_568L, FixedPoint.of(new BigDecimal("1.2345685")));
+        assertEquals(0, new BigDecimal("1.234568").compareTo(FixedPoint.toBigDecimal(1_234_568L)));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.of(new BigDecimal("1e14")));
+    }
+
+    private static long reference(long value, long multiplier, long divisor) {
+        return referenceExact(value, multiplier, divisor).longValueExact();
+    }
+
+    private static BigInteger referenceExact(long value, long multiplier, long divisor) {
+        return new BigDecimal(BigInteger.valueOf(value).multiply(BigInteger.valueOf(multiplier)))
+                .divide(BigDecimal.valueOf(divisor), 0, RoundingMode.HALF_EVEN)
+                .toBigIntegerExact();
+    }
+}
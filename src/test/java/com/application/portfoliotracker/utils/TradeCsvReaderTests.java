@@ -0,0 +1,107 @@
+package com.application.portfoliotracker.utils;
+
+import com.application.portfoliotracker.entities.Trade;
+import com.application.portfoliotracker.entities.TransactionType;
+import com.application.portfoliotracker.exceptions.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TradeCsvReaderTests {
+
+    //Rows with four, five and six columns, blank lines skipped and optional columns left empty
+    @Test
+    void readsRowsWithOptionalColumns() {
+        List<Trade> trades = readAll("ticker,transactionType,price,shares,lastUpdated,idempotencyKey\n"
+                + "AAA,BUY,10.50,3\n"
+                + "\n"
+                + " BBB , SELL , 7 , 2 ,2021-03-01T10:15:30\n"
+                + "CCC,BUY,1.000001,100,,key-1\n"
+                + "DDD,BUY,2,1,2021-03-02T00:00,\n");
+
+        assertEquals(4, trades.size());
+        assertEquals("AAA", trades.get(0).getTicker());
+        assertEquals(TransactionType.BUY, trades.get(0).getTransactionType());
+        assertEquals(new BigDecimal("10.50"), trades.get(0).getPrice());
+        assertEquals(BigInteger.valueOf(3), trades.get(0).getShares());
+        assertNull(trades.get(0).getLastUpdated());
+        assertNull(trades.get(0).getIdempotencyKey());
+        assertEquals("BBB", trades.get(1).getTicker());
+        assertEquals(TransactionType.SELL, trades.get(1).getTransactionType());
+        assertEquals(LocalDateTime.of(2021, 3, 1, 10, 15, 30), trades.get(1).getLastUpdated());
+        assertNull(trades.get(2).getLastUpdated());
+        assertEquals("key-1", trades.get(2).getIdempotencyKey());
+        assertEquals(LocalDateTime.of(2021, 3, 2, 0, 0), trades.get(3).getLastUpdated());
+        assertNull(trades.get(3).getIdempotencyKey());
+    }
+
+    //A header with only the required columns, or spaces around them, is accepted
+    @Test
+    void acceptsShortHeaderWithSpaces() {
+        List<Trade> trades = readAll("ticker, transactionType, price, shares\nAAA,BUY,1,1\n");
+        assertEquals(1, trades.size());
+    }
+
+    @Test
+    void rejectsMissingOrWrongHeader() {
+        assertThrows(BadRequestException.class, () -> reader(""));
+        assertThrows(BadRequestException.class, () -> reader("ticker,price,shares\nAAA,1,1\n"));
+    }
+
+    //A bad row fails with its line number in the file, counting the header and blank lines
+    @Test
+    void invalidRowReportsItsLine() {
+        TradeCsvReader reader = reader("ticker,transactionType,price,shares\n"
+                + "AAA,BUY,1,1\n"
+                + "\n"
+                + "BBB,HOLD,1,1\n"
+                + "CCC,BUY,1\n");
+
+        reader.next();
+        BadRequestException badType = assertThrows(BadRequestException.class, reader::next);
+        assertTrue(badType.getMessage().startsWith("Invalid CSV row at line 4"), badType.getMessage());
+    }
+
+    @Test
+    void rowsWithWrongColumnCountOrValuesAreRejected() {
+        assertThrows(BadRequestException.class, () -> reader("ticker,transactionType,price,shares\nAAA,BUY,1\n").next());
+        assertThrows(BadRequestException.class, () -> reader("ticker,transactionType,price,shares\nAAA,BUY,1,1,,k,extra\n").next());
+        assertThrows(BadRequestException.class, () -> reader("ticker,transactionType,price,shares\nAAA,BUY,ten,1\n").next());
+        assertThrows(BadRequestException.class, () -> reader("ticker,transactionType,price,shares\nAAA,BUY,1,1.5\n").next());
+        assertThrows(BadRequestException.class, () -> reader("ticker,transactionType,price,shares\nAAA,BUY,1,1,yesterday\n").next());
+    }
+
+    //Rows are parsed one at a time as they are consumed
+    @Test
+    void readsLazilyAndEndsCleanly() {
+        TradeCsvReader reader = reader("ticker,transactionType,price,shares\nAAA,BUY,1,1\nBBB,BUY,1,x\n");
+
+        assertTrue(reader.hasNext());
+        assertEquals("AAA", reader.next().getTicker());
+        assertTrue(reader.hasNext());
+        assertThrows(BadRequestException.class, reader::next);
+
+        TradeCsvReader empty = reader("ticker,transactionType,price,shares\n\n");
+        assertFalse(empty.hasNext());
+        assertThrows(NoSuchElementException.class, empty::next);
+    }
+
+    private static TradeCsvReader reader(String csv) {
+        return new TradeCsvReader(new BufferedReader(new StringReader(csv)));
+    }
+
+    private static List<Trade> readAll(String csv) {
+        List<Trade> trades = new ArrayList<>();
+        reader(csv).forEachRemaining(trades::add);
+        return trades;
+    }
+}